@@ -2,10 +2,13 @@ package org.gradle.api.testing.execution.fork;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The ForkLaunchMain class bootstraps the classloaders of a forked process, instantiates a class in the control
@@ -26,6 +29,11 @@ import java.util.List;
  * (any value)* (one a line)
  * <p/>
  * The 'shared' classloader is setup and serves as a parent for the 'control' and 'sandbox' classloaders.
+ * <p/>
+ * When started with '-pool (port) (fork process id) (control class)' the ForkLaunchMain runs as a pooled fork: it
+ * connects to the fork pool listening on the port and executes each config it receives, until the pool closes the
+ * connection. The 'shared' and 'control' classloaders are reused for configs with the same paths, the 'sandbox'
+ * classloader is created for each config.
  *
  * @author Tom Eyckmans
  */
@@ -33,6 +41,10 @@ public class ForkLaunchMain {
 
     public static void main(String[] args) {
         if (args == null) throw new NullPointerException("args");
+        if (args.length > 0 && POOL_PARAMETER.equals(args[0])) {
+            runPooled(args);
+            return;
+        }
         if (args.length != 2)
             throw new IllegalArgumentException("args.length != 2, expecting 2 arguments (the config file, the control class to instanciate)!");
 
@@ -59,6 +71,77 @@ public class ForkLaunchMain {
         forkLaunchMain.execute();
     }
 
+    private static void runPooled(String[] args) {
+        if (args.length != 4)
+            throw new IllegalArgumentException("args.length != 4, expecting 4 arguments (-pool, the pool port, the fork process id, the control class to instanciate)!");
+
+        final int poolPort = Integer.parseInt(args[1]);
+        final int forkProcessId = Integer.parseInt(args[2]);
+        final String executerClassName = args[3];
+
+        if ("".equals(executerClassName)) throw new IllegalArgumentException("executer class to instanciate is empty");
+
+        final Map<String, ClassLoader> classLoaderCache = new HashMap<String, ClassLoader>();
+        try {
+            final Socket socket = new Socket("localhost", poolPort);
+            try {
+                final DataInputStream poolInput = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream poolOutput = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                poolOutput.writeInt(forkProcessId);
+                poolOutput.flush();
+
+                String configFileContents;
+                while ((configFileContents = readPooledConfig(poolInput)) != null) {
+                    boolean succeeded = false;
+                    try {
+                        final ForkLaunchMain forkLaunchMain = new ForkLaunchMain(classLoaderCache);
+
+                        forkLaunchMain.loadConfigFile(configFileContents);
+
+                        forkLaunchMain.readConfigFileContents();
+
+                        forkLaunchMain.prepareClassLoaders();
+
+                        forkLaunchMain.instanciateForkExecuter(executerClassName);
+
+                        forkLaunchMain.execute();
+
+                        succeeded = true;
+                    }
+                    catch (Throwable t) {
+                        // report the failure to the pool, which then closes this fork instead of reusing it
+                        t.printStackTrace();
+                    }
+
+                    poolOutput.writeBoolean(succeeded);
+                    poolOutput.flush();
+                }
+            }
+            finally {
+                socket.close();
+            }
+        }
+        catch (IOException e) {
+            throw new RuntimeException("failed to communicate with the fork pool on port " + poolPort, e);
+        }
+    }
+
+    private static String readPooledConfig(DataInputStream poolInput) throws IOException {
+        final int length;
+        try {
+            length = poolInput.readInt();
+        }
+        catch (EOFException e) {
+            // the pool closed the connection
+            return null;
+        }
+        final byte[] configFileContents = new byte[length];
+        poolInput.readFully(configFileContents);
+        return new String(configFileContents, "UTF-8");
+    }
+
+    private static final String POOL_PARAMETER = "-pool";
     private static final String SHARED_CONFIG_SECTION = "[shared]";
     private static final String CONTROL_CONFIG_SECTION = "[control]";
     private static final String SANDBOX_CONFIG_SECTION = "[sandbox]";
@@ -78,7 +161,14 @@ public class ForkLaunchMain {
     private Class<?> classToLaunch;
     private Object forkExecuter;
 
+    private final Map<String, ClassLoader> classLoaderCache;
+
     ForkLaunchMain() {
+        this(null);
+    }
+
+    ForkLaunchMain(Map<String, ClassLoader> classLoaderCache) {
+        this.classLoaderCache = classLoaderCache;
     }
 
     void loadConfigFile(final File configFile) {
@@ -164,19 +254,38 @@ public class ForkLaunchMain {
     void prepareClassLoaders() {
         final ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader().getParent();
 
-        final URL[] sharedUrls = toUrlArray(SHARED_CONFIG_SECTION, sharedPaths);
-        if (sharedUrls.length == 0)
-            sharedClassLoader = systemClassLoader;
-        else
-            sharedClassLoader = new URLClassLoader(sharedUrls, systemClassLoader);
+        final String sharedKey = SHARED_CONFIG_SECTION + sharedPaths;
+        sharedClassLoader = getCachedClassLoader(sharedKey);
+        if (sharedClassLoader == null) {
+            final URL[] sharedUrls = toUrlArray(SHARED_CONFIG_SECTION, sharedPaths);
+            if (sharedUrls.length == 0)
+                sharedClassLoader = systemClassLoader;
+            else
+                sharedClassLoader = new URLClassLoader(sharedUrls, systemClassLoader);
+            cacheClassLoader(sharedKey, sharedClassLoader);
+        }
 
-        final URL[] controlUrls = toUrlArray(CONTROL_CONFIG_SECTION, controlPaths);
-        controlClassLoader = new URLClassLoader(controlUrls, sharedClassLoader);
+        final String controlKey = sharedKey + CONTROL_CONFIG_SECTION + controlPaths;
+        controlClassLoader = getCachedClassLoader(controlKey);
+        if (controlClassLoader == null) {
+            final URL[] controlUrls = toUrlArray(CONTROL_CONFIG_SECTION, controlPaths);
+            controlClassLoader = new URLClassLoader(controlUrls, sharedClassLoader);
+            cacheClassLoader(controlKey, controlClassLoader);
+        }
 
         final URL[] sandboxUrls = toUrlArray(SHARED_CONFIG_SECTION, sandboxPaths);
         sandboxClassLoader = new URLClassLoader(sandboxUrls, sharedClassLoader);
     }
 
+    private ClassLoader getCachedClassLoader(String key) {
+        return classLoaderCache == null ? null : classLoaderCache.get(key);
+    }
+
+    private void cacheClassLoader(String key, ClassLoader classLoader) {
+        if (classLoaderCache != null)
+            classLoaderCache.put(key, classLoader);
+    }
+
     void instanciateForkExecuter(final Object forkExecuter) {
         if (forkExecuter == null) throw new NullPointerException("forkExecuter");
 
@@ -72,6 +72,11 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
     private static final String EXCLUDE_TASK = "x";
     private static final String HELP = "h";
     private static final String GUI = "gui";
+    private static final String PARALLEL = "parallel";
+    private static final String ASYNC_LOGGING = "async-logging";
+    private static final String DAEMON = "daemon";
+    private static final String STOP_DAEMON = "stop-daemon";
+    private static final String FOREGROUND_DAEMON = "foreground-daemon";
 
     OptionParser parser = new OptionParser() {
         {
@@ -105,10 +110,17 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
             acceptsAll(WrapUtil.toList(NO_PROJECT_DEPENDENCY_REBUILD, "no-rebuild"), "Do not rebuild project dependencies.");
             acceptsAll(WrapUtil.toList(NO_OPT), "Ignore any task optimization.");
             acceptsAll(WrapUtil.toList(EXCLUDE_TASK, "exclude-task"), "Specify a task to be excluded from execution.").withRequiredArg().ofType(String.class);
+            acceptsAll(WrapUtil.toList(PARALLEL), "Execute independent tasks in parallel, using the given number of threads. Defaults to the number of processors.").withOptionalArg().ofType(Integer.class);
+            acceptsAll(WrapUtil.toList(ASYNC_LOGGING), "Write the output of build scripts and tasks to the log in the background.");
+            acceptsAll(WrapUtil.toList(DAEMON), "Runs the build in the build daemon, starting the daemon if it is not running.");
+            acceptsAll(WrapUtil.toList(STOP_DAEMON), "Stops the build daemon, if it is running.");
+            acceptsAll(WrapUtil.toList(FOREGROUND_DAEMON), "Starts the build daemon in the foreground.");
             acceptsAll(WrapUtil.toList(HELP, "?", "help"), "Shows this help message");
         }
     };
 
+    private final File baseDir;
+
    private static BidiMap logLevelMap = new DualHashBidiMap();
    private static BidiMap showStacktraceMap = new DualHashBidiMap();
 
@@ -127,8 +139,23 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
       //showStacktraceMap.put( , StartParameter.ShowStacktrace.INTERNAL_EXCEPTIONS ); there is no command argument for this. Rather, the lack of an argument means 'default to this'.
    }
 
+    public DefaultCommandLine2StartParameterConverter() {
+        this(null);
+    }
+
+    /**
+     * Creates a converter which uses the given directory as the current directory, and resolves relative file
+     * arguments against it. When null, the current directory of this process is used.
+     */
+    public DefaultCommandLine2StartParameterConverter(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
     public StartParameter convert(String[] args) {
         StartParameter startParameter = new StartParameter();
+        if (baseDir != null) {
+            startParameter.setCurrentDir(baseDir);
+        }
 
         String gradleHome = System.getProperty(GRADLE_HOME_PROPERTY_KEY);
         if (!GUtil.isTrue(gradleHome)) {
@@ -163,10 +190,24 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
             startParameter.setLaunchGUI(true);
         }
 
+        if (options.has(STOP_DAEMON)) {
+            startParameter.setStopDaemon(true);
+            return;
+        }
+
+        if (options.has(FOREGROUND_DAEMON)) {
+            startParameter.setForegroundDaemon(true);
+            return;
+        }
+
+        if (options.has(DAEMON)) {
+            startParameter.setUseDaemon(true);
+        }
+
         if (options.has(NO_DEFAULT_IMPORTS)) {
             startParameter.setDefaultImportsFile(null);
         } else if (options.has(DEFAULT_IMPORT_FILE)) {
-            startParameter.setDefaultImportsFile(new File(options.argumentOf(DEFAULT_IMPORT_FILE)));
+            startParameter.setDefaultImportsFile(resolveFile(options.argumentOf(DEFAULT_IMPORT_FILE)));
         }
 
         if (options.has(SYSTEM_PROP)) {
@@ -190,24 +231,24 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
         }
 
         if (options.has(PROJECT_DIR)) {
-            startParameter.setProjectDir(new File(options.argumentOf(PROJECT_DIR)));
+            startParameter.setProjectDir(resolveFile(options.argumentOf(PROJECT_DIR)));
         }
         if (options.hasArgument(GRADLE_USER_HOME)) {
-            startParameter.setGradleUserHomeDir(new File(options.argumentOf(GRADLE_USER_HOME)));
+            startParameter.setGradleUserHomeDir(resolveFile(options.argumentOf(GRADLE_USER_HOME)));
         }
         if (options.hasArgument(BUILD_FILE)) {
-            startParameter.setBuildFile(new File(options.argumentOf(BUILD_FILE)));
+            startParameter.setBuildFile(resolveFile(options.argumentOf(BUILD_FILE)));
         }
         if (options.hasArgument(SETTINGS_FILE)) {
-            startParameter.setSettingsFile(new File(options.argumentOf(SETTINGS_FILE)));
+            startParameter.setSettingsFile(resolveFile(options.argumentOf(SETTINGS_FILE)));
         }
 
         for (String script : (List<String>)options.argumentsOf(INIT_SCRIPT)) {
-            startParameter.addInitScript(new File(script));
+            startParameter.addInitScript(resolveFile(script));
         }
 
         if (options.hasArgument(PLUGIN_PROPERTIES_FILE)) {
-            startParameter.setPluginPropertiesFile(new File(options.argumentOf(PLUGIN_PROPERTIES_FILE)));
+            startParameter.setPluginPropertiesFile(resolveFile(options.argumentOf(PLUGIN_PROPERTIES_FILE)));
         }
 
         if (options.has(CACHE)) {
@@ -280,9 +321,26 @@ public class DefaultCommandLine2StartParameterConverter implements CommandLine2S
             startParameter.setExcludedTaskNames(options.valuesOf(EXCLUDE_TASK));
         }
 
+        if (options.has(ASYNC_LOGGING)) {
+            startParameter.setAsynchronousLogging(true);
+        }
+
+        if (options.has(PARALLEL)) {
+            startParameter.setParallelThreadCount(options.hasArgument(PARALLEL) ? (Integer) options.valueOf(PARALLEL)
+                    : Runtime.getRuntime().availableProcessors());
+        }
+
         startParameter.setLogLevel(getLogLevel(options));
     }
 
+    private File resolveFile(String path) {
+        File file = new File(path);
+        if (baseDir == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(baseDir, path);
+    }
+
     public void showHelp(OutputStream out) {
         try {
             parser.printHelpOn(out);
@@ -15,12 +15,16 @@
  */
 package org.gradle;
 
+import org.gradle.api.internal.artifacts.configurations.ConfigurationPreResolver;
 import org.gradle.api.internal.project.DefaultServiceRegistryFactory;
+import org.gradle.api.internal.project.GlobalServicesRegistry;
 import org.gradle.api.internal.project.ImportsReader;
 import org.gradle.api.internal.project.ProjectFactory;
+import org.gradle.api.internal.project.ServiceRegistry;
 import org.gradle.api.internal.project.ServiceRegistryFactory;
 import org.gradle.api.logging.Logging;
 import org.gradle.configuration.BuildConfigurer;
+import org.gradle.configuration.BuildScriptPrecompiler;
 import org.gradle.configuration.DefaultInitScriptProcessor;
 import org.gradle.configuration.ProjectDependencies2TaskResolver;
 import org.gradle.groovy.scripts.ScriptCompilerFactory;
@@ -28,6 +32,7 @@ import org.gradle.initialization.*;
 import org.gradle.invocation.DefaultGradle;
 import org.gradle.listener.DefaultListenerManager;
 import org.gradle.listener.ListenerManager;
+import org.gradle.logging.AsynchronousLoggingListener;
 import org.gradle.util.WrapUtil;
 
 
@@ -38,10 +43,21 @@ import org.gradle.util.WrapUtil;
 public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
     private LoggingConfigurer loggingConfigurer;
     private CommandLine2StartParameterConverter commandLine2StartParameterConverter;
+    private final ServiceRegistry globalServices;
 
     public DefaultGradleLauncherFactory(LoggingConfigurer loggingConfigurer, CommandLine2StartParameterConverter commandLine2StartParameterConverter) {
+        this(loggingConfigurer, commandLine2StartParameterConverter, new GlobalServicesRegistry());
+    }
+
+    /**
+     * Creates a factory whose builds share the given services. The services are reused by every build created by the
+     * factory, so can be used to keep state between builds.
+     */
+    public DefaultGradleLauncherFactory(LoggingConfigurer loggingConfigurer, CommandLine2StartParameterConverter commandLine2StartParameterConverter,
+                                        ServiceRegistry globalServices) {
         this.loggingConfigurer = loggingConfigurer;
         this.commandLine2StartParameterConverter = commandLine2StartParameterConverter;
+        this.globalServices = globalServices;
     }
 
     public LoggingConfigurer getLoggingConfigurer() {
@@ -66,7 +82,7 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
 
         listenerManager.useLogger(new TaskExecutionLogger(Logging.getLogger(TaskExecutionLogger.class)));
 
-        ServiceRegistryFactory serviceRegistryFactory = new DefaultServiceRegistryFactory(startParameter, listenerManager);
+        ServiceRegistryFactory serviceRegistryFactory = new DefaultServiceRegistryFactory(globalServices, startParameter, listenerManager);
         ISettingsFinder settingsFinder = new EmbeddedScriptSettingsFinder(
                 new DefaultSettingsFinder(WrapUtil.<ISettingsFileSearchStrategy>toList(
                         new MasterDirSettingsFinderStrategy(),
@@ -80,6 +96,13 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         DefaultGradle gradle = new DefaultGradle(
                 startParameter,
                 serviceRegistryFactory);
+        ProjectFactory projectFactory = new ProjectFactory(startParameter.getBuildScriptSource());
+        listenerManager.addListener(new BuildScriptPrecompiler(gradle, projectFactory, scriptCompilerFactory,
+                serviceRegistryFactory.get(ImportsReader.class)));
+        listenerManager.addListener(new ConfigurationPreResolver());
+        if (startParameter.isAsynchronousLogging()) {
+            listenerManager.addListener(new AsynchronousLoggingListener());
+        }
         return new GradleLauncher(
                 gradle,
                 initScriptHandler,
@@ -93,13 +116,12 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
                         new BuildSourceBuilder(
                                 new DefaultGradleLauncherFactory(
                                         loggingConfigurer,
-                                        commandLine2StartParameterConverter),
+                                        commandLine2StartParameterConverter,
+                                        globalServices),
                                 new DefaultCacheInvalidationStrategy()
                         )),
                 new DefaultGradlePropertiesLoader(),
-                new BuildLoader(
-                        new ProjectFactory(
-                                startParameter.getBuildScriptSource())),
+                new BuildLoader(projectFactory),
                 new BuildConfigurer(new ProjectDependencies2TaskResolver()),
                 loggingConfigurer);
     }
@@ -15,11 +15,19 @@
  */
 package org.gradle;
 
+import org.gradle.api.GradleException;
 import org.gradle.util.GradleVersion;
 import org.gradle.util.Clock;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.Logger;
+import org.gradle.daemon.DaemonClient;
+import org.gradle.daemon.DaemonServer;
+
+import java.io.File;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Hans Dockter
@@ -91,6 +99,26 @@ public class Main {
             buildCompleter.exit(null);
         }
 
+        if (startParameter.isStopDaemon()) {
+            if (!new DaemonClient(startParameter.getGradleUserHomeDir()).stop()) {
+                System.out.println("The build daemon is not running.");
+            }
+            buildCompleter.exit(null);
+        }
+
+        if (startParameter.isForegroundDaemon()) {
+            new DaemonServer(startParameter.getGradleUserHomeDir()).run();
+            buildCompleter.exit(null);
+        }
+
+        if (startParameter.isUseDaemon()) {
+            List<String> daemonArgs = new ArrayList<String>(Arrays.asList(args));
+            daemonArgs.remove("--daemon");
+            int exitCode = new DaemonClient(startParameter.getGradleUserHomeDir()).execute(daemonArgs.toArray(
+                    new String[daemonArgs.size()]), new File(System.getProperty("user.dir")), System.out, System.err);
+            buildCompleter.exit(exitCode == 0 ? null : new GradleException("The build failed."));
+        }
+
         BuildListener resultLogger = new BuildLogger(logger, buildTimeClock, startParameter);
         try {
             GradleLauncher gradleLauncher = GradleLauncher.newInstance(startParameter);
@@ -76,8 +76,13 @@ public class StartParameter {
     private boolean showHelp;
     private boolean showVersion;
     private boolean launchGUI;
+    private boolean useDaemon;
+    private boolean stopDaemon;
+    private boolean foregroundDaemon;
     private boolean dryRun;
     private boolean noOpt;
+    private int parallelThreadCount;
+    private boolean asynchronousLogging;
 
     /**
      * Creates a {@code StartParameter} with default values. This is roughly equivalent to running Gradle on the
@@ -117,6 +122,8 @@ public class StartParameter {
         startParameter.showVersion = showVersion;
         startParameter.dryRun = dryRun;
         startParameter.noOpt = noOpt;
+        startParameter.parallelThreadCount = parallelThreadCount;
+        startParameter.asynchronousLogging = asynchronousLogging;
         return startParameter;
     }
 
@@ -419,6 +426,49 @@ public class StartParameter {
         this.noOpt = noOpt;
     }
 
+    /**
+     * Returns the number of threads to use to execute tasks. When less than 2, tasks are executed one at a time.
+     *
+     * @return The number of threads.
+     */
+    public int getParallelThreadCount() {
+        return parallelThreadCount;
+    }
+
+    /**
+     * Sets the number of threads to use to execute tasks. When less than 2, tasks are executed one at a time. Tasks of
+     * the same project are never executed concurrently.
+     *
+     * @param parallelThreadCount The number of threads.
+     */
+    public void setParallelThreadCount(int parallelThreadCount) {
+        this.parallelThreadCount = parallelThreadCount;
+    }
+
+    /**
+     * Returns true if the standard output of the build scripts and tasks is written to the log by a background
+     * thread.
+     *
+     * @return true if output is logged asynchronously.
+     */
+    public boolean isAsynchronousLogging() {
+        return asynchronousLogging;
+    }
+
+    /**
+     * Specifies whether the standard output of the build scripts and tasks should be written to the log by a
+     * background thread. The output of each task has been written by the time the task completes.
+     *
+     * <p>Only output written to {@code System.out} and {@code System.err} is logged in the background. Messages which
+     * are logged directly, such as those passed to {@code logger.lifecycle()} or {@code logger.info()}, are written on
+     * the calling thread once the standard output printed before them has been written.</p>
+     *
+     * @param asynchronousLogging true to log output asynchronously.
+     */
+    public void setAsynchronousLogging(boolean asynchronousLogging) {
+        this.asynchronousLogging = asynchronousLogging;
+    }
+
     /**
      * Sets the settings file to use for the build. Use null to use the default settings file.
      *
@@ -520,6 +570,39 @@ public class StartParameter {
         this.launchGUI = launchGUI;
     }
 
+    /**
+     * Returns true if the build should be run by the build daemon, rather than in this process.
+     */
+    public boolean isUseDaemon() {
+        return useDaemon;
+    }
+
+    public void setUseDaemon(boolean useDaemon) {
+        this.useDaemon = useDaemon;
+    }
+
+    /**
+     * Returns true if the build daemon should be stopped, rather than running a build.
+     */
+    public boolean isStopDaemon() {
+        return stopDaemon;
+    }
+
+    public void setStopDaemon(boolean stopDaemon) {
+        this.stopDaemon = stopDaemon;
+    }
+
+    /**
+     * Returns true if this process should run as the build daemon, rather than running a build.
+     */
+    public boolean isForegroundDaemon() {
+        return foregroundDaemon;
+    }
+
+    public void setForegroundDaemon(boolean foregroundDaemon) {
+        this.foregroundDaemon = foregroundDaemon;
+    }
+
     @Override
     public String toString() {
         return "StartParameter{" +
@@ -545,8 +628,13 @@ public class StartParameter {
                 ", showHelp=" + showHelp +
                 ", showVersion=" + showVersion +
                 ", launchGUI=" + launchGUI +
+                ", useDaemon=" + useDaemon +
+                ", stopDaemon=" + stopDaemon +
+                ", foregroundDaemon=" + foregroundDaemon +
                 ", dryRun=" + dryRun +
                 ", noOpt=" + noOpt +
+                ", parallelThreadCount=" + parallelThreadCount +
+                ", asynchronousLogging=" + asynchronousLogging +
                 '}';
     }
 }
\ No newline at end of file
@@ -34,16 +34,23 @@ public abstract class AbstractClassGenerator implements ClassGenerator {
     }
 
     public <T> Class<? extends T> generate(Class<T> type) {
-        Map<Class, Class> cache = generatedClasses.get(getClass());
-        if (cache == null) {
-            cache = new HashMap<Class, Class>();
-            generatedClasses.put(getClass(), cache);
-        }
-        Class generatedClass = cache.get(type);
-        if (generatedClass != null) {
+        // Generates at most one subclass per type, as a class can only be defined once by its ClassLoader
+        synchronized (generatedClasses) {
+            Map<Class, Class> cache = generatedClasses.get(getClass());
+            if (cache == null) {
+                cache = new HashMap<Class, Class>();
+                generatedClasses.put(getClass(), cache);
+            }
+            Class generatedClass = cache.get(type);
+            if (generatedClass == null) {
+                generatedClass = doGenerate(type);
+                cache.put(type, generatedClass);
+            }
             return generatedClass;
         }
+    }
 
+    private <T> Class<? extends T> doGenerate(Class<T> type) {
         if (Modifier.isPrivate(type.getModifiers())) {
             throw new GradleException(String.format("Cannot create a proxy class for private class '%s'.",
                     type.getSimpleName()));
@@ -57,6 +64,11 @@ public abstract class AbstractClassGenerator implements ClassGenerator {
         try {
             ClassBuilder<T> builder = start(type);
 
+            subclass = builder.loadGeneratedClass();
+            if (subclass != null) {
+                return subclass;
+            }
+
             boolean isConventionAware = type.getAnnotation(NoConventionMapping.class) == null;
             boolean isDynamicAware = type.getAnnotation(NoDynamicObject.class) == null;
 
@@ -127,13 +139,17 @@ public abstract class AbstractClassGenerator implements ClassGenerator {
             throw new GradleException(String.format("Could not generate a proxy class for class %s.", type.getName()), e);
         }
 
-        cache.put(type, subclass);
         return subclass;
     }
 
     protected abstract <T> ClassBuilder<T> start(Class<T> type);
 
     protected interface ClassBuilder<T> {
+        /**
+         * Returns the subclass which was generated previously for the type, or null if no such subclass is available.
+         */
+        Class<? extends T> loadGeneratedClass() throws Exception;
+
         void startClass(boolean isConventionAware, boolean isDynamicAware);
 
         void addConstructor(Constructor<?> constructor) throws Exception;
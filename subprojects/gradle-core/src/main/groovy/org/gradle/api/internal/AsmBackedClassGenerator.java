@@ -15,28 +15,173 @@
  */
 package org.gradle.api.internal;
 
+import groovy.lang.GroovySystem;
 import groovy.lang.MetaBeanProperty;
 import groovy.lang.MetaMethod;
 import org.gradle.api.internal.plugins.DefaultConvention;
 import org.gradle.api.plugins.Convention;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.util.ReflectionUtil;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Generates subclasses using ASM. When given a {@link CacheRepository}, the generated bytecode is also kept in a global
+ * cache, so that the subclass for a type does not need to be generated again by later builds. The bytecode is cached by
+ * a hash of the bytecode of the type and its superclasses.
+ */
 public class AsmBackedClassGenerator extends AbstractClassGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(AsmBackedClassGenerator.class);
+
+    /**
+     * The version of the generated bytecode, which is a hash of the bytecode of the generator classes. Is null when
+     * the bytecode of the generator classes cannot be read, in which case no generated bytecode is cached.
+     */
+    static final String GENERATOR_VERSION = getGeneratorVersion();
+    static final String CACHE_NAME = "generated-classes";
+
+    private final CacheRepository cacheRepository;
+    private PersistentIndexedCache<String, byte[]> generatedClassCache;
+
+    public AsmBackedClassGenerator() {
+        this(null);
+    }
+
+    public AsmBackedClassGenerator(CacheRepository cacheRepository) {
+        this.cacheRepository = cacheRepository;
+    }
+
     @Override
     protected <T> ClassBuilder<T> start(Class<T> type) {
-        return new ClassBuilderImpl<T>(type);
+        String key = getCacheKey(type);
+        return new ClassBuilderImpl<T>(type, key == null ? null : getGeneratedClassCache(), key);
+    }
+
+    private synchronized PersistentIndexedCache<String, byte[]> getGeneratedClassCache() {
+        if (generatedClassCache == null) {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            properties.put("generator.version", GENERATOR_VERSION);
+            properties.put("groovy.version", GroovySystem.getVersion());
+            properties.put("java.version", System.getProperty("java.version"));
+            generatedClassCache = cacheRepository.getIndexedGlobalCache(CACHE_NAME, properties);
+        }
+        return generatedClassCache;
+    }
+
+    /**
+     * Returns the cache key for the subclass of the given type, or null if the subclass cannot be cached.
+     */
+    private String getCacheKey(Class<?> type) {
+        if (cacheRepository == null || GENERATOR_VERSION == null) {
+            return null;
+        }
+        MessageDigest messageDigest = createDigest();
+        // The generated subclass depends on the properties and constructors of the type and its superclasses
+        for (Class<?> c = type; c != null && c.getClassLoader() != null; c = c.getSuperclass()) {
+            if (!hashBytecode(messageDigest, c.getClassLoader(), c.getName())) {
+                return null;
+            }
+        }
+        return type.getName() + "/" + new BigInteger(1, messageDigest.digest()).toString(16);
+    }
+
+    private static String getGeneratorVersion() {
+        MessageDigest messageDigest = createDigest();
+        if (!hashGeneratorClass(messageDigest, AbstractClassGenerator.class) || !hashGeneratorClass(messageDigest,
+                AsmBackedClassGenerator.class)) {
+            return null;
+        }
+        return new BigInteger(1, messageDigest.digest()).toString(16);
+    }
+
+    /**
+     * Hashes the bytecode of the given class, its anonymous classes and its nested classes.
+     */
+    private static boolean hashGeneratorClass(MessageDigest messageDigest, Class<?> generatorClass) {
+        ClassLoader classLoader = generatorClass.getClassLoader();
+        if (classLoader == null || !hashBytecode(messageDigest, classLoader, generatorClass.getName())) {
+            return false;
+        }
+        int anonymousClass = 1;
+        while (hashBytecode(messageDigest, classLoader, generatorClass.getName() + "$" + anonymousClass)) {
+            anonymousClass++;
+        }
+        List<Class<?>> nestedClasses = new ArrayList<Class<?>>(Arrays.asList(generatorClass.getDeclaredClasses()));
+        Collections.sort(nestedClasses, new Comparator<Class<?>>() {
+            public int compare(Class<?> class1, Class<?> class2) {
+                return class1.getName().compareTo(class2.getName());
+            }
+        });
+        for (Class<?> nestedClass : nestedClasses) {
+            if (!hashGeneratorClass(messageDigest, nestedClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the bytecode of the given class to the digest. Returns false when the bytecode cannot be read.
+     */
+    private static boolean hashBytecode(MessageDigest messageDigest, ClassLoader classLoader, String className) {
+        InputStream instr = classLoader.getResourceAsStream(className.replace('.', '/') + ".class");
+        if (instr == null) {
+            return false;
+        }
+        try {
+            try {
+                byte[] buffer = new byte[4096];
+                int nread;
+                while ((nread = instr.read(buffer)) > 0) {
+                    messageDigest.update(buffer, 0, nread);
+                }
+            } finally {
+                instr.close();
+            }
+        } catch (IOException e) {
+            logger.debug(String.format("Could not read bytecode of %s.", className), e);
+            return false;
+        }
+        return true;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static <T> Class<? extends T> defineClass(Class<T> type, byte[] bytecode) {
+        return (Class<T>) ReflectionUtil.invoke(type.getClassLoader(), "defineClass", new Object[]{
+                type.getName() + "_Decorated", bytecode, 0, bytecode.length
+        });
     }
 
     private static class ClassBuilderImpl<T> implements ClassBuilder<T> {
+        private final PersistentIndexedCache<String, byte[]> generatedClassCache;
+        private final String cacheKey;
         private final ClassWriter visitor;
         private final Class<T> type;
         private final String typeName;
@@ -51,8 +196,11 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
         private final Type defaultConventionType = Type.getType(DefaultConvention.class);
         private final Type conventionType = Type.getType(Convention.class);
 
-        private ClassBuilderImpl(Class<T> type) {
+        private ClassBuilderImpl(Class<T> type, PersistentIndexedCache<String, byte[]> generatedClassCache,
+                                 String cacheKey) {
             this.type = type;
+            this.generatedClassCache = generatedClassCache;
+            this.cacheKey = cacheKey;
 
             visitor = new ClassWriter(true);
             typeName = type.getName() + "_Decorated";
@@ -60,6 +208,17 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             superclassType = Type.getType(type);
         }
 
+        public Class<? extends T> loadGeneratedClass() {
+            if (generatedClassCache == null) {
+                return null;
+            }
+            byte[] bytecode = generatedClassCache.get(cacheKey);
+            if (bytecode == null) {
+                return null;
+            }
+            return defineClass(type, bytecode);
+        }
+
         public void startClass(boolean isConventionAware, boolean isDynamicAware) {
             dynamicAware = isDynamicAware;
             List<String> interfaceTypes = new ArrayList<String>();
@@ -487,9 +646,11 @@ public class AsmBackedClassGenerator extends AbstractClassGenerator {
             visitor.visitEnd();
 
             byte[] bytecode = visitor.toByteArray();
-            return (Class<T>) ReflectionUtil.invoke(type.getClassLoader(), "defineClass", new Object[]{
-                    typeName, bytecode, 0, bytecode.length
-            });
+            Class<? extends T> generatedClass = defineClass(type, bytecode);
+            if (generatedClassCache != null) {
+                generatedClassCache.put(cacheKey, bytecode);
+            }
+            return generatedClass;
         }
     }
 
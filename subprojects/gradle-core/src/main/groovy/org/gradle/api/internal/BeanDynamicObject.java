@@ -18,15 +18,21 @@ package org.gradle.api.internal;
 import groovy.lang.*;
 import org.codehaus.groovy.runtime.InvokerInvocationException;
 
+import java.lang.ref.SoftReference;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@link DynamicObject} which uses groovy reflection to provide access to the properties and methods of a bean.
  */
 public class BeanDynamicObject extends AbstractDynamicObject {
+    private static final Object NO_PROPERTY = new Object();
+    private static final Map<MetaClass, SoftReference<Map<String, Object>>> PROPERTY_CACHES
+            = new WeakHashMap<MetaClass, SoftReference<Map<String, Object>>>();
     private final Object bean;
     private final boolean includeProperties;
 
@@ -61,9 +67,44 @@ public class BeanDynamicObject extends AbstractDynamicObject {
         }
     }
 
+    /**
+     * Locates the given property. The result of the lookup is cached per meta-class, as the properties of a plain
+     * {@link MetaClassImpl} do not change once it has been created. When the meta-class of a type is replaced, for
+     * example with an {@link ExpandoMetaClass}, lookups use the cache of the new meta-class. Other meta-classes, such as
+     * an {@link ExpandoMetaClass}, can have properties added at any time, so are always asked directly.
+     *
+     * <p>Only the lookups made by this class are cached. {@link DynamicObjectHelper} still asks each of its sources in
+     * turn.</p>
+     */
+    private MetaProperty findProperty(MetaClass metaClass, String name) {
+        if (metaClass.getClass() != MetaClassImpl.class) {
+            return metaClass.hasProperty(bean, name);
+        }
+        Map<String, Object> properties = getPropertyCache(metaClass);
+        Object property = properties.get(name);
+        if (property == null) {
+            MetaProperty metaProperty = metaClass.hasProperty(bean, name);
+            property = metaProperty == null ? NO_PROPERTY : metaProperty;
+            properties.put(name, property);
+        }
+        return property == NO_PROPERTY ? null : (MetaProperty) property;
+    }
+
+    static Map<String, Object> getPropertyCache(MetaClass metaClass) {
+        synchronized (PROPERTY_CACHES) {
+            SoftReference<Map<String, Object>> reference = PROPERTY_CACHES.get(metaClass);
+            Map<String, Object> properties = reference == null ? null : reference.get();
+            if (properties == null) {
+                properties = new ConcurrentHashMap<String, Object>();
+                PROPERTY_CACHES.put(metaClass, new SoftReference<Map<String, Object>>(properties));
+            }
+            return properties;
+        }
+    }
+
     @Override
     public boolean hasProperty(String name) {
-        return includeProperties && getMetaClass().hasProperty(bean, name) != null;
+        return includeProperties && findProperty(getMetaClass(), name) != null;
     }
 
     @Override
@@ -72,7 +113,7 @@ public class BeanDynamicObject extends AbstractDynamicObject {
             throw propertyMissingException(name);
         }
 
-        MetaProperty property = getMetaClass().hasProperty(bean, name);
+        MetaProperty property = findProperty(getMetaClass(), name);
         if (property == null) {
             throw propertyMissingException(name);
         }
@@ -98,7 +139,7 @@ public class BeanDynamicObject extends AbstractDynamicObject {
         }
 
         MetaClass metaClass = getMetaClass();
-        MetaProperty property = metaClass.hasProperty(bean, name);
+        MetaProperty property = findProperty(metaClass, name);
         if (property == null) {
             throw propertyMissingException(name);
         }
@@ -40,6 +40,10 @@ public class GroovySourceGenerationBackedClassGenerator extends AbstractClassGen
             this.type = type;
         }
 
+        public Class<? extends T> loadGeneratedClass() {
+            return null;
+        }
+
         public void startClass(boolean isConventionAware, boolean isDynamicAware) {
             dynamicAware = isDynamicAware;
             if (type.getPackage() != null) {
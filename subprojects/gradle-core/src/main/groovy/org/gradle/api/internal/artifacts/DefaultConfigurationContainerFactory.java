@@ -36,12 +36,14 @@ public class DefaultConfigurationContainerFactory implements ConfigurationContai
     private IvyFactory ivyFactory;
     private IvyDependencyResolver dependencyResolver;
     private IvyDependencyPublisher dependencyPublisher;
+    private ResolvedConfigurationCache resolvedConfigurationCache;
 
     public DefaultConfigurationContainerFactory(Map clientModuleRegistry, SettingsConverter settingsConverter,
                                                 ModuleDescriptorConverter resolveModuleDescriptorConverter,
                                                 ModuleDescriptorConverter publishModuleDescriptorConverter,
                                                 IvyFileConverter ivyFileConverter, IvyFactory ivyFactory,
-                                                IvyDependencyResolver dependencyResolver, IvyDependencyPublisher dependencyPublisher) {
+                                                IvyDependencyResolver dependencyResolver, IvyDependencyPublisher dependencyPublisher,
+                                                ResolvedConfigurationCache resolvedConfigurationCache) {
         this.clientModuleRegistry = clientModuleRegistry;
         this.settingsConverter = settingsConverter;
         this.resolveModuleDescriptorConverter = resolveModuleDescriptorConverter;
@@ -50,23 +52,28 @@ public class DefaultConfigurationContainerFactory implements ConfigurationContai
         this.ivyFactory = ivyFactory;
         this.dependencyResolver = dependencyResolver;
         this.dependencyPublisher = dependencyPublisher;
+        this.resolvedConfigurationCache = resolvedConfigurationCache;
     }
 
     public ConfigurationContainer createConfigurationContainer(ResolverProvider resolverProvider,
                                                              DependencyMetaDataProvider dependencyMetaDataProvider) {
         IvyService ivyService = new ErrorHandlingIvyService(
                 new ShortcircuitEmptyConfigsIvyService(
-                        new DefaultIvyService(
+                        new CachingIvyService(
+                                new DefaultIvyService(
+                                        dependencyMetaDataProvider,
+                                        resolverProvider,
+                                        settingsConverter,
+                                        resolveModuleDescriptorConverter,
+                                        publishModuleDescriptorConverter,
+                                        ivyFileConverter,
+                                        ivyFactory,
+                                        dependencyResolver,
+                                        dependencyPublisher,
+                                        clientModuleRegistry),
                                 dependencyMetaDataProvider,
                                 resolverProvider,
-                                settingsConverter,
-                                resolveModuleDescriptorConverter,
-                                publishModuleDescriptorConverter,
-                                ivyFileConverter, 
-                                ivyFactory,
-                                dependencyResolver,
-                                dependencyPublisher,
-                                clientModuleRegistry)));
+                                resolvedConfigurationCache)));
         return new DefaultConfigurationContainer(ivyService);
     }
 }
@@ -20,6 +20,8 @@ import org.gradle.api.artifacts.ResolvedDependency;
 import org.apache.ivy.core.module.descriptor.Artifact;
 import org.apache.ivy.core.resolve.ResolveEngine;
 import org.apache.ivy.core.resolve.DownloadOptions;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactDownloadBatch;
+import org.gradle.api.internal.artifacts.ivyservice.ArtifactDownloader;
 
 import java.io.File;
 
@@ -30,6 +32,9 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
     private ResolvedDependency resolvedDependency;
     private Artifact artifact;
     private ResolveEngine resolvedEngine;
+    private ArtifactDownloader downloader;
+    private String repository;
+    private ArtifactDownloadBatch downloadBatch;
     private File file = null;
 
     public DefaultResolvedArtifact(Artifact artifact, ResolveEngine resolvedEngine) {
@@ -37,6 +42,18 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
         this.resolvedEngine = resolvedEngine;
     }
 
+    /**
+     * Creates an artifact whose file is downloaded using the given downloader.
+     *
+     * @param repository The name of the repository which the artifact is downloaded from.
+     */
+    public DefaultResolvedArtifact(Artifact artifact, ResolveEngine resolvedEngine, ArtifactDownloader downloader,
+                                   String repository) {
+        this(artifact, resolvedEngine);
+        this.downloader = downloader;
+        this.repository = repository;
+    }
+
     public ResolvedDependency getResolvedDependency() {
         return resolvedDependency;
     }
@@ -66,9 +83,49 @@ public class DefaultResolvedArtifact implements ResolvedArtifact {
     }
 
     public File getFile() {
+        ArtifactDownloadBatch batch = getDownloadBatch();
+        if (batch != null) {
+            // Start the other downloads of the batch before blocking on this one
+            batch.start();
+        }
+        return determineFile();
+    }
+
+    private synchronized File determineFile() {
         if (file == null) {
-            file = resolvedEngine.download(artifact, new DownloadOptions()).getLocalFile();
+            if (downloader != null) {
+                file = downloader.getFile(artifact, resolvedEngine, repository);
+            } else {
+                file = resolvedEngine.download(artifact, new DownloadOptions()).getLocalFile();
+            }
         }
         return file;
     }
+
+    /**
+     * Returns the file of this artifact, or null if it has not been determined yet. Does not download the file.
+     */
+    public synchronized File getDownloadedFile() {
+        return file;
+    }
+
+    private synchronized ArtifactDownloadBatch getDownloadBatch() {
+        return downloadBatch;
+    }
+
+    /**
+     * Sets the batch whose downloads are started when the file of this artifact is first requested.
+     */
+    public synchronized void setDownloadBatch(ArtifactDownloadBatch downloadBatch) {
+        this.downloadBatch = downloadBatch;
+    }
+
+    /**
+     * Starts downloading the file of this artifact in the background, if it may not have been downloaded yet.
+     */
+    public synchronized void startDownload() {
+        if (file == null && downloader != null) {
+            downloader.start(artifact, resolvedEngine, repository);
+        }
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.configurations;
+
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.CompositeFileCollection;
+import org.gradle.util.Clock;
+import org.gradle.util.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Resolves the configurations used by the scheduled tasks using a pool of threads, starting as soon as the task graph
+ * has been populated. The configurations used by a task are those which make up the input files of the task.
+ *
+ * <p>A configuration is not marked as resolved by this pre-resolution. Instead, the result is kept by the {@link
+ * org.gradle.api.internal.artifacts.ivyservice.CachingIvyService} of the configuration, and used when the configuration
+ * is resolved by a task, provided that the configuration has not been changed in the meantime. A configuration which
+ * is being pre-resolved when it is resolved by a task is resolved only once. A configuration which fails to resolve is
+ * left to fail when it is used.</p>
+ */
+public class ConfigurationPreResolver extends BuildAdapter implements TaskExecutionGraphListener {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationPreResolver.class);
+
+    private ExecutorService executor;
+    private Clock clock;
+
+    public void graphPopulated(TaskExecutionGraph graph) {
+        stop();
+
+        Set<DefaultConfiguration> configurations = new LinkedHashSet<DefaultConfiguration>();
+        for (Task task : graph.getAllTasks()) {
+            try {
+                collectConfigurations(task.getInputs().getFiles(), configurations);
+            } catch (Throwable e) {
+                logger.debug(String.format("Could not determine the configurations used by %s.", task), e);
+            }
+        }
+        if (configurations.isEmpty()) {
+            return;
+        }
+
+        clock = new Clock();
+        executor = createExecutor();
+        for (DefaultConfiguration configuration : configurations) {
+            if (configuration.getState() == Configuration.State.UNRESOLVED) {
+                preResolve(configuration);
+            }
+        }
+        executor.shutdown();
+    }
+
+    ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(ThreadUtils.threadPoolSize(1), new ResolverThreadFactory());
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        stop();
+    }
+
+    private void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        ThreadUtils.awaitTermination(executor);
+        executor = null;
+        logger.debug("Timing: Pre-resolving configurations took: {}", clock.getTime());
+    }
+
+    private void collectConfigurations(FileCollection files, Set<DefaultConfiguration> configurations) {
+        if (files instanceof DefaultConfiguration) {
+            configurations.add((DefaultConfiguration) files);
+        } else if (files instanceof DefaultConfiguration.ConfigurationFileCollection) {
+            configurations.add(((DefaultConfiguration.ConfigurationFileCollection) files).getConfiguration());
+        } else if (files instanceof CompositeFileCollection) {
+            for (FileCollection source : ((CompositeFileCollection) files).getSourceCollections()) {
+                collectConfigurations(source, configurations);
+            }
+        }
+    }
+
+    private void preResolve(final DefaultConfiguration configuration) {
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    configuration.getIvyService().resolve(configuration);
+                } catch (Throwable e) {
+                    logger.debug(String.format("Could not pre-resolve %s.", configuration), e);
+                }
+            }
+        });
+    }
+
+    private static class ResolverThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Configuration resolver %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -501,6 +501,10 @@ public class DefaultConfiguration extends AbstractFileCollection implements Conf
             return dependencySpec;
         }
 
+        public DefaultConfiguration getConfiguration() {
+            return DefaultConfiguration.this;
+        }
+
         public String getDisplayName() {
             return String.format("%s dependencies", DefaultConfiguration.this);
         }
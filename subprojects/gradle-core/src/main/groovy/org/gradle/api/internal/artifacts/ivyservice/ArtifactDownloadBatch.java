@@ -0,0 +1,54 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The artifacts of a resolved configuration, which start downloading in the background together when the file of any
+ * of them is first requested. Nothing is downloaded for a configuration whose artifact files are never used.
+ */
+public class ArtifactDownloadBatch {
+    private final List<DefaultResolvedArtifact> artifacts = new ArrayList<DefaultResolvedArtifact>();
+    private boolean started;
+
+    public synchronized void add(DefaultResolvedArtifact artifact) {
+        artifacts.add(artifact);
+        artifact.setDownloadBatch(this);
+    }
+
+    /**
+     * Starts downloading the artifacts of this batch, if this has not been done already. Artifacts added after
+     * the batch has started are not downloaded in the background.
+     */
+    public void start() {
+        List<DefaultResolvedArtifact> toStart;
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            started = true;
+            toStart = new ArrayList<DefaultResolvedArtifact>(artifacts);
+            artifacts.clear();
+        }
+        for (DefaultResolvedArtifact artifact : toStart) {
+            artifact.startDownload();
+        }
+    }
+}
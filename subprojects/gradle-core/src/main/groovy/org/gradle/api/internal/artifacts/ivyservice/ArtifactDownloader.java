@@ -0,0 +1,190 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.core.module.descriptor.Artifact;
+import org.apache.ivy.core.resolve.DownloadOptions;
+import org.apache.ivy.core.resolve.ResolveEngine;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.GradleException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Downloads artifacts into the Ivy cache in the background, using a bounded pool of threads for each repository.
+ * Requests for the same artifact from the same repository share a single download, regardless of which configuration
+ * or project they come from. Each download is written to the cache by the resolver of the artifact, so the cache is
+ * updated in the same way as when the artifact is downloaded on the calling thread. A download holds the locks of the
+ * resolvers it uses, as a resolve does, so that the resolvers are not initialised by a concurrent resolve while they
+ * download.
+ *
+ * <p>A thread which asks for the file of an artifact whose download has not started yet downloads the artifact
+ * itself, rather than waiting for a pool thread to become available.</p>
+ */
+public class ArtifactDownloader {
+    public static final int MAX_DOWNLOADS_PER_REPOSITORY = 4;
+    private static Logger logger = LoggerFactory.getLogger(ArtifactDownloader.class);
+
+    private final int maxDownloadsPerRepository;
+    private final Map<List<Object>, FutureTask<File>> downloads = new HashMap<List<Object>, FutureTask<File>>();
+    private final Map<String, ExecutorService> executors = new HashMap<String, ExecutorService>();
+    private boolean stopped;
+
+    public ArtifactDownloader() {
+        this(MAX_DOWNLOADS_PER_REPOSITORY);
+    }
+
+    public ArtifactDownloader(int maxDownloadsPerRepository) {
+        if (maxDownloadsPerRepository < 1) {
+            throw new IllegalArgumentException("maxDownloadsPerRepository must be at least 1!");
+        }
+        this.maxDownloadsPerRepository = maxDownloadsPerRepository;
+    }
+
+    /**
+     * Starts downloading the given artifact in the background, if it is not already being downloaded.
+     *
+     * @param artifact The artifact to download.
+     * @param resolveEngine The engine to download the artifact with.
+     * @param repository The name of the repository which the artifact is downloaded from.
+     */
+    public void start(Artifact artifact, ResolveEngine resolveEngine, String repository) {
+        getDownload(artifact, resolveEngine, repository, true);
+    }
+
+    /**
+     * Returns the file of the given artifact, downloading the artifact if required. Waits for the download to
+     * complete when the artifact is being downloaded by another thread.
+     *
+     * @param artifact The artifact to download.
+     * @param resolveEngine The engine to download the artifact with.
+     * @param repository The name of the repository which the artifact is downloaded from.
+     * @return The file in the cache, or null if the artifact could not be downloaded.
+     */
+    public File getFile(Artifact artifact, ResolveEngine resolveEngine, String repository) {
+        FutureTask<File> download = getDownload(artifact, resolveEngine, repository, false);
+        // Does nothing when the download has already been started by a pool thread
+        download.run();
+        try {
+            return download.get();
+        } catch (CancellationException e) {
+            return download(artifact, resolveEngine);
+        } catch (InterruptedException e) {
+            throw new GradleException(String.format("Interrupted while downloading %s.", artifact), e);
+        } catch (ExecutionException e) {
+            forget(artifact, repository, download);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new GradleException(String.format("Could not download %s.", artifact), e.getCause());
+        }
+    }
+
+    /**
+     * Stops the download threads. Downloads which have not been started yet are cancelled, and are made on the
+     * calling thread when the file of the artifact is requested. The downloaded files are forgotten. Once stopped,
+     * artifacts are no longer downloaded in the background, and every request downloads on the calling thread.
+     */
+    public void stop() {
+        List<ExecutorService> stoppedExecutors;
+        synchronized (this) {
+            stopped = true;
+            stoppedExecutors = new ArrayList<ExecutorService>(executors.values());
+            executors.clear();
+            downloads.clear();
+        }
+        for (ExecutorService executor : stoppedExecutors) {
+            for (Runnable download : executor.shutdownNow()) {
+                ((FutureTask<?>) download).cancel(false);
+            }
+        }
+    }
+
+    private synchronized FutureTask<File> getDownload(Artifact artifact, ResolveEngine resolveEngine,
+                                                      String repository, boolean start) {
+        if (stopped) {
+            // Do not start new threads, or remember downloads, after the build has finished
+            return start ? null : createDownload(artifact, resolveEngine);
+        }
+        List<Object> key = Arrays.<Object>asList(repository, artifact);
+        FutureTask<File> download = downloads.get(key);
+        if (download == null) {
+            download = createDownload(artifact, resolveEngine);
+            downloads.put(key, download);
+            if (start) {
+                logger.debug("Starting download of {} from {}.", artifact, repository);
+                getExecutor(repository).execute(download);
+            }
+        }
+        return download;
+    }
+
+    private FutureTask<File> createDownload(final Artifact artifact, final ResolveEngine resolveEngine) {
+        return new FutureTask<File>(new Callable<File>() {
+            public File call() {
+                return download(artifact, resolveEngine);
+            }
+        });
+    }
+
+    private File download(final Artifact artifact, final ResolveEngine resolveEngine) {
+        DependencyResolver resolver = resolveEngine.getSettings().getResolver(artifact.getModuleRevisionId());
+        return ResolverLocks.withResolversLocked(Collections.singleton(resolver), new ResolverLocks.ResolverAction<File>() {
+            public File execute() {
+                return resolveEngine.download(artifact, new DownloadOptions()).getLocalFile();
+            }
+        });
+    }
+
+    private synchronized void forget(Artifact artifact, String repository, FutureTask<File> download) {
+        List<Object> key = Arrays.<Object>asList(repository, artifact);
+        if (downloads.get(key) == download) {
+            downloads.remove(key);
+        }
+    }
+
+    private ExecutorService getExecutor(String repository) {
+        ExecutorService executor = executors.get(repository);
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(maxDownloadsPerRepository, new DownloadThreadFactory(repository));
+            executors.put(repository, executor);
+        }
+        return executor;
+    }
+
+    private static class DownloadThreadFactory implements ThreadFactory {
+        private final String repository;
+        private int counter;
+
+        private DownloadThreadFactory(String repository) {
+            this.repository = repository;
+        }
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Artifact downloader %d for %s", ++counter,
+                    repository));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,561 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.cache.Serializer;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A snapshot of a resolved dependency graph, which can be stored in a persistent cache and later restored without
+ * using Ivy. The snapshot holds the resolved modules, their artifacts and the local files of those artifacts which
+ * have been determined so far. The remaining files are determined when they are first used, using an {@link
+ * ArtifactSource}.
+ */
+public class CachedResolvedConfiguration {
+    private static final int NO_NODE = -1;
+
+    private final long timestamp;
+    private final boolean changing;
+    private final List<NodeSnapshot> nodes;
+    private final List<ArtifactSnapshot> artifacts;
+    private final Map<String, int[]> firstLevelDependencies;
+    private final int[] resolvedArtifacts;
+    private final Object sourceLock = new Object();
+    // The artifacts this snapshot was taken from, by artifact id. Is null for a snapshot read from the cache
+    private List<ResolvedArtifact> sourceArtifacts;
+
+    private CachedResolvedConfiguration(long timestamp, boolean changing, List<NodeSnapshot> nodes,
+                                        List<ArtifactSnapshot> artifacts, Map<String, int[]> firstLevelDependencies,
+                                        int[] resolvedArtifacts, List<ResolvedArtifact> sourceArtifacts) {
+        this.timestamp = timestamp;
+        this.changing = changing;
+        this.nodes = nodes;
+        this.artifacts = artifacts;
+        this.firstLevelDependencies = firstLevelDependencies;
+        this.resolvedArtifacts = resolvedArtifacts;
+        this.sourceArtifacts = sourceArtifacts;
+    }
+
+    /**
+     * Returns the time this snapshot was taken.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns true if the snapshot contains dynamic or changing modules, whose resolution can change over time.
+     */
+    public boolean isChanging() {
+        return changing;
+    }
+
+    /**
+     * Takes a snapshot of the given dependency graph. Artifacts are not downloaded. The snapshot holds only those
+     * artifact files which have already been determined, and determines the others from the given graph when they are
+     * first used.
+     *
+     * @return The snapshot, or null if the graph cannot be represented as a snapshot.
+     */
+    public static CachedResolvedConfiguration create(IvyConversionResult conversionResult, boolean changing,
+                                                     long timestamp) {
+        changing = changing || conversionResult.isChanging();
+        // Distinct resolved dependencies can be equal to each other, so track them by identity
+        Map<ResolvedDependency, Integer> nodeIds = new IdentityHashMap<ResolvedDependency, Integer>();
+        List<DefaultResolvedDependency> resolvedDependencies = new ArrayList<DefaultResolvedDependency>();
+        LinkedList<ResolvedDependency> queue = new LinkedList<ResolvedDependency>();
+        for (Set<ResolvedDependency> dependencies : conversionResult.getFirstLevelResolvedDependencies().values()) {
+            queue.addAll(dependencies);
+        }
+        for (ResolvedArtifact artifact : conversionResult.getResolvedArtifacts()) {
+            if (artifact.getResolvedDependency() != null) {
+                queue.add(artifact.getResolvedDependency());
+            }
+        }
+        while (!queue.isEmpty()) {
+            ResolvedDependency dependency = queue.removeFirst();
+            if (dependency == null || nodeIds.containsKey(dependency)) {
+                continue;
+            }
+            if (!(dependency instanceof DefaultResolvedDependency)) {
+                return null;
+            }
+            nodeIds.put(dependency, nodeIds.size());
+            resolvedDependencies.add((DefaultResolvedDependency) dependency);
+            queue.addAll(dependency.getChildren());
+            queue.addAll(dependency.getParents());
+        }
+
+        Map<ResolvedArtifact, Integer> artifactIds = new IdentityHashMap<ResolvedArtifact, Integer>();
+        List<ArtifactSnapshot> artifacts = new ArrayList<ArtifactSnapshot>();
+        List<ResolvedArtifact> sourceArtifacts = new ArrayList<ResolvedArtifact>();
+        List<NodeSnapshot> nodes = new ArrayList<NodeSnapshot>();
+        for (DefaultResolvedDependency resolvedDependency : resolvedDependencies) {
+            NodeSnapshot node = new NodeSnapshot(resolvedDependency.getName(), resolvedDependency.getModuleGroup(),
+                    resolvedDependency.getModuleName(), resolvedDependency.getModuleVersion(),
+                    resolvedDependency.getConfiguration(), resolvedDependency.getConfigurationHierarchy());
+            if (node.isChanging()) {
+                changing = true;
+            }
+            node.moduleArtifacts = toIds(resolvedDependency.getModuleArtifacts(), artifactIds, artifacts, sourceArtifacts, nodeIds);
+            node.children = toIds(resolvedDependency.getChildren(), nodeIds);
+            node.parents = toIds(resolvedDependency.getParents(), nodeIds);
+            node.parentArtifacts = new int[node.parents.length][];
+            int i = 0;
+            for (ResolvedDependency parent : resolvedDependency.getParents()) {
+                node.parentArtifacts[i++] = toIds(resolvedDependency.getParentArtifacts(parent), artifactIds,
+                        artifacts, sourceArtifacts, nodeIds);
+            }
+            nodes.add(node);
+        }
+        int[] resolvedArtifacts = toIds(conversionResult.getResolvedArtifacts(), artifactIds, artifacts, sourceArtifacts, nodeIds);
+
+        Map<String, int[]> firstLevelDependencies = new LinkedHashMap<String, int[]>();
+        for (Map.Entry<Dependency, Set<ResolvedDependency>> entry : conversionResult.getFirstLevelResolvedDependencies().entrySet()) {
+            if (!(entry.getKey() instanceof ModuleDependency)) {
+                return null;
+            }
+            firstLevelDependencies.put(CachingIvyService.getDependencyId((ModuleDependency) entry.getKey()),
+                    toIds(entry.getValue(), nodeIds));
+        }
+
+        return new CachedResolvedConfiguration(timestamp, changing, nodes, artifacts, firstLevelDependencies,
+                resolvedArtifacts, sourceArtifacts);
+    }
+
+    private static int[] toIds(Collection<ResolvedDependency> dependencies, Map<ResolvedDependency, Integer> nodeIds) {
+        int[] ids = new int[dependencies.size()];
+        int i = 0;
+        for (ResolvedDependency dependency : dependencies) {
+            ids[i++] = dependency == null ? NO_NODE : nodeIds.get(dependency);
+        }
+        return ids;
+    }
+
+    private static int[] toIds(Collection<ResolvedArtifact> resolvedArtifacts,
+                               Map<ResolvedArtifact, Integer> artifactIds, List<ArtifactSnapshot> artifacts,
+                               List<ResolvedArtifact> sourceArtifacts, Map<ResolvedDependency, Integer> nodeIds) {
+        int[] ids = new int[resolvedArtifacts.size()];
+        int i = 0;
+        for (ResolvedArtifact resolvedArtifact : resolvedArtifacts) {
+            Integer id = artifactIds.get(resolvedArtifact);
+            if (id == null) {
+                id = artifacts.size();
+                Integer owner = nodeIds.get(resolvedArtifact.getResolvedDependency());
+                artifacts.add(new ArtifactSnapshot(resolvedArtifact.getName(), resolvedArtifact.getType(),
+                        resolvedArtifact.getExtension(), getDeterminedFile(resolvedArtifact), owner == null ? NO_NODE
+                                : owner));
+                sourceArtifacts.add(resolvedArtifact);
+                artifactIds.put(resolvedArtifact, id);
+            }
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the file of the given artifact if it is known without downloading the artifact, or null otherwise.
+     */
+    private static File getDeterminedFile(ResolvedArtifact resolvedArtifact) {
+        // Determining the file of an Ivy artifact may download it
+        if (resolvedArtifact instanceof DefaultResolvedArtifact) {
+            return ((DefaultResolvedArtifact) resolvedArtifact).getDownloadedFile();
+        }
+        return resolvedArtifact.getFile();
+    }
+
+    /**
+     * Rebuilds the dependency graph of the given configuration from this snapshot.
+     *
+     * @param artifactSource Used to determine the artifact files which this snapshot does not hold.
+     * @return The graph, or null if this snapshot is no longer usable, for example because an artifact file has been
+     *         deleted.
+     */
+    public IvyConversionResult restore(Configuration configuration, ArtifactSource artifactSource) {
+        synchronized (this) {
+            for (ArtifactSnapshot artifact : artifacts) {
+                if (artifact.file != null && artifact.owner != NO_NODE && !nodes.get(artifact.owner).isProject()
+                        && !artifact.file.isFile()) {
+                    return null;
+                }
+            }
+        }
+
+        List<DefaultResolvedDependency> resolvedDependencies = new ArrayList<DefaultResolvedDependency>();
+        for (NodeSnapshot node : nodes) {
+            resolvedDependencies.add(new DefaultResolvedDependency(node.name, node.group, node.module, node.version,
+                    node.configuration, node.configurationHierarchy, new LinkedHashSet<ResolvedArtifact>()));
+        }
+        List<RestoredResolvedArtifact> resolvedArtifacts = new ArrayList<RestoredResolvedArtifact>();
+        for (int i = 0; i < artifacts.size(); i++) {
+            ArtifactSnapshot artifact = artifacts.get(i);
+            resolvedArtifacts.add(new RestoredResolvedArtifact(i, artifactSource, artifact.owner == NO_NODE ? null
+                    : resolvedDependencies.get(artifact.owner)));
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            NodeSnapshot node = nodes.get(i);
+            DefaultResolvedDependency resolvedDependency = resolvedDependencies.get(i);
+            resolvedDependency.getModuleArtifacts().addAll(toArtifacts(node.moduleArtifacts, resolvedArtifacts));
+            resolvedDependency.getChildren().addAll(toDependencies(node.children, resolvedDependencies));
+            for (int j = 0; j < node.parents.length; j++) {
+                DefaultResolvedDependency parent = node.parents[j] == NO_NODE ? null : resolvedDependencies.get(
+                        node.parents[j]);
+                resolvedDependency.getParents().add(parent);
+                resolvedDependency.addParentSpecificArtifacts(parent, toArtifacts(node.parentArtifacts[j],
+                        resolvedArtifacts));
+            }
+        }
+
+        Map<Dependency, Set<ResolvedDependency>> firstLevelResolvedDependencies
+                = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+        for (ModuleDependency dependency : configuration.getAllDependencies(ModuleDependency.class)) {
+            int[] ids = firstLevelDependencies.get(CachingIvyService.getDependencyId(dependency));
+            if (ids != null) {
+                firstLevelResolvedDependencies.put(dependency, toDependencies(ids, resolvedDependencies));
+            }
+        }
+        if (firstLevelResolvedDependencies.size() != firstLevelDependencies.size()) {
+            return null;
+        }
+
+        return new DefaultIvyConversionResult(firstLevelResolvedDependencies, toArtifacts(this.resolvedArtifacts,
+                resolvedArtifacts), changing);
+    }
+
+    /**
+     * Returns the file of the given artifact, determining it using the given source if this snapshot does not hold it.
+     */
+    private File getFile(int artifactId, ArtifactSource artifactSource) {
+        ResolvedArtifact sourceArtifact;
+        synchronized (sourceLock) {
+            synchronized (this) {
+                if (artifacts.get(artifactId).file != null) {
+                    return artifacts.get(artifactId).file;
+                }
+            }
+            if (sourceArtifacts == null) {
+                sourceArtifacts = getSourceArtifacts(artifactSource.resolve());
+            }
+            sourceArtifact = sourceArtifacts.get(artifactId);
+        }
+
+        // Download outside the locks, so that other artifacts can be downloaded at the same time
+        File file = sourceArtifact.getFile();
+        synchronized (this) {
+            artifacts.get(artifactId).file = file;
+        }
+        artifactSource.filesDetermined(this);
+        return file;
+    }
+
+    /**
+     * Returns the artifacts of the given snapshot of the current graph, by the ids of the artifacts of this snapshot.
+     */
+    private List<ResolvedArtifact> getSourceArtifacts(CachedResolvedConfiguration current) {
+        if (current != null && current.sourceArtifacts != null && current.artifacts.size() == artifacts.size()) {
+            boolean matches = true;
+            for (int i = 0; matches && i < artifacts.size(); i++) {
+                matches = artifacts.get(i).isSameArtifact(current.artifacts.get(i));
+            }
+            if (matches) {
+                return current.sourceArtifacts;
+            }
+        }
+        throw new GradleException("Could not determine the artifact files of a cached dependency graph, as the graph "
+                + "has changed since it was cached.");
+    }
+
+    private static Set<ResolvedDependency> toDependencies(int[] ids, List<DefaultResolvedDependency> dependencies) {
+        Set<ResolvedDependency> result = new LinkedHashSet<ResolvedDependency>();
+        for (int id : ids) {
+            result.add(dependencies.get(id));
+        }
+        return result;
+    }
+
+    private static Set<ResolvedArtifact> toArtifacts(int[] ids, List<RestoredResolvedArtifact> artifacts) {
+        Set<ResolvedArtifact> result = new LinkedHashSet<ResolvedArtifact>();
+        for (int id : ids) {
+            result.add(artifacts.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Determines the artifact files which a snapshot does not hold.
+     */
+    public interface ArtifactSource {
+        /**
+         * Resolves the graph again, and returns a snapshot of it.
+         *
+         * @return The snapshot, or null if the graph cannot be resolved.
+         */
+        CachedResolvedConfiguration resolve();
+
+        /**
+         * Called when the snapshot holds more artifact files than before.
+         */
+        void filesDetermined(CachedResolvedConfiguration snapshot);
+    }
+
+    private static class NodeSnapshot {
+        private final String name;
+        private final String group;
+        private final String module;
+        private final String version;
+        private final String configuration;
+        private final Set<String> configurationHierarchy;
+        private int[] moduleArtifacts;
+        private int[] children;
+        private int[] parents;
+        private int[][] parentArtifacts;
+
+        private NodeSnapshot(String name, String group, String module, String version, String configuration,
+                             Set<String> configurationHierarchy) {
+            this.name = name;
+            this.group = group;
+            this.module = module;
+            this.version = version;
+            this.configuration = configuration;
+            this.configurationHierarchy = configurationHierarchy;
+        }
+
+        boolean isProject() {
+            return !name.equals(group + ":" + module + ":" + version);
+        }
+
+        boolean isChanging() {
+            return version != null && version.endsWith("-SNAPSHOT");
+        }
+    }
+
+    private static class ArtifactSnapshot {
+        private final String name;
+        private final String type;
+        private final String extension;
+        private File file;
+        private final int owner;
+
+        private ArtifactSnapshot(String name, String type, String extension, File file, int owner) {
+            this.name = name;
+            this.type = type;
+            this.extension = extension;
+            this.file = file;
+            this.owner = owner;
+        }
+
+        boolean isSameArtifact(ArtifactSnapshot other) {
+            return equal(name, other.name) && equal(type, other.type) && equal(extension, other.extension)
+                    && owner == other.owner;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private class RestoredResolvedArtifact implements ResolvedArtifact {
+        private final ArtifactSnapshot artifact;
+        private final int artifactId;
+        private final ArtifactSource artifactSource;
+        private final ResolvedDependency resolvedDependency;
+
+        private RestoredResolvedArtifact(int artifactId, ArtifactSource artifactSource,
+                                         ResolvedDependency resolvedDependency) {
+            this.artifact = artifacts.get(artifactId);
+            this.artifactId = artifactId;
+            this.artifactSource = artifactSource;
+            this.resolvedDependency = resolvedDependency;
+        }
+
+        public File getFile() {
+            return CachedResolvedConfiguration.this.getFile(artifactId, artifactSource);
+        }
+
+        public ResolvedDependency getResolvedDependency() {
+            return resolvedDependency;
+        }
+
+        public String getName() {
+            return artifact.name;
+        }
+
+        public String getType() {
+            return artifact.type;
+        }
+
+        public String getExtension() {
+            return artifact.extension;
+        }
+    }
+
+    /**
+     * Writes snapshots in a compact binary form. Strings which occur more than once, such as groups, versions and
+     * configuration names, are written only once.
+     */
+    public static class SnapshotSerializer implements Serializer<CachedResolvedConfiguration> {
+        public CachedResolvedConfiguration read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            List<String> strings = new ArrayList<String>();
+            long timestamp = input.readLong();
+            boolean changing = input.readBoolean();
+
+            int nodeCount = input.readInt();
+            List<NodeSnapshot> nodes = new ArrayList<NodeSnapshot>(nodeCount);
+            for (int i = 0; i < nodeCount; i++) {
+                String name = readString(input, strings);
+                String group = readString(input, strings);
+                String module = readString(input, strings);
+                String version = readString(input, strings);
+                String configuration = readString(input, strings);
+                int hierarchySize = input.readInt();
+                Set<String> hierarchy = new LinkedHashSet<String>();
+                for (int j = 0; j < hierarchySize; j++) {
+                    hierarchy.add(readString(input, strings));
+                }
+                NodeSnapshot node = new NodeSnapshot(name, group, module, version, configuration, hierarchy);
+                node.moduleArtifacts = readIds(input);
+                node.children = readIds(input);
+                node.parents = readIds(input);
+                node.parentArtifacts = new int[node.parents.length][];
+                for (int j = 0; j < node.parents.length; j++) {
+                    node.parentArtifacts[j] = readIds(input);
+                }
+                nodes.add(node);
+            }
+
+            int artifactCount = input.readInt();
+            List<ArtifactSnapshot> artifacts = new ArrayList<ArtifactSnapshot>(artifactCount);
+            for (int i = 0; i < artifactCount; i++) {
+                String name = readString(input, strings);
+                String type = readString(input, strings);
+                String extension = readString(input, strings);
+                String path = readString(input, strings);
+                artifacts.add(new ArtifactSnapshot(name, type, extension, path == null ? null : new File(path),
+                        input.readInt()));
+            }
+
+            int dependencyCount = input.readInt();
+            Map<String, int[]> firstLevelDependencies = new LinkedHashMap<String, int[]>();
+            for (int i = 0; i < dependencyCount; i++) {
+                firstLevelDependencies.put(readString(input, strings), readIds(input));
+            }
+            int[] resolvedArtifacts = readIds(input);
+
+            return new CachedResolvedConfiguration(timestamp, changing, nodes, artifacts, firstLevelDependencies,
+                    resolvedArtifacts, null);
+        }
+
+        public void write(OutputStream outstr, CachedResolvedConfiguration value) throws Exception {
+            synchronized (value) {
+                doWrite(outstr, value);
+            }
+        }
+
+        private void doWrite(OutputStream outstr, CachedResolvedConfiguration value) throws IOException {
+            DataOutputStream output = new DataOutputStream(outstr);
+            Map<String, Integer> strings = new HashMap<String, Integer>();
+            output.writeLong(value.timestamp);
+            output.writeBoolean(value.changing);
+
+            output.writeInt(value.nodes.size());
+            for (NodeSnapshot node : value.nodes) {
+                writeString(output, node.name, strings);
+                writeString(output, node.group, strings);
+                writeString(output, node.module, strings);
+                writeString(output, node.version, strings);
+                writeString(output, node.configuration, strings);
+                output.writeInt(node.configurationHierarchy.size());
+                for (String configuration : node.configurationHierarchy) {
+                    writeString(output, configuration, strings);
+                }
+                writeIds(output, node.moduleArtifacts);
+                writeIds(output, node.children);
+                writeIds(output, node.parents);
+                for (int[] parentArtifacts : node.parentArtifacts) {
+                    writeIds(output, parentArtifacts);
+                }
+            }
+
+            output.writeInt(value.artifacts.size());
+            for (ArtifactSnapshot artifact : value.artifacts) {
+                writeString(output, artifact.name, strings);
+                writeString(output, artifact.type, strings);
+                writeString(output, artifact.extension, strings);
+                writeString(output, artifact.file == null ? null : artifact.file.getPath(), strings);
+                output.writeInt(artifact.owner);
+            }
+
+            output.writeInt(value.firstLevelDependencies.size());
+            for (Map.Entry<String, int[]> entry : value.firstLevelDependencies.entrySet()) {
+                writeString(output, entry.getKey(), strings);
+                writeIds(output, entry.getValue());
+            }
+            writeIds(output, value.resolvedArtifacts);
+            output.flush();
+        }
+
+        private static void writeString(DataOutputStream output, String value, Map<String, Integer> strings)
+                throws IOException {
+            if (value == null) {
+                output.writeInt(-1);
+                return;
+            }
+            Integer id = strings.get(value);
+            if (id != null) {
+                output.writeInt(id);
+                return;
+            }
+            output.writeInt(strings.size());
+            output.writeUTF(value);
+            strings.put(value, strings.size());
+        }
+
+        private static String readString(DataInputStream input, List<String> strings) throws IOException {
+            int id = input.readInt();
+            if (id < 0) {
+                return null;
+            }
+            if (id < strings.size()) {
+                return strings.get(id);
+            }
+            String value = input.readUTF();
+            strings.add(value);
+            return value;
+        }
+
+        private static void writeIds(DataOutputStream output, int[] ids) throws IOException {
+            output.writeInt(ids.length);
+            for (int id : ids) {
+                output.writeInt(id);
+            }
+        }
+
+        private static int[] readIds(DataInputStream input) throws IOException {
+            int[] ids = new int[input.readInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = input.readInt();
+            }
+            return ids;
+        }
+    }
+}
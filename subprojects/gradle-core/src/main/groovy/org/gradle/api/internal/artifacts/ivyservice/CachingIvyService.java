@@ -0,0 +1,311 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.plugins.resolver.AbstractPatternsBasedResolver;
+import org.apache.ivy.plugins.resolver.ChainResolver;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.IvyService;
+import org.gradle.api.internal.artifacts.configurations.DependencyMetaDataProvider;
+import org.gradle.api.internal.artifacts.configurations.ResolverProvider;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * An {@link IvyService} which reuses the resolved dependency graph of a configuration from an earlier build, when
+ * nothing the resolution depends on has changed. The graph is looked up using a fingerprint of the declared
+ * dependencies, exclude rules and resolvers of the configuration. Results which contain dynamic or changing modules,
+ * anywhere in the graph, are resolved again once {@link #CHANGING_MODULE_TTL} has passed, all other results once
+ * {@link #MODULE_TTL} has passed.
+ *
+ * <p>Caching a result does not download its artifacts. The artifact files are added to the cached result as
+ * they are used. When a cached result is used and does not hold an artifact file, the configuration is resolved again
+ * to determine the file.</p>
+ */
+public class CachingIvyService implements IvyService {
+    public static final long CHANGING_MODULE_TTL = 10 * 60 * 1000L;
+    public static final long MODULE_TTL = 24 * 60 * 60 * 1000L;
+    private static final int RESOLVE_LOCK_COUNT = 64;
+    private static Logger logger = LoggerFactory.getLogger(CachingIvyService.class);
+
+    private final IvyService ivyService;
+    private final DependencyMetaDataProvider metaDataProvider;
+    private final ResolverProvider resolverProvider;
+    private final ResolvedConfigurationCache cache;
+    private final Object[] resolveLocks = new Object[RESOLVE_LOCK_COUNT];
+
+    public CachingIvyService(IvyService ivyService, DependencyMetaDataProvider metaDataProvider,
+                             ResolverProvider resolverProvider, ResolvedConfigurationCache cache) {
+        this.ivyService = ivyService;
+        this.metaDataProvider = metaDataProvider;
+        this.resolverProvider = resolverProvider;
+        this.cache = cache;
+        for (int i = 0; i < resolveLocks.length; i++) {
+            resolveLocks[i] = new Object();
+        }
+    }
+
+    public IvyService getIvyService() {
+        return ivyService;
+    }
+
+    public void publish(Set<Configuration> configurationsToPublish, File descriptorDestination,
+                        List<DependencyResolver> publishResolvers) {
+        ivyService.publish(configurationsToPublish, descriptorDestination, publishResolvers);
+    }
+
+    public ResolvedConfiguration resolve(Configuration configuration) {
+        Fingerprint fingerprint = createFingerprint(configuration);
+        String key = fingerprint.getKey();
+
+        // A configuration which is being resolved by another thread is resolved once, then restored from the cache
+        synchronized (getResolveLock(key)) {
+            long now = System.currentTimeMillis();
+            CachedResolvedConfiguration cachedConfiguration = cache.get(key);
+            if (cachedConfiguration != null && isUpToDate(cachedConfiguration, now)) {
+                ResolvedConfiguration restoredConfiguration = restore(key, configuration, cachedConfiguration);
+                if (restoredConfiguration != null) {
+                    logger.debug("Using cached resolve result for {}.", configuration);
+                    return restoredConfiguration;
+                }
+            }
+
+            ResolvedConfiguration resolvedConfiguration = ivyService.resolve(configuration);
+            if (!resolvedConfiguration.hasError() && resolvedConfiguration instanceof IvyResolvedConfiguration) {
+                if (key.equals(createFingerprint(configuration).getKey())) {
+                    CachedResolvedConfiguration snapshot = createSnapshot(configuration,
+                            (IvyResolvedConfiguration) resolvedConfiguration, fingerprint.isChanging(), now);
+                    if (snapshot != null) {
+                        cache.put(key, snapshot);
+                        // Use the graph of the snapshot, so that the artifact files are added to it as they are used
+                        ResolvedConfiguration restoredConfiguration = restore(key, configuration, snapshot);
+                        if (restoredConfiguration != null) {
+                            return restoredConfiguration;
+                        }
+                    }
+                } else {
+                    logger.debug("Not caching resolve result for {}, as it changed while being resolved.",
+                            configuration);
+                }
+            }
+            return resolvedConfiguration;
+        }
+    }
+
+    private Fingerprint createFingerprint(Configuration configuration) {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.addModule(metaDataProvider.getModuleForResolve());
+        fingerprint.addResolvers(resolverProvider.getResolvers());
+        fingerprint.addConfiguration(configuration);
+        return fingerprint;
+    }
+
+    /**
+     * Returns the lock for the given key. Keys share a fixed number of locks, so that the locks do not accumulate.
+     */
+    private Object getResolveLock(String key) {
+        return resolveLocks[(key.hashCode() & Integer.MAX_VALUE) % resolveLocks.length];
+    }
+
+    private boolean isUpToDate(CachedResolvedConfiguration cachedConfiguration, long now) {
+        long age = now - cachedConfiguration.getTimestamp();
+        return age >= 0 && age < (cachedConfiguration.isChanging() ? CHANGING_MODULE_TTL : MODULE_TTL);
+    }
+
+    private ResolvedConfiguration restore(String key, Configuration configuration,
+                                          CachedResolvedConfiguration snapshot) {
+        IvyConversionResult conversionResult = snapshot.restore(configuration, new ResolvingArtifactSource(key,
+                configuration));
+        if (conversionResult == null) {
+            return null;
+        }
+        return new SelfResolvingResolvedConfiguration(configuration, new DefaultResolvedConfiguration(configuration,
+                conversionResult));
+    }
+
+    private CachedResolvedConfiguration createSnapshot(Configuration configuration,
+                                                       IvyResolvedConfiguration resolvedConfiguration,
+                                                       boolean changing, long now) {
+        try {
+            IvyConversionResult conversionResult = resolvedConfiguration.getConversionResult();
+            if (conversionResult == null) {
+                return null;
+            }
+            return CachedResolvedConfiguration.create(conversionResult, changing, now);
+        } catch (RuntimeException e) {
+            // Leave the failure to be reported when the files of the configuration are used
+            logger.debug(String.format("Could not cache resolve result for %s.", configuration), e);
+            return null;
+        }
+    }
+
+    /**
+     * Determines the artifact files of a snapshot by resolving the configuration again, and stores the snapshot once
+     * it holds more files.
+     */
+    private class ResolvingArtifactSource implements CachedResolvedConfiguration.ArtifactSource {
+        private final String key;
+        private final Configuration configuration;
+
+        private ResolvingArtifactSource(String key, Configuration configuration) {
+            this.key = key;
+            this.configuration = configuration;
+        }
+
+        public CachedResolvedConfiguration resolve() {
+            ResolvedConfiguration resolvedConfiguration = ivyService.resolve(configuration);
+            resolvedConfiguration.rethrowFailure();
+            if (!(resolvedConfiguration instanceof IvyResolvedConfiguration)) {
+                return null;
+            }
+            return createSnapshot(configuration, (IvyResolvedConfiguration) resolvedConfiguration, false,
+                    System.currentTimeMillis());
+        }
+
+        public void filesDetermined(CachedResolvedConfiguration snapshot) {
+            cache.put(key, snapshot);
+        }
+    }
+
+    static String getDependencyId(ModuleDependency dependency) {
+        StringBuilder id = new StringBuilder();
+        id.append(dependency.getClass().getSimpleName()).append(':');
+        id.append(dependency.getGroup()).append(':').append(dependency.getName()).append(':');
+        id.append(dependency.getVersion()).append(':').append(dependency.getConfiguration()).append(':');
+        id.append(dependency.isTransitive());
+        if (dependency instanceof ExternalDependency) {
+            id.append(":force=").append(((ExternalDependency) dependency).isForce());
+        }
+        if (dependency instanceof ExternalModuleDependency) {
+            id.append(":changing=").append(((ExternalModuleDependency) dependency).isChanging());
+        }
+        if (dependency instanceof ProjectDependency) {
+            id.append(":project=").append(((ProjectDependency) dependency).getDependencyProject().getPath());
+        }
+        for (DependencyArtifact artifact : dependency.getArtifacts()) {
+            id.append(":artifact=").append(artifact.getName()).append(',').append(artifact.getType()).append(',');
+            id.append(artifact.getExtension()).append(',').append(artifact.getClassifier()).append(',');
+            id.append(artifact.getUrl());
+        }
+        for (ExcludeRule excludeRule : dependency.getExcludeRules()) {
+            id.append(":exclude=").append(new TreeMap<String, String>(excludeRule.getExcludeArgs()));
+        }
+        return id.toString();
+    }
+
+    static boolean isDynamicVersion(String version) {
+        return version != null && (version.endsWith("-SNAPSHOT") || version.startsWith("latest.")
+                || version.endsWith("+") || version.startsWith("[") || version.startsWith("(")
+                || version.startsWith("]"));
+    }
+
+    /**
+     * Collects everything the resolution of a configuration depends on.
+     */
+    private static class Fingerprint {
+        private final StringBuilder content = new StringBuilder();
+        private final Set<Configuration> visitedConfigurations = new HashSet<Configuration>();
+        private boolean changing;
+
+        public String getKey() {
+            return HashUtil.createHash(content.toString());
+        }
+
+        public boolean isChanging() {
+            return changing;
+        }
+
+        public void addModule(Module module) {
+            content.append("module ").append(module.getGroup()).append(':').append(module.getName()).append(':');
+            content.append(module.getVersion()).append(':').append(module.getStatus()).append('\n');
+        }
+
+        public void addResolvers(List<DependencyResolver> resolvers) {
+            for (DependencyResolver resolver : resolvers) {
+                addResolver(resolver);
+            }
+        }
+
+        private void addResolver(DependencyResolver resolver) {
+            content.append("resolver ").append(resolver.getClass().getName()).append(':').append(resolver.getName());
+            if (resolver instanceof AbstractPatternsBasedResolver) {
+                AbstractPatternsBasedResolver patternsBasedResolver = (AbstractPatternsBasedResolver) resolver;
+                content.append(':').append(patternsBasedResolver.getIvyPatterns());
+                content.append(':').append(patternsBasedResolver.getArtifactPatterns());
+            }
+            content.append('\n');
+            if (resolver instanceof ChainResolver) {
+                for (Object childResolver : ((ChainResolver) resolver).getResolvers()) {
+                    addResolver((DependencyResolver) childResolver);
+                }
+                content.append("end chain\n");
+            }
+        }
+
+        public void addConfiguration(Configuration configuration) {
+            if (!visitedConfigurations.add(configuration)) {
+                return;
+            }
+            content.append("configuration ").append(configuration.getName()).append(':');
+            content.append(configuration.isTransitive()).append('\n');
+            for (Configuration superConfiguration : configuration.getHierarchy()) {
+                content.append("extends ").append(superConfiguration.getName()).append('\n');
+                for (ExcludeRule excludeRule : superConfiguration.getExcludeRules()) {
+                    content.append("exclude ").append(new TreeMap<String, String>(excludeRule.getExcludeArgs()));
+                    content.append('\n');
+                }
+            }
+            for (ModuleDependency dependency : configuration.getAllDependencies(ModuleDependency.class)) {
+                addDependency(dependency);
+            }
+            content.append("end configuration\n");
+        }
+
+        private void addDependency(ModuleDependency dependency) {
+            content.append("dependency ").append(getDependencyId(dependency)).append('\n');
+            if (isDynamicVersion(dependency.getVersion()) || dependency instanceof ExternalModuleDependency
+                    && ((ExternalModuleDependency) dependency).isChanging()) {
+                changing = true;
+            }
+            if (dependency instanceof ClientModule) {
+                for (ModuleDependency moduleDependency : ((ClientModule) dependency).getDependencies()) {
+                    addDependency(moduleDependency);
+                }
+                content.append("end module\n");
+            }
+            if (dependency instanceof ProjectDependency) {
+                // The resolution also depends on the dependencies and artifacts of the target configuration
+                ProjectDependency projectDependency = (ProjectDependency) dependency;
+                Project project = projectDependency.getDependencyProject();
+                content.append("project ").append(project.getGroup()).append(':').append(project.getName());
+                content.append(':').append(project.getVersion()).append('\n');
+                Configuration projectConfiguration = projectDependency.getProjectConfiguration();
+                for (PublishArtifact artifact : projectConfiguration.getAllArtifacts()) {
+                    content.append("artifact ").append(artifact.getName()).append(',').append(artifact.getType());
+                    content.append(',').append(artifact.getExtension()).append(',').append(artifact.getClassifier());
+                    content.append(',').append(artifact.getFile().getAbsolutePath()).append('\n');
+                }
+                addConfiguration(projectConfiguration);
+            }
+        }
+    }
+}
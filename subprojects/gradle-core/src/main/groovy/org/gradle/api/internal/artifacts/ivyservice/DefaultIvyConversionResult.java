@@ -28,10 +28,16 @@ import java.util.Set;
 public class DefaultIvyConversionResult implements IvyConversionResult {
     private Map<Dependency, Set<ResolvedDependency>> firstLevelResolvedDependencies;
     private Set<ResolvedArtifact> resolvedArtifacts;
+    private boolean changing;
 
     public DefaultIvyConversionResult(Map<Dependency, Set<ResolvedDependency>> firstLevelResolvedDependencies, Set<ResolvedArtifact> resolvedArtifacts) {
+        this(firstLevelResolvedDependencies, resolvedArtifacts, false);
+    }
+
+    public DefaultIvyConversionResult(Map<Dependency, Set<ResolvedDependency>> firstLevelResolvedDependencies, Set<ResolvedArtifact> resolvedArtifacts, boolean changing) {
         this.firstLevelResolvedDependencies = firstLevelResolvedDependencies;
         this.resolvedArtifacts = resolvedArtifacts;
+        this.changing = changing;
     }
 
     public Map<Dependency, Set<ResolvedDependency>> getFirstLevelResolvedDependencies() {
@@ -41,4 +47,8 @@ public class DefaultIvyConversionResult implements IvyConversionResult {
     public Set<ResolvedArtifact> getResolvedArtifacts() {
         return resolvedArtifacts;
     }
+
+    public boolean isChanging() {
+        return changing;
+    }
 }
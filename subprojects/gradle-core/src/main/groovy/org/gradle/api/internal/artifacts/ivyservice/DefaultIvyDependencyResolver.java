@@ -21,7 +21,6 @@ import org.apache.ivy.core.report.ResolveReport;
 import org.apache.ivy.core.resolve.ResolveOptions;
 import org.gradle.api.artifacts.*;
 import org.gradle.api.specs.Spec;
-import org.gradle.api.specs.Specs;
 import org.gradle.util.Clock;
 import org.gradle.util.WrapUtil;
 import org.slf4j.Logger;
@@ -29,7 +28,6 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.Formatter;
-import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -64,10 +62,10 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
         return resolveOptions;
     }
 
-    class ResolvedConfigurationImpl implements ResolvedConfiguration {
+    class ResolvedConfigurationImpl implements IvyResolvedConfiguration {
         private final ResolveReport resolveReport;
         private final Configuration configuration;
-        private IvyConversionResult conversionResult;
+        private DefaultResolvedConfiguration resolvedConfiguration;
 
         public ResolvedConfigurationImpl(ResolveReport resolveReport, Configuration configuration) {
             this.resolveReport = resolveReport;
@@ -89,45 +87,28 @@ public class DefaultIvyDependencyResolver implements IvyDependencyResolver {
         }
 
         public Set<File> getFiles(Spec<Dependency> dependencySpec) {
-            buildResolvedDependencies();
-            Set<ModuleDependency> allModuleDependencies = Specs.filterIterable(configuration.getAllDependencies(ModuleDependency.class), dependencySpec);
-            Set<File> files = new LinkedHashSet<File>();
-            for (ModuleDependency moduleDependency : allModuleDependencies) {
-                Set<ResolvedDependency> resolvedDependencies = conversionResult.getFirstLevelResolvedDependencies().get(moduleDependency);
-                if (resolvedDependencies != null) {
-                    for (ResolvedDependency resolvedDependency : resolvedDependencies) {
-                        files.addAll(ResolvedDependencies.getFilesFromArtifacts(resolvedDependency.getAllArtifacts(null)));
-                    }
-                }
-            }
-            return files;
+            return buildResolvedDependencies().getFiles(dependencySpec);
         }
 
         public Set<ResolvedDependency> getFirstLevelModuleDependencies() {
-            buildResolvedDependencies();
-            Set<ResolvedDependency> resolvedDependencies = new LinkedHashSet<ResolvedDependency>();
-            for (Dependency dependency : conversionResult.getFirstLevelResolvedDependencies().keySet()) {
-                Set<ResolvedDependency> dependencySet = conversionResult.getFirstLevelResolvedDependencies().get(dependency);
-                if (dependencySet != null) {
-                    resolvedDependencies.addAll(dependencySet);
-                }
-            }
-            return resolvedDependencies;
+            return buildResolvedDependencies().getFirstLevelModuleDependencies();
         }
 
         public Set<ResolvedArtifact> getResolvedArtifacts() {
-            buildResolvedDependencies();
-            return conversionResult.getResolvedArtifacts();
+            return buildResolvedDependencies().getResolvedArtifacts();
+        }
+
+        public IvyConversionResult getConversionResult() {
+            return buildResolvedDependencies().getConversionResult();
         }
 
-        private void buildResolvedDependencies() {
+        private DefaultResolvedConfiguration buildResolvedDependencies() {
             rethrowFailure();
-            if (conversionResult != null) {
-                return;
+            if (resolvedConfiguration == null) {
+                resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                        ivyReportTranslator.convertReport(resolveReport, configuration));
             }
-            conversionResult = ivyReportTranslator.convertReport(
-                    resolveReport,
-                    configuration);
+            return resolvedConfiguration;
         }
     }
 }
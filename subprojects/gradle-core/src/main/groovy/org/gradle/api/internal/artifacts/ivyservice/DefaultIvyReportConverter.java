@@ -18,14 +18,18 @@ package org.gradle.api.internal.artifacts.ivyservice;
 
 import org.apache.ivy.core.module.descriptor.Artifact;
 import org.apache.ivy.core.module.descriptor.DependencyArtifactDescriptor;
+import org.apache.ivy.core.module.descriptor.DependencyDescriptor;
 import org.apache.ivy.core.module.id.ModuleRevisionId;
 import org.apache.ivy.core.report.ArtifactDownloadReport;
 import org.apache.ivy.core.report.ConfigurationResolveReport;
 import org.apache.ivy.core.report.ResolveReport;
 import org.apache.ivy.core.resolve.IvyNode;
 import org.apache.ivy.core.resolve.IvyNodeCallers;
+import org.apache.ivy.core.resolve.ResolvedModuleRevision;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
 import org.gradle.api.GradleException;
 import org.gradle.api.artifacts.*;
+import org.gradle.api.artifacts.repositories.InternalRepository;
 import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
 import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
 import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies.DependencyDescriptorFactory;
@@ -44,11 +48,22 @@ public class DefaultIvyReportConverter implements IvyReportConverter {
     private static Logger logger = LoggerFactory.getLogger(DefaultIvyReportConverter.class);
 
     private DependencyDescriptorFactory dependencyDescriptorFactory;
+    private ArtifactDownloader artifactDownloader;
 
     public DefaultIvyReportConverter(DependencyDescriptorFactory dependencyDescriptorFactory) {
         this.dependencyDescriptorFactory = dependencyDescriptorFactory;
     }
 
+    /**
+     * Creates a converter whose resolved artifacts are downloaded in the background using the given downloader. The
+     * downloads of a configuration start when the file of any of its artifacts is first requested.
+     */
+    public DefaultIvyReportConverter(DependencyDescriptorFactory dependencyDescriptorFactory,
+                                     ArtifactDownloader artifactDownloader) {
+        this(dependencyDescriptorFactory);
+        this.artifactDownloader = artifactDownloader;
+    }
+
     public Set<File> getClasspath(String configuration, ResolveReport resolveReport) {
         Clock clock = new Clock();
         Set<File> classpath = new LinkedHashSet<File>();
@@ -77,12 +92,14 @@ public class DefaultIvyReportConverter implements IvyReportConverter {
         LinkedHashMap<ModuleRevisionId, Map<String, DefaultResolvedDependency>> handledNodes = new LinkedHashMap<ModuleRevisionId, Map<String, DefaultResolvedDependency>>();
         Map<DefaultResolvedDependency, IvyNode> resolvedDependencies2Nodes = new HashMap<DefaultResolvedDependency, IvyNode>();
         Map<ModuleRevisionId, Map<String, ModuleDependency>> firstLevelDependenciesModuleRevisionIds = createFirstLevelDependenciesModuleRevisionIds(configuration.getAllDependencies(ModuleDependency.class));
+        boolean changing = false;
         List nodes = resolveReport.getDependencies();
         for (Iterator iterator = nodes.iterator(); iterator.hasNext();) {
             IvyNode node = (IvyNode) iterator.next();
             if (!isResolvedNode(node, configuration)) {
                 continue;
             }
+            changing = changing || isSelectedByChangingRevision(node, configuration.getName());
             getResolvedDependenciesForNode(node,
                     handledNodes,
                     resolvedDependencies2Nodes,
@@ -94,7 +111,39 @@ public class DefaultIvyReportConverter implements IvyReportConverter {
                     resolveReport);
         }
         logger.debug("Timing: Translating report for configuration {} took {}", configuration, clock.getTime());
-        return new DefaultIvyConversionResult(firstLevelResolvedDependencies, resolvedArtifacts);
+        createDownloadBatch(resolvedArtifacts);
+        return new DefaultIvyConversionResult(firstLevelResolvedDependencies, resolvedArtifacts, changing);
+    }
+
+    /**
+     * Returns true if any dependency on the given node asks for a dynamic or changing revision. This includes the
+     * dependencies of modules further down the graph, which are not declared by the configuration.
+     */
+    private boolean isSelectedByChangingRevision(IvyNode node, String conf) {
+        for (IvyNodeCallers.Caller caller : node.getCallers(conf)) {
+            DependencyDescriptor dependencyDescriptor = caller.getDependencyDescriptor();
+            if (dependencyDescriptor.isChanging() || CachingIvyService.isDynamicVersion(
+                    dependencyDescriptor.getDependencyRevisionId().getRevision())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Groups the artifacts of the configuration, so that they are all downloaded in the background once the file of
+     * any of them is requested.
+     */
+    private void createDownloadBatch(Set<ResolvedArtifact> resolvedArtifacts) {
+        if (artifactDownloader == null) {
+            return;
+        }
+        ArtifactDownloadBatch batch = new ArtifactDownloadBatch();
+        for (ResolvedArtifact resolvedArtifact : resolvedArtifacts) {
+            if (resolvedArtifact instanceof DefaultResolvedArtifact) {
+                batch.add((DefaultResolvedArtifact) resolvedArtifact);
+            }
+        }
     }
 
     private boolean isResolvedNode(IvyNode node, Configuration configuration) {
@@ -184,7 +233,14 @@ public class DefaultIvyReportConverter implements IvyReportConverter {
     }
 
     private DefaultResolvedArtifact createResolvedArtifact(Artifact artifact, IvyNode ivyNode) {
-        return new DefaultResolvedArtifact(artifact, ivyNode.getData().getEngine());
+        ResolvedModuleRevision moduleRevision = ivyNode.getModuleRevision();
+        DependencyResolver artifactResolver = moduleRevision == null ? null : moduleRevision.getArtifactResolver();
+        // The artifacts of projects are built by the tasks of the build, so cannot be downloaded in advance
+        if (artifactDownloader == null || artifactResolver == null || artifactResolver instanceof InternalRepository) {
+            return new DefaultResolvedArtifact(artifact, ivyNode.getData().getEngine());
+        }
+        return new DefaultResolvedArtifact(artifact, ivyNode.getData().getEngine(), artifactDownloader,
+                artifactResolver.getName());
     }
 
     private boolean isEquals(DependencyArtifactDescriptor parentArtifact, Artifact artifact) {
@@ -129,24 +129,33 @@ public class DefaultIvyService implements IvyService {
     }
 
     public ResolvedConfiguration resolve(final Configuration configuration) {
-        Ivy ivy = ivyForResolve(resolverProvider.getResolvers(), metaDataProvider.getGradleUserHomeDir(),
-                clientModuleRegistry);
-        ModuleDescriptor moduleDescriptor = resolveModuleDescriptorConverter.convert(configuration.getHierarchy(),
-                metaDataProvider.getModuleForResolve(), ivy.getSettings());
-        return dependencyResolver.resolve(configuration, ivy, moduleDescriptor);
-    }
-
-    public void publish(Set<Configuration> configurationsToPublish, File descriptorDestination,
-                        List<DependencyResolver> publishResolvers) {
-        Ivy ivy = ivyForPublish(publishResolvers, metaDataProvider.getGradleUserHomeDir());
-        Set<String> confs = Configurations.getNames(configurationsToPublish, false);
-        writeDescriptorFile(descriptorDestination, configurationsToPublish, ivy.getSettings());
-        dependencyPublisher.publish(
-                confs,
-                publishResolvers,
-                publishModuleDescriptorConverter.convert(configurationsToPublish, metaDataProvider.getModuleForResolve(), ivy.getSettings()),
-                descriptorDestination,
-                ivy.getPublishEngine());
+        final List<DependencyResolver> resolvers = resolverProvider.getResolvers();
+        return ResolverLocks.withResolversLocked(resolvers, new ResolverLocks.ResolverAction<ResolvedConfiguration>() {
+            public ResolvedConfiguration execute() {
+                Ivy ivy = ivyForResolve(resolvers, metaDataProvider.getGradleUserHomeDir(), clientModuleRegistry);
+                ModuleDescriptor moduleDescriptor = resolveModuleDescriptorConverter.convert(
+                        configuration.getHierarchy(), metaDataProvider.getModuleForResolve(), ivy.getSettings());
+                return dependencyResolver.resolve(configuration, ivy, moduleDescriptor);
+            }
+        });
+    }
+
+    public void publish(final Set<Configuration> configurationsToPublish, final File descriptorDestination,
+                        final List<DependencyResolver> publishResolvers) {
+        ResolverLocks.withResolversLocked(publishResolvers, new ResolverLocks.ResolverAction<Object>() {
+            public Object execute() {
+                Ivy ivy = ivyForPublish(publishResolvers, metaDataProvider.getGradleUserHomeDir());
+                Set<String> confs = Configurations.getNames(configurationsToPublish, false);
+                writeDescriptorFile(descriptorDestination, configurationsToPublish, ivy.getSettings());
+                dependencyPublisher.publish(
+                        confs,
+                        publishResolvers,
+                        publishModuleDescriptorConverter.convert(configurationsToPublish, metaDataProvider.getModuleForResolve(), ivy.getSettings()),
+                        descriptorDestination,
+                        ivy.getPublishEngine());
+                return null;
+            }
+        });
     }
 
     private void writeDescriptorFile(File descriptorDestination, Set<Configuration> configurationsToPublish, IvySettings ivySettings) {
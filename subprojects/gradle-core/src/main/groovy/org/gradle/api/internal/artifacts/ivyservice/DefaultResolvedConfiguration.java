@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.*;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A {@link ResolvedConfiguration} for a successfully resolved dependency graph.
+ */
+public class DefaultResolvedConfiguration implements IvyResolvedConfiguration {
+    private final Configuration configuration;
+    private final IvyConversionResult conversionResult;
+
+    public DefaultResolvedConfiguration(Configuration configuration, IvyConversionResult conversionResult) {
+        this.configuration = configuration;
+        this.conversionResult = conversionResult;
+    }
+
+    public IvyConversionResult getConversionResult() {
+        return conversionResult;
+    }
+
+    public boolean hasError() {
+        return false;
+    }
+
+    public void rethrowFailure() throws ResolveException {
+    }
+
+    public Set<File> getFiles(Spec<Dependency> dependencySpec) {
+        Set<ModuleDependency> allModuleDependencies = Specs.filterIterable(configuration.getAllDependencies(ModuleDependency.class), dependencySpec);
+        Set<File> files = new LinkedHashSet<File>();
+        for (ModuleDependency moduleDependency : allModuleDependencies) {
+            Set<ResolvedDependency> resolvedDependencies = conversionResult.getFirstLevelResolvedDependencies().get(moduleDependency);
+            if (resolvedDependencies != null) {
+                for (ResolvedDependency resolvedDependency : resolvedDependencies) {
+                    files.addAll(ResolvedDependencies.getFilesFromArtifacts(resolvedDependency.getAllArtifacts(null)));
+                }
+            }
+        }
+        return files;
+    }
+
+    public Set<ResolvedDependency> getFirstLevelModuleDependencies() {
+        Set<ResolvedDependency> resolvedDependencies = new LinkedHashSet<ResolvedDependency>();
+        for (Dependency dependency : conversionResult.getFirstLevelResolvedDependencies().keySet()) {
+            Set<ResolvedDependency> dependencySet = conversionResult.getFirstLevelResolvedDependencies().get(dependency);
+            if (dependencySet != null) {
+                resolvedDependencies.addAll(dependencySet);
+            }
+        }
+        return resolvedDependencies;
+    }
+
+    public Set<ResolvedArtifact> getResolvedArtifacts() {
+        return conversionResult.getResolvedArtifacts();
+    }
+}
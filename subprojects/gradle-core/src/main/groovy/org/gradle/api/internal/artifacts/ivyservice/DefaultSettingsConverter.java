@@ -76,7 +76,7 @@ public class DefaultSettingsConverter implements SettingsConverter {
 
     private IvySettings ivySettings;
 
-    public IvySettings convertForPublish(List<DependencyResolver> publishResolvers, File gradleUserHome, DependencyResolver internalRepository) {
+    public synchronized IvySettings convertForPublish(List<DependencyResolver> publishResolvers, File gradleUserHome, DependencyResolver internalRepository) {
         if (ivySettings != null) {
             return ivySettings;
         }
@@ -92,7 +92,7 @@ public class DefaultSettingsConverter implements SettingsConverter {
         return ivySettings;
     }
 
-    public IvySettings convertForResolve(List<DependencyResolver> dependencyResolvers,
+    public synchronized IvySettings convertForResolve(List<DependencyResolver> dependencyResolvers,
                                File gradleUserHome, DependencyResolver internalRepository, Map clientModuleRegistry) {
         if (ivySettings != null) {
             return ivySettings;
@@ -159,6 +159,9 @@ public class DefaultSettingsConverter implements SettingsConverter {
     private void setRepositoryCacheManager(IvySettings ivySettings) {
         if (repositoryCacheManager == null) {
             repositoryCacheManager = ivySettings.getDefaultRepositoryCacheManager();
+            // The cache manager is shared by configurations which are resolved concurrently
+            ((DefaultRepositoryCacheManager) repositoryCacheManager).setLockStrategy(ivySettings.getLockStrategy(
+                    "artifact-lock"));
         } else {
             ivySettings.setDefaultRepositoryCacheManager(repositoryCacheManager);
         }
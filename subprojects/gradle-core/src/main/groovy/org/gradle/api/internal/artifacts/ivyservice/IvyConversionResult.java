@@ -29,4 +29,10 @@ public interface IvyConversionResult {
     Map<Dependency, Set<ResolvedDependency>> getFirstLevelResolvedDependencies();
 
     Set<ResolvedArtifact> getResolvedArtifacts();
+
+    /**
+     * Returns true if some module of the graph was selected using a dynamic or changing revision, so that the graph
+     * can change over time.
+     */
+    boolean isChanging();
 }
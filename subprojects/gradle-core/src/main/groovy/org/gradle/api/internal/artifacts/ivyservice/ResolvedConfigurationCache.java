@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.util.GUtil;
+
+/**
+ * The persistent store for resolved dependency graphs, shared by all projects of a build. The backing cache is
+ * opened the first time it is used.
+ */
+public class ResolvedConfigurationCache {
+    static final String CACHE_NAME = "resolved-configurations";
+    static final int FORMAT_VERSION = 1;
+
+    private final CacheRepository cacheRepository;
+    private PersistentIndexedCache<String, CachedResolvedConfiguration> cache;
+
+    public ResolvedConfigurationCache(CacheRepository cacheRepository) {
+        this.cacheRepository = cacheRepository;
+    }
+
+    public CachedResolvedConfiguration get(String key) {
+        return getCache().get(key);
+    }
+
+    public void put(String key, CachedResolvedConfiguration value) {
+        getCache().put(key, value);
+    }
+
+    private synchronized PersistentIndexedCache<String, CachedResolvedConfiguration> getCache() {
+        // The cache must be opened exactly once, as opening an invalid cache discards its content
+        if (cache == null) {
+            cache = cacheRepository.getIndexedGlobalCache(CACHE_NAME, GUtil.map("format.version", FORMAT_VERSION),
+                    new CachedResolvedConfiguration.SnapshotSerializer());
+        }
+        return cache;
+    }
+}
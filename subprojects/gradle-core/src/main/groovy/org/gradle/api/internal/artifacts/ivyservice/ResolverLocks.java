@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.plugins.resolver.ChainResolver;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.artifacts.repositories.InternalRepository;
+
+import java.util.*;
+
+/**
+ * Serializes the use of the repository resolvers of a build. Converting the Ivy settings of a resolve initialises the
+ * resolvers with the new settings, so a resolver must not be used by two resolves, or by a resolve and a download, at
+ * the same time. The locks are always taken in the same order, so that actions whose resolvers overlap do not
+ * deadlock.
+ *
+ * <p>The internal repository is never locked. It is shared by every project of the build, and it looks up the
+ * projects it resolves without using its settings, so resolves of different projects do not wait for each other.</p>
+ */
+class ResolverLocks {
+    private static final Map<DependencyResolver, Long> LOCK_ORDER = new WeakHashMap<DependencyResolver, Long>();
+    private static long nextLockOrder;
+
+    private ResolverLocks() {
+    }
+
+    /**
+     * Runs the given action while holding the lock of each of the given resolvers and the resolvers they contain.
+     */
+    public static <T> T withResolversLocked(Collection<? extends DependencyResolver> resolvers, ResolverAction<T> action) {
+        final Map<DependencyResolver, Long> lockOrder = new IdentityHashMap<DependencyResolver, Long>();
+        for (DependencyResolver resolver : resolvers) {
+            addToLockOrder(resolver, lockOrder);
+        }
+        List<DependencyResolver> locks = new ArrayList<DependencyResolver>(lockOrder.keySet());
+        Collections.sort(locks, new Comparator<DependencyResolver>() {
+            public int compare(DependencyResolver resolver1, DependencyResolver resolver2) {
+                return lockOrder.get(resolver1).compareTo(lockOrder.get(resolver2));
+            }
+        });
+        return withLocks(locks, 0, action);
+    }
+
+    private static void addToLockOrder(DependencyResolver resolver, Map<DependencyResolver, Long> lockOrder) {
+        if (resolver == null || resolver instanceof InternalRepository || lockOrder.containsKey(resolver)) {
+            return;
+        }
+        synchronized (LOCK_ORDER) {
+            Long order = LOCK_ORDER.get(resolver);
+            if (order == null) {
+                order = nextLockOrder++;
+                LOCK_ORDER.put(resolver, order);
+            }
+            lockOrder.put(resolver, order);
+        }
+        if (resolver instanceof ChainResolver) {
+            for (Object childResolver : ((ChainResolver) resolver).getResolvers()) {
+                addToLockOrder((DependencyResolver) childResolver, lockOrder);
+            }
+        }
+    }
+
+    private static <T> T withLocks(List<DependencyResolver> locks, int index, ResolverAction<T> action) {
+        if (index == locks.size()) {
+            return action.execute();
+        }
+        synchronized (locks.get(index)) {
+            return withLocks(locks, index + 1, action);
+        }
+    }
+
+    interface ResolverAction<T> {
+        T execute();
+    }
+}
@@ -17,14 +17,8 @@ package org.gradle.api.internal.artifacts.ivyservice;
 
 import org.apache.ivy.Ivy;
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
-import org.gradle.api.GradleException;
-import org.gradle.api.artifacts.*;
-import org.gradle.api.specs.Spec;
-import org.gradle.api.specs.Specs;
-
-import java.io.File;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ResolvedConfiguration;
 
 public class SelfResolvingDependencyResolver implements IvyDependencyResolver {
     private final IvyDependencyResolver resolver;
@@ -38,37 +32,7 @@ public class SelfResolvingDependencyResolver implements IvyDependencyResolver {
     }
 
     public ResolvedConfiguration resolve(final Configuration configuration, Ivy ivy, ModuleDescriptor moduleDescriptor) {
-        final ResolvedConfiguration resolvedConfiguration = resolver.resolve(configuration, ivy, moduleDescriptor);
-        final Set<SelfResolvingDependency> selfResolvingDependencies = configuration.getAllDependencies(
-                SelfResolvingDependency.class);
-
-        return new ResolvedConfiguration() {
-            public Set<File> getFiles(Spec<Dependency> dependencySpec) {
-                Set<File> files = new LinkedHashSet<File>();
-                Set<SelfResolvingDependency> selfResolvingDependenciesSubSet =
-                        Specs.filterIterable(selfResolvingDependencies, dependencySpec);
-                for (SelfResolvingDependency selfResolvingDependency : selfResolvingDependenciesSubSet) {
-                    files.addAll((selfResolvingDependency).resolve(configuration.isTransitive()));
-                }
-                files.addAll(resolvedConfiguration.getFiles(dependencySpec));
-                return files;
-            }
-
-            public Set<ResolvedArtifact> getResolvedArtifacts() {
-                return resolvedConfiguration.getResolvedArtifacts();
-            }
-
-            public Set<ResolvedDependency> getFirstLevelModuleDependencies() {
-                return resolvedConfiguration.getFirstLevelModuleDependencies();
-            }
-
-            public boolean hasError() {
-                return resolvedConfiguration.hasError();
-            }
-
-            public void rethrowFailure() throws GradleException {
-                resolvedConfiguration.rethrowFailure();
-            }
-        };
+        return new SelfResolvingResolvedConfiguration(configuration, resolver.resolve(configuration, ivy,
+                moduleDescriptor));
     }
 }
@@ -20,12 +20,11 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
 
 import java.io.*;
-import java.util.Collections;
+import java.util.*;
 
 public class CachingHasher implements Hasher {
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
-    private long timestamp;
 
     public CachingHasher(Hasher hasher, CacheRepository cacheRepository) {
         this.hasher = hasher;
@@ -36,7 +35,7 @@ public class CachingHasher implements Hasher {
         FileInfo info = cache.get(file);
 
         long length = file.length();
-        timestamp = file.lastModified();
+        long timestamp = file.lastModified();
         if (info != null && length == info.length && timestamp == info.timestamp) {
             return info.hash;
         }
@@ -46,6 +45,35 @@ public class CachingHasher implements Hasher {
         return hash;
     }
 
+    public Map<File, byte[]> hash(Collection<File> files) {
+        Map<File, byte[]> hashes = new HashMap<File, byte[]>();
+        Map<File, FileInfo> changed = new LinkedHashMap<File, FileInfo>();
+        for (File file : files) {
+            FileInfo info = cache.get(file);
+
+            long length = file.length();
+            long timestamp = file.lastModified();
+            if (info != null && length == info.length && timestamp == info.timestamp) {
+                hashes.put(file, info.hash);
+            } else {
+                changed.put(file, new FileInfo(null, length, timestamp));
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return hashes;
+        }
+
+        Map<File, byte[]> changedHashes = hasher.hash(new ArrayList<File>(changed.keySet()));
+        for (Map.Entry<File, FileInfo> entry : changed.entrySet()) {
+            File file = entry.getKey();
+            byte[] hash = changedHashes.get(file);
+            cache.put(file, new FileInfo(hash, entry.getValue().length, entry.getValue().timestamp));
+            hashes.put(file, hash);
+        }
+        return hashes;
+    }
+
     public static class FileInfo implements Serializable {
         private final byte[] hash;
         private final long timestamp;
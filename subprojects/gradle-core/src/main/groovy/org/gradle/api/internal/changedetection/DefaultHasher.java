@@ -15,12 +15,72 @@
  */
 package org.gradle.api.internal.changedetection;
 
-import org.gradle.util.HashUtil;
+import org.gradle.api.UncheckedIOException;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Calculates the MD5 hash of a file. Reads the file through a {@link FileChannel} into a large direct buffer. The
+ * buffer and the digest are reused by each thread.
+ */
 public class DefaultHasher implements Hasher {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
     public byte[] hash(File file) {
-        return HashUtil.createHash(file);
+        MessageDigest messageDigest = DIGEST.get();
+        messageDigest.reset();
+        ByteBuffer buffer = BUFFER.get();
+        try {
+            FileInputStream instr = new FileInputStream(file);
+            try {
+                FileChannel channel = instr.getChannel();
+                while (true) {
+                    buffer.clear();
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                    buffer.flip();
+                    messageDigest.update(buffer);
+                }
+            } finally {
+                instr.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return messageDigest.digest();
+    }
+
+    public Map<File, byte[]> hash(Collection<File> files) {
+        Map<File, byte[]> hashes = new HashMap<File, byte[]>();
+        for (File file : files) {
+            hashes.put(file, hash(file));
+        }
+        return hashes;
     }
-}
\ No newline at end of file
+}
@@ -20,9 +20,9 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 
-import java.io.File;
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
 public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepository {
@@ -40,9 +40,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     }
 
     public TaskArtifactState getStateFor(final TaskInternal task) {
-        if (cache == null) {
-            loadTasks(task);
-        }
+        loadTasks(task);
 
         final TaskKey key = new TaskKey(task);
         final TaskInfo thisExecution = getThisExecution(task);
@@ -67,21 +65,26 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             }
 
             public void invalidate() {
-                for (File file : thisExecution.outputFiles.keySet()) {
-                    OutputGenerators generators = cache.get(file);
-                    generators.remove(key);
-                    cache.put(file, generators);
+                synchronized (DefaultTaskArtifactStateRepository.this) {
+                    for (File file : thisExecution.outputFiles.keySet()) {
+                        OutputGenerators generators = new OutputGenerators(cache.get(file));
+                        generators.remove(key);
+                        cache.put(file, generators);
+                    }
                 }
             }
 
             public void update() {
+                thisExecution.snapshotInputFiles(null);
                 thisExecution.snapshotOutputFiles();
                 TaskExecution taskInfo = thisExecution;
-                for (Map.Entry<File, OutputFileInfo> entry : thisExecution.outputFiles.entrySet()) {
-                    OutputGenerators generators = cache.get(entry.getKey());
-                    generators.update(entry.getValue(), key, taskInfo);
-                    cache.put(entry.getKey(), generators);
-                    taskInfo = new TaskInfoToken();
+                synchronized (DefaultTaskArtifactStateRepository.this) {
+                    for (Map.Entry<File, OutputFileInfo> entry : thisExecution.outputFiles.entrySet()) {
+                        OutputGenerators generators = new OutputGenerators(cache.get(entry.getKey()));
+                        generators.update(entry.getValue(), key, taskInfo);
+                        cache.put(entry.getKey(), generators);
+                        taskInfo = new TaskInfoToken();
+                    }
                 }
             }
         };
@@ -91,7 +94,13 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         return new TaskInfo(task, hasher);
     }
 
-    private TaskExecution getLastExecution(TaskKey key, TaskInfo thisExecution) {
+    /**
+     * Reads and updates the generators of each output file. The {@link OutputGenerators} held by the cache are shared
+     * between tasks, and are never modified in place. Each change is made to a copy which then replaces the cached
+     * instance, and the read and replace happen while holding the lock of this repository, so that tasks which run in
+     * parallel and share an output file do not lose each other's changes.
+     */
+    private synchronized TaskExecution getLastExecution(TaskKey key, TaskInfo thisExecution) {
         TaskExecution taskInfo = null;
         List<String> outOfDateMessages = new ArrayList<String>();
         for (File outputFile : thisExecution.outputFiles.keySet()) {
@@ -101,7 +110,8 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
                 outOfDateMessages.add(String.format("No history is available for %s.", outputFile));
                 continue;
             }
-            if (generators.invalidate(outputFile)) {
+            if (generators.isOutOfDate(outputFile)) {
+                generators = new OutputGenerators();
                 cache.put(outputFile, generators);
             }
             TaskExecution lastExecution = generators.get(key);
@@ -122,8 +132,12 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         return taskInfo;
     }
 
-    private void loadTasks(TaskInternal task) {
-        cache = repository.getIndexedCacheFor(task.getProject().getGradle(), "taskArtifacts", Collections.EMPTY_MAP);
+    private synchronized void loadTasks(TaskInternal task) {
+        if (cache != null) {
+            return;
+        }
+        cache = repository.getIndexedCacheFor(task.getProject().getGradle(), "taskArtifacts", Collections.EMPTY_MAP,
+                new OutputGeneratorsSerializer());
     }
 
     private static byte type(File file) {
@@ -140,6 +154,16 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         private final Map<TaskKey, TaskExecution> generators = new HashMap<TaskKey, TaskExecution>();
         private OutputFileInfo fileInfo;
 
+        public OutputGenerators() {
+        }
+
+        public OutputGenerators(OutputGenerators other) {
+            if (other != null) {
+                generators.putAll(other.generators);
+                fileInfo = other.fileInfo;
+            }
+        }
+
         public TaskExecution remove(TaskKey task) {
             return generators.remove(task);
         }
@@ -157,12 +181,8 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return generators.get(key);
         }
 
-        public boolean invalidate(File outputFile) {
-            if (fileInfo != null && !fileInfo.isUpToDate(outputFile)) {
-                generators.clear();
-                return true;
-            }
-            return false;
+        public boolean isOutOfDate(File outputFile) {
+            return fileInfo != null && !fileInfo.isUpToDate(outputFile);
         }
 
         public void update(OutputFileInfo outputFile, TaskKey key, TaskExecution thisExecution) {
@@ -185,6 +205,11 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             type = task.getClass().getName();
         }
 
+        private TaskKey(String type, String path) {
+            this.type = type;
+            this.path = path;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (o == this) {
@@ -222,17 +247,57 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         private final Map<String, InputFileInfo> inputFiles = new HashMap<String, InputFileInfo>();
         private final Map<File, OutputFileInfo> outputFiles = new HashMap<File, OutputFileInfo>();
         private boolean acceptInputs;
+        private transient Hasher hasher;
+
+        private TaskInfo() {
+        }
 
         public TaskInfo(TaskInternal task, Hasher hasher) {
+            this.hasher = hasher;
             acceptInputs = task.getInputs().getHasInputFiles();
             for (File file : task.getInputs().getFiles()) {
-                inputFiles.put(file.getAbsolutePath(), new InputFileInfo(file, hasher));
+                inputFiles.put(file.getAbsolutePath(), new InputFileInfo(file));
             }
             for (File file : task.getOutputs().getFiles()) {
                 outputFiles.put(file, null);
             }
         }
 
+        /**
+         * Calculates the hashes of the input files. The hash of an input file whose type, length and timestamp are
+         * the same as for the given execution is reused. All other input files are hashed.
+         *
+         * @return The paths of the input files whose type, length or timestamp differ from the given execution.
+         */
+        public Set<String> snapshotInputFiles(TaskInfo lastExecution) {
+            if (hasher == null) {
+                return Collections.emptySet();
+            }
+            Set<String> changed = new LinkedHashSet<String>();
+            Map<File, InputFileInfo> toHash = new LinkedHashMap<File, InputFileInfo>();
+            for (Map.Entry<String, InputFileInfo> entry : inputFiles.entrySet()) {
+                InputFileInfo inputFile = entry.getValue();
+                InputFileInfo lastInputFile = lastExecution == null ? null : lastExecution.inputFiles.get(
+                        entry.getKey());
+                if (lastInputFile != null && inputFile.hasSameMetaData(lastInputFile)) {
+                    inputFile.hash = lastInputFile.hash;
+                    continue;
+                }
+                changed.add(entry.getKey());
+                if (inputFile.type == FILE) {
+                    toHash.put(new File(entry.getKey()), inputFile);
+                }
+            }
+            if (!toHash.isEmpty()) {
+                Map<File, byte[]> hashes = hasher.hash(new ArrayList<File>(toHash.keySet()));
+                for (Map.Entry<File, InputFileInfo> entry : toHash.entrySet()) {
+                    entry.getValue().hash = hashes.get(entry.getKey());
+                }
+            }
+            hasher = null;
+            return changed;
+        }
+
         public void snapshotOutputFiles() {
             for (File file : outputFiles.keySet()) {
                 outputFiles.put(file, new OutputFileInfo(file));
@@ -241,16 +306,18 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
 
         public List<String> isSameAs(TaskExecution last) {
             if (last instanceof EmptyTaskInfo) {
+                snapshotInputFiles(null);
                 EmptyTaskInfo emptyTaskInfo = (EmptyTaskInfo) last;
                 return emptyTaskInfo.outOfDateMessages;
             }
             
+            TaskInfo lastExecution = (TaskInfo) last;
+            Set<String> changedFiles = snapshotInputFiles(lastExecution);
+
             if (!acceptInputs) {
                 return Arrays.asList("Task does not accept any input files.");
             }
 
-            TaskInfo lastExecution = (TaskInfo) last;
-
             if (!outputFiles.keySet().equals(lastExecution.outputFiles.keySet())) {
                 return Arrays.asList("The set of output files has changed.");
             }
@@ -267,16 +334,22 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
                 return Arrays.asList("The set of input files has changed");
             }
 
-            for (Map.Entry<String, InputFileInfo> entry : inputFiles.entrySet()) {
-                String file = entry.getKey();
-                InputFileInfo inputFile = entry.getValue();
+            if (changedFiles.isEmpty()) {
+                // The type, length and timestamp of every input file are unchanged, so no hashing was required
+                return null;
+            }
+
+            List<String> messages = new ArrayList<String>();
+            for (String file : changedFiles) {
+                InputFileInfo inputFile = inputFiles.get(file);
                 InputFileInfo lastInputFile = lastExecution.inputFiles.get(file);
                 if (!inputFile.isUpToDate(lastInputFile)) {
-                    return Arrays.asList(String.format("Input file %s has changed.", file));
+                    messages.add(String.format("Input file %s has changed.", file));
+                } else {
+                    logger.debug("Input file {} has a different timestamp but the same content.", file);
                 }
             }
-
-            return null;
+            return messages;
         }
     }
 
@@ -289,6 +362,11 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             empty = type == DIR && file.list().length == 0;
         }
 
+        private OutputFileInfo(byte type, boolean empty) {
+            this.type = type;
+            this.empty = empty;
+        }
+
         public boolean isUpToDate(File file) {
             if (type == MISSING) {
                 // Was missing, don't care whether it exists or not
@@ -317,16 +395,37 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
 
     private static class InputFileInfo implements Serializable {
         private final byte type;
-        private final byte[] hash;
+        private final long length;
+        private final long timestamp;
+        private byte[] hash;
 
-        private InputFileInfo(File file, Hasher hasher) {
+        private InputFileInfo(File file) {
             type = type(file);
             if (type == FILE) {
-                hash = hasher.hash(file);
+                length = file.length();
+                timestamp = file.lastModified();
+            } else {
+                length = 0;
+                timestamp = 0;
             }
-            else {
-                hash = null;
+        }
+
+        private InputFileInfo(byte type, long length, long timestamp, byte[] hash) {
+            this.type = type;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.hash = hash;
+        }
+
+        public boolean hasSameMetaData(InputFileInfo lastInputFile) {
+            if (type != lastInputFile.type) {
+                return false;
+            }
+            if (type != FILE) {
+                return true;
             }
+            return length == lastInputFile.length && timestamp == lastInputFile.timestamp
+                    && lastInputFile.hash != null;
         }
 
         public boolean isUpToDate(InputFileInfo lastInputFile) {
@@ -339,4 +438,152 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return true;
         }
     }
+
+    /**
+     * Writes {@link OutputGenerators} using a compact binary format. Each record starts with a format version, followed
+     * by a table of the distinct strings used in the record. Task types, task paths and file paths are written as
+     * indexes into this table.
+     */
+    static class OutputGeneratorsSerializer implements Serializer<OutputGenerators> {
+        private static final byte VERSION = 2;
+        private static final byte NONE = 0;
+        private static final byte TASK_INFO = 1;
+        private static final byte TASK_INFO_TOKEN = 2;
+
+        public OutputGenerators read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            if (input.readByte() != VERSION) {
+                // Written by a different version - discard
+                return null;
+            }
+            String[] strings = new String[input.readInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = input.readUTF();
+            }
+
+            OutputGenerators generators = new OutputGenerators();
+            generators.fileInfo = readOutputFileInfo(input);
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                TaskKey key = new TaskKey(strings[input.readInt()], strings[input.readInt()]);
+                byte kind = input.readByte();
+                if (kind == TASK_INFO) {
+                    generators.add(key, readTaskInfo(input, strings));
+                } else {
+                    generators.add(key, new TaskInfoToken());
+                }
+            }
+            return generators;
+        }
+
+        public void write(OutputStream outstr, OutputGenerators value) throws Exception {
+            StringTable strings = new StringTable();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream bodyOutput = new DataOutputStream(body);
+
+            writeOutputFileInfo(bodyOutput, value.fileInfo);
+            bodyOutput.writeInt(value.generators.size());
+            for (Map.Entry<TaskKey, TaskExecution> entry : value.generators.entrySet()) {
+                bodyOutput.writeInt(strings.indexOf(entry.getKey().type));
+                bodyOutput.writeInt(strings.indexOf(entry.getKey().path));
+                if (entry.getValue() instanceof TaskInfo) {
+                    bodyOutput.writeByte(TASK_INFO);
+                    writeTaskInfo(bodyOutput, (TaskInfo) entry.getValue(), strings);
+                } else {
+                    bodyOutput.writeByte(TASK_INFO_TOKEN);
+                }
+            }
+            bodyOutput.flush();
+
+            DataOutputStream output = new DataOutputStream(outstr);
+            output.writeByte(VERSION);
+            output.writeInt(strings.values.size());
+            for (String string : strings.values) {
+                output.writeUTF(string);
+            }
+            body.writeTo(output);
+            output.flush();
+        }
+
+        private TaskInfo readTaskInfo(DataInputStream input, String[] strings) throws IOException {
+            TaskInfo taskInfo = new TaskInfo();
+            taskInfo.acceptInputs = input.readBoolean();
+            int inputCount = input.readInt();
+            for (int i = 0; i < inputCount; i++) {
+                String path = strings[input.readInt()];
+                byte type = input.readByte();
+                long length = input.readLong();
+                long timestamp = input.readLong();
+                byte[] hash = null;
+                int hashLength = input.readUnsignedByte();
+                if (hashLength > 0) {
+                    hash = new byte[hashLength];
+                    input.readFully(hash);
+                }
+                taskInfo.inputFiles.put(path, new InputFileInfo(type, length, timestamp, hash));
+            }
+            int outputCount = input.readInt();
+            for (int i = 0; i < outputCount; i++) {
+                File file = new File(strings[input.readInt()]);
+                taskInfo.outputFiles.put(file, readOutputFileInfo(input));
+            }
+            return taskInfo;
+        }
+
+        private void writeTaskInfo(DataOutputStream output, TaskInfo taskInfo, StringTable strings)
+                throws IOException {
+            output.writeBoolean(taskInfo.acceptInputs);
+            output.writeInt(taskInfo.inputFiles.size());
+            for (Map.Entry<String, InputFileInfo> entry : taskInfo.inputFiles.entrySet()) {
+                output.writeInt(strings.indexOf(entry.getKey()));
+                output.writeByte(entry.getValue().type);
+                output.writeLong(entry.getValue().length);
+                output.writeLong(entry.getValue().timestamp);
+                byte[] hash = entry.getValue().hash;
+                if (hash == null) {
+                    output.writeByte(0);
+                } else {
+                    output.writeByte(hash.length);
+                    output.write(hash);
+                }
+            }
+            output.writeInt(taskInfo.outputFiles.size());
+            for (Map.Entry<File, OutputFileInfo> entry : taskInfo.outputFiles.entrySet()) {
+                output.writeInt(strings.indexOf(entry.getKey().getPath()));
+                writeOutputFileInfo(output, entry.getValue());
+            }
+        }
+
+        private OutputFileInfo readOutputFileInfo(DataInputStream input) throws IOException {
+            byte type = input.readByte();
+            if (type == NONE) {
+                return null;
+            }
+            return new OutputFileInfo((byte) (type - 1), input.readBoolean());
+        }
+
+        private void writeOutputFileInfo(DataOutputStream output, OutputFileInfo fileInfo) throws IOException {
+            if (fileInfo == null) {
+                output.writeByte(NONE);
+                return;
+            }
+            output.writeByte(fileInfo.type + 1);
+            output.writeBoolean(fileInfo.empty);
+        }
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+        private final List<String> values = new ArrayList<String>();
+
+        public int indexOf(String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = values.size();
+                indexes.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+    }
 }
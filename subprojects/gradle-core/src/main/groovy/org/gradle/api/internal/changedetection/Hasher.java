@@ -16,7 +16,17 @@
 package org.gradle.api.internal.changedetection;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 
 public interface Hasher {
     byte[] hash(File file);
+
+    /**
+     * Calculates the hashes of the given files.
+     *
+     * @param files The files to hash. Each file must be a regular file.
+     * @return The hash of each file.
+     */
+    Map<File, byte[]> hash(Collection<File> files);
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link Hasher} which hashes a collection of files concurrently, using a bounded pool of threads. When all threads
+ * are busy, the calling thread hashes the file itself. Idle threads are discarded.
+ */
+public class ParallelHasher implements Hasher {
+    private final Hasher hasher;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelHasher(Hasher hasher) {
+        this(hasher, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelHasher(Hasher hasher, int threadCount) {
+        this.hasher = hasher;
+        executor = new ThreadPoolExecutor(0, threadCount, 10, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new HasherThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public byte[] hash(File file) {
+        return hasher.hash(file);
+    }
+
+    public Map<File, byte[]> hash(Collection<File> files) {
+        if (files.size() < 2) {
+            return hasher.hash(files);
+        }
+
+        Map<File, Future<byte[]>> futures = new LinkedHashMap<File, Future<byte[]>>();
+        for (final File file : files) {
+            futures.put(file, executor.submit(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    return hasher.hash(file);
+                }
+            }));
+        }
+
+        Map<File, byte[]> hashes = new HashMap<File, byte[]>();
+        for (Map.Entry<File, Future<byte[]>> entry : futures.entrySet()) {
+            hashes.put(entry.getKey(), getResult(entry.getValue()));
+        }
+        return hashes;
+    }
+
+    private byte[] getResult(Future<byte[]> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    // Keep waiting, and restore the interrupt once the result is available
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new GradleException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class HasherThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("File hasher %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
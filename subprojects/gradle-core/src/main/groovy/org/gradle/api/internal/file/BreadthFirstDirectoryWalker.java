@@ -15,6 +15,7 @@
  */
 package org.gradle.api.internal.file;
 
+import org.gradle.api.GradleException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
@@ -22,6 +23,7 @@ import org.gradle.api.file.RelativePath;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.api.tasks.util.RelativePathSpec;
 import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +31,9 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Directory walker supporting {@link Spec}s for includes and excludes.
@@ -39,13 +43,24 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * A file or directory will only be visited if it matches all includes and no
  * excludes.
  *
+ * When the spec can be evaluated using the relative path only, as is the case for a {@link PatternSet} which
+ * contains only include and exclude patterns, the visit details for a file are created only once the file has been
+ * accepted. Such a walker can also scan directories in parallel, see {@link #parallel(Executor)}.
+ *
  * @author Steve Appling
  */
 public class BreadthFirstDirectoryWalker implements DirectoryWalker {
+    static final int MAX_PREFETCHED_ENTRIES = 10000;
     private static Logger logger = LoggerFactory.getLogger(BreadthFirstDirectoryWalker.class);
+    private static final Executor SHARED_EXECUTOR = new ThreadPoolExecutor(0,
+            Runtime.getRuntime().availableProcessors(), 10, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ScannerThreadFactory(), new ThreadPoolExecutor.DiscardPolicy());
 
     private FileVisitor visitor;
     private Spec<FileTreeElement> spec;
+    private Spec<? super RelativePath> pathSpec;
+    private Executor executor;
+    private final AtomicInteger prefetchedEntries = new AtomicInteger();
 
     public BreadthFirstDirectoryWalker(FileVisitor visitor) {
         spec = Specs.satisfyAll();
@@ -54,6 +69,26 @@ public class BreadthFirstDirectoryWalker implements DirectoryWalker {
 
     public BreadthFirstDirectoryWalker match(PatternSet patternSet) {
         spec = patternSet.getAsSpec();
+        pathSpec = spec instanceof RelativePathSpec ? ((RelativePathSpec) spec).getPathSpec() : null;
+        return this;
+    }
+
+    /**
+     * Scans directories in parallel using a shared pool of threads.
+     */
+    public BreadthFirstDirectoryWalker parallel() {
+        return parallel(SHARED_EXECUTOR);
+    }
+
+    /**
+     * Scans directories in parallel using the given executor. The visitor is still notified from the thread which
+     * calls {@link #start(java.io.File)}, in the same order as when the directories are scanned serially. Directories
+     * are only scanned in parallel when the spec can be evaluated using the relative path only, as other specs may
+     * not be safe to call from multiple threads. A scan which the executor rejects is performed by the calling thread
+     * when it is required.
+     */
+    public BreadthFirstDirectoryWalker parallel(Executor executor) {
+        this.executor = executor;
         return this;
     }
 
@@ -66,12 +101,13 @@ public class BreadthFirstDirectoryWalker implements DirectoryWalker {
     public void start(File startFile) {
         File root = GFileUtils.canonicalise(startFile);
         AtomicBoolean stopFlag = new AtomicBoolean();
+        prefetchedEntries.set(0);
         if (root.exists()) {
             if (root.isFile()) {
                 processSingleFile(root, stopFlag);
             } else {
                // need to get appropriate start dirs from the includes
-               walkDir(root, new RelativePath(false), stopFlag);
+               walkDir(new DirectoryScan(root, new RelativePath(false), null, stopFlag), stopFlag);
             }
         } else {
             logger.info("file or directory '"+startFile.toString()+"', not found");
@@ -86,28 +122,24 @@ public class BreadthFirstDirectoryWalker implements DirectoryWalker {
         }
     }
 
-    private void walkDir(File file, RelativePath path, AtomicBoolean stopFlag) {
-        File[] children = file.listFiles();
-        List<FileVisitDetailsImpl> dirs = new ArrayList<FileVisitDetailsImpl>();
-        for (int i = 0; !stopFlag.get() && i < children.length; i++) {
-            File child = children[i];
-            boolean isFile = child.isFile();
-            RelativePath childPath = new RelativePath(isFile, path, child.getName());
-            FileVisitDetailsImpl details = new FileVisitDetailsImpl(child, childPath, stopFlag);
-            if (isAllowed(details)) {
-                if (isFile) {
-                    visitor.visitFile(details);
-                } else {
-                    dirs.add(details);
-                }
-            }
+    private void walkDir(DirectoryScan scan, AtomicBoolean stopFlag) {
+        scan.await();
+        prefetchedEntries.addAndGet(-scan.getEntryCount());
+
+        // start scanning the child dirs while the files are visited
+        for (DirectoryScan dir : scan.dirs) {
+            dir.submit();
+        }
+
+        for (int i = 0; !stopFlag.get() && i < scan.files.size(); i++) {
+            visitor.visitFile(scan.files.get(i));
         }
 
         // now handle dirs
-        for (int i = 0; !stopFlag.get() && i < dirs.size(); i++) {
-            FileVisitDetailsImpl dir = dirs.get(i);
-            visitor.visitDir(dir);
-            walkDir(dir.getFile(), dir.getRelativePath(), stopFlag);
+        for (int i = 0; !stopFlag.get() && i < scan.dirs.size(); i++) {
+            DirectoryScan dir = scan.dirs.get(i);
+            visitor.visitDir(dir.details);
+            walkDir(dir, stopFlag);
         }
     }
 
@@ -115,6 +147,101 @@ public class BreadthFirstDirectoryWalker implements DirectoryWalker {
         return spec.isSatisfiedBy(element);
     }
 
+    /**
+     * Lists the children of a directory and selects those which are to be visited.
+     */
+    private class DirectoryScan implements Runnable {
+        private final File dir;
+        private final RelativePath path;
+        private final FileVisitDetailsImpl details;
+        private final AtomicBoolean stopFlag;
+        private final FutureTask<Object> task = new FutureTask<Object>(this, null);
+        private final AtomicBoolean submitted = new AtomicBoolean();
+        private final List<FileVisitDetailsImpl> files = new ArrayList<FileVisitDetailsImpl>();
+        private final List<DirectoryScan> dirs = new ArrayList<DirectoryScan>();
+
+        private DirectoryScan(File dir, RelativePath path, FileVisitDetailsImpl details, AtomicBoolean stopFlag) {
+            this.dir = dir;
+            this.path = path;
+            this.details = details;
+            this.stopFlag = stopFlag;
+        }
+
+        public int getEntryCount() {
+            return files.size() + dirs.size();
+        }
+
+        /**
+         * Starts scanning this directory in the background, if it has not already been started.
+         */
+        public void submit() {
+            if (executor != null && pathSpec != null && submitted.compareAndSet(false, true)) {
+                executor.execute(task);
+            }
+        }
+
+        /**
+         * Waits for this directory to be scanned, scanning it in the calling thread if it has not been started.
+         */
+        public void await() {
+            task.run();
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GradleException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new GradleException(e.getCause());
+            }
+        }
+
+        public void run() {
+            if (stopFlag.get()) {
+                return;
+            }
+            File[] children = dir.listFiles();
+            if (children == null) {
+                logger.info("could not list the contents of directory '" + dir + "'");
+                return;
+            }
+            for (int i = 0; !stopFlag.get() && i < children.length; i++) {
+                File child = children[i];
+                boolean isFile = child.isFile();
+                RelativePath childPath = new RelativePath(isFile, path, child.getName());
+                FileVisitDetailsImpl childDetails;
+                if (pathSpec != null) {
+                    if (!pathSpec.isSatisfiedBy(childPath)) {
+                        continue;
+                    }
+                    childDetails = new FileVisitDetailsImpl(child, childPath, stopFlag);
+                } else {
+                    childDetails = new FileVisitDetailsImpl(child, childPath, stopFlag);
+                    if (!isAllowed(childDetails)) {
+                        continue;
+                    }
+                }
+                if (isFile) {
+                    files.add(childDetails);
+                } else {
+                    dirs.add(new DirectoryScan(child, childPath, childDetails, stopFlag));
+                }
+            }
+
+            // Scan ahead, unless there are already plenty of entries waiting to be visited
+            if (prefetchedEntries.addAndGet(getEntryCount()) < MAX_PREFETCHED_ENTRIES) {
+                for (DirectoryScan child : dirs) {
+                    child.submit();
+                }
+            }
+        }
+    }
+
     private static class FileVisitDetailsImpl extends DefaultFileTreeElement implements FileVisitDetails {
         private final AtomicBoolean stop;
 
@@ -127,4 +254,14 @@ public class BreadthFirstDirectoryWalker implements DirectoryWalker {
             stop.set(true);
         }
     }
+
+    private static class ScannerThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Directory scanner %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
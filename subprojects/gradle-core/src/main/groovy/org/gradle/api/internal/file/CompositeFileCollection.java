@@ -113,7 +113,7 @@ public abstract class CompositeFileCollection extends AbstractFileCollection {
         }
     }
 
-    protected List<? extends FileCollection> getSourceCollections() {
+    public List<? extends FileCollection> getSourceCollections() {
         List<FileCollection> collections = new ArrayList<FileCollection>();
         addSourceCollections(collections);
         return collections;
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.specs.Spec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches a path against a set of patterns in a single pass over the segments of the path. A path is satisfied when
+ * it matches any of the patterns.
+ *
+ * The patterns are compiled into a trie of pattern steps, so that patterns with a common prefix share the steps for
+ * that prefix. Literal steps are looked up by name, and wildcard steps are matched using their precompiled regular
+ * expression. While the segments of a path are consumed, the matcher tracks the set of nodes which match the path so
+ * far. A '**' step is a node which consumes any number of segments.
+ *
+ * Patterns of the form '**&#47;name' match files only. When partialMatchDirs is true, a directory is also satisfied
+ * when some pattern may match a path below it.
+ */
+public class CompiledPatternMatcher implements Spec<RelativePath> {
+    private final boolean partialMatchDirs;
+    private final boolean caseSensitive;
+    private final Node root = new Node(false);
+
+    public CompiledPatternMatcher(boolean partialMatchDirs, boolean caseSensitive) {
+        this.partialMatchDirs = partialMatchDirs;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * Adds a pattern to this matcher.
+     *
+     * @param matchesDirs false if the pattern should only match files.
+     * @param patternParts The steps of the pattern.
+     */
+    public void addPattern(boolean matchesDirs, String... patternParts) {
+        Node node = root;
+        for (int i = 0; i < patternParts.length; i++) {
+            node = node.addChild(patternParts[i], i == patternParts.length - 1);
+        }
+        node.matchesFiles = true;
+        node.matchesDirs |= matchesDirs;
+    }
+
+    public boolean isSatisfiedBy(RelativePath path) {
+        List<Node> current = new ArrayList<Node>();
+        List<Node> next = new ArrayList<Node>();
+        root.addTo(current);
+
+        String[] segments = path.getSegments();
+        for (int i = 0; i < segments.length && !current.isEmpty(); i++) {
+            String segment = segments[i];
+            boolean isLast = i == segments.length - 1;
+            for (int j = 0; j < current.size(); j++) {
+                current.get(j).advance(segment, isLast && path.isFile(), next);
+            }
+            List<Node> tmp = current;
+            current = next;
+            next = tmp;
+            next.clear();
+        }
+
+        boolean isFile = path.isFile();
+        for (int i = 0; i < current.size(); i++) {
+            Node node = current.get(i);
+            if (isFile ? node.matchesFiles : node.matchesDirs) {
+                return true;
+            }
+        }
+        return !isFile && partialMatchDirs && !current.isEmpty();
+    }
+
+    private class Node {
+        private final boolean greedy;
+        private Map<String, Node> literalChildren;
+        private Map<String, WildcardChild> wildcardChildren;
+        private Node greedyChild;
+        private boolean matchesFiles;
+        private boolean matchesDirs;
+
+        private Node(boolean greedy) {
+            this.greedy = greedy;
+        }
+
+        private Node addChild(String part, boolean isLast) {
+            if (part.equals("**")) {
+                if (greedy) {
+                    // '**/**' is the same as '**'
+                    return this;
+                }
+                if (greedyChild == null) {
+                    greedyChild = new Node(true);
+                }
+                return greedyChild;
+            }
+            if (caseSensitive && part.indexOf('*') < 0 && part.indexOf('?') < 0) {
+                if (literalChildren == null) {
+                    literalChildren = new HashMap<String, Node>();
+                }
+                Node child = literalChildren.get(part);
+                if (child == null) {
+                    child = new Node(false);
+                    literalChildren.put(part, child);
+                }
+                return child;
+            }
+            if (wildcardChildren == null) {
+                wildcardChildren = new LinkedHashMap<String, WildcardChild>();
+            }
+            WildcardChild child = wildcardChildren.get(part);
+            if (child == null) {
+                child = new WildcardChild(PatternStepFactory.getStep(part, isLast, caseSensitive), new Node(false));
+                wildcardChildren.put(part, child);
+            }
+            return child.node;
+        }
+
+        /**
+         * Adds this node to the given set of nodes. Also adds the nodes which can be reached from this node without
+         * consuming a segment, that is, the '**' step which follows this node.
+         */
+        private void addTo(List<Node> nodes) {
+            if (nodes.contains(this)) {
+                return;
+            }
+            nodes.add(this);
+            if (greedyChild != null) {
+                greedyChild.addTo(nodes);
+            }
+        }
+
+        /**
+         * Adds the nodes which match the given segment, when following this node, to the given set of nodes.
+         */
+        private void advance(String segment, boolean isFile, List<Node> nodes) {
+            if (greedy) {
+                addTo(nodes);
+            }
+            if (literalChildren != null) {
+                Node child = literalChildren.get(segment);
+                if (child != null) {
+                    child.addTo(nodes);
+                }
+            }
+            if (wildcardChildren != null) {
+                for (WildcardChild child : wildcardChildren.values()) {
+                    if (child.step.matches(segment, isFile)) {
+                        child.node.addTo(nodes);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class WildcardChild {
+        private final PatternStep step;
+        private final Node node;
+
+        private WildcardChild(PatternStep step, Node node) {
+            this.step = step;
+            this.node = node;
+        }
+    }
+}
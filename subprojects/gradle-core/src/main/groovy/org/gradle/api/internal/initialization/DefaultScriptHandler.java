@@ -23,8 +23,6 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.util.ConfigureUtil;
 import groovy.lang.Closure;
 
-import java.net.URLClassLoader;
-import java.net.URL;
 import java.net.MalformedURLException;
 import java.io.File;
 
@@ -32,7 +30,7 @@ public class DefaultScriptHandler implements ScriptHandler, ScriptClassLoaderPro
     private final RepositoryHandler repositoryHandler;
     private final DependencyHandler dependencyHandler;
     private final ConfigurationContainer configContainer;
-    private final ProjectClassLoader classLoader;
+    private final ScriptClassLoader classLoader;
     private final Configuration classpathConfiguration;
 
     public DefaultScriptHandler(RepositoryHandler repositoryHandler, DependencyHandler dependencyHandler,
@@ -40,7 +38,7 @@ public class DefaultScriptHandler implements ScriptHandler, ScriptClassLoaderPro
         this.repositoryHandler = repositoryHandler;
         this.dependencyHandler = dependencyHandler;
         this.configContainer = configContainer;
-        this.classLoader = new ProjectClassLoader(parentClassLoader);
+        this.classLoader = new ScriptClassLoader(parentClassLoader);
         classpathConfiguration = configContainer.add(CLASSPATH_CONFIGURATION);
     }
 
@@ -77,15 +75,4 @@ public class DefaultScriptHandler implements ScriptHandler, ScriptClassLoaderPro
             }
         }
     }
-
-    private static class ProjectClassLoader extends URLClassLoader {
-        public ProjectClassLoader(ClassLoader parentClassLoader) {
-            super(new URL[0], parentClassLoader);
-        }
-
-        @Override
-        protected void addURL(URL url) {
-            super.addURL(url);
-        }
-    }
 }
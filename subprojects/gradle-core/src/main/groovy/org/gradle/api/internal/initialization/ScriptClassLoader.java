@@ -0,0 +1,48 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.initialization;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * The {@code ClassLoader} for the classpath declared by a script. Until a URL is added, a {@code ScriptClassLoader}
+ * loads exactly the same classes as its parent.
+ */
+public class ScriptClassLoader extends URLClassLoader {
+    public ScriptClassLoader(ClassLoader parentClassLoader) {
+        super(new URL[0], parentClassLoader);
+    }
+
+    @Override
+    public void addURL(URL url) {
+        super.addURL(url);
+    }
+
+    /**
+     * Returns the nearest ancestor of the given {@code ClassLoader}, including the {@code ClassLoader} itself, which
+     * loads the same classes as the given {@code ClassLoader}.
+     */
+    public static ClassLoader getEffectiveClassLoader(ClassLoader classLoader) {
+        ClassLoader effectiveClassLoader = classLoader;
+        while (effectiveClassLoader instanceof ScriptClassLoader
+                && ((ScriptClassLoader) effectiveClassLoader).getURLs().length == 0
+                && effectiveClassLoader.getParent() != null) {
+            effectiveClassLoader = effectiveClassLoader.getParent();
+        }
+        return effectiveClassLoader;
+    }
+}
@@ -16,6 +16,8 @@
 package org.gradle.api.internal.project;
 
 import org.apache.ivy.core.module.descriptor.ModuleDescriptor;
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
 import org.gradle.StartParameter;
 import org.gradle.api.artifacts.dsl.RepositoryHandlerFactory;
 import org.gradle.api.internal.AsmBackedClassGenerator;
@@ -34,13 +36,14 @@ import org.gradle.api.internal.artifacts.ivyservice.moduleconverter.dependencies
 import org.gradle.api.internal.changedetection.CachingHasher;
 import org.gradle.api.internal.changedetection.DefaultHasher;
 import org.gradle.api.internal.changedetection.DefaultTaskArtifactStateRepository;
+import org.gradle.api.internal.changedetection.ParallelHasher;
 import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.tasks.DefaultTaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.SkipTaskExecuter;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.cache.CacheRepository;
-import org.gradle.cache.DefaultCacheRepository;
+import org.gradle.cache.CacheRepositoryFactory;
 import org.gradle.configuration.BuildScriptProcessor;
 import org.gradle.configuration.DefaultProjectEvaluator;
 import org.gradle.configuration.ProjectEvaluator;
@@ -49,6 +52,7 @@ import org.gradle.listener.ListenerManager;
 import org.gradle.listener.DefaultListenerManager;
 import org.gradle.util.WrapUtil;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,12 +64,18 @@ public class DefaultServiceRegistryFactory extends AbstractServiceRegistry imple
         this(startParameter, new DefaultListenerManager());
     }
 
-    public DefaultServiceRegistryFactory(final StartParameter startParameter, ListenerManager listenerManager) {
-        final Map<String, ModuleDescriptor> clientModuleRegistry = new HashMap<String, ModuleDescriptor>();
+    public DefaultServiceRegistryFactory(StartParameter startParameter, ListenerManager listenerManager) {
+        this(new GlobalServicesRegistry(), startParameter, listenerManager);
+    }
+
+    public DefaultServiceRegistryFactory(ServiceRegistry parent, final StartParameter startParameter,
+                                         ListenerManager listenerManager) {
+        super(parent);
+        final Map<String, ModuleDescriptor> clientModuleRegistry = Collections.synchronizedMap(
+                new HashMap<String, ModuleDescriptor>());
 
         add(ListenerManager.class, listenerManager);
         add(ImportsReader.class, new ImportsReader(startParameter.getDefaultImportsFile()));
-        add(ClassGenerator.class, new AsmBackedClassGenerator());
         add(StandardOutputRedirector.class, new DefaultStandardOutputRedirector());
         add(PublishArtifactFactory.class, new DefaultPublishArtifactFactory());
 
@@ -88,8 +98,21 @@ public class DefaultServiceRegistryFactory extends AbstractServiceRegistry imple
 
         add(new Service(CacheRepository.class) {
             protected Object create() {
-                return new DefaultCacheRepository(startParameter.getGradleUserHomeDir(),
-                        startParameter.getCacheUsage());
+                final CacheRepository cacheRepository = get(CacheRepositoryFactory.class).create(
+                        startParameter.getGradleUserHomeDir(), startParameter.getCacheUsage());
+                get(ListenerManager.class).addListener(new BuildAdapter() {
+                    @Override
+                    public void buildFinished(BuildResult result) {
+                        cacheRepository.close();
+                    }
+                });
+                return cacheRepository;
+            }
+        });
+
+        add(new Service(ClassGenerator.class) {
+            protected Object create() {
+                return new AsmBackedClassGenerator(get(CacheRepository.class));
             }
         });
 
@@ -181,6 +204,14 @@ public class DefaultServiceRegistryFactory extends AbstractServiceRegistry imple
                         get(ExternalModuleDependencyDescriptorFactory.class));
                 clientModuleDescriptorFactory.setDependencyDescriptorFactory(dependencyDescriptorFactoryDelegate);
 
+                final ArtifactDownloader artifactDownloader = new ArtifactDownloader();
+                get(ListenerManager.class).addListener(new BuildAdapter() {
+                    @Override
+                    public void buildFinished(BuildResult result) {
+                        artifactDownloader.stop();
+                    }
+                });
+
                 return new DefaultConfigurationContainerFactory(clientModuleRegistry,
                         new DefaultSettingsConverter(),
                         get(ResolveModuleDescriptorConverter.class),
@@ -188,7 +219,9 @@ public class DefaultServiceRegistryFactory extends AbstractServiceRegistry imple
                         get(IvyFileConverter.class),
                         new DefaultIvyFactory(),
                         new SelfResolvingDependencyResolver(new DefaultIvyDependencyResolver(
-                                new DefaultIvyReportConverter(dependencyDescriptorFactoryDelegate))), new DefaultIvyDependencyPublisher(new DefaultPublishOptionsFactory()));
+                                new DefaultIvyReportConverter(dependencyDescriptorFactoryDelegate,
+                                        artifactDownloader))), new DefaultIvyDependencyPublisher(new DefaultPublishOptionsFactory()),
+                        new ResolvedConfigurationCache(get(CacheRepository.class)));
             }
         });
 
@@ -222,7 +255,7 @@ public class DefaultServiceRegistryFactory extends AbstractServiceRegistry imple
                 return new DefaultTaskArtifactStateRepository(
                         get(CacheRepository.class),
                         new CachingHasher(
-                                new DefaultHasher(),
+                                new ParallelHasher(new DefaultHasher()),
                                 get(CacheRepository.class)));
             }
         });
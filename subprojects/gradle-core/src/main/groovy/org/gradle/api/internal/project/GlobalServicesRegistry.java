@@ -0,0 +1,32 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.project;
+
+import org.gradle.cache.CacheRepositoryFactory;
+import org.gradle.cache.DefaultCacheRepositoryFactory;
+
+/**
+ * Contains the services which are shared by all builds run in the same process.
+ */
+public class GlobalServicesRegistry extends AbstractServiceRegistry {
+    public GlobalServicesRegistry() {
+        this(new DefaultCacheRepositoryFactory());
+    }
+
+    public GlobalServicesRegistry(CacheRepositoryFactory cacheRepositoryFactory) {
+        add(CacheRepositoryFactory.class, cacheRepositoryFactory);
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.project;
 
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ConfigurationContainer;
 import org.gradle.api.artifacts.Module;
@@ -37,6 +39,7 @@ import org.gradle.api.internal.initialization.ScriptClassLoaderProvider;
 import org.gradle.api.internal.plugins.DefaultConvention;
 import org.gradle.api.internal.plugins.DefaultPluginRegistry;
 import org.gradle.api.internal.plugins.PluginRegistry;
+import org.gradle.api.testing.execution.fork.pool.ForkPool;
 import org.gradle.execution.DefaultTaskGraphExecuter;
 import org.gradle.execution.TaskGraphExecuter;
 import org.gradle.listener.ListenerManager;
@@ -74,7 +77,8 @@ public class GradleInternalServiceRegistry extends AbstractServiceRegistry imple
         add(new Service(TaskGraphExecuter.class) {
             @Override
             protected Object create() {
-                return new DefaultTaskGraphExecuter(get(ListenerManager.class));
+                return new DefaultTaskGraphExecuter(get(ListenerManager.class),
+                        gradle.getStartParameter().getParallelThreadCount());
             }
         });
 
@@ -111,6 +115,21 @@ public class GradleInternalServiceRegistry extends AbstractServiceRegistry imple
                 return new DefaultInternalRepository(gradle, get(PublishModuleDescriptorConverter.class));
             }
         });
+
+        add(new Service(ForkPool.class) {
+            @Override
+            protected Object create() {
+                final ForkPool forkPool = new ForkPool(Runtime.getRuntime().availableProcessors());
+                forkPool.start();
+                get(ListenerManager.class).addListener(new BuildAdapter() {
+                    @Override
+                    public void buildFinished(BuildResult result) {
+                        forkPool.stop();
+                    }
+                });
+                return forkPool;
+            }
+        });
     }
 
     public ServiceRegistryFactory createFor(Object domainObject) {
@@ -38,22 +38,12 @@ public class ProjectFactory implements IProjectFactory {
     }
 
     public DefaultProject createProject(ProjectDescriptor projectDescriptor, ProjectInternal parent, GradleInternal gradle) {
-        File buildFile = projectDescriptor.getBuildFile();
-        ScriptSource source;
-        if (embeddedScript != null) {
-            source = embeddedScript;
-        } else if (!buildFile.exists()) {
-            source = new StringScriptSource("empty build file", "");
-        } else {
-            source = new FileScriptSource("build file", buildFile);
-        }
-
         DefaultProject project = new DefaultProject(
                 projectDescriptor.getName(),
                 parent,
                 projectDescriptor.getProjectDir(),
                 projectDescriptor.getBuildFile(),
-                source,
+                createBuildScriptSource(projectDescriptor),
                 gradle,
                 gradle.getServiceRegistryFactory());
 
@@ -64,4 +54,18 @@ public class ProjectFactory implements IProjectFactory {
 
         return project;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the build script for the project with the given descriptor.
+     */
+    public ScriptSource createBuildScriptSource(ProjectDescriptor projectDescriptor) {
+        File buildFile = projectDescriptor.getBuildFile();
+        if (embeddedScript != null) {
+            return embeddedScript;
+        } else if (!buildFile.exists()) {
+            return new StringScriptSource("empty build file", "");
+        } else {
+            return new FileScriptSource("build file", buildFile);
+        }
+    }
+}
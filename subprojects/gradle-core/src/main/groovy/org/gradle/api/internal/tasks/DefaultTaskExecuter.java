@@ -25,6 +25,7 @@ import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.logging.StandardOutputLogging;
 import org.gradle.api.tasks.StopActionException;
 import org.gradle.api.tasks.StopExecutionException;
 
@@ -44,6 +45,8 @@ public class DefaultTaskExecuter implements TaskExecuter {
             return new DefaultTaskExecutionResult(task, failure, null);
         } finally {
             state.setExecuting(false);
+            // The output of the task is written before the task is reported as complete
+            StandardOutputLogging.flushDispatcher();
             listener.afterActions(task);
         }
     }
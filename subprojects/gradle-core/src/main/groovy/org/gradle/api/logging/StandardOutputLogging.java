@@ -15,8 +15,11 @@
  */
 package org.gradle.api.logging;
 
+import org.gradle.logging.AsynchronousLogDispatcher;
 import org.gradle.logging.StandardOutputLoggingAdapter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 
 /**
@@ -67,6 +70,25 @@ public class StandardOutputLogging {
     public static final PrintStream DEFAULT_OUT = System.out;
     public static final PrintStream DEFAULT_ERR = System.err;
 
+    private static volatile AsynchronousLogDispatcher dispatcher;
+    private static ThreadLocalPrintStream threadLocalOut;
+    private static ThreadLocalPrintStream threadLocalErr;
+    private static int threadLocalRedirectionCount;
+
+    /**
+     * Sets the dispatcher which redirected output is written with from now on. When no dispatcher is set, output is
+     * written on the thread which produced it.
+     *
+     * @param dispatcher The dispatcher. May be null.
+     */
+    public static void setDispatcher(AsynchronousLogDispatcher dispatcher) {
+        StandardOutputLogging.dispatcher = dispatcher;
+    }
+
+    public static AsynchronousLogDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Redirects the standard out to the Gradle logging.  The System.out is redirected to specified level.
      * System.err is always redirected to the ERROR level.
@@ -75,7 +97,9 @@ public class StandardOutputLogging {
      */
     public static void on(LogLevel outLogLevel) {
         getOutAdapter().setLevel(outLogLevel);
+        getOutAdapter().setDispatcher(dispatcher);
         getErrAdapter().setLevel(LogLevel.ERROR);
+        getErrAdapter().setDispatcher(dispatcher);
         redirect(OUT_LOGGING_STREAM.get(), ERR_LOGGING_STREAM.get());
     }
 
@@ -86,7 +110,8 @@ public class StandardOutputLogging {
      */
     public static void onOut(LogLevel outLogLevel) {
         getOutAdapter().setLevel(outLogLevel);
-        System.setOut(OUT_LOGGING_STREAM.get());
+        getOutAdapter().setDispatcher(dispatcher);
+        setOut(OUT_LOGGING_STREAM.get());
     }
 
     /**
@@ -96,7 +121,8 @@ public class StandardOutputLogging {
      */
     public static void onErr(LogLevel errLogLevel) {
         getErrAdapter().setLevel(errLogLevel);
-        System.setErr(ERR_LOGGING_STREAM.get());
+        getErrAdapter().setDispatcher(dispatcher);
+        setErr(ERR_LOGGING_STREAM.get());
     }
 
     public static void flush() {
@@ -104,6 +130,17 @@ public class StandardOutputLogging {
         ERR_LOGGING_STREAM.get().flush();
     }
 
+    /**
+     * Blocks until the output which has been handed to the dispatcher has been written. Does nothing when no
+     * dispatcher is set.
+     */
+    public static void flushDispatcher() {
+        AsynchronousLogDispatcher dispatcher = StandardOutputLogging.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.flush();
+        }
+    }
+
     /**
      * Sets System.err and System.out to the values they had before Gradle has been started.
      */
@@ -115,20 +152,23 @@ public class StandardOutputLogging {
      * Sets System.out to the values it had before Gradle has been started.
      */
     public static void offOut() {
-        System.setOut(DEFAULT_OUT);
+        setOut(DEFAULT_OUT);
     }
 
     /**
      * Sets System.err to the values it had before Gradle has been started.
      */
     public static void offErr() {
-        System.setErr(DEFAULT_ERR);
+        setErr(DEFAULT_ERR);
     }
 
     /**
      * Returns the current values for System.out and Sytem.err.
      */
-    public static StandardOutputState getStateSnapshot() {
+    public static synchronized StandardOutputState getStateSnapshot() {
+        if (threadLocalOut != null) {
+            return new StandardOutputState(threadLocalOut.getTarget(), threadLocalErr.getTarget());
+        }
         return new StandardOutputState(System.out, System.err);
     }
 
@@ -139,8 +179,108 @@ public class StandardOutputLogging {
         redirect(state.getOutStream(), state.getErrStream());
     }
 
+    /**
+     * Makes the redirection of System.out and System.err specific to each thread, until {@link
+     * #disableThreadLocalRedirection()} is called. System.out and System.err are replaced with streams which write to
+     * the target of the calling thread. A thread which has not redirected them writes to the streams which were in use
+     * when this method was called. Calls to this method may be nested.
+     */
+    public static synchronized void enableThreadLocalRedirection() {
+        if (threadLocalRedirectionCount++ > 0) {
+            return;
+        }
+        threadLocalOut = new ThreadLocalPrintStream(System.out);
+        threadLocalErr = new ThreadLocalPrintStream(System.err);
+        System.setOut(threadLocalOut);
+        System.setErr(threadLocalErr);
+    }
+
+    /**
+     * Ends the redirection started by {@link #enableThreadLocalRedirection()}. System.out and System.err are set to the
+     * targets of the calling thread.
+     */
+    public static synchronized void disableThreadLocalRedirection() {
+        if (threadLocalRedirectionCount == 0) {
+            throw new IllegalStateException("thread local redirection is not enabled!");
+        }
+        if (--threadLocalRedirectionCount > 0) {
+            return;
+        }
+        PrintStream out = threadLocalOut.getTarget();
+        PrintStream err = threadLocalErr.getTarget();
+        threadLocalOut.flush();
+        threadLocalErr.flush();
+        threadLocalOut = null;
+        threadLocalErr = null;
+        System.setOut(out);
+        System.setErr(err);
+    }
+
     private static void redirect(PrintStream outStream, PrintStream errStream) {
-        System.setOut(outStream);
-        System.setErr(errStream);
+        setOut(outStream);
+        setErr(errStream);
+    }
+
+    private static synchronized void setOut(PrintStream outStream) {
+        if (threadLocalOut != null) {
+            threadLocalOut.setTarget(outStream);
+        } else {
+            System.setOut(outStream);
+        }
+    }
+
+    private static synchronized void setErr(PrintStream errStream) {
+        if (threadLocalErr != null) {
+            threadLocalErr.setTarget(errStream);
+        } else {
+            System.setErr(errStream);
+        }
+    }
+
+    /**
+     * A PrintStream which writes to a target stream specific to the current thread.
+     */
+    private static class ThreadLocalPrintStream extends PrintStream {
+        private final ThreadLocal<PrintStream> target;
+
+        private ThreadLocalPrintStream(final PrintStream defaultTarget) {
+            this(new ThreadLocal<PrintStream>() {
+                @Override
+                protected PrintStream initialValue() {
+                    return defaultTarget;
+                }
+            });
+        }
+
+        private ThreadLocalPrintStream(final ThreadLocal<PrintStream> target) {
+            super(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target.get().write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target.get().write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.get().flush();
+                }
+            });
+            this.target = target;
+        }
+
+        public PrintStream getTarget() {
+            return target.get();
+        }
+
+        public void setTarget(PrintStream stream) {
+            // A thread which redirects to this stream is redirecting to its own target
+            if (stream != this) {
+                target.set(stream);
+            }
+        }
     }
 }
@@ -42,6 +42,8 @@ public class NativeTest extends AbstractTestTask {
     private Map<String, ReportConfig> reportConfigs;
 
     private int maximumNumberOfForks = 4;
+    private boolean softRefork = true;
+    private boolean reuseForks;
 
     public NativeTest() {
         super();
@@ -126,4 +128,27 @@ public class NativeTest extends AbstractTestTask {
 
         this.maximumNumberOfForks = maximumNumberOfForks;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns whether a fork which needs to be reforked replaces its sandbox classloader instead of being restarted.
+     */
+    public boolean isSoftRefork() {
+        return softRefork;
+    }
+
+    public void setSoftRefork(boolean softRefork) {
+        this.softRefork = softRefork;
+    }
+
+    /**
+     * Returns whether the forks are leased from a pool of fork processes which are kept alive for the rest of the
+     * build, so that later test tasks can reuse them.
+     */
+    public boolean isReuseForks() {
+        return reuseForks;
+    }
+
+    public void setReuseForks(boolean reuseForks) {
+        this.reuseForks = reuseForks;
+    }
+}
@@ -87,7 +87,7 @@ public class FileSet extends AbstractFileTree implements ConfigurableFileTree {
 
     public FileSet visit(FileVisitor visitor) {
         BreadthFirstDirectoryWalker walker = new BreadthFirstDirectoryWalker(visitor);
-        walker.match(patternSet).start(getDir());
+        walker.match(patternSet).parallel().start(getDir());
         return this;
     }
 
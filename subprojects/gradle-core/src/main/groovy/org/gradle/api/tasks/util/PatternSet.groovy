@@ -88,13 +88,18 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
     }
     
     public Spec<FileTreeElement> getAsSpec() {
+        if (!includeSpecs && !excludeSpecs) {
+            // Can be evaluated using the relative path only
+            return new RelativePathSpec(getAsPathSpec())
+        }
+
         Spec<FileTreeElement> includeSpec = Specs.satisfyAll()
 
         boolean hasIncludes = includes || includeSpecs
         if (hasIncludes) {
             List<Spec<FileTreeElement>> matchers = new ArrayList<Spec<FileTreeElement>>()
-            for (String include: includes) {
-                matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(true, caseSensitive, include)))
+            if (includes) {
+                matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternsMatcher(true, caseSensitive, includes)))
             }
             matchers.addAll(includeSpecs)
             includeSpec = new OrSpec<FileTreeElement>(matchers as Spec[])
@@ -107,8 +112,8 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         }
 
         List<Spec<FileTreeElement>> matchers = new ArrayList<Spec<FileTreeElement>>()
-        for (String exclude: allExcludes) {
-            matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(false, caseSensitive, exclude)))
+        if (allExcludes) {
+            matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternsMatcher(false, caseSensitive, allExcludes)))
         }
         matchers.addAll(excludeSpecs)
         Spec<FileTreeElement> excludeSpec = new NotSpec<FileTreeElement>(new OrSpec<FileTreeElement>(matchers as Spec[]))
@@ -120,6 +125,26 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         return new AndSpec<FileTreeElement>([includeSpec, excludeSpec] as Spec[])
     }
 
+    private Spec<RelativePath> getAsPathSpec() {
+        Spec<RelativePath> includeSpec = Specs.satisfyAll()
+        if (includes) {
+            includeSpec = PatternMatcherFactory.getPatternsMatcher(true, caseSensitive, includes)
+        }
+
+        Collection<String> allExcludes = excludes + globalExcludes
+        if (!allExcludes) {
+            return includeSpec
+        }
+
+        Spec<RelativePath> excludeSpec = new NotSpec<RelativePath>(PatternMatcherFactory.getPatternsMatcher(false, caseSensitive, allExcludes))
+
+        if (!includes) {
+            return excludeSpec
+        }
+
+        return new AndSpec<RelativePath>([includeSpec, excludeSpec] as Spec[])
+    }
+
     public Set<String> getIncludes() {
         includes
     }
@@ -209,7 +234,12 @@ class IntersectionPatternSet extends PatternSet {
     }
 
     def Spec<FileTreeElement> getAsSpec() {
-        return new AndSpec<FileTreeElement>([super.getAsSpec(), other.getAsSpec()] as Spec[])
+        Spec<FileTreeElement> spec = super.getAsSpec()
+        Spec<FileTreeElement> otherSpec = other.getAsSpec()
+        if (spec instanceof RelativePathSpec && otherSpec instanceof RelativePathSpec) {
+            return new RelativePathSpec(new AndSpec<RelativePath>([spec.pathSpec, otherSpec.pathSpec] as Spec[]))
+        }
+        return new AndSpec<FileTreeElement>([spec, otherSpec] as Spec[])
     }
 
     def addToAntBuilder(Object node, String childNodeName) {
@@ -19,13 +19,20 @@ import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.specs.Spec;
 
-class RelativePathSpec implements Spec<FileTreeElement> {
+/**
+ * A {@link Spec} which selects a {@link FileTreeElement} using its relative path only.
+ */
+public class RelativePathSpec implements Spec<FileTreeElement> {
     private final Spec<? super RelativePath> pathSpec;
 
     public RelativePathSpec(Spec<? super RelativePath> pathSpec) {
         this.pathSpec = pathSpec;
     }
 
+    public Spec<? super RelativePath> getPathSpec() {
+        return pathSpec;
+    }
+
     public boolean isSatisfiedBy(FileTreeElement element) {
         return pathSpec.isSatisfiedBy(element.getRelativePath());
     }
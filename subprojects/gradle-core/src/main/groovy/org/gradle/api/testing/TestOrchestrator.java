@@ -15,8 +15,10 @@
  */
 package org.gradle.api.testing;
 
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.testing.NativeTest;
 import org.gradle.api.testing.detection.TestDetectionOrchestrator;
+import org.gradle.api.testing.execution.Pipeline;
 import org.gradle.api.testing.execution.PipelinesManager;
 import org.gradle.api.testing.pipelinesplit.TestPipelineSplitOrchestrator;
 import org.gradle.api.testing.reporting.ReportsManager;
@@ -188,6 +190,18 @@ public class TestOrchestrator {
             }
         });
 
+        actions.add(new TestOrchestratorAction() {
+            public void execute(TestOrchestratorContext context) {
+                final PipelinesManager pipelinesManager = context.getPipelinesManager();
+
+                for (final Pipeline pipeline : pipelinesManager.getPipelines()) {
+                    if (pipeline.getFailure() != null) {
+                        throw new GradleException(pipeline.getFailure());
+                    }
+                }
+            }
+        });
+
         final Iterator<TestOrchestratorAction> actionsIterator = actions.iterator();
 
         while ( context.getKeepRunning().get() && actionsIterator.hasNext() ) {
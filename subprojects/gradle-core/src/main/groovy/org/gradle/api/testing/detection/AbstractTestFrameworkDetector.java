@@ -25,31 +25,50 @@ import org.gradle.api.file.FileVisitor;
 import org.gradle.api.testing.fabric.TestFrameworkDetector;
 import org.objectweb.asm.ClassReader;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * Base class for the test framework detectors. Test class files can be processed by multiple threads at the same
+ * time. Super classes are only processed once, the result is kept by class name. Super classes from library jars are
+ * read into memory and, when a {@link LibraryTestClassIndex} is available, their result is kept across builds. The
+ * result of a library class is only kept when all the super classes it depends on were read from library jars, so that
+ * the index can tell when the result is out of date.
+ *
  * @author Tom Eyckmans
  */
 public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor> implements TestFrameworkDetector {
     protected static final String JAVA_LANG = "java/lang";
     protected static final String GROOVY_LANG = "groovy/lang";
     protected static final String CLASS_FILE_EXT = ".class";
+    private static final Logger logger = LoggerFactory.getLogger(AbstractTestFrameworkDetector.class);
+    private static final Set<File> UNTRACKED_JARS = Collections.unmodifiableSet(new HashSet<File>());
 
     private final File testClassesDirectory;
     protected final List<File> testClassDirectories;
     protected final ClassFileExtractionManager classFileExtractionManager;
-    protected final Map<File, Boolean> superClasses;
+    protected final Map<String, Boolean> superClasses;
+    private final LibraryTestClassIndex libraryTestClassIndex;
+    private final Map<String, Set<File>> superClassJars = new ConcurrentHashMap<String, Set<File>>();
 
     protected TestClassProcessor testClassProcessor;
 
     protected AbstractTestFrameworkDetector(File testClassesDirectory, FileCollection testClasspath) {
+        this(testClassesDirectory, testClasspath, null);
+    }
+
+    protected AbstractTestFrameworkDetector(File testClassesDirectory, FileCollection testClasspath, LibraryTestClassIndex libraryTestClassIndex) {
         this.testClassesDirectory = testClassesDirectory;
         this.classFileExtractionManager = new ClassFileExtractionManager();
-        this.superClasses = new HashMap<File, Boolean>();
+        this.superClasses = new ConcurrentHashMap<String, Boolean>();
+        this.libraryTestClassIndex = libraryTestClassIndex;
 
         testClassDirectories = new ArrayList<File>();
 
@@ -92,11 +111,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
                     superTestClassFile = superTestClassFileCandidate;
             }
 
-            if (superTestClassFile != null) {
-                return superTestClassFile;
-            } else { // super test class file not in test class directories
-                return classFileExtractionManager.getLibraryClassFile(superClassName);
-            }
+            return superTestClassFile; // null when the super class is not in the test class directories
         }
     }
 
@@ -119,6 +134,20 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         return classVisitor;
     }
 
+    protected TestClassVisitor classVisitor(final String className, final byte[] classBytes) {
+        final TestClassVisitor classVisitor = createClassVisitor();
+
+        try {
+            final ClassReader classReader = new ClassReader(classBytes);
+            classReader.accept(classVisitor, true);
+        }
+        catch (Throwable e) {
+            throw new GradleException("failed to read library class " + className, e);
+        }
+
+        return classVisitor;
+    }
+
     protected boolean isLangPackageClassName(final String className) {
         return className.startsWith(JAVA_LANG) || className.startsWith(GROOVY_LANG);
     }
@@ -133,27 +162,87 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     }
 
     public boolean processTestClass(File testClassFile) {
-        return processTestClass(testClassFile, false);
+        return processTestClass(classVisitor(testClassFile), false);
     }
 
-    protected abstract boolean processTestClass(File testClasFile, boolean superClass);
+    protected abstract boolean processTestClass(TestClassVisitor classVisitor, boolean superClass);
+
+    /**
+     * Determines whether the given super class is a test class, or extends a test class. The super class is looked up in
+     * the test class directories first and then in the library jars.
+     */
+    protected boolean processSuperClass(String superClassName) {
+        final Boolean isSuperTest = superClasses.get(superClassName);
+        if (isSuperTest != null) {
+            return isSuperTest;
+        }
 
-    protected boolean processSuperClass(File testClassFile) {
         boolean isTest = false;
 
-        Boolean isSuperTest = superClasses.get(testClassFile);
+        final File superClassFile = getSuperTestClassFile(superClassName);
+        if (superClassFile != null) {
+            isTest = processTestClass(classVisitor(superClassFile), true);
+            superClassJars.put(superClassName, UNTRACKED_JARS);
+        } else {
+            final byte[] superClassBytes = classFileExtractionManager.getLibraryClassBytes(superClassName);
+            if (superClassBytes != null) {
+                isTest = processLibrarySuperClass(superClassName, superClassBytes);
+            } else {
+                logger.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
+                superClassJars.put(superClassName, UNTRACKED_JARS);
+            }
+        }
 
-        if (isSuperTest == null) {
-            isTest = processTestClass(testClassFile, true);
+        superClasses.put(superClassName, isTest);
 
-            superClasses.put(testClassFile, isTest);
-        } else {
-            isTest = isSuperTest;
+        return isTest;
+    }
+
+    private boolean processLibrarySuperClass(String superClassName, byte[] superClassBytes) {
+        if (libraryTestClassIndex == null) {
+            return processTestClass(classVisitor(superClassName, superClassBytes), true);
+        }
+
+        final String detectorName = getClass().getName();
+        final File libraryJar = classFileExtractionManager.getLibraryJar(superClassName);
+
+        final LibraryTestClassIndex.Entry entry = libraryTestClassIndex.get(detectorName, libraryJar, superClassName);
+        if (entry != null) {
+            superClassJars.put(superClassName, entry.getLibraryJars());
+            return entry.isTestClass();
+        }
+
+        final TestClassVisitor classVisitor = classVisitor(superClassName, superClassBytes);
+        final boolean isTest = processTestClass(classVisitor, true);
+
+        final Set<File> libraryJars = getLibraryJars(libraryJar, classVisitor.getSuperClassName());
+        superClassJars.put(superClassName, libraryJars);
+        if (libraryJars != UNTRACKED_JARS) {
+            libraryTestClassIndex.put(detectorName, libraryJar, superClassName, isTest, libraryJars);
         }
 
         return isTest;
     }
 
+    /**
+     * Returns the jars the super class walk of a library class has read classes from, or {@link #UNTRACKED_JARS} when
+     * the walk read a class from a directory or did not find a class. A super class which has not been walked, as the
+     * detector decided on its name alone, adds no jars.
+     */
+    private Set<File> getLibraryJars(File libraryJar, String superClassName) {
+        final Set<File> superJars = superClassName == null ? null : superClassJars.get(superClassName);
+        if (superJars == UNTRACKED_JARS) {
+            return UNTRACKED_JARS;
+        }
+
+        final Set<File> libraryJars = new HashSet<File>();
+        libraryJars.add(libraryJar);
+        if (superJars != null) {
+            libraryJars.addAll(superJars);
+        }
+        return libraryJars;
+    }
+
     /**
      * In none super class mode a test class is published when the class is a test and it is not abstract.
      * In super class mode it musn't publish the class otherwise it will get published multiple times
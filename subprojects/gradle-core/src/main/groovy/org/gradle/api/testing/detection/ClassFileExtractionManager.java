@@ -26,22 +26,25 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class manages class file extraction from library jar files.
+ * This class manages reading class files from library jar files. Class files are read straight into memory, no
+ * temporary files are created. Once the library jars have been added, the class files can be read by multiple
+ * threads at the same time.
  *
  * @author Tom Eyckmans
  */
 public class ClassFileExtractionManager {
     private static final Logger logger = LoggerFactory.getLogger(ClassFileExtractionManager.class);
     protected final Map<String, Set<File>> packageJarFilesMappings;
-    protected final Map<String, File> extractedJarClasses;
+    protected final Map<String, File> libraryClassJars;
     protected final Set<String> unextractableClasses;
 
     public ClassFileExtractionManager() {
         packageJarFilesMappings = new HashMap<String, Set<File>>();
-        extractedJarClasses = new HashMap<String, File>();
-        unextractableClasses = new TreeSet<String>();
+        libraryClassJars = new ConcurrentHashMap<String, File>();
+        unextractableClasses = Collections.synchronizedSet(new HashSet<String>());
     }
 
     /**
@@ -67,62 +70,53 @@ public class ClassFileExtractionManager {
     }
 
     /**
-     * Retrieve the file that contains the extracted class file.
-     * <p/>
-     * This method will extract the class file if it is not extracted yet. Extracted class files are deleted on exit
-     * of the Gradle process. The same class is only extracted once.
+     * Reads the class file of a library class into memory.
      *
-     * @param className Name of the class to extract.
-     * @return File that contains the extracted class file.
+     * @param className Name of the class to read.
+     * @return The content of the class file, or null when none of the library jars contains the class.
      */
-    public File getLibraryClassFile(final String className) {
+    public byte[] getLibraryClassBytes(final String className) {
         if (unextractableClasses.contains(className))
             return null;
-        else {
-            if (!extractedJarClasses.containsKey(className)) {
-                if (!extractClassFile(className))
-                    unextractableClasses.add(className);
-            }
-
-            return extractedJarClasses.get(className);
-        }
-    }
 
-    boolean extractClassFile(final String className) {
-        boolean classFileExtracted = false;
-
-        final File extractedClassFile = tempFile();
         final String classFileName = new StrBuilder().append(className).append(".class").toString();
-        final String classNamePackage = classNamePackage(className);
-        final Set<File> packageJarFiles = packageJarFilesMappings.get(classNamePackage);
-
-        File classFileSourceJar = null;
-
-        if (packageJarFiles != null && !packageJarFiles.isEmpty()) {
-            final Iterator<File> packageJarFilesIt = packageJarFiles.iterator();
 
-            while (!classFileExtracted && packageJarFilesIt.hasNext()) {
-                final File jarFile = packageJarFilesIt.next();
+        final File knownJarFile = libraryClassJars.get(className);
+        if (knownJarFile != null)
+            return readClassFile(knownJarFile, classFileName);
 
-                try {
-                    classFileExtracted = JarUtil.extractZipEntry(jarFile, classFileName, extractedClassFile);
+        final Set<File> packageJarFiles = packageJarFilesMappings.get(classNamePackage(className));
+        if (packageJarFiles != null) {
+            for (final File jarFile : packageJarFiles) {
+                final byte[] classBytes = readClassFile(jarFile, classFileName);
+                if (classBytes != null) {
+                    logger.debug("read class {} from {}", className, jarFile.getName());
 
-                    if (classFileExtracted)
-                        classFileSourceJar = jarFile;
-                }
-                catch (IOException e) {
-                    throw new GradleException("failed to extract class file from jar (" + jarFile + ")", e);
+                    libraryClassJars.put(className, jarFile);
+                    return classBytes;
                 }
             }
+        } // super class not on the classpath - unable to scan parent class
 
-            if (classFileExtracted) {
-                logger.debug("extracted class {} from {}", className, classFileSourceJar.getName());
+        unextractableClasses.add(className);
+        return null;
+    }
 
-                extractedJarClasses.put(className, extractedClassFile);
-            }
-        } // super class not on the classpath - unable to scan parent class
+    /**
+     * Returns the library jar the class file of the given class was read from, or null when the class file has not been
+     * read.
+     */
+    public File getLibraryJar(final String className) {
+        return libraryClassJars.get(className);
+    }
 
-        return classFileExtracted;
+    byte[] readClassFile(final File jarFile, final String classFileName) {
+        try {
+            return JarUtil.readZipEntry(jarFile, classFileName);
+        }
+        catch (IOException e) {
+            throw new GradleException("failed to read class file from jar (" + jarFile + ")", e);
+        }
     }
 
     String classNamePackage(final String className) {
@@ -134,17 +128,4 @@ public class ClassFileExtractionManager {
             return className.substring(0, lastSlashIndex + 1);
         }
     }
-
-    File tempFile() {
-        try {
-            final File tempFile = File.createTempFile("jar_extract_", "_tmp");
-
-            tempFile.deleteOnExit();
-
-            return tempFile;
-        }
-        catch (IOException e) {
-            throw new GradleException("failed to create temp file to extract class from jar into", e);
-        }
-    }
 }
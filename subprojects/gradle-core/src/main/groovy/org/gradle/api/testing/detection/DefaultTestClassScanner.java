@@ -16,19 +16,28 @@
 
 package org.gradle.api.testing.detection;
 
+import org.gradle.api.GradleException;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.EmptyFileVisitor;
 import org.gradle.api.tasks.util.FileSet;
 import org.gradle.api.testing.fabric.TestFrameworkDetector;
+import org.gradle.util.ThreadUtils;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * The default test class scanner depending on the availability of a test framework detecter a detection or filename scan is performed
  * to find test classes.
+ * <p/>
+ * A detection scan parses the class files on a pool of threads, one thread per processor.
  *  
  * @author Tom Eyckmans
  */
@@ -68,11 +77,46 @@ public class DefaultTestClassScanner implements TestClassScanner {
 
         testFrameworkDetector.setTestClassProcessor(testClassProcessor);
 
-        testClassFileSet.visit(new ClassFileVisitor() {
-            public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
+        final ExecutorService detectionThreadPool = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), new DetectionThreadFactory());
+        final List<Future<?>> detections = new ArrayList<Future<?>>();
+        try {
+            testClassFileSet.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    final File testClassFile = fileDetails.getFile();
+
+                    detections.add(detectionThreadPool.submit(new Runnable() {
+                        public void run() {
+                            testFrameworkDetector.processTestClass(testClassFile);
+                        }
+                    }));
+                }
+            });
+
+            for (final Future<?> detection : detections) {
+                waitForDetection(detection);
             }
-        });
+        }
+        finally {
+            ThreadUtils.shutdown(detectionThreadPool);
+        }
+    }
+
+    private void waitForDetection(Future<?> detection) {
+        try {
+            detection.get();
+        }
+        catch (InterruptedException e) {
+            throw new GradleException("interrupted while waiting for test detection", e);
+        }
+        catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new GradleException("test detection failed", cause);
+        }
     }
 
     private void filenameScan(final FileSet testClassFileSet)
@@ -107,4 +151,14 @@ public class DefaultTestClassScanner implements TestClassScanner {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    private static class DetectionThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, String.format("Test detection %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.detection;
+
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.util.HashUtil;
+
+import java.io.File;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers across builds which library classes are test classes, or extend a test class. Whether a library class is
+ * a test class can depend on the super classes of the class, which can be read from other jars. An entry therefore
+ * holds the hashes of all the jars its super class walk read classes from, and no longer matches once one of these
+ * jars changes. The index is kept in a cache private to the build, which is opened when the index is first used.
+ * <p/>
+ * The index can be used by multiple threads. The jars are hashed outside of the lock which guards the cache.
+ */
+public class LibraryTestClassIndex {
+    private final Project project;
+    private final Map<File, String> jarHashes = new ConcurrentHashMap<File, String>();
+    private PersistentIndexedCache<String, Entry> cache;
+
+    public LibraryTestClassIndex(Project project) {
+        if (project == null) throw new IllegalArgumentException("project is null!");
+
+        this.project = project;
+    }
+
+    LibraryTestClassIndex(PersistentIndexedCache<String, Entry> cache) {
+        this.project = null;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the entry of the given library class, or null when the class is not in the index or when one of the jars
+     * the entry was created from has changed.
+     *
+     * @param detectorName The name of the detector which detected the class.
+     * @param libraryJar The jar the class was read from.
+     * @param className The name of the class.
+     */
+    public Entry get(String detectorName, File libraryJar, String className) {
+        final String key = key(detectorName, libraryJar, className);
+
+        final Entry entry;
+        synchronized (this) {
+            entry = getCache().get(key);
+        }
+
+        if (entry == null) {
+            return null;
+        }
+        for (final Map.Entry<File, String> jarHash : entry.jarHashes.entrySet()) {
+            if (!jarHash.getKey().isFile() || !jarHash.getValue().equals(hash(jarHash.getKey()))) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Records whether the given library class is a test class.
+     *
+     * @param libraryJars The jars the super class walk of the class read classes from, including the jar of the class
+     * itself.
+     */
+    public void put(String detectorName, File libraryJar, String className, boolean testClass, Set<File> libraryJars) {
+        final String key = key(detectorName, libraryJar, className);
+
+        final Map<File, String> hashes = new HashMap<File, String>();
+        for (final File jar : libraryJars) {
+            hashes.put(jar, hash(jar));
+        }
+        final Entry entry = new Entry(testClass, hashes);
+
+        synchronized (this) {
+            getCache().put(key, entry);
+        }
+    }
+
+    private String key(String detectorName, File libraryJar, String className) {
+        return detectorName + ":" + hash(libraryJar) + ":" + className;
+    }
+
+    private String hash(File jar) {
+        String jarHash = jarHashes.get(jar);
+        if (jarHash == null) {
+            // two threads may hash the same jar at the same time, which gives the same result
+            jarHash = new BigInteger(1, HashUtil.createHash(jar)).toString(16);
+            jarHashes.put(jar, jarHash);
+        }
+        return jarHash;
+    }
+
+    private PersistentIndexedCache<String, Entry> getCache() {
+        if (cache == null) {
+            final CacheRepository cacheRepository = ((ProjectInternal) project).getServiceRegistryFactory().get(CacheRepository.class);
+            cache = cacheRepository.getIndexedCacheFor(project.getGradle(), "libraryTestClassEntries", Collections.EMPTY_MAP);
+        }
+        return cache;
+    }
+
+    /**
+     * The result of the detection of a library class.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean testClass;
+        private final Map<File, String> jarHashes;
+
+        Entry(boolean testClass, Map<File, String> jarHashes) {
+            this.testClass = testClass;
+            this.jarHashes = jarHashes;
+        }
+
+        public boolean isTestClass() {
+            return testClass;
+        }
+
+        /**
+         * Returns the jars the super class walk of the class read classes from.
+         */
+        public Set<File> getLibraryJars() {
+            return Collections.unmodifiableSet(jarHashes.keySet());
+        }
+    }
+}
@@ -31,7 +31,7 @@ public class SetBuildingTestClassProcessor implements TestClassProcessor {
     private final Set<String> testClassNames;
 
     public SetBuildingTestClassProcessor() {
-        this.testClassNames = new HashSet<String>();
+        this.testClassNames = Collections.synchronizedSet(new HashSet<String>());
     }
 
     public void processTestClass(final String testClassName) {
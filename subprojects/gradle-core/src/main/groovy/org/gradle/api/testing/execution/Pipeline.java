@@ -19,13 +19,13 @@ import org.gradle.api.tasks.testing.NativeTest;
 import org.gradle.api.testing.execution.control.refork.ReforkController;
 import org.gradle.api.testing.execution.control.refork.ReforkControllerImpl;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyInstance;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyInstance;
 import org.gradle.api.testing.fabric.TestClassRunInfo;
 import org.gradle.api.testing.reporting.Report;
-import org.gradle.util.queues.BlockingQueueItemProducer;
+import org.gradle.util.queues.DiskSpillingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.List;
 import java.util.ArrayList;
@@ -34,26 +34,29 @@ import java.util.ArrayList;
  * @author Tom Eyckmans
  */
 public class Pipeline {
+    private static final Logger logger = LoggerFactory.getLogger(Pipeline.class);
+    private static final int RUN_INFO_QUEUE_MEMORY_CAPACITY = 1000;
+
     private final PipelinesManager manager;
     private final int id;
     private final NativeTest testTask;
-    private final BlockingQueue<TestClassRunInfo> runInfoQueue;
-    private final BlockingQueueItemProducer<TestClassRunInfo> runInfoQueueProducer;
+    private final DiskSpillingQueue<TestClassRunInfo> runInfoQueue;
     private final PipelineConfig config;
     private ForkPolicyInstance forkPolicyInstance;
+    private SchedulePolicyInstance schedulePolicyInstance;
     private PipelineDispatcher dispatcher;
     private final ReforkController reforkController;
     private final AtomicBoolean pipelineSplittingEnded = new AtomicBoolean(Boolean.FALSE);
     private List<Report> reports;
     private List<PipelineListener> listeners;
+    private volatile String failure;
 
     public Pipeline(PipelinesManager manager, int id, NativeTest testTask, PipelineConfig config) {
         this.manager = manager;
         this.id = id;
         this.testTask = testTask;
         this.config = config;
-        this.runInfoQueue = new ArrayBlockingQueue<TestClassRunInfo>(1000);
-        this.runInfoQueueProducer = new BlockingQueueItemProducer<TestClassRunInfo>(runInfoQueue, 100L, TimeUnit.MILLISECONDS);
+        this.runInfoQueue = new DiskSpillingQueue<TestClassRunInfo>(RUN_INFO_QUEUE_MEMORY_CAPACITY, null);
         this.reforkController = new ReforkControllerImpl();
         this.reports = new ArrayList<Report>();
         this.listeners = new ArrayList<PipelineListener>();
@@ -68,11 +71,19 @@ public class Pipeline {
     }
 
     public void addTestClassRunInfo(final TestClassRunInfo testClassRunInfo) {
-        // TODO save to disk when full
-        runInfoQueueProducer.produce(testClassRunInfo);
+        // never blocks, test class run infos which don't fit in memory are spilled to disk
+        if (runInfoQueue.add(testClassRunInfo)) {
+            for (final PipelineListener listener : listeners) {
+                listener.runInfoQueueSpilling(this);
+            }
+        }
+
+        if (dispatcher != null) {
+            dispatcher.testsAdded();
+        }
     }
 
-    public BlockingQueue<TestClassRunInfo> getRunInfoQueue() {
+    public DiskSpillingQueue<TestClassRunInfo> getRunInfoQueue() {
         return runInfoQueue;
     }
 
@@ -100,15 +111,49 @@ public class Pipeline {
         this.forkPolicyInstance = forkPolicyInstance;
     }
 
+    public SchedulePolicyInstance getSchedulePolicyInstance() {
+        return schedulePolicyInstance;
+    }
+
+    public void setSchedulePolicyInstance(SchedulePolicyInstance schedulePolicyInstance) {
+        this.schedulePolicyInstance = schedulePolicyInstance;
+    }
+
     public void pipelineSplittingEnded() {
         pipelineSplittingEnded.set(Boolean.TRUE);
+
+        if (dispatcher != null) {
+            dispatcher.pipelineSplittingEnded();
+        }
     }
 
     public boolean isPipelineSplittingEnded() {
         return pipelineSplittingEnded.get();
     }
 
+    /**
+     * Records that the pipeline could not execute all of its tests.
+     */
+    public void failed(String failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Returns a description of why the pipeline did not execute all of its tests, or null when it did.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
     public void stopped() {
+        final int peakSize = runInfoQueue.getPeakSize();
+        final long spilledItemCount = runInfoQueue.getTotalSpilledItemCount();
+        logger.debug("pipeline {} run info queue: peak size {}, {} spilled to disk", new Object[]{id, peakSize, spilledItemCount});
+        for (final PipelineListener listener : listeners) {
+            listener.runInfoQueueStopped(this, peakSize, spilledItemCount);
+        }
+        runInfoQueue.close();
+
         forkPolicyInstance.stop();
         manager.stopped(this);
     }
@@ -20,6 +20,9 @@ import org.gradle.api.testing.execution.control.refork.ReforkItemConfigs;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyConfig;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyNames;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyRegister;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyConfig;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyNames;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyRegister;
 import org.gradle.api.testing.pipelinesplit.policies.SplitPolicyConfig;
 import org.gradle.api.testing.pipelinesplit.policies.SplitPolicyNames;
 import org.gradle.api.testing.pipelinesplit.policies.SplitPolicyRegister;
@@ -35,6 +38,7 @@ public class PipelineConfig {
     private String name;
     private SplitPolicyConfig splitPolicyConfig;
     private ForkPolicyConfig forkPolicyConfig;
+    private SchedulePolicyConfig schedulePolicyConfig;
     private ReforkItemConfigs reforkItemConfigs;
     private List<ReportConfig> reports;
 
@@ -50,6 +54,7 @@ public class PipelineConfig {
         this.name = name;
         this.splitPolicyConfig = splitPolicyConfig;
         this.forkPolicyConfig = forkPolicyConfig;
+        this.schedulePolicyConfig = SchedulePolicyRegister.getSchedulePolicy(SchedulePolicyNames.LONGEST_FIRST).getSchedulePolicyConfigInstance();
         this.reforkItemConfigs = new ReforkItemConfigs();
         reforkItemConfigs.addItemConfig(DecisionContextItemKeys.AMOUNT_OF_TEST_EXECUTED_BY_FORK, null);
         this.reports = new ArrayList<ReportConfig>();
@@ -79,6 +84,16 @@ public class PipelineConfig {
         this.forkPolicyConfig = forkPolicyConfig;
     }
 
+    public SchedulePolicyConfig getSchedulePolicyConfig() {
+        return schedulePolicyConfig;
+    }
+
+    public void setSchedulePolicyConfig(SchedulePolicyConfig schedulePolicyConfig) {
+        if (schedulePolicyConfig == null) throw new IllegalArgumentException("schedulePolicyConfig == null!");
+
+        this.schedulePolicyConfig = schedulePolicyConfig;
+    }
+
     public ReforkItemConfigs getReforkItemConfigs() {
         return reforkItemConfigs;
     }
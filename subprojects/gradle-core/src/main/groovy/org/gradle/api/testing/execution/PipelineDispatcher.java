@@ -18,12 +18,17 @@ package org.gradle.api.testing.execution;
 import org.apache.mina.core.session.IoSession;
 import org.gradle.api.tasks.testing.NativeTest;
 import org.gradle.api.testing.execution.control.messages.TestControlMessageHandler;
+import org.gradle.api.testing.execution.control.messages.server.ExecuteTestActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.InitializeActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.StopForkActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.WaitActionMesssage;
 import org.gradle.api.testing.execution.control.refork.ReforkController;
 import org.gradle.api.testing.execution.control.refork.ReforkDecisionContext;
 import org.gradle.api.testing.execution.control.server.TestServerClientHandle;
 import org.gradle.api.testing.execution.control.server.TestServerClientHandleFactory;
+import org.gradle.api.testing.execution.fork.ForkStatus;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyInstance;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
 import org.gradle.api.testing.fabric.TestClassRunInfo;
 import org.gradle.util.ConditionWaitHandle;
 import org.gradle.util.ThreadUtils;
@@ -34,7 +39,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -43,13 +47,17 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Dispatches the tests of a pipeline to its forks. Tests are sent in batches, sized by the number of tests each fork
+ * requests. A fork which requests tests when none are available is recorded as waiting, and is sent tests as soon as
+ * they are added to the pipeline.
+ *
  * @author Tom Eyckmans
  */
 public class PipelineDispatcher {
     private static final Logger logger = LoggerFactory.getLogger(PipelineDispatcher.class);
 
     private final Pipeline pipeline;
-    private final BlockingQueue<TestClassRunInfo> testsToDispatch;
+    private final SchedulePolicyInstance schedulePolicyInstance;
 
     private final Map<Class<?>, TestControlMessageHandler> messageClassHandlers;
 
@@ -63,11 +71,13 @@ public class PipelineDispatcher {
     private final Lock runningClientsLock;
     private final Condition allClientsStopped;
 
+    private final Lock dispatchLock;
+
     public PipelineDispatcher(Pipeline pipeline, TestServerClientHandleFactory clientHandleFactory) {
         this.pipeline = pipeline;
         this.clientHandleFactory = clientHandleFactory;
         this.messageClassHandlers = new HashMap<Class<?>, TestControlMessageHandler>();
-        this.testsToDispatch = pipeline.getRunInfoQueue();
+        this.schedulePolicyInstance = pipeline.getSchedulePolicyInstance();
         this.clientHandles = new ConcurrentHashMap<Integer, TestServerClientHandle>();
 
         doneLock = new ReentrantLock();
@@ -76,6 +86,8 @@ public class PipelineDispatcher {
         runningClients = new ArrayList<TestServerClientHandle>();
         runningClientsLock = new ReentrantLock();
         allClientsStopped = runningClientsLock.newCondition();
+
+        dispatchLock = new ReentrantLock();
     }
 
 //    public void initialize(ForkControl forkControl) {
@@ -121,7 +133,13 @@ public class PipelineDispatcher {
     }
 
     public boolean isAllTestsExecuted() {
-        return testsToDispatch.isEmpty();
+        dispatchLock.lock();
+        try {
+            return !schedulePolicyInstance.hasPendingTests();
+        }
+        finally {
+            dispatchLock.unlock();
+        }
     }
 
     public void scheduleForkRestart(int forkId) {
@@ -153,32 +171,199 @@ public class PipelineDispatcher {
     }
 
     public void forkStopped(int forkId) {
+        requeueOutstandingTests(forkId);
         getClientHandle(forkId).forkStopped();
     }
 
-    public TestClassRunInfo getNextTest() {
-        TestClassRunInfo testClassRunInfo = null;
+    /**
+     * Records that a fork has completed a test.
+     */
+    public void testCompleted(int forkId, TestClassProcessResult testResult) {
+        dispatchLock.lock();
+        try {
+            getClientHandle(forkId).testCompleted(testResult.getTestClassRunInfo());
+            schedulePolicyInstance.testCompleted(forkId, testResult);
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
 
+    public boolean hasOutstandingTests(int forkId) {
+        dispatchLock.lock();
         try {
-            testClassRunInfo = testsToDispatch.poll(100L, TimeUnit.MILLISECONDS);
+            return getClientHandle(forkId).hasOutstandingTests();
         }
-        catch (InterruptedException e) {
-            // ignore
+        finally {
+            dispatchLock.unlock();
         }
+    }
 
-        return testClassRunInfo;
+    /**
+     * Takes back the tests which have been sent to a fork but which the fork has not completed, so that they are sent
+     * to another fork.
+     */
+    public void requeueOutstandingTests(int forkId) {
+        dispatchLock.lock();
+        try {
+            final TestServerClientHandle client = getClientHandle(forkId);
+            client.stopWaiting();
+            schedulePolicyInstance.requeueTests(client.takeOutstandingTests());
+            dispatchToWaitingForks();
+        }
+        finally {
+            dispatchLock.unlock();
+        }
     }
 
-    public boolean determineReforkNeeded(int forkId, ReforkDecisionContext reforkDecisionContext) {
-        final ReforkController reforkController = pipeline.getReforkController();
+    /**
+     * Sends up to the requested number of tests to a fork. When there are no tests available and the fork has no tests
+     * left to execute, the fork is either stopped, when all tests have been dispatched, or is sent tests as soon as
+     * they become available.
+     *
+     * @param replyRequired true when the fork holds its next test until it receives a reply, in which case an empty
+     * batch is sent when the fork still has tests to execute and no further tests are sent.
+     */
+    public void dispatchTests(int forkId, IoSession ioSession, int requestedTestCount, boolean replyRequired) {
+        dispatchLock.lock();
+        try {
+            final TestServerClientHandle client = getClientHandle(forkId);
+            client.stopWaiting();
+
+            if (client.hasOutstandingTests()) {
+                final boolean sent = requestedTestCount > 0 && sendTests(client, ioSession, requestedTestCount);
+                if (!sent && replyRequired) {
+                    ioSession.write(new ExecuteTestActionMessage(pipeline.getId(), new ArrayList<TestClassRunInfo>()));
+                }
+                // the fork still has tests to execute and will ask again when it completes one
+                return;
+            }
+
+            final int testCount = Math.max(1, requestedTestCount);
+            if (!sendTests(client, ioSession, testCount)) {
+                if (isPipelineSplittingEnded()) {
+                    ioSession.write(new StopForkActionMessage(pipeline.getId()));
+
+                    stop();
+                } else {
+                    client.waitForTests(ioSession, testCount);
+                }
+            }
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    public int getPendingTestCount() {
+        dispatchLock.lock();
+        try {
+            return schedulePolicyInstance.getPendingTestCount();
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the largest amount of memory reported by any of the forks, in bytes, or 0 when no fork has reported yet.
+     */
+    public long getMaximumForkMemoryUsage() {
+        long maximum = 0;
+        for (final TestServerClientHandle client : clientHandles.values()) {
+            maximum = Math.max(maximum, client.getMemoryUsage());
+        }
+        return maximum;
+    }
 
-        boolean reforkNeeded = reforkController.reforkNeeded(reforkDecisionContext);
+    /**
+     * Stops a fork which has been waiting for tests for at least the given time. The fork is not restarted.
+     *
+     * @return true when a fork was stopped.
+     */
+    public boolean retireIdleFork(long idleTime) {
+        dispatchLock.lock();
+        try {
+            final long idleSince = System.currentTimeMillis() - idleTime;
+            for (final TestServerClientHandle client : clientHandles.values()) {
+                if (client.isWaitingForTests() && client.getStatus() == ForkStatus.TESTING && client.getWaitingSince() <= idleSince) {
+                    final IoSession ioSession = client.getWaitingSession();
+                    client.stopWaiting();
+                    client.retire();
+
+                    ioSession.write(new StopForkActionMessage(pipeline.getId()));
+                    return true;
+                }
+            }
+            return false;
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Called when tests are added to the pipeline.
+     */
+    public void testsAdded() {
+        dispatchLock.lock();
+        try {
+            dispatchToWaitingForks();
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Called when all tests have been added to the pipeline. Stops the waiting forks, as no further tests will arrive.
+     */
+    public void pipelineSplittingEnded() {
+        dispatchLock.lock();
+        try {
+            dispatchToWaitingForks();
+
+            if (!schedulePolicyInstance.hasPendingTests()) {
+                for (final TestServerClientHandle client : clientHandles.values()) {
+                    if (client.isWaitingForTests()) {
+                        client.getWaitingSession().write(new StopForkActionMessage(pipeline.getId()));
+                        client.stopWaiting();
+                    }
+                }
 
-        if (reforkNeeded) {
-            scheduleForkRestart(forkId);
+                stop();
+            }
+        }
+        finally {
+            dispatchLock.unlock();
         }
+    }
 
-        return reforkNeeded;
+    private void dispatchToWaitingForks() {
+        for (final TestServerClientHandle client : clientHandles.values()) {
+            if (client.isWaitingForTests() && !sendTests(client, client.getWaitingSession(), client.getWaitingTestCount())) {
+                return;
+            }
+        }
+    }
+
+    private boolean sendTests(TestServerClientHandle client, IoSession ioSession, int maxTestCount) {
+        final List<TestClassRunInfo> tests = schedulePolicyInstance.nextTests(client.getForkId(), maxTestCount);
+
+        if (tests.isEmpty()) {
+            return false;
+        }
+
+        client.stopWaiting();
+        client.testsSent(tests);
+        ioSession.write(new ExecuteTestActionMessage(pipeline.getId(), tests));
+        return true;
+    }
+
+    public boolean determineReforkNeeded(int forkId, ReforkDecisionContext reforkDecisionContext) {
+        final ReforkController reforkController = pipeline.getReforkController();
+
+        return reforkController.reforkNeeded(reforkDecisionContext);
     }
 
     public void initializeFork(int forkId, IoSession ioSession) {
@@ -214,7 +399,7 @@ public class PipelineDispatcher {
                                     }
 
                                     public void conditionMatched() {
-                                        pipeline.stopped();
+                                        allClientsStopped();
                                     }
                                 }
                         );
@@ -227,6 +412,26 @@ public class PipelineDispatcher {
         }
     }
 
+    /**
+     * Called once all forks have stopped after the pipeline started stopping. A fork which dies after the other forks
+     * have stopped has its outstanding tests requeued, but no fork remains to execute them, so the pipeline fails.
+     */
+    void allClientsStopped() {
+        dispatchLock.lock();
+        try {
+            if (schedulePolicyInstance.hasPendingTests()) {
+                final String failure = String.format("%d tests of pipeline %d were not executed, as no fork remained to execute them.",
+                        schedulePolicyInstance.getPendingTestCount(), pipeline.getId());
+                logger.error(failure);
+                pipeline.failed(failure);
+            }
+        }
+        finally {
+            dispatchLock.unlock();
+        }
+        pipeline.stopped();
+    }
+
     public void clientStarted(int forkId) {
         runningClientsLock.lock();
         try {
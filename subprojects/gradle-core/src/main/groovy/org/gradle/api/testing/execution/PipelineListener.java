@@ -20,4 +20,18 @@ package org.gradle.api.testing.execution;
  */
 public interface PipelineListener {
     void pipelineStopped(Pipeline pipeline);
+
+    /**
+     * Called when the run info queue of the pipeline starts to spill test class run infos to disk. The depth and spill
+     * metrics are available from {@link Pipeline#getRunInfoQueue()}.
+     */
+    void runInfoQueueSpilling(Pipeline pipeline);
+
+    /**
+     * Called when the pipeline stops, with the final metrics of its run info queue.
+     *
+     * @param peakSize The largest number of test class run infos the queue has held.
+     * @param spilledItemCount The number of test class run infos which were spilled to disk.
+     */
+    void runInfoQueueStopped(Pipeline pipeline, int peakSize, long spilledItemCount);
 }
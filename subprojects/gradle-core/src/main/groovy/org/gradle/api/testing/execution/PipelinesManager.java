@@ -21,6 +21,9 @@ import org.gradle.api.testing.execution.fork.policies.ForkPolicy;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyConfig;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyInstance;
 import org.gradle.api.testing.execution.fork.policies.ForkPolicyRegister;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicy;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyConfig;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyRegister;
 import org.gradle.util.ConditionWaitHandle;
 import org.gradle.util.ThreadUtils;
 
@@ -73,6 +76,11 @@ public class PipelinesManager {
         for (final PipelineConfig pipelineConfig : pipelineConfigs.values()) {
             final Pipeline pipeline = addPipeline(pipelineConfig);
 
+            // initialize schedule policy
+            final SchedulePolicyConfig schedulePolicyConfig = pipelineConfig.getSchedulePolicyConfig();
+            final SchedulePolicy schedulePolicy = SchedulePolicyRegister.getSchedulePolicy(schedulePolicyConfig.getPolicyName());
+            pipeline.setSchedulePolicyInstance(schedulePolicy.getSchedulePolicyInstance(pipeline));
+
             // initialize fork policy
             final ForkPolicyConfig forkPolicyConfig = pipelineConfig.getForkPolicyConfig();
             final ForkPolicy forkPolicy = ForkPolicyRegister.getForkPolicy(forkPolicyConfig.getPolicyName());
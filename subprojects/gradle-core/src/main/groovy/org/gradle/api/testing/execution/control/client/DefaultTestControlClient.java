@@ -88,11 +88,13 @@ public class DefaultTestControlClient implements TestControlClient {
         ioSession.write(new ForkStoppedMessage(forkId));
     }
 
-    public void requestNextControlMessage(TestClassProcessResult previousProcessTestResult, ReforkDecisionContext reforkDecisionContext) {
+    public void requestNextControlMessage(TestClassProcessResult previousProcessTestResult, ReforkDecisionContext reforkDecisionContext, int requestedTestCount) {
         final NextActionRequestMessage nextActionRequestMessage = new NextActionRequestMessage(forkId);
 
         nextActionRequestMessage.setPreviousProcessedTestResult(previousProcessTestResult);
         nextActionRequestMessage.setReforkDecisionContext(reforkDecisionContext);
+        nextActionRequestMessage.setRequestedTestCount(requestedTestCount);
+        nextActionRequestMessage.setMemoryUsage(Runtime.getRuntime().totalMemory());
 
         ioSession.write(nextActionRequestMessage);
     }
@@ -19,6 +19,7 @@ import org.gradle.api.testing.TestFrameworkRegister;
 import org.gradle.api.testing.execution.control.messages.TestControlMessage;
 import org.gradle.api.testing.execution.control.messages.server.ExecuteTestActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.InitializeActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.SoftReforkActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.StopForkActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.WaitActionMesssage;
 import org.gradle.api.testing.execution.control.refork.ReforkDataGatherControl;
@@ -29,42 +30,69 @@ import org.gradle.util.ThreadUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URLClassLoader;
+import java.util.LinkedList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Executes the actions sent by the test server. Tests are received in batches and are queued locally, so that the fork
+ * does not sit idle while it waits for the server to send more tests. The number of tests requested from the server is
+ * adjusted so that the local queue holds roughly {@link #PREFETCH_TIME} ms worth of tests.
+ * <p/>
+ * When a completed test produced refork data, the next test is held until the server has replied to the request
+ * carrying that data, as the server may decide to restart the fork and send its outstanding tests to another fork.
+ * <p/>
+ * On a soft refork the sandbox classloader is replaced by a new one, once the running test has completed, so that the
+ * fork does not have to be restarted to discard the test classes and the state they hold.
+ *
  * @author Tom Eyckmans
  */
 public class TestControlMessageDispatcher {
     private static final Logger logger = LoggerFactory.getLogger(TestControlMessageDispatcher.class);
+    static final long PREFETCH_TIME = 1000;
+    static final int MAX_BATCH_SIZE = 50;
+    private static final double DURATION_WEIGHT = 0.3;
 
     private final TestControlClient testControlClient;
-    private final ClassLoader sandboxClassLoader;
+    private ClassLoader sandboxClassLoader;
     private final AtomicBoolean exitReceived;
 
     private final ExecutorService threadPool;
     private TestProcessorFactory testProcessorFactory;
     private ReforkDataGatherControl reforkDataGatherControl;
     private TestProcessResultFactory testProcessResultFactory;
+    private ReforkItemConfigs reforkItemConfigs;
+    private boolean softReforkPending;
+
+    private final LinkedList<TestClassRunInfo> prefetchedTests = new LinkedList<TestClassRunInfo>();
+    private boolean testRunning;
+    private boolean awaitingReforkDecision;
+    private double averageTestDuration = -1;
 
     public TestControlMessageDispatcher(TestControlClient testControlClient, ClassLoader sandboxClassLoader) {
+        this(testControlClient, sandboxClassLoader, Executors.newFixedThreadPool(1)); // TODO future - multithreaded test execution.
+    }
+
+    TestControlMessageDispatcher(TestControlClient testControlClient, ClassLoader sandboxClassLoader, ExecutorService threadPool) {
         this.testControlClient = testControlClient;
         this.sandboxClassLoader = sandboxClassLoader;
         this.exitReceived = new AtomicBoolean(false);
-        this.threadPool = Executors.newFixedThreadPool(1); // TODO future - multithreaded test execution.
+        this.threadPool = threadPool;
     }
 
     public boolean dispatch(TestControlMessage testControlMessage) {
         if (testControlMessage instanceof ExecuteTestActionMessage) {
             final ExecuteTestActionMessage runTestResponse = (ExecuteTestActionMessage) testControlMessage;
-            final TestClassRunInfo testInfo = runTestResponse.getTestClassRunInfo();
-
-            final TestProcessor testProcessor = testProcessorFactory.createProcessor();
 
-            final TestProcessorRunnable testProcessorRunnable = new TestProcessorRunnable(this, testProcessor, testInfo, reforkDataGatherControl, testProcessResultFactory);
+            synchronized (this) {
+                prefetchedTests.addAll(runTestResponse.getTestClassRunInfos());
+                // the server has decided not to restart this fork
+                awaitingReforkDecision = false;
+            }
 
-            threadPool.submit(testProcessorRunnable);
+            startNextTest();
         } else if (testControlMessage instanceof WaitActionMesssage) {
             final WaitActionMesssage waitMessage = (WaitActionMesssage) testControlMessage;
 
@@ -77,7 +105,16 @@ public class TestControlMessageDispatcher {
                 e.printStackTrace();
             }
 
-            actionExecuted(null, null);
+            synchronized (this) {
+                awaitingReforkDecision = false;
+            }
+
+            requestTests(null, null);
+            startNextTest();
+        } else if (testControlMessage instanceof SoftReforkActionMessage) {
+            synchronized (this) {
+                softReforkPending = true;
+            }
         } else if (testControlMessage instanceof StopForkActionMessage) {
             exitReceived.set(true);
 
@@ -86,7 +123,7 @@ public class TestControlMessageDispatcher {
             final InitializeActionMessage initMessage = (InitializeActionMessage) testControlMessage;
 
             final String testFrameworkId = initMessage.getTestFrameworkId();
-            final ReforkItemConfigs reforkItemConfigs = initMessage.getReforkItemConfigs();
+            reforkItemConfigs = initMessage.getReforkItemConfigs();
 
             reforkDataGatherControl = new ReforkDataGatherControl();
 
@@ -98,14 +135,77 @@ public class TestControlMessageDispatcher {
 
             testProcessorFactory.initialize(sandboxClassLoader, testProcessResultFactory);
 
-            actionExecuted(null, null);
+            requestTests(null, null);
         }
 
         return exitReceived.get();
     }
 
-    public void actionExecuted(TestClassProcessResult previousProcessTestResult, ReforkDecisionContext reforkDecisionContext) {
+    public void testExecuted(TestClassProcessResult testResult, ReforkDecisionContext reforkDecisionContext, long duration) {
+        synchronized (this) {
+            testRunning = false;
+            awaitingReforkDecision = reforkDecisionContext != null;
+            if (averageTestDuration < 0) {
+                averageTestDuration = duration;
+            } else {
+                averageTestDuration = DURATION_WEIGHT * duration + (1 - DURATION_WEIGHT) * averageTestDuration;
+            }
+        }
+
+        requestTests(testResult, reforkDecisionContext);
+        startNextTest();
+    }
+
+    private void startNextTest() {
+        final TestClassRunInfo testInfo;
+        synchronized (this) {
+            if (testRunning || awaitingReforkDecision || prefetchedTests.isEmpty() || exitReceived.get()) {
+                return;
+            }
+            testInfo = prefetchedTests.removeFirst();
+            testRunning = true;
+
+            if (softReforkPending) {
+                softRefork();
+            }
+        }
+
+        final TestProcessor testProcessor = testProcessorFactory.createProcessor();
+
+        final TestProcessorRunnable testProcessorRunnable = new TestProcessorRunnable(this, testProcessor, testInfo, reforkDataGatherControl, testProcessResultFactory);
+
+        threadPool.submit(testProcessorRunnable);
+    }
+
+    private void softRefork() {
+        softReforkPending = false;
+
+        logger.debug("soft refork - replacing the sandbox classloader");
+
+        final URLClassLoader previousSandboxClassLoader = (URLClassLoader) sandboxClassLoader;
+        sandboxClassLoader = new URLClassLoader(previousSandboxClassLoader.getURLs(), previousSandboxClassLoader.getParent());
+
+        testProcessorFactory.initialize(sandboxClassLoader, testProcessResultFactory);
+
+        reforkDataGatherControl = new ReforkDataGatherControl();
+        reforkDataGatherControl.initialize(reforkItemConfigs);
+    }
+
+    private void requestTests(TestClassProcessResult previousProcessTestResult, ReforkDecisionContext reforkDecisionContext) {
+        final int requestedTestCount;
+        synchronized (this) {
+            requestedTestCount = Math.max(0, getBatchSize() - prefetchedTests.size());
+        }
+
         if (!exitReceived.get())
-            testControlClient.requestNextControlMessage(previousProcessTestResult, reforkDecisionContext);
+            testControlClient.requestNextControlMessage(previousProcessTestResult, reforkDecisionContext, requestedTestCount);
+    }
+
+    private int getBatchSize() {
+        if (averageTestDuration < 0) {
+            return 1;
+        }
+        final long batchSize = Math.round(PREFETCH_TIME / Math.max(1.0, averageTestDuration));
+        return (int) Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
     }
 }
@@ -73,7 +73,8 @@ public class TestForkExecuter implements ForkExecuter {
             }
         }
         catch (Throwable t) {
-            t.printStackTrace();
+            // rethrown, so that the ForkLaunchMain reports the failure to the fork pool or exits with an error
+            throw new RuntimeException("failed to execute the tests of the fork", t);
         }
     }
 
@@ -45,6 +45,7 @@ public class TestProcessorRunnable implements Runnable {
     public void run() {
 //        System.out.println("[fork] running test " + testClassRunInfo.getTestClassName());
         TestClassProcessResult testProcessResult = null;
+        final long start = System.currentTimeMillis();
 
         // TODO add control listeners
         try {
@@ -53,11 +54,13 @@ public class TestProcessorRunnable implements Runnable {
         catch (Throwable t) {
             testProcessResult = testProcessResultFactory.createClassExecutionErrorResult(testClassRunInfo, t);
         }
+        final long duration = System.currentTimeMillis() - start;
+        testProcessResult.setDuration(duration);
 
 //        System.out.println("[fork] test " + testClassRunInfo.getTestClassName() + " run, gathering refork data");
         final ReforkDecisionContext reforkDecisionContext = reforkDataGatherControl.gatherData(DataGatherMoment.AFTER_TEST_EXECUTION, testProcessResult);
 
 //        System.out.println("[fork] requesting next action");
-        messageDispatcher.actionExecuted(testProcessResult, reforkDecisionContext);
+        messageDispatcher.testExecuted(testProcessResult, reforkDecisionContext, duration);
     }
 }
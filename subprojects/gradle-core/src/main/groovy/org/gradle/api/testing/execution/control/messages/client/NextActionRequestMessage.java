@@ -29,6 +29,8 @@ public class NextActionRequestMessage extends AbstractTestClientControlMessage {
 
     private TestClassProcessResult previousProcessedTestResult = null;
     private ReforkDecisionContext reforkDecisionContext = null;
+    private int requestedTestCount = 0;
+    private long memoryUsage = 0;
 
     public NextActionRequestMessage(final int forkId) {
         super(forkId);
@@ -42,6 +44,29 @@ public class NextActionRequestMessage extends AbstractTestClientControlMessage {
         return reforkDecisionContext;
     }
 
+    /**
+     * Returns the number of tests the fork would like to receive, in addition to the tests it has already been sent
+     * and has not yet completed. Zero when the fork has enough tests queued locally.
+     */
+    public int getRequestedTestCount() {
+        return requestedTestCount;
+    }
+
+    public void setRequestedTestCount(int requestedTestCount) {
+        this.requestedTestCount = requestedTestCount;
+    }
+
+    /**
+     * Returns the amount of memory committed by the heap of the fork, in bytes.
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public void setMemoryUsage(long memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
     public void setPreviousProcessedTestResult(TestClassProcessResult previousProcessedTestResult) {
         this.previousProcessedTestResult = previousProcessedTestResult;
     }
@@ -53,10 +78,14 @@ public class NextActionRequestMessage extends AbstractTestClientControlMessage {
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.writeObject(previousProcessedTestResult);
         out.writeObject(reforkDecisionContext);
+        out.writeInt(requestedTestCount);
+        out.writeLong(memoryUsage);
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         previousProcessedTestResult = (TestClassProcessResult) in.readObject();
         reforkDecisionContext = (ReforkDecisionContext) in.readObject();
+        requestedTestCount = in.readInt();
+        memoryUsage = in.readLong();
     }
 }
@@ -20,28 +20,40 @@ import org.gradle.api.testing.fabric.TestClassRunInfo;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
+ * Sends a batch of tests to a fork. The fork executes the tests in the order given. The batch may be empty when the
+ * message is only a reply to a fork which holds its next test until the server has decided not to refork it.
+ *
  * @author Tom Eyckmans
  */
 public class ExecuteTestActionMessage extends AbstractTestServerControlMessage {
 
-    private TestClassRunInfo testClassRunInfo;
+    private List<TestClassRunInfo> testClassRunInfos;
 
-    public ExecuteTestActionMessage(int pipelineId, TestClassRunInfo testClassRunInfo) {
+    public ExecuteTestActionMessage(int pipelineId, List<TestClassRunInfo> testClassRunInfos) {
         super(pipelineId);
-        this.testClassRunInfo = testClassRunInfo;
+        this.testClassRunInfos = testClassRunInfos;
     }
 
-    public TestClassRunInfo getTestClassRunInfo() {
-        return testClassRunInfo;
+    public List<TestClassRunInfo> getTestClassRunInfos() {
+        return testClassRunInfos;
     }
 
     private void writeObject(ObjectOutputStream out) throws IOException {
-        out.writeObject(testClassRunInfo);
+        out.writeInt(testClassRunInfos.size());
+        for (TestClassRunInfo testClassRunInfo : testClassRunInfos) {
+            out.writeObject(testClassRunInfo);
+        }
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-        testClassRunInfo = (TestClassRunInfo) in.readObject();
+        final int count = in.readInt();
+        testClassRunInfos = new ArrayList<TestClassRunInfo>(count);
+        for (int i = 0; i < count; i++) {
+            testClassRunInfos.add((TestClassRunInfo) in.readObject());
+        }
     }
 }
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.testing.execution.control.server;
 
+import org.apache.mina.core.session.IoSession;
 import org.gradle.api.testing.execution.Pipeline;
 import org.gradle.api.testing.execution.fork.ForkControl;
 import org.gradle.api.testing.execution.fork.ForkInfo;
@@ -23,6 +24,10 @@ import org.gradle.api.testing.execution.fork.policies.local.single.LocalSimpleFo
 import org.gradle.api.testing.fabric.TestClassRunInfo;
 import org.gradle.util.exec.ExecHandleState;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * @author Tom Eyckmans
  */
@@ -33,6 +38,11 @@ public class TestServerClientHandle {
 
     private ForkStatus status = ForkStatus.INIT;
     private TestClassRunInfo currentTest;
+    private final List<TestClassRunInfo> outstandingTests = new ArrayList<TestClassRunInfo>();
+    private IoSession waitingSession;
+    private int waitingTestCount;
+    private long waitingSince;
+    private volatile long memoryUsage;
 
     public TestServerClientHandle(Pipeline pipeline, int forkId, ForkControl forkControl) {
         this.pipeline = pipeline;
@@ -40,6 +50,10 @@ public class TestServerClientHandle {
         this.forkControl = forkControl;
     }
 
+    public int getForkId() {
+        return forkId;
+    }
+
     public ForkStatus getStatus() {
         return status;
     }
@@ -52,6 +66,91 @@ public class TestServerClientHandle {
         this.currentTest = currentTest;
     }
 
+    /**
+     * Records that the given tests have been sent to the fork.
+     */
+    public void testsSent(List<TestClassRunInfo> tests) {
+        outstandingTests.addAll(tests);
+    }
+
+    /**
+     * Records that the fork has completed the given test.
+     */
+    public void testCompleted(TestClassRunInfo test) {
+        for (Iterator<TestClassRunInfo> iterator = outstandingTests.iterator(); iterator.hasNext();) {
+            if (iterator.next().getTestClassName().equals(test.getTestClassName())) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    public boolean hasOutstandingTests() {
+        return !outstandingTests.isEmpty();
+    }
+
+    /**
+     * Removes and returns the tests which have been sent to the fork but not completed.
+     */
+    public List<TestClassRunInfo> takeOutstandingTests() {
+        final List<TestClassRunInfo> tests = new ArrayList<TestClassRunInfo>(outstandingTests);
+        outstandingTests.clear();
+        return tests;
+    }
+
+    /**
+     * Records that the fork is idle and would like tests to be sent over the given session as soon as they become
+     * available.
+     */
+    public void waitForTests(IoSession ioSession, int testCount) {
+        waitingSession = ioSession;
+        waitingTestCount = testCount;
+        waitingSince = System.currentTimeMillis();
+    }
+
+    public void stopWaiting() {
+        waitingSession = null;
+        waitingTestCount = 0;
+    }
+
+    public boolean isWaitingForTests() {
+        return waitingSession != null;
+    }
+
+    public IoSession getWaitingSession() {
+        return waitingSession;
+    }
+
+    public int getWaitingTestCount() {
+        return waitingTestCount;
+    }
+
+    /**
+     * Returns the time the fork started waiting for tests, in ms.
+     */
+    public long getWaitingSince() {
+        return waitingSince;
+    }
+
+    /**
+     * Returns the amount of memory last reported by the fork, in bytes.
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public void setMemoryUsage(long memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
+    /**
+     * Marks the fork as stopped for good, so that it is not restarted when it exits.
+     */
+    public void retire() {
+        status = ForkStatus.STOPPED;
+        getForkInfo().setRestarting(false);
+    }
+
     public void scheduleForkRestart() {
         status = ForkStatus.RESTART;
         getForkInfo().setRestarting(true);
@@ -72,7 +171,7 @@ public class TestServerClientHandle {
 
         // TODO handle forkEndState of stopped fork
 
-        if (!pipeline.isPipelineSplittingEnded())
+        if (status != ForkStatus.STOPPED && !pipeline.isPipelineSplittingEnded())
             forkControl.requestForkStart(forkInfo);
     }
 }
@@ -19,6 +19,7 @@ import org.apache.mina.core.session.IoSession;
 import org.gradle.api.testing.execution.PipelineDispatcher;
 import org.gradle.api.testing.execution.control.messages.client.NextActionRequestMessage;
 import org.gradle.api.testing.execution.control.messages.server.ExecuteTestActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.SoftReforkActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.StopForkActionMessage;
 import org.gradle.api.testing.execution.control.messages.server.WaitActionMesssage;
 import org.gradle.api.testing.execution.control.refork.ReforkDecisionContext;
@@ -28,6 +29,7 @@ import org.gradle.api.testing.fabric.TestClassRunInfo;
 import org.gradle.api.testing.reporting.Report;
 import org.gradle.api.testing.reporting.TestClassProcessResultReportInfo;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -42,51 +44,51 @@ public class NextActionRequestMessageHandler extends AbstractTestServerControlMe
         final NextActionRequestMessage message = (NextActionRequestMessage) controlMessage;
         final int forkId = message.getForkId();
 
-        if (pipelineDispatcher.isStopping()) {
-            ioSession.write(new StopForkActionMessage(pipeline.getId()));
-        } else {
-            if (pipelineDispatcher.isAllTestsExecuted() && pipelineDispatcher.isPipelineSplittingEnded()) {
-                ioSession.write(new StopForkActionMessage(pipeline.getId()));
+        pipelineDispatcher.getClientHandle(forkId).setMemoryUsage(message.getMemoryUsage());
 
-                pipelineDispatcher.stop();
-            } else {
-                final TestClassProcessResult previousProcessedTestResult = message.getPreviousProcessedTestResult();
-                if (previousProcessedTestResult != null) {
-                    // TODO dispatch previous test result to handle reporting
-                    final List<Report> reports = pipeline.getReports();
-                    for ( final Report report : reports ) {
-                        report.addReportInfo(new TestClassProcessResultReportInfo(pipeline, previousProcessedTestResult));
-                    }
-                }
+        final TestClassProcessResult previousProcessedTestResult = message.getPreviousProcessedTestResult();
+        if (previousProcessedTestResult != null) {
+            pipelineDispatcher.testCompleted(forkId, previousProcessedTestResult);
 
-                final ReforkDecisionContext reforkDecisionContext = message.getReforkDecisionContext();
-                boolean reforkNeeded = false;
-                if (reforkDecisionContext != null) {
-                    reforkNeeded = pipelineDispatcher.determineReforkNeeded(forkId, reforkDecisionContext);
-                }
+            // TODO dispatch previous test result to handle reporting
+            final List<Report> reports = pipeline.getReports();
+            for ( final Report report : reports ) {
+                report.addReportInfo(new TestClassProcessResultReportInfo(pipeline, previousProcessedTestResult));
+            }
+        }
 
-                if (reforkNeeded) {
-                    pipelineDispatcher.scheduleForkRestart(forkId);
+        // the fork holds its next test until it receives a reply to a request which carries refork data
+        final ReforkDecisionContext reforkDecisionContext = message.getReforkDecisionContext();
+        final boolean replyRequired = reforkDecisionContext != null;
 
-                    ioSession.write(new StopForkActionMessage(pipeline.getId()));
-                } else {
-                    boolean wait = false;
+        if (pipelineDispatcher.isStopping()) {
+            // let the fork complete the tests it has already been sent
+            if (!pipelineDispatcher.hasOutstandingTests(forkId)) {
+                ioSession.write(new StopForkActionMessage(pipeline.getId()));
+            } else if (replyRequired) {
+                ioSession.write(new ExecuteTestActionMessage(pipeline.getId(), new ArrayList<TestClassRunInfo>()));
+            }
+        } else {
+            boolean reforkNeeded = false;
+            if (reforkDecisionContext != null) {
+                reforkNeeded = pipelineDispatcher.determineReforkNeeded(forkId, reforkDecisionContext);
+            }
 
-                    if (pipelineDispatcher.getClientHandle(forkId).getStatus() == ForkStatus.TESTING) {
-                        TestClassRunInfo nextTest = pipelineDispatcher.getNextTest();
+            if (reforkNeeded && !pipeline.getTestTask().isSoftRefork()) {
+                pipelineDispatcher.scheduleForkRestart(forkId);
+                pipelineDispatcher.requeueOutstandingTests(forkId);
 
-                        if (nextTest != null) {
-                            ioSession.write(new ExecuteTestActionMessage(pipeline.getId(), nextTest));
-                        } else { // no tests for pipeline yet
-                            wait = true;
-                        }
-                    } else { // fork not in RUN_TEST mode
-                        wait = !reforkNeeded;
-                    }
+                ioSession.write(new StopForkActionMessage(pipeline.getId()));
+            } else {
+                if (reforkNeeded) {
+                    // the fork replaces its sandbox classloader and keeps the tests it has already been sent
+                    ioSession.write(new SoftReforkActionMessage(pipeline.getId()));
+                }
 
-                    if (wait) {
-                        ioSession.write(new WaitActionMesssage(pipeline.getId(), 1000));
-                    }
+                if (pipelineDispatcher.getClientHandle(forkId).getStatus() == ForkStatus.TESTING) {
+                    pipelineDispatcher.dispatchTests(forkId, ioSession, message.getRequestedTestCount(), replyRequired);
+                } else { // fork not in RUN_TEST mode
+                    ioSession.write(new WaitActionMesssage(pipeline.getId(), 1000));
                 }
             }
         }
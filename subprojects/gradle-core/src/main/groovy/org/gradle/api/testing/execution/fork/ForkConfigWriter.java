@@ -48,11 +48,21 @@ public class ForkConfigWriter {
         File forkConfigFile = null;
         try {
             forkConfigFile = File.createTempFile(".gradle", "fork.config");
+
+            FileUtils.writeStringToFile(forkConfigFile, createConfig());
         }
         catch (IOException e) {
             throw new UncheckedIOException(e);
         }
 
+        return forkConfigFile;
+    }
+
+    /**
+     * Returns the contents of the fork config file, which are sent to a pooled fork instead of being written to a
+     * file.
+     */
+    public String createConfig() {
         StringWriter strWriter = new StringWriter();
         BufferedWriter configFileWriter = null;
         try {
@@ -100,8 +110,6 @@ public class ForkConfigWriter {
             configFileWriter.newLine();
 
             configFileWriter.flush();
-
-            FileUtils.writeStringToFile(forkConfigFile, strWriter.toString());
         }
         catch (IOException e) {
             throw new GradleException("failed to create fork config file", e);
@@ -110,6 +118,6 @@ public class ForkConfigWriter {
             IOUtils.closeQuietly(configFileWriter);
         }
 
-        return forkConfigFile;
+        return strWriter.toString();
     }
 }
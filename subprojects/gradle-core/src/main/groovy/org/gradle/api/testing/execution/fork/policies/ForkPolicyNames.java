@@ -19,5 +19,6 @@ package org.gradle.api.testing.execution.fork.policies;
  * @author Tom Eyckmans
  */
 public enum ForkPolicyNames implements ForkPolicyName {
-    LOCAL_SIMPLE
+    LOCAL_SIMPLE,
+    LOCAL_AUTO_SCALE
 }
@@ -15,6 +15,7 @@
  */
 package org.gradle.api.testing.execution.fork.policies;
 
+import org.gradle.api.testing.execution.fork.policies.local.autoscale.AutoScaleForkPolicy;
 import org.gradle.api.testing.execution.fork.policies.local.single.LocalSimpleForkPolicy;
 
 import java.util.Map;
@@ -28,6 +29,7 @@ public class ForkPolicyRegister {
 
     static {
         registerForkPolicy(new LocalSimpleForkPolicy());
+        registerForkPolicy(new AutoScaleForkPolicy());
     }
 
     public static void registerForkPolicy(final ForkPolicy forkPolicy) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.policies.local;
+
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.tasks.testing.NativeTest;
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.PipelineDispatcher;
+import org.gradle.api.testing.execution.control.server.TestServerClientHandleFactory;
+import org.gradle.api.testing.execution.control.server.TestServersManager;
+import org.gradle.api.testing.execution.fork.ForkConfigWriter;
+import org.gradle.api.testing.execution.fork.ForkControl;
+import org.gradle.api.testing.execution.fork.ForkControlListener;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyForkInfo;
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyInstance;
+import org.gradle.api.testing.execution.fork.policies.local.single.LocalSimpleForkPolicyForkInfo;
+import org.gradle.api.testing.execution.fork.pool.ForkPool;
+import org.gradle.api.testing.fabric.TestFrameworkInstance;
+import org.gradle.util.exec.DummyExecOutputHandle;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleBuilder;
+
+import java.io.File;
+
+/**
+ * Base class for fork policies which start the forks as processes on the local machine. When the test task reuses
+ * forks, the forks are leased from the {@link ForkPool} of the build instead.
+ */
+public abstract class AbstractLocalForkPolicyInstance implements ForkPolicyInstance {
+    private static final String FORK_LAUNCHER_CLASS_NAME = "org.gradle.api.testing.execution.fork.ForkLaunchMain";
+    private static final String FORK_EXECUTER_CLASS_NAME = "org.gradle.api.testing.execution.control.client.TestForkExecuter";
+
+    protected final Pipeline pipeline;
+    protected final ForkControl forkControl;
+    protected final TestServersManager testServersManager;
+
+    private int controlServerPort;
+
+    protected AbstractLocalForkPolicyInstance(Pipeline pipeline, ForkControl forkControl, TestServersManager testServersManager) {
+        if (pipeline == null) throw new IllegalArgumentException("pipeline is null!");
+        if (forkControl == null) throw new IllegalArgumentException("forkControl is null!");
+        if (testServersManager == null) throw new IllegalArgumentException("testServersManager is null!");
+
+        this.pipeline = pipeline;
+        this.forkControl = forkControl;
+        this.testServersManager = testServersManager;
+    }
+
+    public ForkPolicyForkInfo createForkPolicyForkInfo() {
+        return new LocalSimpleForkPolicyForkInfo(this);
+    }
+
+    /**
+     * Creates the dispatcher of the pipeline and starts the test server the forks connect to.
+     */
+    protected PipelineDispatcher startTestServer() {
+        final PipelineDispatcher pipelineDispatcher = new PipelineDispatcher(pipeline, new TestServerClientHandleFactory(forkControl));
+        pipeline.setDispatcher(pipelineDispatcher);
+
+        controlServerPort = testServersManager.addAndStartServer(pipeline, pipelineDispatcher);
+
+        return pipelineDispatcher;
+    }
+
+    public void startFork(ForkInfo forkInfo) {
+        final LocalSimpleForkPolicyForkInfo policyInfo = (LocalSimpleForkPolicyForkInfo) forkInfo.getForkPolicyInfo();
+
+        final ExecHandleBuilder forkHandleBuilder = policyInfo.getForkHandleBuilder();
+
+        final ExecHandle forkHandle;
+        if (policyInfo.getForkConfig() == null) {
+            forkHandle = forkHandleBuilder.getExecHandle();
+        } else {
+            final ForkPool forkPool = ((ProjectInternal) forkInfo.getPipeline().getTestTask().getProject()).getServiceRegistryFactory().get(ForkPool.class);
+            forkHandle = forkPool.createExecHandle(forkHandleBuilder, FORK_EXECUTER_CLASS_NAME, policyInfo.getForkConfig(), forkInfo);
+        }
+
+        policyInfo.setForkHandle(forkHandle);
+
+        forkHandle.addListeners(new ForkControlListener(forkControl, forkInfo.getPipeline().getId(), forkInfo.getId()));
+        forkHandle.start();
+    }
+
+    public void stop() {
+        testServersManager.stopServer(pipeline);
+    }
+
+    public void initializeFork(ForkInfo forkInfo) {
+        final LocalSimpleForkPolicyForkInfo policyInfo = (LocalSimpleForkPolicyForkInfo) forkInfo.getForkPolicyInfo();
+        final Pipeline pipeline = forkInfo.getPipeline();
+        final NativeTest testTask = pipeline.getTestTask();
+        final int pipelineId = pipeline.getId();
+        final Project project = testTask.getProject();
+        final TestFrameworkInstance testFramework = testTask.getTestFramework();
+        final ForkConfigWriter forkConfigWriter = new ForkConfigWriter(testTask, pipelineId, forkInfo.getId(), controlServerPort);
+
+        final ExecHandleBuilder forkHandleBuilder = new ExecHandleBuilder(false) // TODO we probably want loggers for each fork
+                .execDirectory(project.getRootDir())
+                .execCommand("java")
+                .errorOutputHandle(new DummyExecOutputHandle())
+                .standardOutputHandle(new DummyExecOutputHandle());
+
+        testFramework.applyForkJvmArguments(forkHandleBuilder);
+
+        forkHandleBuilder.arguments(
+                "-cp",
+                System.getProperty("gradle.fork.launcher.cp"),
+                FORK_LAUNCHER_CLASS_NAME
+        );
+
+        if (testTask.isReuseForks()) {
+            // the fork pool adds the pool arguments and sends the config over its connection to the fork
+            policyInfo.setForkConfig(forkConfigWriter.createConfig());
+        } else {
+            final File forkConfigFile = forkConfigWriter.writeConfigFile();
+
+            forkHandleBuilder.arguments(
+                    forkConfigFile.getAbsolutePath(),
+                    FORK_EXECUTER_CLASS_NAME
+            );
+        }
+
+        testFramework.applyForkArguments(forkHandleBuilder);
+
+        policyInfo.setForkHandleBuilder(forkHandleBuilder);
+    }
+}
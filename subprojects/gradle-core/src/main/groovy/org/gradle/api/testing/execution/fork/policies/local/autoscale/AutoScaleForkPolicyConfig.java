@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.policies.local.autoscale;
+
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyConfig;
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyName;
+
+public class AutoScaleForkPolicyConfig extends ForkPolicyConfig {
+
+    private int minimumNumberOfForks;
+    private int maximumNumberOfForks;
+    private int testsPerFork;
+    private long idleTimeout;
+
+    public AutoScaleForkPolicyConfig(ForkPolicyName policyName) {
+        super(policyName);
+
+        this.minimumNumberOfForks = 1;
+        this.maximumNumberOfForks = Runtime.getRuntime().availableProcessors();
+        this.testsPerFork = 20;
+        this.idleTimeout = 2000;
+    }
+
+    /**
+     * Returns the number of forks which are kept running while they wait for tests, until all tests have been found.
+     */
+    public int getMinimumNumberOfForks() {
+        return minimumNumberOfForks;
+    }
+
+    public void setMinimumNumberOfForks(int minimumNumberOfForks) {
+        if (minimumNumberOfForks < 0) throw new IllegalArgumentException("minimumNumberOfForks smaller then zero!");
+
+        this.minimumNumberOfForks = minimumNumberOfForks;
+    }
+
+    /**
+     * Returns the maximum number of forks to start. Defaults to the number of available processors. The maximum number
+     * of forks of the test task also applies.
+     */
+    public int getMaximumNumberOfForks() {
+        return maximumNumberOfForks;
+    }
+
+    public void setMaximumNumberOfForks(int maximumNumberOfForks) {
+        if (maximumNumberOfForks <= 0) throw new IllegalArgumentException("maximumNumberOfForks smaller then one!");
+
+        this.maximumNumberOfForks = maximumNumberOfForks;
+    }
+
+    /**
+     * Returns the number of waiting tests for which one fork is started.
+     */
+    public int getTestsPerFork() {
+        return testsPerFork;
+    }
+
+    public void setTestsPerFork(int testsPerFork) {
+        if (testsPerFork <= 0) throw new IllegalArgumentException("testsPerFork smaller then one!");
+
+        this.testsPerFork = testsPerFork;
+    }
+
+    /**
+     * Returns the time in ms a fork waits for tests before it is stopped.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) throw new IllegalArgumentException("idleTimeout smaller then zero!");
+
+        this.idleTimeout = idleTimeout;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.policies.local.autoscale;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.PipelineDispatcher;
+import org.gradle.api.testing.execution.PipelineDispatcherForkInfoListener;
+import org.gradle.api.testing.execution.control.server.TestServersManager;
+import org.gradle.api.testing.execution.fork.ForkControl;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.api.testing.execution.fork.ForkInfoListener;
+import org.gradle.api.testing.execution.fork.policies.local.AbstractLocalForkPolicyInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the number of forks of a pipeline at a fixed interval. A fork is started for every {@link
+ * AutoScaleForkPolicyConfig#getTestsPerFork()} tests waiting to be dispatched, up to the configured maximum, so the
+ * first fork starts as soon as the first test is found. A new fork is only started when the machine has enough free
+ * memory for another fork of the size reported by the running forks. When the JVM does not report the free physical
+ * memory of the machine, at most one fork per available processor is started instead. A fork which has been waiting
+ * for tests for longer than the idle timeout is stopped, while there are no tests waiting.
+ */
+public class AutoScaleForkPolicyInstance extends AbstractLocalForkPolicyInstance {
+    private static final Logger logger = LoggerFactory.getLogger(AutoScaleForkPolicyInstance.class);
+    static final long SCALE_INTERVAL = 100;
+    private static final double MEMORY_HEADROOM = 1.5;
+    private static final Method FREE_PHYSICAL_MEMORY_METHOD = findFreePhysicalMemoryMethod();
+
+    private final Set<Integer> activeForks = new HashSet<Integer>();
+    private final ForkInfoListener activeForksListener = new ActiveForksListener();
+    private PipelineDispatcher pipelineDispatcher;
+    private ScheduledExecutorService scaler;
+
+    public AutoScaleForkPolicyInstance(Pipeline pipeline, ForkControl forkControl, TestServersManager testServersManager) {
+        super(pipeline, forkControl, testServersManager);
+    }
+
+    public void initialize() {
+        logger.info("Setting up test server for pipeline {}", pipeline.getId());
+
+        pipelineDispatcher = startTestServer();
+
+        startScaler();
+    }
+
+    void startScaler() {
+        scaler = Executors.newSingleThreadScheduledExecutor(new ScalerThreadFactory());
+        scaler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    scale();
+                }
+                catch (Throwable t) {
+                    logger.error("failed to scale the forks of pipeline " + pipeline.getId(), t);
+                }
+            }
+        }, 0, SCALE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (scaler != null) {
+            scaler.shutdownNow();
+        }
+
+        super.stop();
+    }
+
+    void scale() {
+        if (pipelineDispatcher.isStopping()) {
+            return;
+        }
+
+        final AutoScaleForkPolicyConfig config = (AutoScaleForkPolicyConfig) pipeline.getConfig().getForkPolicyConfig();
+        final int pendingTestCount = pipelineDispatcher.getPendingTestCount();
+        final int activeForkCount = getActiveForkCount();
+
+        if (pendingTestCount > 0) {
+            final int wantedForkCount = Math.min(config.getMaximumNumberOfForks(), (pendingTestCount + config.getTestsPerFork() - 1) / config.getTestsPerFork());
+            if (activeForkCount == 0 || (activeForkCount < wantedForkCount && isMemoryAvailable(activeForkCount))) {
+                startFork();
+            }
+        } else if (activeForkCount > config.getMinimumNumberOfForks() && !pipeline.isPipelineSplittingEnded()) {
+            // once all tests have been found, the dispatcher stops the forks as they run out of tests
+            if (pipelineDispatcher.retireIdleFork(config.getIdleTimeout())) {
+                logger.debug("stopped an idle fork of pipeline {}", pipeline.getId());
+            }
+        }
+    }
+
+    private void startFork() {
+        final ForkInfo forkInfo = forkControl.requestForkStart(pipeline);
+        forkInfo.addListener(new PipelineDispatcherForkInfoListener(pipelineDispatcher));
+        forkInfo.addListener(activeForksListener);
+
+        synchronized (activeForks) {
+            activeForks.add(forkInfo.getId());
+        }
+
+        logger.debug("requested start of fork {} for pipeline {}", forkInfo.getId(), pipeline.getId());
+    }
+
+    private int getActiveForkCount() {
+        synchronized (activeForks) {
+            return activeForks.size();
+        }
+    }
+
+    private boolean isMemoryAvailable(int activeForkCount) {
+        final long freeMemory = getFreePhysicalMemory();
+        if (freeMemory < 0) {
+            return activeForkCount < Runtime.getRuntime().availableProcessors();
+        }
+        final long forkMemoryUsage = pipelineDispatcher.getMaximumForkMemoryUsage();
+        return forkMemoryUsage == 0 || freeMemory > forkMemoryUsage * MEMORY_HEADROOM;
+    }
+
+    /**
+     * Returns the free physical memory of the machine in bytes, or -1 when the JVM does not provide it.
+     */
+    long getFreePhysicalMemory() {
+        if (FREE_PHYSICAL_MEMORY_METHOD == null) {
+            return -1;
+        }
+        try {
+            return ((Number) FREE_PHYSICAL_MEMORY_METHOD.invoke(ManagementFactory.getOperatingSystemMXBean())).longValue();
+        }
+        catch (Throwable t) {
+            return -1;
+        }
+    }
+
+    /**
+     * Looks up the free physical memory method on the public interface of the Sun JVMs, so that no access checks need
+     * to be suppressed. Returns null when this JVM does not provide the method.
+     */
+    private static Method findFreePhysicalMemoryMethod() {
+        try {
+            final Class<?> operatingSystemType = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (!operatingSystemType.isInstance(ManagementFactory.getOperatingSystemMXBean())) {
+                return null;
+            }
+            return operatingSystemType.getMethod("getFreePhysicalMemorySize");
+        }
+        catch (Throwable t) {
+            logger.debug("the free physical memory of the machine is not available", t);
+            return null;
+        }
+    }
+
+    private class ActiveForksListener implements ForkInfoListener {
+        public void started(int forkId) {
+            synchronized (activeForks) {
+                activeForks.add(forkId);
+            }
+        }
+
+        public void stopped(int forkId, Throwable cause) {
+            synchronized (activeForks) {
+                activeForks.remove(forkId);
+            }
+        }
+    }
+
+    private static class ScalerThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Fork scaler %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -28,6 +28,7 @@ public class LocalSimpleForkPolicyForkInfo implements ForkPolicyForkInfo {
     private final ForkPolicyInstance policyInstance;
     private ExecHandleBuilder forkHandleBuilder;
     private ExecHandle forkHandle;
+    private String forkConfig;
 
     public LocalSimpleForkPolicyForkInfo(ForkPolicyInstance policyInstance) {
         this.policyInstance = policyInstance;
@@ -49,6 +50,17 @@ public class LocalSimpleForkPolicyForkInfo implements ForkPolicyForkInfo {
         this.forkHandle = forkHandle;
     }
 
+    /**
+     * Returns the fork config to send to a pooled fork, or null when the fork is started as a new process.
+     */
+    public String getForkConfig() {
+        return forkConfig;
+    }
+
+    public void setForkConfig(String forkConfig) {
+        this.forkConfig = forkConfig;
+    }
+
     public ForkPolicyInstance getPolicyInstance() {
         return policyInstance;
     }
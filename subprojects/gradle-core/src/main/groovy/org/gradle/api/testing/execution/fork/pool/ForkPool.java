@@ -0,0 +1,316 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.pool;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.util.exec.DummyExecOutputHandle;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleBuilder;
+import org.gradle.util.exec.ExecHandleState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of fork processes which are kept alive for the rest of the build. The pool of a build is provided by the
+ * build's service registry, which stops the pool when the build finishes. A pooled fork runs the ForkLaunchMain in
+ * pooled mode: it connects back to the pool and executes the configs the pool sends it, one at a time. Between two
+ * configs the fork is idle and can be leased by any pipeline which starts its forks with the same command, directory,
+ * arguments and environment.
+ * <p/>
+ * The shared and control classloaders of a pooled fork are reused between leases, only the sandbox classloader is
+ * created for each lease. A fork which failed to execute its config, or which is being restarted, is not returned to the
+ * pool, so that a restart always results in a new process.
+ */
+public class ForkPool {
+    private static final Logger logger = LoggerFactory.getLogger(ForkPool.class);
+    private static final long CONNECT_TIMEOUT = 60000;
+
+    private final int maximumIdleForks;
+    private final Lock lock = new ReentrantLock();
+    private final Condition forkConnected = lock.newCondition();
+    private final Map<Integer, PooledFork> startingForks = new HashMap<Integer, PooledFork>();
+    private final Map<String, LinkedList<PooledFork>> idleForks = new HashMap<String, LinkedList<PooledFork>>();
+    private int idleForkCount;
+    private int processIdCounter;
+    private ServerSocket serverSocket;
+    private boolean stopped;
+
+    public ForkPool(int maximumIdleForks) {
+        if (maximumIdleForks < 0) throw new IllegalArgumentException("maximumIdleForks is lower than zero!");
+
+        this.maximumIdleForks = maximumIdleForks;
+    }
+
+    public void start() {
+        try {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final Thread acceptThread = new Thread(new Runnable() {
+            public void run() {
+                acceptConnections();
+            }
+        }, "Fork pool acceptor");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public void stop() {
+        final List<PooledFork> forksToStop = new ArrayList<PooledFork>();
+        lock.lock();
+        try {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+
+            for (final LinkedList<PooledFork> keyForks : idleForks.values()) {
+                forksToStop.addAll(keyForks);
+            }
+            idleForks.clear();
+            idleForkCount = 0;
+            forksToStop.addAll(startingForks.values());
+            startingForks.clear();
+            forkConnected.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+        }
+        for (final PooledFork fork : forksToStop) {
+            fork.close();
+        }
+    }
+
+    /**
+     * Creates a handle which executes the given config in a pooled fork, once it is started.
+     *
+     * @param forkHandleBuilder The builder of the fork process, with the arguments up to the ForkLaunchMain class.
+     * @param executerClassName The class the fork instanciates and executes for each config.
+     * @param config The contents of the fork config file.
+     * @param forkInfo The fork the config is executed for. The pooled fork is closed instead of returned to the pool
+     * when this fork is being restarted.
+     */
+    public ExecHandle createExecHandle(ExecHandleBuilder forkHandleBuilder, String executerClassName, String config, ForkInfo forkInfo) {
+        if (forkHandleBuilder == null) throw new IllegalArgumentException("forkHandleBuilder is null!");
+        if (executerClassName == null) throw new IllegalArgumentException("executerClassName is null!");
+        if (config == null) throw new IllegalArgumentException("config is null!");
+        if (forkInfo == null) throw new IllegalArgumentException("forkInfo is null!");
+
+        return new PooledExecHandle(this, forkHandleBuilder.getExecHandle(), executerClassName, config, forkInfo);
+    }
+
+    /**
+     * Leases an idle fork which was started with the same process settings, or starts a new fork when there is none.
+     */
+    PooledFork lease(ExecHandle processTemplate, String executerClassName) {
+        final String key = getKey(processTemplate, executerClassName);
+
+        lock.lock();
+        try {
+            if (stopped) throw new IllegalStateException("fork pool is stopped!");
+
+            final LinkedList<PooledFork> keyForks = idleForks.get(key);
+            while (keyForks != null && !keyForks.isEmpty()) {
+                final PooledFork fork = keyForks.removeFirst();
+                idleForkCount--;
+                if (fork.isAlive()) {
+                    logger.debug("leasing idle fork process {}", fork.getProcessId());
+                    return fork;
+                }
+                fork.close();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        return startFork(key, processTemplate, executerClassName);
+    }
+
+    /**
+     * Returns a leased fork to the pool. The fork is stopped when the pool already holds the maximum number of idle
+     * forks.
+     */
+    void release(PooledFork fork) {
+        lock.lock();
+        try {
+            if (!stopped && idleForkCount < maximumIdleForks && fork.isAlive()) {
+                LinkedList<PooledFork> keyForks = idleForks.get(fork.getKey());
+                if (keyForks == null) {
+                    keyForks = new LinkedList<PooledFork>();
+                    idleForks.put(fork.getKey(), keyForks);
+                }
+                keyForks.addLast(fork);
+                idleForkCount++;
+                return;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        fork.close();
+    }
+
+    private PooledFork startFork(String key, ExecHandle processTemplate, String executerClassName) {
+        final int processId;
+        lock.lock();
+        try {
+            processId = ++processIdCounter;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        final ExecHandle process = new ExecHandleBuilder(false)
+                .execDirectory(processTemplate.getDirectory())
+                .execCommand(processTemplate.getCommand())
+                .arguments(processTemplate.getArguments())
+                .arguments("-pool", String.valueOf(serverSocket.getLocalPort()), String.valueOf(processId), executerClassName)
+                .environment(processTemplate.getEnvironment())
+                .errorOutputHandle(new DummyExecOutputHandle())
+                .standardOutputHandle(new DummyExecOutputHandle())
+                .getExecHandle();
+
+        final PooledFork fork = new PooledFork(processId, key, process);
+
+        lock.lock();
+        try {
+            startingForks.put(processId, fork);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        logger.debug("starting fork process {}", processId);
+        process.start();
+
+        lock.lock();
+        try {
+            final long connectDeadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            long timeToWait = CONNECT_TIMEOUT;
+            while (!fork.isConnected() && !stopped && timeToWait > 0 && process.getState() == ExecHandleState.STARTED) {
+                try {
+                    forkConnected.await(Math.min(timeToWait, 100), TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e) {
+                    throw new GradleException(e);
+                }
+                timeToWait = connectDeadline - System.currentTimeMillis();
+            }
+
+            if (!fork.isConnected()) {
+                startingForks.remove(processId);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        if (!fork.isConnected()) {
+            fork.kill();
+            throw new GradleException("fork process " + processId + " failed to connect to the fork pool!");
+        }
+
+        return fork;
+    }
+
+    private void acceptConnections() {
+        while (true) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            }
+            catch (IOException e) {
+                lock.lock();
+                try {
+                    if (stopped) {
+                        return;
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+                logger.error("failed to accept a fork process connection", e);
+                continue;
+            }
+
+            try {
+                socket.setSoTimeout((int) CONNECT_TIMEOUT);
+                final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final int processId = input.readInt();
+                socket.setSoTimeout(0);
+
+                lock.lock();
+                try {
+                    final PooledFork fork = startingForks.remove(processId);
+                    if (fork == null) {
+                        socket.close();
+                    } else {
+                        fork.connected(socket, input);
+                        forkConnected.signalAll();
+                    }
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+            catch (IOException e) {
+                logger.error("failed to read the id of a fork process", e);
+                try {
+                    socket.close();
+                }
+                catch (IOException closeException) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    static String getKey(ExecHandle processTemplate, String executerClassName) {
+        return processTemplate.getDirectory().getAbsolutePath() + '\n'
+                + processTemplate.getCommand() + '\n'
+                + processTemplate.getArguments() + '\n'
+                + new TreeMap<String, String>(processTemplate.getEnvironment()) + '\n'
+                + executerClassName;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.pool;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.util.ThreadUtils;
+import org.gradle.util.exec.DefaultExecHandleNotifierFactory;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleListener;
+import org.gradle.util.exec.ExecHandleNotifierFactory;
+import org.gradle.util.exec.ExecHandleState;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link ExecHandle} which executes a fork config in a fork leased from a {@link ForkPool}, instead of starting a
+ * new process. The handle has finished once the fork has executed the config, after which the fork is returned to the
+ * pool. The fork is closed instead when it failed to execute the config or when the fork it executed the config for is
+ * being restarted, as a restart has to discard the classloaders the pooled fork holds on to.
+ */
+public class PooledExecHandle implements ExecHandle {
+    private final ForkPool pool;
+    private final ExecHandle processTemplate;
+    private final String executerClassName;
+    private final String config;
+    private final ForkInfo forkInfo;
+    private final List<ExecHandleListener> listeners = new CopyOnWriteArrayList<ExecHandleListener>();
+    private final ExecHandleNotifierFactory notifierFactory = new DefaultExecHandleNotifierFactory();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition stateChange = lock.newCondition();
+    private ExecHandleState state = ExecHandleState.INIT;
+    private Throwable failureCause;
+    private PooledFork fork;
+
+    PooledExecHandle(ForkPool pool, ExecHandle processTemplate, String executerClassName, String config, ForkInfo forkInfo) {
+        this.pool = pool;
+        this.processTemplate = processTemplate;
+        this.executerClassName = executerClassName;
+        this.config = config;
+        this.forkInfo = forkInfo;
+        this.listeners.addAll(processTemplate.getListeners());
+    }
+
+    public File getDirectory() {
+        return processTemplate.getDirectory();
+    }
+
+    public String getCommand() {
+        return processTemplate.getCommand();
+    }
+
+    public List<String> getArguments() {
+        return processTemplate.getArguments();
+    }
+
+    public Map<String, String> getEnvironment() {
+        return processTemplate.getEnvironment();
+    }
+
+    public ExecHandleState getState() {
+        lock.lock();
+        try {
+            return state;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getNormalTerminationExitCode() {
+        return 0;
+    }
+
+    public int getExitCode() {
+        lock.lock();
+        try {
+            if (state != ExecHandleState.SUCCEEDED && state != ExecHandleState.FAILED)
+                throw new IllegalStateException("not in succeeded or failed state!");
+            return state == ExecHandleState.SUCCEEDED ? 0 : -1;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public Throwable getFailureCause() {
+        lock.lock();
+        try {
+            if (state != ExecHandleState.FAILED)
+                throw new IllegalStateException("not in failed state!");
+            return failureCause;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (state != ExecHandleState.INIT) throw new IllegalStateException("already started!");
+            state = ExecHandleState.STARTING;
+            stateChange.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        ThreadUtils.run(new Runnable() {
+            public void run() {
+                executeInFork();
+            }
+        });
+    }
+
+    public void abort() {
+        final PooledFork abortedFork;
+        lock.lock();
+        try {
+            if (state != ExecHandleState.STARTED) throw new IllegalStateException("not in started state!");
+            state = ExecHandleState.ABORTED;
+            stateChange.signalAll();
+            abortedFork = fork;
+        }
+        finally {
+            lock.unlock();
+        }
+
+        abortedFork.kill();
+        ThreadUtils.run(notifierFactory.createAbortedNotifier(this));
+    }
+
+    public ExecHandleState waitForFinish() {
+        lock.lock();
+        try {
+            while (state == ExecHandleState.STARTING || state == ExecHandleState.STARTED) {
+                stateChange.awaitUninterruptibly();
+            }
+            return state;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public ExecHandleState startAndWaitForFinish() {
+        start();
+        return waitForFinish();
+    }
+
+    public List<ExecHandleListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    public void addListeners(ExecHandleListener... listeners) {
+        if (listeners == null) throw new IllegalArgumentException("listeners == null!");
+        this.listeners.addAll(Arrays.asList(listeners));
+    }
+
+    public void removeListeners(ExecHandleListener... listeners) {
+        if (listeners == null) throw new IllegalArgumentException("listeners == null!");
+        this.listeners.removeAll(Arrays.asList(listeners));
+    }
+
+    private void executeInFork() {
+        final PooledFork leasedFork;
+        try {
+            leasedFork = pool.lease(processTemplate, executerClassName);
+        }
+        catch (Throwable t) {
+            failed(t);
+            return;
+        }
+
+        lock.lock();
+        try {
+            fork = leasedFork;
+            state = ExecHandleState.STARTED;
+            stateChange.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+        ThreadUtils.run(notifierFactory.createStartedNotifier(this));
+
+        try {
+            final boolean succeeded = leasedFork.execute(config);
+
+            if (succeeded && !forkInfo.isRestarting()) {
+                pool.release(leasedFork);
+            } else {
+                leasedFork.close();
+            }
+
+            if (succeeded) {
+                succeeded();
+            } else {
+                failed(new GradleException("fork process " + leasedFork.getProcessId() + " failed to execute its config!"));
+            }
+        }
+        catch (IOException e) {
+            leasedFork.kill();
+            failed(e);
+        }
+    }
+
+    private void succeeded() {
+        if (finish(ExecHandleState.SUCCEEDED, null)) {
+            ThreadUtils.run(notifierFactory.createSucceededNotifier(this));
+        }
+    }
+
+    private void failed(Throwable cause) {
+        if (finish(ExecHandleState.FAILED, cause)) {
+            ThreadUtils.run(notifierFactory.createFailedNotifier(this));
+        }
+    }
+
+    private boolean finish(ExecHandleState endState, Throwable cause) {
+        lock.lock();
+        try {
+            if (state == ExecHandleState.ABORTED) {
+                return false;
+            }
+            state = endState;
+            failureCause = cause;
+            stateChange.signalAll();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
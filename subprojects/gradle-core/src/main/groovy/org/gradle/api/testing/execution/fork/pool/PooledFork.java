@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.pool;
+
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleState;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * A fork process of a {@link ForkPool} and the connection the pool uses to send configs to it.
+ */
+class PooledFork {
+    private final int processId;
+    private final String key;
+    private final ExecHandle process;
+    private Socket socket;
+    private DataInputStream input;
+    private DataOutputStream output;
+
+    PooledFork(int processId, String key, ExecHandle process) {
+        this.processId = processId;
+        this.key = key;
+        this.process = process;
+    }
+
+    public int getProcessId() {
+        return processId;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public ExecHandle getProcess() {
+        return process;
+    }
+
+    public synchronized void connected(Socket socket, DataInputStream input) throws IOException {
+        this.socket = socket;
+        this.input = input;
+        this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public synchronized boolean isConnected() {
+        return socket != null;
+    }
+
+    public synchronized boolean isAlive() {
+        return socket != null && !socket.isClosed() && process.getState() == ExecHandleState.STARTED;
+    }
+
+    /**
+     * Sends the config to the fork and waits until the fork has executed it.
+     *
+     * @return Whether the fork executed the config successfully.
+     */
+    public boolean execute(String config) throws IOException {
+        final DataInputStream input;
+        synchronized (this) {
+            if (socket == null || socket.isClosed()) throw new IOException("fork process " + processId + " is not connected!");
+
+            final byte[] configBytes = config.getBytes("UTF-8");
+            output.writeInt(configBytes.length);
+            output.write(configBytes);
+            output.flush();
+
+            input = this.input;
+        }
+
+        return input.readBoolean();
+    }
+
+    /**
+     * Closes the connection to the fork, which makes the fork exit.
+     */
+    public synchronized void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Closes the connection to the fork and aborts the fork process.
+     */
+    public void kill() {
+        close();
+        try {
+            process.abort();
+        }
+        catch (IllegalStateException e) {
+            // the process has already stopped
+        }
+    }
+}
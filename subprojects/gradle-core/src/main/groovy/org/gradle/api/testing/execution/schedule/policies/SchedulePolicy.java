@@ -1,29 +1,26 @@
-/*
- * Copyright 2009 the original author or authors.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package org.gradle.api.internal.file.pattern;
-
-/**
- * @author Steve Appling
- */
-public class GreedyPatternStep implements PatternStep{
-    public boolean matches(String candidate, boolean isFile) {
-        return true;
-    }
-
-    public boolean isGreedy() {
-        return true;
-    }
-}
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies;
+
+import org.gradle.api.testing.execution.Pipeline;
+
+public interface SchedulePolicy {
+    SchedulePolicyName getName();
+
+    SchedulePolicyConfig getSchedulePolicyConfigInstance();
+
+    SchedulePolicyInstance getSchedulePolicyInstance(Pipeline pipeline);
+}
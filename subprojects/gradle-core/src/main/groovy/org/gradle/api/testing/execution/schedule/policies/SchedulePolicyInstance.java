@@ -0,0 +1,50 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies;
+
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+
+import java.util.List;
+
+/**
+ * Decides the order in which the tests of a pipeline are sent to its forks. The pipeline dispatcher serializes the
+ * calls to an instance.
+ */
+public interface SchedulePolicyInstance {
+    /**
+     * Removes and returns the next tests to send to the given fork.
+     *
+     * @param forkId The fork the tests are sent to.
+     * @param maxTestCount The maximum number of tests to return.
+     * @return The tests. Empty when no tests are available.
+     */
+    List<TestClassRunInfo> nextTests(int forkId, int maxTestCount);
+
+    /**
+     * Schedules tests again, for example because they were sent to a fork which stopped before completing them.
+     */
+    void requeueTests(List<TestClassRunInfo> tests);
+
+    boolean hasPendingTests();
+
+    /**
+     * Returns the number of tests which have not yet been sent to a fork.
+     */
+    int getPendingTestCount();
+
+    void testCompleted(int forkId, TestClassProcessResult testResult);
+}
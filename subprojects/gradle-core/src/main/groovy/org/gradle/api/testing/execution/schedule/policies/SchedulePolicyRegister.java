@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies;
+
+import org.gradle.api.testing.execution.schedule.policies.duration.LongestFirstSchedulePolicy;
+import org.gradle.api.testing.execution.schedule.policies.fifo.FifoSchedulePolicy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SchedulePolicyRegister {
+    private static final Map<SchedulePolicyName, SchedulePolicy> schedulePolicies = new ConcurrentHashMap<SchedulePolicyName, SchedulePolicy>();
+
+    static {
+        registerSchedulePolicy(new FifoSchedulePolicy());
+        registerSchedulePolicy(new LongestFirstSchedulePolicy());
+    }
+
+    public static void registerSchedulePolicy(final SchedulePolicy schedulePolicy) {
+        if (schedulePolicy == null) throw new IllegalArgumentException("schedulePolicy == null!");
+
+        final SchedulePolicyName schedulePolicyName = schedulePolicy.getName();
+
+        if (schedulePolicyName == null) throw new IllegalArgumentException("schedulePolicy.name == null!");
+        if (schedulePolicies.containsKey(schedulePolicyName))
+            throw new IllegalArgumentException("schedule policy (" + schedulePolicyName + ") already registered!");
+
+        schedulePolicies.put(schedulePolicyName, schedulePolicy);
+    }
+
+    public static SchedulePolicy getSchedulePolicy(final SchedulePolicyName schedulePolicyName) {
+        if (schedulePolicyName == null) throw new IllegalArgumentException("schedulePolicyName == null!");
+
+        return schedulePolicies.get(schedulePolicyName);
+    }
+}
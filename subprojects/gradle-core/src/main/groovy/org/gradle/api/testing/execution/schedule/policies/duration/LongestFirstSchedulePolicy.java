@@ -0,0 +1,44 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.duration;
+
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.schedule.policies.*;
+import org.gradle.cache.CacheRepository;
+
+/**
+ * Sends the tests which took longest in previous builds to the forks first, so that a long test does not end up
+ * running by itself at the end of the test run.
+ */
+public class LongestFirstSchedulePolicy implements SchedulePolicy {
+    public SchedulePolicyName getName() {
+        return SchedulePolicyNames.LONGEST_FIRST;
+    }
+
+    public SchedulePolicyConfig getSchedulePolicyConfigInstance() {
+        return new SchedulePolicyConfig(getName());
+    }
+
+    public SchedulePolicyInstance getSchedulePolicyInstance(Pipeline pipeline) {
+        if (pipeline == null) throw new IllegalArgumentException("pipeline is null!");
+
+        final ProjectInternal project = (ProjectInternal) pipeline.getTestTask().getProject();
+        final CacheRepository cacheRepository = project.getServiceRegistryFactory().get(CacheRepository.class);
+
+        return new LongestFirstSchedulePolicyInstance(pipeline, new TestClassDurations(cacheRepository, pipeline));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.duration;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyInstance;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.queues.DiskSpillingQueue;
+
+import java.util.*;
+
+/**
+ * Sends the tests to the forks in order of decreasing expected duration. A test which has not been executed before is
+ * expected to take the average time of the test classes whose duration is known, as estimated at the time the test is
+ * dispatched, so that the estimate improves as tests complete. Tests with the same expected duration are sent in the
+ * order they were added to the pipeline.
+ *
+ * <p>A batch holds at most {@link #BATCH_DURATION} ms worth of tests, so that a fork which asks for several tests does
+ * not take a number of long tests which could have been executed by other forks. As forks ask for tests when they have
+ * completed their previous tests, the expected load is spread evenly over the forks.</p>
+ *
+ * <p>At most {@link #MAX_PENDING_TESTS} tests are taken from the pipeline at a time, so that a backlog which the
+ * pipeline has spilled to disk is not pulled back into memory. The tests are ordered within this window.</p>
+ */
+public class LongestFirstSchedulePolicyInstance implements SchedulePolicyInstance {
+    static final long BATCH_DURATION = 1000;
+    static final int MAX_PENDING_TESTS = 1000;
+
+    private final DiskSpillingQueue<TestClassRunInfo> testsToDispatch;
+    private final TestClassDurations durations;
+    private final PriorityQueue<ScheduledTest> knownTests = new PriorityQueue<ScheduledTest>();
+    private final LinkedList<ScheduledTest> unknownTests = new LinkedList<ScheduledTest>();
+    private final List<TestClassRunInfo> addedTests = new ArrayList<TestClassRunInfo>();
+    private final Set<String> countedTestClasses = new HashSet<String>();
+    private long sequence;
+    private long knownDurationTotal;
+    private int knownDurationCount;
+
+    public LongestFirstSchedulePolicyInstance(Pipeline pipeline, TestClassDurations durations) {
+        this.testsToDispatch = pipeline.getRunInfoQueue();
+        this.durations = durations;
+    }
+
+    public List<TestClassRunInfo> nextTests(int forkId, int maxTestCount) {
+        testsToDispatch.drainTo(addedTests, Math.max(0, MAX_PENDING_TESTS - getScheduledTestCount()));
+        for (TestClassRunInfo test : addedTests) {
+            schedule(test);
+        }
+        addedTests.clear();
+
+        final long unknownDuration = getAverageKnownDuration();
+        final List<TestClassRunInfo> tests = new ArrayList<TestClassRunInfo>();
+        long batchDuration = 0;
+        while (tests.size() < maxTestCount && getScheduledTestCount() > 0) {
+            final ScheduledTest known = knownTests.peek();
+            final ScheduledTest unknown = unknownTests.peek();
+            final boolean takeKnown = unknown == null || known != null && (known.expectedDuration > unknownDuration
+                    || known.expectedDuration == unknownDuration && known.sequence < unknown.sequence);
+            final long expectedDuration = takeKnown ? known.expectedDuration : unknownDuration;
+            if (!tests.isEmpty() && batchDuration + expectedDuration > BATCH_DURATION) {
+                break;
+            }
+            tests.add(takeKnown ? knownTests.poll().test : unknownTests.poll().test);
+            batchDuration += expectedDuration;
+        }
+        return tests;
+    }
+
+    public void requeueTests(List<TestClassRunInfo> tests) {
+        for (TestClassRunInfo test : tests) {
+            schedule(test);
+        }
+    }
+
+    public boolean hasPendingTests() {
+        return getScheduledTestCount() > 0 || !testsToDispatch.isEmpty();
+    }
+
+    public int getPendingTestCount() {
+        return getScheduledTestCount() + testsToDispatch.size();
+    }
+
+    public void testCompleted(int forkId, TestClassProcessResult testResult) {
+        durations.testCompleted(testResult);
+
+        if (testResult.getExecutionErrorReason() == null && testResult.getProcessorErrorReason() == null) {
+            // a test which was not known before now contributes its measured duration to the average
+            countDuration(testResult.getTestClassRunInfo().getTestClassName(), testResult.getDuration());
+        }
+    }
+
+    private int getScheduledTestCount() {
+        return knownTests.size() + unknownTests.size();
+    }
+
+    private long getAverageKnownDuration() {
+        return knownDurationCount == 0 ? 0 : knownDurationTotal / knownDurationCount;
+    }
+
+    private void schedule(TestClassRunInfo test) {
+        final String testClassName = test.getTestClassName();
+        final Long duration = durations.getDuration(testClassName);
+        if (duration != null) {
+            countDuration(testClassName, duration);
+            knownTests.add(new ScheduledTest(test, duration, sequence++));
+        } else {
+            unknownTests.add(new ScheduledTest(test, 0, sequence++));
+        }
+    }
+
+    /**
+     * Adds the duration of a test class to the average, once per test class, so that requeued tests are not counted
+     * again.
+     */
+    private void countDuration(String testClassName, long duration) {
+        if (countedTestClasses.add(testClassName)) {
+            knownDurationTotal += duration;
+            knownDurationCount++;
+        }
+    }
+
+    private static class ScheduledTest implements Comparable<ScheduledTest> {
+        private final TestClassRunInfo test;
+        private final long expectedDuration;
+        private final long sequence;
+
+        private ScheduledTest(TestClassRunInfo test, long expectedDuration, long sequence) {
+            this.test = test;
+            this.expectedDuration = expectedDuration;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(ScheduledTest other) {
+            if (expectedDuration != other.expectedDuration) {
+                return expectedDuration > other.expectedDuration ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+}
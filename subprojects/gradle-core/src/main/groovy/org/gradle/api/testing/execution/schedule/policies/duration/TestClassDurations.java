@@ -0,0 +1,70 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.duration;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+
+import java.util.Collections;
+
+/**
+ * The execution times of the test classes of a test task, as measured in previous builds. The times are kept in a
+ * cache private to the build, keyed by the path of the test task and the name of the test class.
+ *
+ * <p>The time kept for a test class is an exponentially weighted moving average of its measured durations, where the
+ * latest run has a weight of {@link #DURATION_WEIGHT}. A single slow or fast run therefore moves the estimate only
+ * part of the way, while a lasting change is picked up over a few runs.</p>
+ */
+public class TestClassDurations {
+    static final double DURATION_WEIGHT = 0.3;
+
+    private final PersistentIndexedCache<String, Long> cache;
+    private final String keyPrefix;
+
+    public TestClassDurations(CacheRepository cacheRepository, Pipeline pipeline) {
+        this(cacheRepository.<String, Long>getIndexedCacheFor(pipeline.getTestTask().getProject().getGradle(),
+                "testClassDurations", Collections.EMPTY_MAP), pipeline.getTestTask().getPath() + ":");
+    }
+
+    TestClassDurations(PersistentIndexedCache<String, Long> cache, String keyPrefix) {
+        this.cache = cache;
+        this.keyPrefix = keyPrefix;
+    }
+
+    /**
+     * Returns the expected execution time of the given test class in ms, or null when the test class has not been
+     * executed before.
+     */
+    public Long getDuration(String testClassName) {
+        return cache.get(keyPrefix + testClassName);
+    }
+
+    public void testCompleted(TestClassProcessResult testResult) {
+        if (testResult.getExecutionErrorReason() != null || testResult.getProcessorErrorReason() != null) {
+            // the test class did not run to completion, so its duration tells us nothing
+            return;
+        }
+
+        final String key = keyPrefix + testResult.getTestClassRunInfo().getTestClassName();
+        final Long previousDuration = cache.get(key);
+        final long duration = testResult.getDuration();
+
+        cache.put(key, previousDuration == null ? duration : Math.round(
+                DURATION_WEIGHT * duration + (1 - DURATION_WEIGHT) * previousDuration));
+    }
+}
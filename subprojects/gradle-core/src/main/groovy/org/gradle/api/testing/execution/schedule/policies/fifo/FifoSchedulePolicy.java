@@ -0,0 +1,38 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.fifo;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.schedule.policies.*;
+
+/**
+ * Sends tests to the forks in the order they are added to the pipeline.
+ */
+public class FifoSchedulePolicy implements SchedulePolicy {
+    public SchedulePolicyName getName() {
+        return SchedulePolicyNames.FIFO;
+    }
+
+    public SchedulePolicyConfig getSchedulePolicyConfigInstance() {
+        return new SchedulePolicyConfig(getName());
+    }
+
+    public SchedulePolicyInstance getSchedulePolicyInstance(Pipeline pipeline) {
+        if (pipeline == null) throw new IllegalArgumentException("pipeline is null!");
+
+        return new FifoSchedulePolicyInstance(pipeline);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.fifo;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyInstance;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.queues.DiskSpillingQueue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+public class FifoSchedulePolicyInstance implements SchedulePolicyInstance {
+    private final DiskSpillingQueue<TestClassRunInfo> testsToDispatch;
+    private final LinkedList<TestClassRunInfo> requeuedTests = new LinkedList<TestClassRunInfo>();
+
+    public FifoSchedulePolicyInstance(Pipeline pipeline) {
+        this.testsToDispatch = pipeline.getRunInfoQueue();
+    }
+
+    public List<TestClassRunInfo> nextTests(int forkId, int maxTestCount) {
+        final List<TestClassRunInfo> tests = new ArrayList<TestClassRunInfo>();
+        while (tests.size() < maxTestCount && !requeuedTests.isEmpty()) {
+            tests.add(requeuedTests.removeFirst());
+        }
+        testsToDispatch.drainTo(tests, maxTestCount - tests.size());
+        return tests;
+    }
+
+    public void requeueTests(List<TestClassRunInfo> tests) {
+        requeuedTests.addAll(tests);
+    }
+
+    public boolean hasPendingTests() {
+        return !requeuedTests.isEmpty() || !testsToDispatch.isEmpty();
+    }
+
+    public int getPendingTestCount() {
+        return requeuedTests.size() + testsToDispatch.size();
+    }
+
+    public void testCompleted(int forkId, TestClassProcessResult testResult) {
+    }
+}
@@ -34,6 +34,8 @@ public class TestClassProcessResult implements Serializable {
 
     private List<TestMethodProcessResult> methodResults;
 
+    private long duration;
+
     public TestClassProcessResult(TestClassRunInfo testClassRunInfo) {
         this.testClassRunInfo = testClassRunInfo;
         methodResults = new ArrayList<TestMethodProcessResult>();
@@ -52,6 +54,7 @@ public class TestClassProcessResult implements Serializable {
         out.writeObject(executionErrorReason);
         out.writeObject(processorErrorReason);
         out.writeObject(methodResults);
+        out.writeLong(duration);
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
@@ -59,6 +62,7 @@ public class TestClassProcessResult implements Serializable {
         executionErrorReason = (Throwable) in.readObject();
         processorErrorReason = (Throwable) in.readObject();
         methodResults = (List<TestMethodProcessResult>) in.readObject();
+        duration = in.readLong();
     }
 
     public TestClassRunInfo getTestClassRunInfo() {
@@ -73,6 +77,17 @@ public class TestClassProcessResult implements Serializable {
         return processorErrorReason;
     }
 
+    /**
+     * Returns the time taken to process the test class, in ms.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
     void setExecutionErrorReason(Throwable executionErrorReason) {
         this.executionErrorReason = executionErrorReason;
     }
@@ -34,4 +34,10 @@ public class ReportStopPipelineListener implements PipelineListener {
     public void pipelineStopped(Pipeline pipeline) {
         reportsManager.pipelineStopped(pipeline);
     }
+
+    public void runInfoQueueSpilling(Pipeline pipeline) {
+    }
+
+    public void runInfoQueueStopped(Pipeline pipeline, int peakSize, long spilledItemCount) {
+    }
 }
@@ -69,4 +69,23 @@ public interface CacheRepository {
      * @return The cache.
      */
     <K, V> PersistentIndexedCache<K, V> getIndexedCacheFor(Object target, String key, Map<String, ?> properties);
+
+    /**
+     * Returns the indexed cache with the given key private to the current build.
+     *
+     * @param target The target domain object which the cache is for. This might be a task, project, or similar.
+     * @param key the cache key. Uniquely identifies the cache
+     * @param properties additional properties for the cache. The cache is treated as invalid if any of the properties
+     * do not match the properties used to create the cache.
+     * @param serializer The serializer to use to read and write the cache entries.
+     * @return The cache.
+     */
+    <K, V> PersistentIndexedCache<K, V> getIndexedCacheFor(Object target, String key, Map<String, ?> properties,
+                                                           Serializer<V> serializer);
+
+    /**
+     * Closes the indexed caches created by this repository, writing any pending changes to disk. A closed cache can
+     * continue to be used.
+     */
+    void close();
 }
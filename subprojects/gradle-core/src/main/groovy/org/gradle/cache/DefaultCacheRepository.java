@@ -18,16 +18,26 @@ package org.gradle.cache;
 import org.gradle.CacheUsage;
 import org.gradle.api.Project;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.cache.btree.BTreePersistentIndexedCache;
 import org.gradle.util.GradleVersion;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * The default {@link CacheRepository} implementation. A cache and an indexed cache are each created once for a given
+ * directory and set of properties, and are reused by later requests for the same cache. The in-memory content of the cache remains
+ * available after the repository is closed.
+ */
 public class DefaultCacheRepository implements CacheRepository {
     private final GradleVersion version = new GradleVersion();
     private final File globalCacheDir;
     private final File userHomeDir;
     private final CacheUsage cacheUsage;
+    private final Map<String, PersistentCache> caches = new HashMap<String, PersistentCache>();
+    private final Map<String, PersistentIndexedCache<?, ?>> indexedCaches
+            = new HashMap<String, PersistentIndexedCache<?, ?>>();
 
     public DefaultCacheRepository(File userHomeDir, CacheUsage cacheUsage) {
         this.userHomeDir = userHomeDir;
@@ -36,21 +46,20 @@ public class DefaultCacheRepository implements CacheRepository {
     }
 
     public PersistentCache getCacheFor(Object target, String key, Map<String, ?> properties) {
-        if (target instanceof Gradle) {
-            Gradle gradle = (Gradle) target;
-            File buildTmpDir = new File(gradle.getRootProject().getProjectDir(), Project.TMP_DIR_NAME);
-            File cacheDir = new File(buildTmpDir, String.format("%s/%s", version.getVersion(), key));
-            return new DefaultPersistentCache(cacheDir, cacheUsage, properties);
-        }
-        throw new IllegalArgumentException(String.format("Cannot create cache for domain object %s.", target));
+        return getCache(getCacheDir(target, key), properties);
     }
 
     public <K, V> PersistentIndexedCache<K, V> getIndexedCacheFor(Object target, String key, Map<String, ?> properties) {
-        return new DefaultPersistentIndexedCache<K, V>(getCacheFor(target, key, properties), new DefaultSerializer<V>());
+        return getIndexedCacheFor(target, key, properties, new DefaultSerializer<V>());
+    }
+
+    public <K, V> PersistentIndexedCache<K, V> getIndexedCacheFor(Object target, String key, Map<String, ?> properties,
+                                                                  Serializer<V> serializer) {
+        return getIndexedCache(getCacheDir(target, key), properties, serializer);
     }
 
     public PersistentCache getGlobalCache(String key, Map<String, ?> properties) {
-        return new DefaultPersistentCache(new File(globalCacheDir, key), cacheUsage, properties);
+        return getCache(new File(globalCacheDir, key), properties);
     }
 
     public <K, V> PersistentIndexedCache<K, V> getIndexedGlobalCache(String key, Map<String, ?> properties) {
@@ -59,6 +68,53 @@ public class DefaultCacheRepository implements CacheRepository {
 
     public <K, V> PersistentIndexedCache<K, V> getIndexedGlobalCache(String key, Map<String, ?> properties,
                                                                      Serializer<V> serializer) {
-        return new DefaultPersistentIndexedCache<K, V>(getGlobalCache(key, properties), serializer);
+        return getIndexedCache(new File(globalCacheDir, key), properties, serializer);
+    }
+
+    public void close() {
+        synchronized (indexedCaches) {
+            for (PersistentIndexedCache<?, ?> indexedCache : indexedCaches.values()) {
+                indexedCache.close();
+            }
+        }
+    }
+
+    private File getCacheDir(Object target, String key) {
+        if (target instanceof Gradle) {
+            Gradle gradle = (Gradle) target;
+            File buildTmpDir = new File(gradle.getRootProject().getProjectDir(), Project.TMP_DIR_NAME);
+            return new File(buildTmpDir, String.format("%s/%s", version.getVersion(), key));
+        }
+        throw new IllegalArgumentException(String.format("Cannot create cache for domain object %s.", target));
+    }
+
+    /**
+     * Returns the cache for the given directory and properties. The cache is created only once, as creating the cache
+     * deletes the content of the directory when it is not valid, including the file of an indexed cache in use.
+     */
+    private PersistentCache getCache(File dir, Map<String, ?> properties) {
+        String cacheKey = dir.getAbsolutePath() + properties;
+        synchronized (caches) {
+            PersistentCache cache = caches.get(cacheKey);
+            if (cache == null) {
+                cache = new DefaultPersistentCache(dir, cacheUsage, properties);
+                caches.put(cacheKey, cache);
+            }
+            return cache;
+        }
+    }
+
+    private <K, V> PersistentIndexedCache<K, V> getIndexedCache(File dir, Map<String, ?> properties,
+                                                               Serializer<V> serializer) {
+        String cacheKey = dir.getAbsolutePath() + properties;
+        synchronized (indexedCaches) {
+            PersistentIndexedCache<K, V> indexedCache = (PersistentIndexedCache<K, V>) indexedCaches.get(cacheKey);
+            if (indexedCache == null) {
+                indexedCache = new WriteBehindPersistentIndexedCache<K, V>(new BTreePersistentIndexedCache<K, V>(
+                        getCache(dir, properties), serializer));
+                indexedCaches.put(cacheKey, indexedCache);
+            }
+            return indexedCache;
+        }
     }
 }
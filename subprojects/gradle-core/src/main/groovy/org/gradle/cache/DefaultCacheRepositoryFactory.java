@@ -0,0 +1,29 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import org.gradle.CacheUsage;
+
+import java.io.File;
+
+/**
+ * Creates a new {@link CacheRepository} for each build.
+ */
+public class DefaultCacheRepositoryFactory implements CacheRepositoryFactory {
+    public CacheRepository create(File userHomeDir, CacheUsage cacheUsage) {
+        return new DefaultCacheRepository(userHomeDir, cacheUsage);
+    }
+}
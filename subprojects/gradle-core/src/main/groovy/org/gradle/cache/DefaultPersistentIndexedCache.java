@@ -69,6 +69,9 @@ public class DefaultPersistentIndexedCache<K, V> implements PersistentIndexedCac
         backingCache.update();
     }
 
+    public void close() {
+    }
+
     private File getStateFile(K key) {
         String fileName;
         if (key instanceof File) {
@@ -21,4 +21,10 @@ public interface PersistentIndexedCache<K, V> {
     void put(K key, V value);
 
     void remove(K key);
+
+    /**
+     * Writes any pending changes to disk and releases the resources held by this cache. The cache can continue to be
+     * used after it has been closed.
+     */
+    void close();
 }
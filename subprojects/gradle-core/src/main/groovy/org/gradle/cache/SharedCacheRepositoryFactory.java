@@ -0,0 +1,63 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import org.gradle.CacheUsage;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link CacheRepositoryFactory} which shares a {@link CacheRepository} between builds with the same user home
+ * directory, so that the in-memory content of the caches is reused by later builds. Builds which do not use the
+ * caches normally, for example because the caches are to be rebuilt, are given a new repository.
+ */
+public class SharedCacheRepositoryFactory implements CacheRepositoryFactory {
+    private final CacheRepositoryFactory factory;
+    private final Map<File, CacheRepository> repositories = new HashMap<File, CacheRepository>();
+
+    public SharedCacheRepositoryFactory() {
+        this(new DefaultCacheRepositoryFactory());
+    }
+
+    public SharedCacheRepositoryFactory(CacheRepositoryFactory factory) {
+        this.factory = factory;
+    }
+
+    public synchronized CacheRepository create(File userHomeDir, CacheUsage cacheUsage) {
+        if (cacheUsage != CacheUsage.ON) {
+            return factory.create(userHomeDir, cacheUsage);
+        }
+        File key = userHomeDir.getAbsoluteFile();
+        CacheRepository repository = repositories.get(key);
+        if (repository == null) {
+            repository = factory.create(userHomeDir, cacheUsage);
+            repositories.put(key, repository);
+        }
+        return repository;
+    }
+
+    /**
+     * Closes all the repositories created by this factory.
+     */
+    public synchronized void close() {
+        for (CacheRepository repository : repositories.values()) {
+            repository.close();
+        }
+        repositories.clear();
+    }
+}
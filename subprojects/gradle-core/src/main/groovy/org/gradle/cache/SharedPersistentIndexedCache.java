@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import java.util.Map;
+
+/**
+ * A {@link PersistentIndexedCache} whose backing file may be shared with other processes. Each access to the file is
+ * made while holding a lock on it, so a set of changes should be applied using {@link #update(java.util.Map)}, which
+ * holds the lock once for all of them.
+ */
+public interface SharedPersistentIndexedCache<K, V> extends PersistentIndexedCache<K, V> {
+    /**
+     * Applies the given changes to this cache as a single update. An entry with a null value is removed.
+     */
+    void update(Map<K, V> changes);
+
+    /**
+     * Returns the generation of the content of this cache. The generation changes whenever the cache is updated, by
+     * this process or by any other process.
+     */
+    long getGeneration();
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory {@link PersistentIndexedCache} in front of another cache. Each entry is read from the backing cache at
+ * most once. Changes are kept in memory and written to the backing cache in batches: when the number of changed
+ * entries reaches a threshold, and when this cache is flushed or closed. The number of entries kept in memory is
+ * bounded, with the least recently used entries discarded first.
+ *
+ * <p>The entries are retained in memory when this cache is closed, up to a smaller bound, so that they can be reused
+ * when the cache is next used. When the backing cache is a {@link SharedPersistentIndexedCache}, the retained entries
+ * are discarded if another process has updated the backing cache in the meantime.</p>
+ *
+ * <p>{@link #get} returns the cached instance rather than a copy, and a value may be written to the backing cache at
+ * any time after it has been put. Callers must not modify a value after putting it, or a value returned by
+ * {@link #get}. Instead, they should put a modified copy, and hold their own lock across the get and put when other
+ * threads may update the same entry.</p>
+ */
+public class WriteBehindPersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
+    public static final int DEFAULT_MAX_ENTRIES = 50000;
+    public static final int DEFAULT_FLUSH_THRESHOLD = 10000;
+    public static final int DEFAULT_MAX_RETAINED_ENTRIES = 10000;
+
+    private final PersistentIndexedCache<K, V> backingCache;
+    private final int flushThreshold;
+    private final int maxRetainedEntries;
+    private final Map<K, CachedValue<V>> entries;
+    private int dirtyCount;
+    private boolean closed;
+    private long closedGeneration;
+
+    public WriteBehindPersistentIndexedCache(PersistentIndexedCache<K, V> backingCache) {
+        this(backingCache, DEFAULT_MAX_ENTRIES, DEFAULT_FLUSH_THRESHOLD, DEFAULT_MAX_RETAINED_ENTRIES);
+    }
+
+    public WriteBehindPersistentIndexedCache(PersistentIndexedCache<K, V> backingCache, int maxEntries,
+                                             int flushThreshold) {
+        this(backingCache, maxEntries, flushThreshold, maxEntries);
+    }
+
+    public WriteBehindPersistentIndexedCache(PersistentIndexedCache<K, V> backingCache, final int maxEntries,
+                                             int flushThreshold, int maxRetainedEntries) {
+        this.backingCache = backingCache;
+        this.flushThreshold = flushThreshold;
+        this.maxRetainedEntries = maxRetainedEntries;
+        entries = new LinkedHashMap<K, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CachedValue<V>> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                if (eldest.getValue().dirty) {
+                    write(eldest.getKey(), eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        reopen();
+        CachedValue<V> entry = entries.get(key);
+        if (entry == null) {
+            entry = new CachedValue<V>(backingCache.get(key));
+            entries.put(key, entry);
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        reopen();
+        update(key, value);
+    }
+
+    public synchronized void remove(K key) {
+        reopen();
+        update(key, null);
+    }
+
+    /**
+     * Writes all changed entries to the backing cache.
+     */
+    public synchronized void flush() {
+        if (backingCache instanceof SharedPersistentIndexedCache) {
+            // Write all changes as a single update of the backing cache
+            Map<K, V> changes = new LinkedHashMap<K, V>();
+            for (Map.Entry<K, CachedValue<V>> entry : entries.entrySet()) {
+                if (entry.getValue().dirty) {
+                    changes.put(entry.getKey(), entry.getValue().value);
+                }
+            }
+            ((SharedPersistentIndexedCache<K, V>) backingCache).update(changes);
+            for (CachedValue<V> entry : entries.values()) {
+                if (entry.dirty) {
+                    entry.dirty = false;
+                    dirtyCount--;
+                }
+            }
+            return;
+        }
+        for (Map.Entry<K, CachedValue<V>> entry : entries.entrySet()) {
+            if (entry.getValue().dirty) {
+                write(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Writes all changed entries to the backing cache, then closes the backing cache. The most recently used in-memory
+     * entries are retained, so that this cache can continue to be used without reading them again.
+     */
+    public synchronized void close() {
+        flush();
+        if (backingCache instanceof SharedPersistentIndexedCache) {
+            closedGeneration = ((SharedPersistentIndexedCache<K, V>) backingCache).getGeneration();
+        }
+        backingCache.close();
+        closed = true;
+
+        int discard = entries.size() - maxRetainedEntries;
+        for (Iterator<K> iterator = entries.keySet().iterator(); discard > 0 && iterator.hasNext(); discard--) {
+            // Entries are in least recently used order
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void reopen() {
+        if (!closed) {
+            return;
+        }
+        closed = false;
+        if (backingCache instanceof SharedPersistentIndexedCache
+                && ((SharedPersistentIndexedCache<K, V>) backingCache).getGeneration() != closedGeneration) {
+            // Another process has changed the backing cache, so the retained entries may be stale
+            entries.clear();
+        }
+    }
+
+    private void update(K key, V value) {
+        CachedValue<V> entry = entries.get(key);
+        if (entry == null) {
+            entry = new CachedValue<V>(value);
+            entries.put(key, entry);
+        } else {
+            entry.value = value;
+        }
+        if (!entry.dirty) {
+            entry.dirty = true;
+            dirtyCount++;
+        }
+        if (dirtyCount >= flushThreshold) {
+            flush();
+        }
+    }
+
+    private void write(K key, CachedValue<V> entry) {
+        if (entry.value == null) {
+            backingCache.remove(key);
+        } else {
+            backingCache.put(key, entry.value);
+        }
+        entry.dirty = false;
+        dirtyCount--;
+    }
+
+    private static class CachedValue<V> {
+        private V value;
+        private boolean dirty;
+
+        private CachedValue(V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,641 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
+import org.gradle.cache.SharedPersistentIndexedCache;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A {@link PersistentIndexedCache} which stores all entries in a single file, using a B+tree index keyed by a hash of
+ * the entry key. Each key of the index refers to a bucket holding the full keys and values of the entries with that
+ * hash. The index and the buckets live in the same {@link FileBackedBlockStore}.
+ *
+ * <p>The backing cache is updated once, the first time this cache is modified after being opened, rather than on every
+ * modification. The file is opened lazily and should be closed at the end of the build using {@link #close()}, which
+ * also compacts the file when a large part of it is unused. The file is forced to disk when the cache is closed and
+ * after each batch of changes made using {@link #update(Map)}.</p>
+ *
+ * <p>The file is locked for the duration of each operation, so it can be shared with other processes. The nodes of the
+ * tree read by this cache are discarded whenever another process has updated the file.</p>
+ *
+ * <p>Keys may be files, strings or any {@link Serializable} object. Serializable keys are identified by their
+ * serialized form.</p>
+ */
+public class BTreePersistentIndexedCache<K, V> implements SharedPersistentIndexedCache<K, V> {
+    public static final String FILE_NAME = "cache.bin";
+    static final int MAX_ENTRIES = 64;
+    private static final byte LEAF = 0;
+    private static final byte INDEX = 1;
+    private static final int NODE_CAPACITY = 1 + 4 + MAX_ENTRIES * 8 + (MAX_ENTRIES + 1) * 8;
+    private static final int MAX_CACHED_NODES = 512;
+    private static final long MIN_COMPACT_LENGTH = 64 * 1024;
+
+    private final PersistentCache backingCache;
+    private final Serializer<V> serializer;
+    private final FileBackedBlockStore store;
+    private final Map<Long, Node> nodes = new LinkedHashMap<Long, Node>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Node> eldest) {
+            return size() > MAX_CACHED_NODES;
+        }
+    };
+    private boolean updated;
+
+    public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer) {
+        this.backingCache = backingCache;
+        this.serializer = serializer;
+        store = new FileBackedBlockStore(new File(backingCache.getBaseDir(), FILE_NAME));
+    }
+
+    public synchronized V get(K key) {
+        byte[] keyBytes = toKeyBytes(key);
+        lock();
+        boolean completed = false;
+        try {
+            V value = doGet(keyBytes);
+            completed = true;
+            return value;
+        } finally {
+            store.unlock(completed);
+        }
+    }
+
+    public synchronized void put(K key, V value) {
+        byte[] keyBytes = toKeyBytes(key);
+        byte[] valueBytes = toBytes(value);
+        lock();
+        boolean completed = false;
+        try {
+            doPut(keyBytes, valueBytes);
+            completed = true;
+        } finally {
+            store.unlock(completed);
+        }
+        markUpdated();
+    }
+
+    public synchronized void remove(K key) {
+        byte[] keyBytes = toKeyBytes(key);
+        lock();
+        boolean completed = false;
+        try {
+            doRemove(keyBytes);
+            completed = true;
+        } finally {
+            store.unlock(completed);
+        }
+        markUpdated();
+    }
+
+    /**
+     * Applies the given changes as a single update, which is forced to disk once all changes have been made.
+     */
+    public synchronized void update(Map<K, V> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<byte[]> keys = new ArrayList<byte[]>(changes.size());
+        List<byte[]> values = new ArrayList<byte[]>(changes.size());
+        for (Map.Entry<K, V> entry : changes.entrySet()) {
+            keys.add(toKeyBytes(entry.getKey()));
+            values.add(entry.getValue() == null ? null : toBytes(entry.getValue()));
+        }
+        lock();
+        boolean completed = false;
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                if (values.get(i) == null) {
+                    doRemove(keys.get(i));
+                } else {
+                    doPut(keys.get(i), values.get(i));
+                }
+            }
+            completed = true;
+        } finally {
+            store.unlock(completed);
+        }
+        store.sync();
+        markUpdated();
+    }
+
+    public synchronized long getGeneration() {
+        lock();
+        try {
+            return store.getGeneration();
+        } finally {
+            store.unlock(true);
+        }
+    }
+
+    private V doGet(byte[] key) {
+        if (store.getRootPos() == 0) {
+            return null;
+        }
+        long hash = hash(key);
+        Node leaf = findLeaf(hash);
+        int index = leaf.indexOf(hash);
+        if (index < 0) {
+            return null;
+        }
+        Bucket bucket = readBucket(leaf.values[index]);
+        int entry = bucket.indexOf(key);
+        if (entry < 0) {
+            // Only different keys with the same hash
+            return null;
+        }
+        try {
+            return serializer.read(new ByteArrayInputStream(bucket.values.get(entry)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void doPut(byte[] key, byte[] value) {
+        long hash = hash(key);
+        Node leaf = findLeaf(hash);
+        int index = leaf.indexOf(hash);
+        if (index < 0) {
+            Bucket bucket = new Bucket();
+            bucket.put(key, value);
+            insert(hash, store.allocate(bucket.toBytes()));
+            return;
+        }
+        Bucket bucket = readBucket(leaf.values[index]);
+        bucket.put(key, value);
+        writeBucket(leaf, index, bucket);
+    }
+
+    private void doRemove(byte[] key) {
+        if (store.getRootPos() == 0) {
+            return;
+        }
+        long hash = hash(key);
+        Node leaf = findLeaf(hash);
+        int index = leaf.indexOf(hash);
+        if (index < 0) {
+            return;
+        }
+        Bucket bucket = readBucket(leaf.values[index]);
+        int entry = bucket.indexOf(key);
+        if (entry < 0) {
+            return;
+        }
+        bucket.remove(entry);
+        if (!bucket.isEmpty()) {
+            writeBucket(leaf, index, bucket);
+            return;
+        }
+        store.free(leaf.values[index]);
+        leaf.removeEntry(index);
+        // Underfull leaves are not merged. Compaction rebuilds the tree when enough space has been wasted.
+        writeNode(leaf);
+    }
+
+    private Bucket readBucket(long pos) {
+        try {
+            return Bucket.read(store.read(pos));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBucket(Node leaf, int index, Bucket bucket) {
+        long pos = store.write(leaf.values[index], bucket.toBytes());
+        if (pos != leaf.values[index]) {
+            leaf.values[index] = pos;
+            writeNode(leaf);
+        }
+    }
+
+    /**
+     * Closes this cache, compacting the backing file if required. The cache is reopened on next access.
+     */
+    public synchronized void close() {
+        if (!store.isOpen()) {
+            return;
+        }
+        lock();
+        boolean completed = false;
+        try {
+            boolean compact = store.getLength() > MIN_COMPACT_LENGTH && store.getFreeBytes() * 2 > store.getLength();
+            if (compact) {
+                doCompact();
+            }
+            completed = true;
+        } finally {
+            store.unlock(completed);
+        }
+        store.sync();
+        store.close();
+        nodes.clear();
+        updated = false;
+    }
+
+    /**
+     * Rewrites the live entries of this cache into a new file, whose content then replaces the content of the current
+     * file. The content is copied back, rather than the file renamed, so that other processes which have the file open
+     * see the compacted content.
+     */
+    synchronized void compact() {
+        lock();
+        boolean completed = false;
+        try {
+            doCompact();
+            completed = true;
+        } finally {
+            store.unlock(completed);
+        }
+    }
+
+    private void doCompact() {
+        File compactFile = new File(store.getFile().getParentFile(), store.getFile().getName() + ".compact");
+        compactFile.delete();
+        FileBackedBlockStore target = new FileBackedBlockStore(compactFile);
+        target.open();
+        target.lock();
+        boolean completed = false;
+        try {
+            BTreePersistentIndexedCache<K, V> compacted = new BTreePersistentIndexedCache<K, V>(backingCache,
+                    serializer, target);
+            if (store.getRootPos() != 0) {
+                copyEntries(store.getRootPos(), compacted);
+            }
+            completed = true;
+        } finally {
+            target.unlock(completed);
+            target.close();
+        }
+        store.replaceContent(compactFile);
+        nodes.clear();
+        compactFile.delete();
+    }
+
+    private BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer,
+                                        FileBackedBlockStore store) {
+        this.backingCache = backingCache;
+        this.serializer = serializer;
+        this.store = store;
+        this.updated = true;
+    }
+
+    private void copyEntries(long pos, BTreePersistentIndexedCache<K, V> target) {
+        Node node = readNode(pos);
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                target.insert(node.keys[i], target.store.allocate(store.read(node.values[i])));
+            }
+        } else {
+            for (int i = 0; i <= node.count; i++) {
+                copyEntries(node.values[i], target);
+            }
+        }
+    }
+
+    private void lock() {
+        if (!store.isOpen()) {
+            store.open();
+        }
+        if (store.lock()) {
+            // Another process has changed the file
+            nodes.clear();
+        }
+    }
+
+    private void markUpdated() {
+        if (!updated) {
+            backingCache.update();
+            updated = true;
+        }
+    }
+
+    private Node getRoot() {
+        if (store.getRootPos() == 0) {
+            Node root = new Node(true);
+            writeNode(root);
+            store.setRootPos(root.pos);
+            return root;
+        }
+        return readNode(store.getRootPos());
+    }
+
+    private Node findLeaf(long hash) {
+        Node node = getRoot();
+        while (!node.leaf) {
+            node = readNode(node.values[node.childIndexFor(hash)]);
+        }
+        return node;
+    }
+
+    private void insert(long hash, long valuePos) {
+        Node root = getRoot();
+        Split split = insert(root, hash, valuePos);
+        if (split != null) {
+            Node newRoot = new Node(false);
+            newRoot.keys[0] = split.key;
+            newRoot.values[0] = root.pos;
+            newRoot.values[1] = split.right.pos;
+            newRoot.count = 1;
+            writeNode(newRoot);
+            store.setRootPos(newRoot.pos);
+        }
+    }
+
+    private Split insert(Node node, long hash, long valuePos) {
+        if (node.leaf) {
+            int index = -node.indexOf(hash) - 1;
+            node.insertEntry(index, hash, valuePos);
+        } else {
+            int childIndex = node.childIndexFor(hash);
+            Split childSplit = insert(readNode(node.values[childIndex]), hash, valuePos);
+            if (childSplit == null) {
+                return null;
+            }
+            node.insertChild(childIndex, childSplit.key, childSplit.right.pos);
+        }
+        if (node.count <= MAX_ENTRIES) {
+            writeNode(node);
+            return null;
+        }
+        Split split = node.split();
+        writeNode(split.right);
+        writeNode(node);
+        return split;
+    }
+
+    private Node readNode(long pos) {
+        Node node = nodes.get(pos);
+        if (node != null) {
+            return node;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(store.read(pos)));
+            node = new Node(input.readByte() == LEAF);
+            node.pos = pos;
+            node.count = input.readInt();
+            for (int i = 0; i < node.count; i++) {
+                node.keys[i] = input.readLong();
+            }
+            int valueCount = node.leaf ? node.count : node.count + 1;
+            for (int i = 0; i < valueCount; i++) {
+                node.values[i] = input.readLong();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nodes.put(pos, node);
+        return node;
+    }
+
+    private void writeNode(Node node) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(NODE_CAPACITY);
+        DataOutputStream output = new DataOutputStream(content);
+        try {
+            output.writeByte(node.leaf ? LEAF : INDEX);
+            output.writeInt(node.count);
+            for (int i = 0; i < node.count; i++) {
+                output.writeLong(node.keys[i]);
+            }
+            int valueCount = node.leaf ? node.count : node.count + 1;
+            for (int i = 0; i < valueCount; i++) {
+                output.writeLong(node.values[i]);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (node.pos == 0) {
+            node.pos = store.allocate(content.toByteArray(), NODE_CAPACITY);
+        } else {
+            // Nodes are allocated with their maximum size, so are always rewritten in place
+            store.write(node.pos, content.toByteArray());
+        }
+        nodes.put(node.pos, node);
+    }
+
+    private byte[] toBytes(V value) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            serializer.write(content, value);
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+        return content.toByteArray();
+    }
+
+    private byte[] toKeyBytes(K key) {
+        if (key instanceof File) {
+            return toBytes("file:" + ((File) key).getAbsolutePath());
+        } else if (key instanceof String) {
+            return toBytes("string:" + key);
+        } else if (key == null) {
+            return toBytes("null");
+        } else if (key instanceof Serializable) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try {
+                content.write(toBytes("serialized:"));
+                ObjectOutputStream output = new ObjectOutputStream(content);
+                output.writeObject(key);
+                output.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return content.toByteArray();
+        }
+        throw new IllegalArgumentException(String.format("Cannot use key %s of %s, which is not serializable.", key,
+                key.getClass()));
+    }
+
+    private static byte[] toBytes(String keyString) {
+        try {
+            return keyString.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the hash of the given key, which is used as the key of the index.
+     */
+    long hash(byte[] key) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] digest = messageDigest.digest(key);
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /**
+     * The entries whose keys have the same hash. Each entry holds the full key, so that entries with the same hash
+     * never replace each other.
+     */
+    private static class Bucket {
+        private final List<byte[]> keys = new ArrayList<byte[]>();
+        private final List<byte[]> values = new ArrayList<byte[]>();
+
+        public static Bucket read(byte[] content) throws IOException {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+            Bucket bucket = new Bucket();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                bucket.keys.add(readBytes(input));
+                bucket.values.add(readBytes(input));
+            }
+            return bucket;
+        }
+
+        private static byte[] readBytes(DataInputStream input) throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return bytes;
+        }
+
+        public byte[] toBytes() {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(content);
+            try {
+                output.writeInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    output.writeInt(keys.get(i).length);
+                    output.write(keys.get(i));
+                    output.writeInt(values.get(i).length);
+                    output.write(values.get(i));
+                }
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return content.toByteArray();
+        }
+
+        public int indexOf(byte[] key) {
+            for (int i = 0; i < keys.size(); i++) {
+                if (Arrays.equals(keys.get(i), key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public void put(byte[] key, byte[] value) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                values.set(index, value);
+            } else {
+                keys.add(key);
+                values.add(value);
+            }
+        }
+
+        public void remove(int index) {
+            keys.remove(index);
+            values.remove(index);
+        }
+
+        public boolean isEmpty() {
+            return keys.isEmpty();
+        }
+    }
+
+    private static class Split {
+        private final long key;
+        private final Node right;
+
+        private Split(long key, Node right) {
+            this.key = key;
+            this.right = right;
+        }
+    }
+
+    /**
+     * A node of the tree. Leaf nodes hold {@code count} keys and the positions of their values. Index nodes hold
+     * {@code count} keys and {@code count + 1} child positions, where child {@code i} contains the keys less than key
+     * {@code i}.
+     */
+    private static class Node {
+        private final boolean leaf;
+        private final long[] keys = new long[MAX_ENTRIES + 1];
+        private final long[] values = new long[MAX_ENTRIES + 2];
+        private long pos;
+        private int count;
+
+        private Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        public int indexOf(long key) {
+            return Arrays.binarySearch(keys, 0, count, key);
+        }
+
+        public int childIndexFor(long key) {
+            int index = indexOf(key);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        public void insertEntry(int index, long key, long value) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            System.arraycopy(values, index, values, index + 1, count - index);
+            keys[index] = key;
+            values[index] = value;
+            count++;
+        }
+
+        public void insertChild(int childIndex, long key, long child) {
+            System.arraycopy(keys, childIndex, keys, childIndex + 1, count - childIndex);
+            System.arraycopy(values, childIndex + 1, values, childIndex + 2, count - childIndex);
+            keys[childIndex] = key;
+            values[childIndex + 1] = child;
+            count++;
+        }
+
+        public void removeEntry(int index) {
+            System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+            System.arraycopy(values, index + 1, values, index, count - index - 1);
+            count--;
+        }
+
+        public Split split() {
+            Node right = new Node(leaf);
+            int mid = count / 2;
+            long separator = keys[mid];
+            if (leaf) {
+                right.count = count - mid;
+                System.arraycopy(keys, mid, right.keys, 0, right.count);
+                System.arraycopy(values, mid, right.values, 0, right.count);
+            } else {
+                right.count = count - mid - 1;
+                System.arraycopy(keys, mid + 1, right.keys, 0, right.count);
+                System.arraycopy(values, mid + 1, right.values, 0, right.count + 1);
+            }
+            count = mid;
+            return new Split(separator, right);
+        }
+    }
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A store of variable sized blocks in a single file. Freed blocks are kept on a free list and reused for later
+ * allocations.
+ *
+ * <p>The file starts with a fixed size header, which holds the position of the root block and the free list, and a
+ * generation number which is incremented by every update. The header is marked as dirty before the first modification
+ * of an update and marked clean again when the update has completed successfully. A store which was not left clean,
+ * for example because the process crashed or an operation failed part way through an update, is discarded when it is
+ * next locked.</p>
+ *
+ * <p>The file is only forced to disk by {@link #sync()}, rather than by every update. A crash of the process never
+ * loses an update, but a crash of the operating system may lose the updates made since the last sync.</p>
+ *
+ * <p>The file may be shared by several processes. The store must be locked using {@link #lock()} while it is being
+ * read or written, which holds an exclusive lock on the file. The content of the file is reloaded when another process
+ * has updated it since the store was last locked.</p>
+ */
+public class FileBackedBlockStore {
+    static final int MAGIC = 0x47424c4b;
+    static final int VERSION = 3;
+    static final byte CLEAN = 0;
+    static final byte DIRTY = 1;
+    static final int HEADER_SIZE = 4 + 4 + 1 + 8 + 8 + 8;
+    static final int BLOCK_HEADER_SIZE = 4 + 4;
+    private static final int ALLOCATION_UNIT = 32;
+    private static final Map<File, ReentrantLock> PROCESS_LOCKS = new HashMap<File, ReentrantLock>();
+
+    private final File file;
+    private final ReentrantLock processLock;
+    private final List<FreeBlock> freeList = new ArrayList<FreeBlock>();
+    private RandomAccessFile randomAccessFile;
+    private FileLock fileLock;
+    private boolean loaded;
+    private long generation;
+    private long rootPos;
+    private long freeListPos;
+    private long freeBytes;
+    private boolean dirty;
+
+    public FileBackedBlockStore(File file) {
+        this.file = file;
+        processLock = getProcessLock(file);
+    }
+
+    private static ReentrantLock getProcessLock(File file) {
+        // File locks are held on behalf of the whole process, so the stores of a file must also exclude each other
+        File key;
+        try {
+            key = file.getCanonicalFile();
+        } catch (IOException e) {
+            key = file.getAbsoluteFile();
+        }
+        synchronized (PROCESS_LOCKS) {
+            ReentrantLock lock = PROCESS_LOCKS.get(key);
+            if (lock == null) {
+                lock = new ReentrantLock();
+                PROCESS_LOCKS.put(key, lock);
+            }
+            return lock;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isOpen() {
+        return randomAccessFile != null;
+    }
+
+    /**
+     * Opens the backing file of this store. The content is read when the store is next locked.
+     */
+    public void open() {
+        try {
+            file.getParentFile().mkdirs();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            loaded = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes the backing file. The store must not be locked.
+     */
+    public void close() {
+        if (randomAccessFile == null) {
+            return;
+        }
+        if (fileLock != null) {
+            throw new IllegalStateException("store is locked!");
+        }
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            randomAccessFile = null;
+            loaded = false;
+            freeList.clear();
+            freeBytes = 0;
+        }
+    }
+
+    /**
+     * Takes an exclusive lock on this store, blocking until any other process or store using the same file has released
+     * it. The content of the file is reloaded if it has changed since this store last held the lock, and discarded if
+     * it is not a cleanly updated store.
+     *
+     * @return true if the content of the store may have changed since this store last held the lock. Any content
+     *         which the caller has cached must then be discarded.
+     */
+    public boolean lock() {
+        processLock.lock();
+        boolean locked = false;
+        try {
+            fileLock = randomAccessFile.getChannel().lock();
+            boolean changed = readHeader();
+            locked = true;
+            return changed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (!locked) {
+                releaseLocks();
+            }
+        }
+    }
+
+    /**
+     * Releases the lock on this store. When the current update has completed, it is finished by writing the free list
+     * and marking the store as clean. Otherwise the store is left marked as dirty, so that the partly written content
+     * is discarded when the store is next locked.
+     *
+     * @param completed true if the operations made while the store was locked completed successfully.
+     */
+    public void unlock(boolean completed) {
+        try {
+            if (dirty) {
+                // Unless the header is marked as clean below, the content is reloaded and discarded
+                loaded = false;
+                dirty = false;
+                if (completed) {
+                    generation++;
+                    freeListPos = writeFreeList();
+                    // Mark the header as clean only once the rest of it has been written
+                    writeHeader(DIRTY);
+                    randomAccessFile.seek(8);
+                    randomAccessFile.writeByte(CLEAN);
+                    loaded = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            releaseLocks();
+        }
+    }
+
+    /**
+     * Forces the content of this store to disk. The store must be open.
+     */
+    public void sync() {
+        try {
+            randomAccessFile.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void releaseLocks() {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            fileLock = null;
+            processLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the generation of the content of this store, which changes whenever the store is updated by any process.
+     * The store must be locked.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the position of the root block, or 0 if there is no root block.
+     */
+    public long getRootPos() {
+        return rootPos;
+    }
+
+    public void setRootPos(long rootPos) {
+        markDirty();
+        this.rootPos = rootPos;
+    }
+
+    /**
+     * Returns the total capacity of the blocks on the free list.
+     */
+    public long getFreeBytes() {
+        return freeBytes;
+    }
+
+    public long getLength() {
+        try {
+            return randomAccessFile.length();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Allocates a new block with at least the given capacity and writes the given content to it.
+     *
+     * @return The position of the new block.
+     */
+    public long allocate(byte[] content, int capacity) {
+        markDirty();
+        int required = roundUp(Math.max(capacity, content.length));
+        long pos = takeFreeBlock(required);
+        try {
+            if (pos == 0) {
+                pos = randomAccessFile.length();
+                randomAccessFile.seek(pos);
+                randomAccessFile.writeInt(required);
+                randomAccessFile.writeInt(content.length);
+                randomAccessFile.write(content);
+                randomAccessFile.setLength(pos + BLOCK_HEADER_SIZE + required);
+            } else {
+                randomAccessFile.seek(pos + 4);
+                randomAccessFile.writeInt(content.length);
+                randomAccessFile.write(content);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return pos;
+    }
+
+    public long allocate(byte[] content) {
+        return allocate(content, content.length);
+    }
+
+    /**
+     * Replaces the content of the given block. The content is written in place if it fits into the block, otherwise the
+     * block is freed and a new block allocated.
+     *
+     * @return The position of the block holding the content.
+     */
+    public long write(long pos, byte[] content) {
+        markDirty();
+        try {
+            randomAccessFile.seek(pos);
+            int capacity = randomAccessFile.readInt();
+            if (content.length > capacity) {
+                free(pos);
+                return allocate(content);
+            }
+            randomAccessFile.writeInt(content.length);
+            randomAccessFile.write(content);
+            return pos;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the content of this store with the content of the given store file. The store must be locked.
+     */
+    public void replaceContent(File source) {
+        markDirty();
+        try {
+            RandomAccessFile sourceFile = new RandomAccessFile(source, "r");
+            try {
+                randomAccessFile.setLength(0);
+                byte[] header = new byte[HEADER_SIZE];
+                sourceFile.readFully(header);
+                // Keep the store marked as dirty until the update is complete
+                header[8] = DIRTY;
+                randomAccessFile.write(header);
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = sourceFile.read(buffer)) >= 0) {
+                    randomAccessFile.write(buffer, 0, count);
+                }
+            } finally {
+                sourceFile.close();
+            }
+            randomAccessFile.seek(9);
+            rootPos = randomAccessFile.readLong();
+            freeListPos = randomAccessFile.readLong();
+            freeList.clear();
+            freeBytes = 0;
+            if (freeListPos != 0) {
+                readFreeList(freeListPos);
+                releaseFreeListBlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] read(long pos) {
+        try {
+            randomAccessFile.seek(pos);
+            int capacity = randomAccessFile.readInt();
+            int length = randomAccessFile.readInt();
+            if (length < 0 || length > capacity) {
+                throw new UncheckedIOException(String.format("Corrupt block found at position %s in %s.", pos, file));
+            }
+            byte[] content = new byte[length];
+            randomAccessFile.readFully(content);
+            return content;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void free(long pos) {
+        markDirty();
+        try {
+            randomAccessFile.seek(pos);
+            int capacity = randomAccessFile.readInt();
+            freeList.add(new FreeBlock(pos, capacity));
+            freeBytes += capacity;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long takeFreeBlock(int required) {
+        FreeBlock best = null;
+        for (FreeBlock block : freeList) {
+            if (block.capacity >= required && (best == null || block.capacity < best.capacity)) {
+                best = block;
+                if (block.capacity == required) {
+                    break;
+                }
+            }
+        }
+        if (best == null) {
+            return 0;
+        }
+        freeList.remove(best);
+        freeBytes -= best.capacity;
+        return best.pos;
+    }
+
+    private void markDirty() {
+        if (dirty) {
+            return;
+        }
+        try {
+            randomAccessFile.seek(8);
+            randomAccessFile.writeByte(DIRTY);
+            releaseFreeListBlock();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        dirty = true;
+    }
+
+    private void releaseFreeListBlock() throws IOException {
+        if (freeListPos == 0) {
+            return;
+        }
+        // The free list is written again at the end of the update, so its current block is no longer required
+        randomAccessFile.seek(freeListPos);
+        int capacity = randomAccessFile.readInt();
+        freeList.add(new FreeBlock(freeListPos, capacity));
+        freeBytes += capacity;
+        freeListPos = 0;
+    }
+
+    private boolean readHeader() throws IOException {
+        if (randomAccessFile.length() < HEADER_SIZE) {
+            reset();
+            return true;
+        }
+        randomAccessFile.seek(0);
+        if (randomAccessFile.readInt() != MAGIC || randomAccessFile.readInt() != VERSION
+                || randomAccessFile.readByte() != CLEAN) {
+            reset();
+            return true;
+        }
+        long newRootPos = randomAccessFile.readLong();
+        long newFreeListPos = randomAccessFile.readLong();
+        long newGeneration = randomAccessFile.readLong();
+        if (loaded && newGeneration == generation) {
+            return false;
+        }
+        generation = newGeneration;
+        rootPos = newRootPos;
+        freeListPos = newFreeListPos;
+        freeList.clear();
+        freeBytes = 0;
+        if (freeListPos != 0) {
+            readFreeList(freeListPos);
+        }
+        loaded = true;
+        return true;
+    }
+
+    private void reset() throws IOException {
+        randomAccessFile.setLength(0);
+        // Use a new generation, so that other stores using the file discard their content
+        generation = Math.max(generation + 1, System.currentTimeMillis());
+        rootPos = 0;
+        freeListPos = 0;
+        freeList.clear();
+        freeBytes = 0;
+        writeHeader(CLEAN);
+        loaded = true;
+    }
+
+    private void writeHeader(byte state) throws IOException {
+        randomAccessFile.seek(0);
+        randomAccessFile.writeInt(MAGIC);
+        randomAccessFile.writeInt(VERSION);
+        randomAccessFile.writeByte(state);
+        randomAccessFile.writeLong(rootPos);
+        randomAccessFile.writeLong(freeListPos);
+        randomAccessFile.writeLong(generation);
+    }
+
+    private void readFreeList(long freeListPos) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(read(freeListPos)));
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            FreeBlock block = new FreeBlock(input.readLong(), input.readInt());
+            freeList.add(block);
+            freeBytes += block.capacity;
+        }
+    }
+
+    private long writeFreeList() throws IOException {
+        if (freeList.isEmpty()) {
+            return 0;
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(content);
+        output.writeInt(freeList.size());
+        for (FreeBlock block : freeList) {
+            output.writeLong(block.pos);
+            output.writeInt(block.capacity);
+        }
+        output.flush();
+
+        // Always append the free list, so that it does not overwrite a block on the free list
+        byte[] bytes = content.toByteArray();
+        long pos = randomAccessFile.length();
+        randomAccessFile.seek(pos);
+        randomAccessFile.writeInt(bytes.length);
+        randomAccessFile.writeInt(bytes.length);
+        randomAccessFile.write(bytes);
+        return pos;
+    }
+
+    private static int roundUp(int size) {
+        return ((size + ALLOCATION_UNIT - 1) / ALLOCATION_UNIT) * ALLOCATION_UNIT;
+    }
+
+    private static class FreeBlock {
+        private final long pos;
+        private final int capacity;
+
+        private FreeBlock(long pos, int capacity) {
+            this.pos = pos;
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.configuration;
+
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.CacheUsage;
+import org.gradle.api.initialization.ProjectDescriptor;
+import org.gradle.api.initialization.Settings;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.SettingsInternal;
+import org.gradle.api.internal.artifacts.dsl.BuildScriptClasspathScriptTransformer;
+import org.gradle.api.internal.artifacts.dsl.BuildScriptTransformer;
+import org.gradle.api.internal.project.ImportsReader;
+import org.gradle.api.internal.project.ProjectFactory;
+import org.gradle.api.internal.project.ProjectScript;
+import org.gradle.groovy.scripts.ImportsScriptSource;
+import org.gradle.groovy.scripts.ScriptCompiler;
+import org.gradle.groovy.scripts.ScriptCompilerFactory;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.util.Clock;
+import org.gradle.util.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Compiles the build scripts of all projects into the script cache using a pool of threads, starting as soon as the
+ * settings have been evaluated. The projects are still evaluated one at a time and in the usual order. A project whose
+ * build script is being compiled when the project is evaluated waits for the compilation to complete.
+ *
+ * <p>The scripts are compiled against the build script {@code ClassLoader} of the build. The script cache keys the
+ * compiled classes by the classpath they were compiled against, so a script which ends up with another classpath, for
+ * example one added by a script it applies, is compiled again when its project is evaluated. To avoid that wasted work,
+ * a build script is not compiled in advance when the project or any of its parent projects declares a build script
+ * classpath. A script which fails to compile is left to fail when its project is evaluated.</p>
+ */
+public class BuildScriptPrecompiler extends BuildAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(BuildScriptPrecompiler.class);
+    private static final String BUILDSCRIPT_METHOD_NAME = "buildscript";
+
+    private final GradleInternal gradle;
+    private final ProjectFactory projectFactory;
+    private final ScriptCompilerFactory scriptCompilerFactory;
+    private final ImportsReader importsReader;
+    private ExecutorService executor;
+    private Clock clock;
+
+    public BuildScriptPrecompiler(GradleInternal gradle, ProjectFactory projectFactory,
+                                  ScriptCompilerFactory scriptCompilerFactory, ImportsReader importsReader) {
+        this.gradle = gradle;
+        this.projectFactory = projectFactory;
+        this.scriptCompilerFactory = scriptCompilerFactory;
+        this.importsReader = importsReader;
+    }
+
+    @Override
+    public void settingsEvaluated(Settings settings) {
+        if (gradle.getStartParameter().getCacheUsage() == CacheUsage.OFF) {
+            return;
+        }
+
+        // Compile the scripts in the order in which the projects are evaluated
+        List<ProjectDescriptor> projectDescriptors = new ArrayList<ProjectDescriptor>(
+                ((SettingsInternal) settings).getProjectRegistry().getAllProjects());
+        Collections.sort(projectDescriptors, new Comparator<ProjectDescriptor>() {
+            public int compare(ProjectDescriptor projectDescriptor1, ProjectDescriptor projectDescriptor2) {
+                int depthCompare = depth(projectDescriptor1) - depth(projectDescriptor2);
+                if (depthCompare != 0) {
+                    return depthCompare;
+                }
+                return projectDescriptor1.getPath().compareTo(projectDescriptor2.getPath());
+            }
+        });
+        Map<ProjectDescriptor, ScriptSource> buildScripts = new LinkedHashMap<ProjectDescriptor, ScriptSource>();
+        for (ProjectDescriptor projectDescriptor : projectDescriptors) {
+            buildScripts.put(projectDescriptor, projectFactory.createBuildScriptSource(projectDescriptor));
+        }
+
+        File rootDir = settings.getRootProject().getProjectDir();
+        ClassLoader classLoader = gradle.getBuildScriptClassLoader();
+        clock = new Clock();
+        executor = createExecutor();
+        for (Map.Entry<ProjectDescriptor, ScriptSource> entry : buildScripts.entrySet()) {
+            if (!declaresClasspath(entry.getKey(), buildScripts)) {
+                precompile(entry.getValue(), rootDir, classLoader);
+            }
+        }
+        executor.shutdown();
+    }
+
+    ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new CompilerThreadFactory());
+    }
+
+    @Override
+    public void projectsEvaluated(Gradle gradle) {
+        stop();
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        stop();
+    }
+
+    private void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        ThreadUtils.awaitTermination(executor);
+        executor = null;
+        logger.debug("Timing: Precompiling build scripts took: {}", clock.getTime());
+    }
+
+    private static int depth(ProjectDescriptor projectDescriptor) {
+        int depth = 0;
+        for (ProjectDescriptor parent = projectDescriptor.getParent(); parent != null; parent = parent.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private boolean declaresClasspath(ProjectDescriptor projectDescriptor,
+                                      Map<ProjectDescriptor, ScriptSource> buildScripts) {
+        for (ProjectDescriptor current = projectDescriptor; current != null; current = current.getParent()) {
+            ScriptSource buildScript = buildScripts.get(current);
+            if (buildScript == null || buildScript.getText().contains(BUILDSCRIPT_METHOD_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void precompile(final ScriptSource buildScript, final File rootDir, final ClassLoader classLoader) {
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    ScriptCompiler compiler = scriptCompilerFactory.createCompiler(new ImportsScriptSource(buildScript,
+                            importsReader, rootDir));
+                    compiler.setClassloader(classLoader);
+                    compiler.setTransformer(new BuildScriptClasspathScriptTransformer());
+                    compiler.precompile(ProjectScript.class);
+                    compiler.setTransformer(new BuildScriptTransformer());
+                    compiler.precompile(ProjectScript.class);
+                } catch (Throwable e) {
+                    logger.debug(String.format("Could not precompile %s.", buildScript.getDisplayName()), e);
+                }
+            }
+        });
+    }
+
+    private static class CompilerThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Build script compiler %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
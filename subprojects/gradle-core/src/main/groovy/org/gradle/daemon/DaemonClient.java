@@ -0,0 +1,239 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.daemon;
+
+import org.gradle.BootstrapMain;
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.util.GUtil;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A thin client which runs builds in the build daemon, starting the daemon when it is not running. The output of the
+ * build is copied to the output streams of the client. A daemon which is not compatible with the client, for example
+ * because it runs a different Gradle version or was started with different environment variables, is stopped and
+ * replaced with a new daemon.
+ */
+public class DaemonClient {
+    private static final Logger LOGGER = Logging.getLogger(DaemonClient.class);
+    private static final int STARTUP_TIMEOUT = 60000;
+
+    private final File gradleUserHomeDir;
+    private final String compatibilityKey;
+
+    public DaemonClient(File gradleUserHomeDir) {
+        this(gradleUserHomeDir, DaemonProtocol.getCompatibilityKey());
+    }
+
+    DaemonClient(File gradleUserHomeDir, String compatibilityKey) {
+        this.gradleUserHomeDir = gradleUserHomeDir;
+        this.compatibilityKey = compatibilityKey;
+    }
+
+    /**
+     * Runs a build in the daemon, starting the daemon if required.
+     *
+     * @param args The command-line arguments for the build.
+     * @param currentDir The directory to run the build from.
+     * @return The exit status of the build.
+     */
+    public int execute(String[] args, File currentDir, OutputStream stdout, OutputStream stderr) {
+        try {
+            Connection connection = connect();
+            if (connection != null && !connection.compatible) {
+                LOGGER.lifecycle("The build daemon is not compatible with this client. Stopping it.");
+                stop(connection);
+                connection = null;
+            }
+            if (connection == null) {
+                startDaemon();
+                connection = waitForDaemon();
+            }
+            try {
+                connection.output.writeByte(DaemonProtocol.BUILD);
+                DaemonProtocol.writeString(connection.output, currentDir.getAbsolutePath());
+                connection.output.writeInt(args.length);
+                for (String arg : args) {
+                    DaemonProtocol.writeString(connection.output, arg);
+                }
+                DaemonProtocol.writeString(connection.output, System.getProperty("user.dir"));
+                connection.output.flush();
+                return readResult(connection, stdout, stderr);
+            } finally {
+                connection.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the daemon, if it is running.
+     *
+     * @return true if the daemon was stopped, false if it was not running.
+     */
+    public boolean stop() {
+        try {
+            Connection connection = connect();
+            if (connection == null) {
+                return false;
+            }
+            stop(connection);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void stop(Connection connection) throws IOException {
+        try {
+            if (!connection.stoppable) {
+                LOGGER.warn("Cannot stop a build daemon which uses a different protocol version.");
+                return;
+            }
+            connection.output.writeByte(DaemonProtocol.STOP);
+            connection.output.flush();
+            readResult(connection, null, null);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int readResult(Connection connection, OutputStream stdout, OutputStream stderr) throws IOException {
+        try {
+            while (true) {
+                byte type = connection.input.readByte();
+                if (type == DaemonProtocol.RESULT) {
+                    return connection.input.readInt();
+                }
+                String text = DaemonProtocol.readString(connection.input);
+                OutputStream target = type == DaemonProtocol.OUTPUT ? stdout : stderr;
+                if (target != null) {
+                    target.write(text.getBytes());
+                    target.flush();
+                }
+            }
+        } catch (EOFException e) {
+            throw new GradleException("The build daemon disconnected before the build completed.", e);
+        }
+    }
+
+    private Connection connect() throws IOException {
+        File registryFile = DaemonProtocol.getRegistryFile(gradleUserHomeDir);
+        if (!registryFile.isFile()) {
+            return null;
+        }
+        Properties properties = GUtil.loadProperties(registryFile);
+        String port = properties.getProperty(DaemonProtocol.PORT_PROPERTY);
+        String token = properties.getProperty(DaemonProtocol.TOKEN_PROPERTY);
+        if (port == null || token == null) {
+            // Partially written
+            return null;
+        }
+
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getByName(null), Integer.parseInt(port));
+        } catch (ConnectException e) {
+            LOGGER.debug("Could not connect to build daemon.", e);
+            return null;
+        }
+        Connection connection = new Connection(socket);
+        connection.output.writeInt(DaemonProtocol.VERSION);
+        DaemonProtocol.writeString(connection.output, token);
+        DaemonProtocol.writeString(connection.output, compatibilityKey);
+        DaemonProtocol.writeEnvironment(connection.output, DaemonProtocol.getEnvironment());
+        connection.output.flush();
+        try {
+            connection.compatible = connection.input.readByte() == DaemonProtocol.COMPATIBLE;
+        } catch (IOException e) {
+            // A daemon which uses a different protocol version closes the connection
+            LOGGER.debug("Build daemon rejected the connection.", e);
+            connection.compatible = false;
+            connection.stoppable = false;
+        }
+        return connection;
+    }
+
+    private Connection waitForDaemon() throws IOException {
+        long expiry = System.currentTimeMillis() + STARTUP_TIMEOUT;
+        while (System.currentTimeMillis() < expiry) {
+            Connection connection = connect();
+            if (connection != null && connection.compatible) {
+                return connection;
+            }
+            if (connection != null) {
+                // The old daemon is still registered
+                connection.close();
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new GradleException(e);
+            }
+        }
+        throw new GradleException(String.format("Timeout waiting for the build daemon to start. See %s.",
+                DaemonProtocol.getRegistryFile(gradleUserHomeDir).getParentFile()));
+    }
+
+    private void startDaemon() throws IOException {
+        LOGGER.lifecycle("Starting build daemon.");
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath());
+        command.addAll(DaemonProtocol.getDaemonJvmArgs());
+        command.add(String.format("-Dgradle.home=%s", System.getProperty("gradle.home")));
+        // The daemon's own JVM arguments differ from this JVM's, so tell it which clients are compatible with it
+        command.add(String.format("-D%s=%s", DaemonProtocol.COMPATIBILITY_SYSTEM_PROPERTY, compatibilityKey));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BootstrapMain.class.getName());
+        command.add("--foreground-daemon");
+        command.add("--gradle-user-home");
+        command.add(gradleUserHomeDir.getAbsolutePath());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        // The daemon outlives this process, so must not write to a pipe which is no longer read
+        process.getOutputStream().close();
+        process.getInputStream().close();
+    }
+
+    private static class Connection {
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+        private boolean compatible;
+        private boolean stoppable = true;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
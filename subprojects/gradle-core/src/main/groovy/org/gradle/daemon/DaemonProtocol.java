@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.daemon;
+
+import org.gradle.util.GradleVersion;
+import org.gradle.util.HashUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The protocol used between the build daemon and its clients. Each connection carries a single request from the
+ * client, followed by the responses from the daemon.
+ *
+ * <p>A request starts with the protocol version, the token of the daemon, the compatibility key of the client and the
+ * environment variables of the client. The daemon replies whether the client is compatible with it, that is, whether it
+ * runs the same Gradle version with the same classpath, Java installation, JVM arguments and environment. The client
+ * then sends a command. An incompatible daemon only accepts the stop command. A build command is followed by the
+ * current directory of the client, the command-line arguments for the build and the {@code user.dir} system property
+ * of the client. The daemon then sends any number of output messages, followed by a result message
+ * containing the exit status.</p>
+ */
+class DaemonProtocol {
+    static final int VERSION = 3;
+
+    static final byte COMPATIBLE = 1;
+    static final byte INCOMPATIBLE = 2;
+
+    static final byte BUILD = 1;
+    static final byte STOP = 2;
+
+    static final byte OUTPUT = 1;
+    static final byte ERROR = 2;
+    static final byte RESULT = 3;
+
+    static final String PORT_PROPERTY = "port";
+    static final String TOKEN_PROPERTY = "token";
+
+    /**
+     * The system property which a client uses to pass its compatibility key to the daemon it starts.
+     */
+    static final String COMPATIBILITY_SYSTEM_PROPERTY = "org.gradle.daemon.compatibility";
+
+    /**
+     * Environment variables which shells maintain for themselves, and which are ignored when comparing environments.
+     */
+    private static final List<String> SHELL_VARIABLES = Arrays.asList("PWD", "OLDPWD", "SHLVL", "_");
+
+    /**
+     * Returns the file which the daemon for the given user home directory uses to advertise its address.
+     */
+    static File getRegistryFile(File gradleUserHomeDir) {
+        return new File(gradleUserHomeDir, "daemon/registry.properties");
+    }
+
+    /**
+     * Returns the arguments of this JVM which are passed on to a daemon started by it.
+     */
+    static List<String> getDaemonJvmArgs() {
+        List<String> jvmArgs = new ArrayList<String>();
+        for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // Don't attach the daemon to this process' debugger
+            if (!jvmArg.startsWith("-agentlib:jdwp") && !jvmArg.startsWith("-Xrunjdwp")
+                    && !jvmArg.startsWith("-D" + COMPATIBILITY_SYSTEM_PROPERTY + "=")) {
+                jvmArgs.add(jvmArg);
+            }
+        }
+        return jvmArgs;
+    }
+
+    /**
+     * Returns the compatibility key of this JVM. This is a hash of the Gradle version, the Java installation, the JVM
+     * arguments and the classpath, including the size and modification time of each classpath entry.
+     */
+    static String getCompatibilityKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(new GradleVersion().getVersion()).append('\n');
+        key.append(System.getProperty("java.home")).append('\n');
+        for (String jvmArg : getDaemonJvmArgs()) {
+            key.append(jvmArg).append('\n');
+        }
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(path);
+            key.append(file.getAbsolutePath()).append(':').append(file.length()).append(':').append(
+                    file.lastModified()).append('\n');
+        }
+        return HashUtil.createHash(key.toString());
+    }
+
+    /**
+     * Returns the environment variables of this process which must be the same for a client and the daemon that runs
+     * its builds. A daemon inherits the environment of the client which starts it.
+     */
+    static Map<String, String> getEnvironment() {
+        Map<String, String> environment = new TreeMap<String, String>(System.getenv());
+        environment.keySet().removeAll(SHELL_VARIABLES);
+        return environment;
+    }
+
+    /**
+     * Returns true if the given client environment is the same as the environment of this process, ignoring the
+     * variables maintained by the shell.
+     */
+    static boolean isSameEnvironment(Map<String, String> clientEnvironment) {
+        Map<String, String> environment = new TreeMap<String, String>(clientEnvironment);
+        environment.keySet().removeAll(SHELL_VARIABLES);
+        return environment.equals(getEnvironment());
+    }
+
+    static void writeEnvironment(DataOutputStream output, Map<String, String> environment) throws IOException {
+        output.writeInt(environment.size());
+        for (Map.Entry<String, String> entry : environment.entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue());
+        }
+    }
+
+    static Map<String, String> readEnvironment(DataInputStream input) throws IOException {
+        Map<String, String> environment = new TreeMap<String, String>();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(input);
+            environment.put(name, readString(input));
+        }
+        return environment;
+    }
+
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.daemon;
+
+import org.apache.tools.ant.taskdefs.Chmod;
+import org.gradle.*;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.project.GlobalServicesRegistry;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.logging.StandardOutputListener;
+import org.gradle.cache.SharedCacheRepositoryFactory;
+import org.gradle.initialization.DefaultLoggingConfigurer;
+import org.gradle.util.AntUtil;
+import org.gradle.util.Clock;
+import org.gradle.util.GUtil;
+import org.gradle.util.GradleVersion;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * A long-lived process which runs builds on behalf of {@link DaemonClient} instances. The daemon listens on a local
+ * socket, and advertises its port in a registry file in the Gradle user home directory.
+ *
+ * <p>Each build is run using a new {@link GradleLauncher}, created by a factory shared by all the builds. The caches
+ * used by the builds are kept in memory between builds. Builds are run one at a time. The daemon stops when it is
+ * asked to, or when it has not received a request for a while.</p>
+ *
+ * <p>The daemon only runs builds for clients with the same compatibility key, which identifies the Gradle version,
+ * classpath and JVM arguments. A client which starts the daemon passes its key to the daemon using a system property.
+ * The daemon also only runs builds for clients with the same environment variables as the daemon. The
+ * {@code user.dir} system property of the client is set for the duration of each build.</p>
+ *
+ * <p>The registry file contains the token which clients use to authenticate with the daemon, so the daemon directory
+ * and the registry file are made accessible to their owner only before the token is written.</p>
+ */
+public class DaemonServer {
+    private static final Logger LOGGER = Logging.getLogger(DaemonServer.class);
+    public static final int DEFAULT_IDLE_TIMEOUT = 3 * 60 * 60 * 1000;
+
+    private final File registryFile;
+    private final int idleTimeout;
+    private final String token = UUID.randomUUID().toString();
+    private final String compatibilityKey;
+    private final SharedCacheRepositoryFactory cacheRepositoryFactory = new SharedCacheRepositoryFactory();
+    private final GradleLauncherFactory launcherFactory;
+    private boolean stopped;
+
+    public DaemonServer(File gradleUserHomeDir) {
+        this(gradleUserHomeDir, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public DaemonServer(File gradleUserHomeDir, int idleTimeout) {
+        this(gradleUserHomeDir, idleTimeout, System.getProperty(DaemonProtocol.COMPATIBILITY_SYSTEM_PROPERTY,
+                DaemonProtocol.getCompatibilityKey()));
+    }
+
+    DaemonServer(File gradleUserHomeDir, int idleTimeout, String compatibilityKey) {
+        this.registryFile = DaemonProtocol.getRegistryFile(gradleUserHomeDir);
+        this.idleTimeout = idleTimeout;
+        this.compatibilityKey = compatibilityKey;
+        launcherFactory = new DefaultGradleLauncherFactory(new DefaultLoggingConfigurer(),
+                new DefaultCommandLine2StartParameterConverter(), new GlobalServicesRegistry(cacheRepositoryFactory));
+    }
+
+    /**
+     * Runs builds until this daemon is stopped. Blocks until the daemon has stopped.
+     */
+    public void run() {
+        try {
+            ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+            try {
+                serverSocket.setSoTimeout(idleTimeout);
+                register(serverSocket.getLocalPort());
+                LOGGER.lifecycle(String.format("Build daemon started on port %s.", serverSocket.getLocalPort()));
+                while (!stopped) {
+                    Socket socket;
+                    try {
+                        socket = serverSocket.accept();
+                    } catch (SocketTimeoutException e) {
+                        LOGGER.lifecycle("Build daemon has been idle for too long. Stopping.");
+                        break;
+                    }
+                    try {
+                        handle(socket);
+                    } catch (Exception e) {
+                        LOGGER.error("Could not handle build daemon request.", e);
+                    } finally {
+                        socket.close();
+                    }
+                }
+            } finally {
+                unregister();
+                serverSocket.close();
+                cacheRepositoryFactory.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOGGER.lifecycle("Build daemon stopped.");
+    }
+
+    private void register(int port) {
+        Properties properties = new Properties();
+        properties.setProperty(DaemonProtocol.PORT_PROPERTY, String.valueOf(port));
+        properties.setProperty(DaemonProtocol.TOKEN_PROPERTY, token);
+        File registryDir = registryFile.getParentFile();
+        registryDir.mkdirs();
+        chmod(registryDir, "700");
+        try {
+            registryFile.createNewFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chmod(registryFile, "600");
+        GUtil.saveProperties(properties, registryFile);
+    }
+
+    private static void chmod(File file, String permissions) {
+        // Does nothing on platforms without Unix file permissions
+        Chmod chmod = new Chmod();
+        chmod.setProject(AntUtil.createProject());
+        chmod.setFile(file);
+        chmod.setPerm(permissions);
+        chmod.execute();
+    }
+
+    private void unregister() {
+        // Another daemon may have replaced the registry file
+        if (registryFile.isFile() && token.equals(GUtil.loadProperties(registryFile).getProperty(
+                DaemonProtocol.TOKEN_PROPERTY))) {
+            registryFile.delete();
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (input.readInt() != DaemonProtocol.VERSION || !token.equals(DaemonProtocol.readString(input))) {
+            LOGGER.warn("Rejected build daemon request from an unknown client.");
+            return;
+        }
+        boolean compatible = compatibilityKey.equals(DaemonProtocol.readString(input));
+        Map<String, String> environment = DaemonProtocol.readEnvironment(input);
+        if (compatible && !DaemonProtocol.isSameEnvironment(environment)) {
+            LOGGER.info("Build daemon client has different environment variables.");
+            compatible = false;
+        }
+        output.writeByte(compatible ? DaemonProtocol.COMPATIBLE : DaemonProtocol.INCOMPATIBLE);
+        output.flush();
+
+        byte command = input.readByte();
+        int exitCode;
+        if (command == DaemonProtocol.STOP) {
+            stopped = true;
+            exitCode = 0;
+        } else if (!compatible) {
+            new ClientOutput(output, DaemonProtocol.ERROR).onOutput(String.format(
+                    "The build daemon is not compatible with this client.%n"));
+            exitCode = 1;
+        } else {
+            File currentDir = new File(DaemonProtocol.readString(input));
+            String[] args = new String[input.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = DaemonProtocol.readString(input);
+            }
+            String userDir = DaemonProtocol.readString(input);
+            String originalUserDir = System.getProperty("user.dir");
+            System.setProperty("user.dir", userDir);
+            try {
+                exitCode = build(args, currentDir, new ClientOutput(output, DaemonProtocol.OUTPUT),
+                        new ClientOutput(output, DaemonProtocol.ERROR));
+            } finally {
+                System.setProperty("user.dir", originalUserDir);
+            }
+        }
+
+        synchronized (output) {
+            output.writeByte(DaemonProtocol.RESULT);
+            output.writeInt(exitCode);
+            output.flush();
+        }
+    }
+
+    private int build(String[] args, File currentDir, StandardOutputListener stdout,
+                      StandardOutputListener stderr) {
+        Clock buildTimeClock = new Clock();
+        CommandLine2StartParameterConverter converter = new DefaultCommandLine2StartParameterConverter(currentDir);
+        StartParameter startParameter;
+        try {
+            startParameter = converter.convert(args);
+        } catch (CommandLineArgumentException e) {
+            stderr.onOutput(String.format("%s%n", e.getMessage()));
+            return 1;
+        }
+
+        if (startParameter.isShowHelp()) {
+            ByteArrayOutputStream help = new ByteArrayOutputStream();
+            converter.showHelp(help);
+            stdout.onOutput(help.toString());
+            return 0;
+        }
+        if (startParameter.isShowVersion()) {
+            stdout.onOutput(String.format("%s%n", new GradleVersion().prettyPrint()));
+            return 0;
+        }
+        if (startParameter.isLaunchGUI() || startParameter.isStopDaemon() || startParameter.isForegroundDaemon()) {
+            stderr.onOutput(String.format("The build daemon can only run builds.%n"));
+            return 1;
+        }
+
+        try {
+            GradleLauncher gradleLauncher = launcherFactory.newInstance(startParameter);
+            gradleLauncher.addStandardOutputListener(stdout);
+            gradleLauncher.addStandardErrorListener(stderr);
+            gradleLauncher.useLogger(new BuildLogger(LOGGER, buildTimeClock, startParameter));
+            BuildResult buildResult = gradleLauncher.run();
+            return buildResult.getFailure() == null ? 0 : 1;
+        } catch (Throwable t) {
+            StringWriter stackTrace = new StringWriter();
+            t.printStackTrace(new PrintWriter(stackTrace));
+            stderr.onOutput(stackTrace.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Forwards output to the client. Stops forwarding once the client has disconnected.
+     */
+    private static class ClientOutput implements StandardOutputListener {
+        private final DataOutputStream output;
+        private final byte type;
+        private boolean failed;
+
+        private ClientOutput(DataOutputStream output, byte type) {
+            this.output = output;
+            this.type = type;
+        }
+
+        public void onOutput(CharSequence text) {
+            synchronized (output) {
+                if (failed) {
+                    return;
+                }
+                try {
+                    output.writeByte(type);
+                    DaemonProtocol.writeString(output, text.toString());
+                    output.flush();
+                } catch (IOException e) {
+                    failed = true;
+                    LOGGER.debug("Could not forward output to build daemon client.", e);
+                }
+            }
+        }
+    }
+}
@@ -42,12 +42,24 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final ListenerBroadcast<TaskExecutionGraphListener> graphListeners;
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final Set<Task> executionPlan = new LinkedHashSet<Task>();
+    private final Map<Task, Set<Task>> directDependencies = new HashMap<Task, Set<Task>>();
+    private final Map<Task, Set<Task>> dependencies = new HashMap<Task, Set<Task>>();
+    private final int parallelThreadCount;
     private boolean populated;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager) {
+        this(listenerManager, 0);
+    }
+
+    /**
+     * @param parallelThreadCount The number of threads to use to execute tasks. Tasks are executed in order on the
+     * calling thread when this is less than 2.
+     */
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, int parallelThreadCount) {
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
+        this.parallelThreadCount = parallelThreadCount;
     }
 
     public void useFilter(Spec<? super Task> filter) {
@@ -79,6 +91,8 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
             logger.debug("Timing: Executing the DAG took " + clock.getTime());
         } finally {
             executionPlan.clear();
+            directDependencies.clear();
+            dependencies.clear();
         }
     }
 
@@ -89,6 +103,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
 
     private void fillDag(Collection<? extends Task> tasks) {
         Set<Task> visiting = new HashSet<Task>();
+        Map<Task, Set<Task>> visitingDependencies = new HashMap<Task, Set<Task>>();
         List<Task> queue = new ArrayList<Task>();
         queue.addAll(tasks);
 
@@ -110,6 +125,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                 // task in the queue
                 Set<Task> dependsOnTasks = new TreeSet<Task>(Collections.reverseOrder());
                 dependsOnTasks.addAll(task.getTaskDependencies().getDependencies(task));
+                visitingDependencies.put(task, dependsOnTasks);
                 for (Task dependsOnTask : dependsOnTasks) {
                     if (visiting.contains(dependsOnTask)) {
                         throw new CircularReferenceException(String.format(
@@ -122,8 +138,77 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                 queue.remove(0);
                 visiting.remove(task);
                 executionPlan.add(task);
+                directDependencies.put(task, visitingDependencies.remove(task));
+            }
+        }
+        orderPlan();
+    }
+
+    /**
+     * Determines the tasks in the plan which each task must follow. A dependency which is not in the plan, because it
+     * has been filtered, is followed through to the tasks in the plan which it depends on. The plan is then ordered so
+     * that each task follows those tasks, keeping the existing order where possible.
+     */
+    private void orderPlan() {
+        Map<Task, Set<Task>> filteredTaskDependencies = new HashMap<Task, Set<Task>>();
+        dependencies.clear();
+        for (Task task : executionPlan) {
+            Set<Task> planDependencies = new TreeSet<Task>();
+            for (Task dependsOnTask : directDependencies.get(task)) {
+                if (executionPlan.contains(dependsOnTask)) {
+                    planDependencies.add(dependsOnTask);
+                } else {
+                    planDependencies.addAll(getPlanDependencies(dependsOnTask, filteredTaskDependencies,
+                            new HashSet<Task>()));
+                }
             }
+            dependencies.put(task, planDependencies);
+        }
+
+        Set<Task> orderedPlan = new LinkedHashSet<Task>();
+        for (Task task : executionPlan) {
+            addToPlan(task, orderedPlan, new HashSet<Task>());
         }
+        executionPlan.clear();
+        executionPlan.addAll(orderedPlan);
+    }
+
+    private Set<Task> getPlanDependencies(Task filteredTask, Map<Task, Set<Task>> filteredTaskDependencies,
+                                          Set<Task> visiting) {
+        Set<Task> planDependencies = filteredTaskDependencies.get(filteredTask);
+        if (planDependencies != null) {
+            return planDependencies;
+        }
+        if (!visiting.add(filteredTask)) {
+            throw new CircularReferenceException(String.format(
+                    "Circular dependency between tasks. Cycle includes %s.", filteredTask));
+        }
+        planDependencies = new HashSet<Task>();
+        for (Task dependsOnTask : filteredTask.getTaskDependencies().getDependencies(filteredTask)) {
+            if (executionPlan.contains(dependsOnTask)) {
+                planDependencies.add(dependsOnTask);
+            } else {
+                planDependencies.addAll(getPlanDependencies(dependsOnTask, filteredTaskDependencies, visiting));
+            }
+        }
+        visiting.remove(filteredTask);
+        filteredTaskDependencies.put(filteredTask, planDependencies);
+        return planDependencies;
+    }
+
+    private void addToPlan(Task task, Set<Task> orderedPlan, Set<Task> visiting) {
+        if (orderedPlan.contains(task)) {
+            return;
+        }
+        if (!visiting.add(task)) {
+            throw new CircularReferenceException(String.format(
+                    "Circular dependency between tasks. Cycle includes %s.", task));
+        }
+        for (Task dependsOnTask : dependencies.get(task)) {
+            addToPlan(dependsOnTask, orderedPlan, visiting);
+        }
+        visiting.remove(task);
+        orderedPlan.add(task);
     }
 
     public void addTaskExecutionGraphListener(TaskExecutionGraphListener listener) {
@@ -155,6 +240,14 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     }
 
     private void doExecute(Iterable<? extends Task> tasks) {
+        if (parallelThreadCount > 1) {
+            Map<Task, Set<Task>> plan = new LinkedHashMap<Task, Set<Task>>();
+            for (Task task : tasks) {
+                plan.put(task, dependencies.get(task));
+            }
+            new ParallelTaskPlanExecuter(parallelThreadCount, taskListeners.getSource()).execute(plan);
+            return;
+        }
         for (Task task : tasks) {
             if (!task.getExecuted()) {
                 executeTask(task);
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.execution;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.execution.TaskExecutionResult;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.logging.StandardOutputLogging;
+import org.gradle.util.ThreadUtils;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes an execution plan using a bounded pool of worker threads. A task is started once all of its dependencies
+ * have been executed. Only one task of a given project is executed at a time, as tasks of the same project share the
+ * project's mutable state. No further tasks are started once a task fails, and the first failure is rethrown once the
+ * running tasks have completed.
+ *
+ * <p>The redirection of System.out and System.err is made specific to each thread while the plan is executed, so that
+ * each task captures only its own output.</p>
+ */
+public class ParallelTaskPlanExecuter {
+    private final int threadCount;
+    private final TaskExecutionListener listener;
+    private final Lock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private final Set<Task> completed = new HashSet<Task>();
+    private final Set<Project> busyProjects = new HashSet<Project>();
+    private int running;
+    private Throwable failure;
+
+    public ParallelTaskPlanExecuter(int threadCount, TaskExecutionListener listener) {
+        this.threadCount = threadCount;
+        this.listener = listener;
+    }
+
+    /**
+     * Executes the given plan.
+     *
+     * @param plan The tasks to execute, in execution order, mapped to the tasks in the plan which they depend on.
+     */
+    public void execute(Map<Task, Set<Task>> plan) {
+        List<Task> pending = new LinkedList<Task>();
+        for (Task task : plan.keySet()) {
+            if (task.getExecuted()) {
+                completed.add(task);
+            } else {
+                pending.add(task);
+            }
+        }
+
+        StandardOutputLogging.enableThreadLocalRedirection();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new WorkerThreadFactory());
+        lock.lock();
+        try {
+            while (failure == null && !pending.isEmpty()) {
+                for (Iterator<Task> iterator = pending.iterator(); iterator.hasNext() && running < threadCount;) {
+                    Task task = iterator.next();
+                    if (isReady(task, plan.get(task))) {
+                        iterator.remove();
+                        start(executor, task);
+                    }
+                }
+                if (running == 0) {
+                    throw new IllegalStateException(String.format("Cannot execute %s, as its dependencies cannot be executed.", pending.get(0)));
+                }
+                stateChanged.awaitUninterruptibly();
+            }
+            while (running > 0) {
+                stateChanged.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+            ThreadUtils.shutdown(executor);
+            StandardOutputLogging.disableThreadLocalRedirection();
+        }
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new GradleException(failure);
+        }
+    }
+
+    private boolean isReady(Task task, Set<Task> dependencies) {
+        return !busyProjects.contains(task.getProject()) && completed.containsAll(dependencies);
+    }
+
+    private void start(ExecutorService executor, final Task task) {
+        running++;
+        busyProjects.add(task.getProject());
+        executor.execute(new Runnable() {
+            public void run() {
+                Throwable taskFailure = null;
+                try {
+                    executeTask(task);
+                } catch (Throwable t) {
+                    taskFailure = t;
+                }
+                finished(task, taskFailure);
+            }
+        });
+    }
+
+    private void executeTask(Task task) {
+        synchronized (listener) {
+            listener.beforeExecute(task);
+        }
+        TaskExecutionResult result = ((TaskInternal) task).execute();
+        synchronized (listener) {
+            listener.afterExecute(task, result);
+        }
+        result.rethrowFailure();
+    }
+
+    private void finished(Task task, Throwable taskFailure) {
+        lock.lock();
+        try {
+            running--;
+            busyProjects.remove(task.getProject());
+            if (taskFailure == null) {
+                completed.add(task);
+            } else if (failure == null) {
+                failure = taskFailure;
+            }
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Task worker %d", ++counter));
+            thread.setContextClassLoader(contextClassLoader);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
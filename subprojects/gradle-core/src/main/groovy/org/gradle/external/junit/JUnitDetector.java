@@ -17,9 +17,8 @@ package org.gradle.external.junit;
 
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.testing.detection.AbstractTestFrameworkDetector;
+import org.gradle.api.testing.detection.LibraryTestClassIndex;
 import org.gradle.api.testing.detection.TestClassVisitor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.File;
 
@@ -27,22 +26,19 @@ import java.io.File;
  * @author Tom Eyckmans
  */
 public class JUnitDetector extends AbstractTestFrameworkDetector<JUnitTestClassDetecter> {
-    private static final Logger logger = LoggerFactory.getLogger(JUnitDetector.class);
 
     protected static final String TEST_CASE = "junit/framework/TestCase";
     protected static final String GROOVY_TEST_CASE = "groovy/util/GroovyTestCase";
 
-    JUnitDetector(File testClassesDirectory, FileCollection testClasspath) {
-        super(testClassesDirectory, testClasspath);
+    JUnitDetector(File testClassesDirectory, FileCollection testClasspath, LibraryTestClassIndex libraryTestClassIndex) {
+        super(testClassesDirectory, testClasspath, libraryTestClassIndex);
     }
 
     protected JUnitTestClassDetecter createClassVisitor() {
         return new JUnitTestClassDetecter(this);
     }
 
-    protected boolean processTestClass(final File testClassFile, boolean superClass) {
-        final TestClassVisitor classVisitor = classVisitor(testClassFile);
-
+    protected boolean processTestClass(final TestClassVisitor classVisitor, boolean superClass) {
         boolean isTest = classVisitor.isTest();
 
         if (!isTest) { // scan parent class
@@ -53,12 +49,7 @@ public class JUnitDetector extends AbstractTestFrameworkDetector<JUnitTestClassD
             } else if (isTestCaseClassName(superClassName)) {
                 isTest = true;
             } else {
-                final File superClassFile = getSuperTestClassFile(superClassName);
-
-                if (superClassFile != null) {
-                    isTest = processSuperClass(superClassFile);
-                } else
-                    logger.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
+                isTest = processSuperClass(superClassName);
             }
         }
 
@@ -23,6 +23,7 @@ import org.gradle.api.tasks.testing.JunitForkOptions;
 import org.gradle.api.tasks.testing.junit.AntJUnitExecute;
 import org.gradle.api.tasks.testing.junit.AntJUnitReport;
 import org.gradle.api.tasks.testing.junit.JUnitOptions;
+import org.gradle.api.testing.detection.LibraryTestClassIndex;
 import org.gradle.api.testing.fabric.AbstractTestFrameworkInstance;
 import org.gradle.util.exec.ExecHandleBuilder;
 
@@ -56,7 +57,7 @@ public class JUnitTestFrameworkInstance extends AbstractTestFrameworkInstance<JU
         forkOptions.setForkMode(ForkMode.ONCE);
         forkOptions.setDir(project.getProjectDir());
 
-        detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath());
+        detector = new JUnitDetector(testTask.getTestClassesDir(), testTask.getClasspath(), new LibraryTestClassIndex(project));
     }
 
     public void execute(Project project, AbstractTestTask testTask, Collection<String> includes, Collection<String> excludes) {
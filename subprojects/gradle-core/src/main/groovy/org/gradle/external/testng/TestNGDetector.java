@@ -17,9 +17,8 @@ package org.gradle.external.testng;
 
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.testing.detection.AbstractTestFrameworkDetector;
+import org.gradle.api.testing.detection.LibraryTestClassIndex;
 import org.gradle.api.testing.detection.TestClassVisitor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.File;
 
@@ -27,10 +26,9 @@ import java.io.File;
  * @author Tom Eyckmans
  */
 class TestNGDetector extends AbstractTestFrameworkDetector<TestNGTestClassDetecter> {
-    private static final Logger logger = LoggerFactory.getLogger(TestNGDetector.class);
 
-    TestNGDetector(File testClassesDirectory, FileCollection testClasspath) {
-        super(testClassesDirectory, testClasspath);
+    TestNGDetector(File testClassesDirectory, FileCollection testClasspath, LibraryTestClassIndex libraryTestClassIndex) {
+        super(testClassesDirectory, testClasspath, libraryTestClassIndex);
     }
 
     protected TestNGTestClassDetecter createClassVisitor() {
@@ -46,13 +44,11 @@ class TestNGDetector extends AbstractTestFrameworkDetector<TestNGTestClassDetect
      * <p/>
      * When a parent class is a test class all the extending classes are marked as test classes.
      *
-     * @param testClassFile
+     * @param classVisitor
      * @param superClass
      * @return
      */
-    protected boolean processTestClass(final File testClassFile, boolean superClass) {
-        final TestClassVisitor classVisitor = classVisitor(testClassFile);
-
+    protected boolean processTestClass(final TestClassVisitor classVisitor, boolean superClass) {
         boolean isTest = classVisitor.isTest();
 
         if (!isTest) {
@@ -61,12 +57,7 @@ class TestNGDetector extends AbstractTestFrameworkDetector<TestNGTestClassDetect
             if (isLangPackageClassName(superClassName)) {
                 isTest = false;
             } else {
-                final File superClassFile = getSuperTestClassFile(superClassName);
-
-                if (superClassFile != null) {
-                    isTest = processSuperClass(superClassFile);
-                } else
-                    logger.debug("test-class-scan : failed to scan parent class {}, could not find the class file", superClassName);
+                isTest = processSuperClass(superClassName);
             }
         }
 
@@ -21,6 +21,7 @@ import org.gradle.api.Project;
 import org.gradle.api.tasks.testing.AbstractTestTask;
 import org.gradle.api.tasks.testing.testng.AntTestNGExecute;
 import org.gradle.api.tasks.testing.testng.TestNGOptions;
+import org.gradle.api.testing.detection.LibraryTestClassIndex;
 import org.gradle.api.testing.fabric.AbstractTestFrameworkInstance;
 import org.gradle.util.exec.ExecHandleBuilder;
 
@@ -47,7 +48,7 @@ public class TestNGTestFrameworkInstance extends AbstractTestFrameworkInstance<T
 
         options.setAnnotationsOnSourceCompatibility(JavaVersion.toVersion(project.property("sourceCompatibility")));
 
-        detector = new TestNGDetector(testTask.getTestClassesDir(), testTask.getClasspath());
+        detector = new TestNGDetector(testTask.getTestClassesDir(), testTask.getClasspath(), new LibraryTestClassIndex(project));
     }
 
     public void execute(Project project, AbstractTestTask testTask, Collection<String> includes, Collection<String> excludes) {
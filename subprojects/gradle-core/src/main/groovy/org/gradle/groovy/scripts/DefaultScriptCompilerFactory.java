@@ -16,22 +16,49 @@
 package org.gradle.groovy.scripts;
 
 import org.gradle.CacheUsage;
+import org.gradle.api.GradleException;
+import org.gradle.api.internal.initialization.ScriptClassLoader;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.util.HashUtil;
 
 import java.io.File;
-import java.util.HashMap;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
+ * Compiles scripts, caching the compiled classes by the content of the script and the classpath of the {@code
+ * ClassLoader} the script is compiled against.
+ *
+ * <p>The compiled classes are kept in the global script cache, with a single index which records the cached classes.
+ * Scripts with identical content share the same cached classes when compiled against the same classpath, and the same
+ * loaded class when compiled against the same {@code ClassLoader}. The loaded classes are also kept in memory for the life of the process, so that a later
+ * build in the same process does not need to load them again.</p>
+ *
  * @author Hans Dockter
  */
 public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
+    static final String CACHE_NAME = "scripts";
+    static final int MAX_LOADED_SCRIPTS_PER_CLASSLOADER = 500;
+    private static final int COMPILE_LOCK_COUNT = 64;
+    private static final Map<ClassLoader, Map<String, SoftReference<LoadedScript>>> LOADED_SCRIPTS
+            = new WeakHashMap<ClassLoader, Map<String, SoftReference<LoadedScript>>>();
+
     private final ScriptCompilationHandler scriptCompilationHandler;
     private final CacheUsage cacheUsage;
     private final CacheRepository cacheRepository;
     private final ScriptRunnerFactory scriptRunnerFactory;
+    private final Object[] compileLocks = new Object[COMPILE_LOCK_COUNT];
+    private File scriptCacheDir;
+    private PersistentIndexedCache<String, CachedScript> scriptIndex;
 
     public DefaultScriptCompilerFactory(ScriptCompilationHandler scriptCompilationHandler, CacheUsage cacheUsage,
                                         ScriptRunnerFactory scriptRunnerFactory, CacheRepository cacheRepository) {
@@ -39,12 +66,93 @@ public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
         this.cacheUsage = cacheUsage;
         this.cacheRepository = cacheRepository;
         this.scriptRunnerFactory = scriptRunnerFactory;
+        for (int i = 0; i < compileLocks.length; i++) {
+            compileLocks[i] = new Object();
+        }
     }
 
     public ScriptCompiler createCompiler(ScriptSource source) {
         return new ScriptCompilerImpl(source);
     }
 
+    private synchronized PersistentIndexedCache<String, CachedScript> getScriptIndex() {
+        // Both caches must be opened exactly once, as opening an invalid cache discards its content
+        if (scriptIndex == null) {
+            PersistentCache scriptCache = cacheRepository.getGlobalCache(CACHE_NAME, Collections.EMPTY_MAP);
+            scriptCacheDir = scriptCache.getBaseDir();
+            scriptIndex = cacheRepository.getIndexedGlobalCache(CACHE_NAME, Collections.EMPTY_MAP);
+        }
+        return scriptIndex;
+    }
+
+    private synchronized File getScriptCacheDir() {
+        getScriptIndex();
+        return scriptCacheDir;
+    }
+
+    /**
+     * Returns the lock for the given key. Keys share a fixed number of locks, so that the locks do not accumulate.
+     */
+    private Object getCompileLock(String key) {
+        return compileLocks[(key.hashCode() & Integer.MAX_VALUE) % compileLocks.length];
+    }
+
+    /**
+     * Returns a hash of the classpath of the given {@code ClassLoader} and its ancestors. The size and modification
+     * time of each file is included, so that a jar which is rebuilt in place changes the hash.
+     */
+    static String getClasspathHash(ClassLoader classLoader) {
+        StringBuilder classpath = new StringBuilder();
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (!(current instanceof URLClassLoader)) {
+                continue;
+            }
+            for (URL url : ((URLClassLoader) current).getURLs()) {
+                classpath.append(url);
+                if ("file".equals(url.getProtocol())) {
+                    File file = toFile(url);
+                    classpath.append(':').append(file.length()).append(':').append(file.lastModified());
+                }
+                classpath.append('\n');
+            }
+        }
+        return HashUtil.createHash(classpath.toString());
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        } catch (IllegalArgumentException e) {
+            return new File(url.getPath());
+        }
+    }
+
+    private static LoadedScript getLoadedScript(ClassLoader classLoader, String key) {
+        synchronized (LOADED_SCRIPTS) {
+            Map<String, SoftReference<LoadedScript>> scripts = LOADED_SCRIPTS.get(classLoader);
+            SoftReference<LoadedScript> reference = scripts == null ? null : scripts.get(key);
+            return reference == null ? null : reference.get();
+        }
+    }
+
+    private static void putLoadedScript(ClassLoader classLoader, String key, LoadedScript loadedScript) {
+        synchronized (LOADED_SCRIPTS) {
+            Map<String, SoftReference<LoadedScript>> scripts = LOADED_SCRIPTS.get(classLoader);
+            if (scripts == null) {
+                scripts = new LinkedHashMap<String, SoftReference<LoadedScript>>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, SoftReference<LoadedScript>> eldest) {
+                        return size() > MAX_LOADED_SCRIPTS_PER_CLASSLOADER;
+                    }
+                };
+                LOADED_SCRIPTS.put(classLoader, scripts);
+            }
+            scripts.put(key, new SoftReference<LoadedScript>(loadedScript));
+        }
+    }
+
     private class ScriptCompilerImpl implements ScriptCompiler {
         private final ScriptSource source;
         private ClassLoader classloader;
@@ -73,34 +181,143 @@ public class DefaultScriptCompilerFactory implements ScriptCompilerFactory {
                 script = loadViaCache(classloader, scriptType);
             } else {
                 script = loadWithoutCache(classloader, scriptType);
+                script.setScriptSource(source);
             }
-            script.setScriptSource(source);
             return scriptRunnerFactory.create(script);
         }
 
+        public void precompile(Class<? extends Script> scriptType) {
+            if (cacheUsage == CacheUsage.OFF) {
+                return;
+            }
+            ClassLoader classloader = this.classloader != null ? this.classloader
+                    : Thread.currentThread().getContextClassLoader();
+            ClassLoader scriptClassLoader = ScriptClassLoader.getEffectiveClassLoader(classloader);
+            String key = getCacheKey(scriptClassLoader, scriptType);
+            if (cacheUsage == CacheUsage.ON && getLoadedScript(scriptClassLoader, key) != null) {
+                return;
+            }
+            compileToCache(scriptClassLoader, key, scriptType);
+        }
+
         private <T extends Script> T loadWithoutCache(ClassLoader classLoader, Class<T> scriptBaseClass) {
             return scriptCompilationHandler.compileScript(source, classLoader, transformer, scriptBaseClass);
         }
 
         private <T extends Script> T loadViaCache(ClassLoader classLoader, Class<T> scriptBaseClass) {
-            Map<String, Object> properties = new HashMap<String, Object>();
-            properties.put("source.filename", source.getFileName());
-            properties.put("source.hash", HashUtil.createHash(source.getText()));
-
-            PersistentCache cache = cacheRepository.getGlobalCache(String.format("scripts/%s", source.getClassName()),
-                    properties);
-            File classesDir;
-            if (transformer != null) {
-                classesDir = new File(cache.getBaseDir(), transformer.getClass().getSimpleName());
-            } else {
-                classesDir = new File(cache.getBaseDir(), "NoTransformer");
+            // Scripts compiled against ClassLoaders which load the same classes can share the loaded class
+            ClassLoader scriptClassLoader = ScriptClassLoader.getEffectiveClassLoader(classLoader);
+            String key = getCacheKey(scriptClassLoader, scriptBaseClass);
+
+            LoadedScript loadedScript = cacheUsage == CacheUsage.ON ? getLoadedScript(scriptClassLoader, key) : null;
+            if (loadedScript != null) {
+                T script;
+                try {
+                    script = scriptBaseClass.cast(loadedScript.scriptClass.newInstance());
+                } catch (Exception e) {
+                    throw new GradleException(e);
+                }
+                script.setScriptSource(loadedScript.cachedScript.getSource(source));
+                return script;
+            }
+
+            CachedScript cachedScript = compileToCache(scriptClassLoader, key, scriptBaseClass);
+            ScriptSource compiledSource = cachedScript.getSource(source);
+            T script = scriptCompilationHandler.loadScriptFromDir(compiledSource, scriptClassLoader,
+                    new File(getScriptCacheDir(), key), scriptBaseClass);
+            script.setScriptSource(compiledSource);
+            putLoadedScript(scriptClassLoader, key, new LoadedScript(script.getClass(), cachedScript));
+            return script;
+        }
+
+        private String getCacheKey(ClassLoader scriptClassLoader, Class<? extends Script> scriptBaseClass) {
+            return String.format("%s/%s/%s/%s", HashUtil.createHash(source.getText()), scriptBaseClass.getName(),
+                    transformer != null ? transformer.getClass().getSimpleName() : "NoTransformer",
+                    getClasspathHash(scriptClassLoader));
+        }
+
+        private CachedScript compileToCache(ClassLoader scriptClassLoader, String key,
+                                            Class<? extends Script> scriptBaseClass) {
+            // Identical scripts may be compiled concurrently, and would write to the same directory
+            synchronized (getCompileLock(key)) {
+                PersistentIndexedCache<String, CachedScript> scriptIndex = getScriptIndex();
+                File classesDir = new File(getScriptCacheDir(), key);
+                CachedScript cachedScript = scriptIndex.get(key);
+                if (cachedScript == null || !classesDir.exists()) {
+                    cachedScript = new CachedScript(source.getClassName(), source.getFileName());
+                    scriptCompilationHandler.compileScriptToDir(source, scriptClassLoader, classesDir, transformer,
+                            scriptBaseClass);
+                    scriptIndex.put(key, cachedScript);
+                }
+                return cachedScript;
             }
+        }
+    }
+
+    /**
+     * The names which were compiled into a cached script class.
+     */
+    static class CachedScript implements Serializable {
+        private final String className;
+        private final String fileName;
+
+        CachedScript(String className, String fileName) {
+            this.className = className;
+            this.fileName = fileName;
+        }
 
-            if (!cache.isValid() || !classesDir.exists()) {
-                scriptCompilationHandler.compileScriptToDir(source, classLoader, classesDir, transformer, scriptBaseClass);
-                cache.update();
+        /**
+         * Returns the source to use for a script with the given source and the content of this cached script.
+         */
+        public ScriptSource getSource(ScriptSource source) {
+            if (className.equals(source.getClassName()) && fileName.equals(source.getFileName())) {
+                return source;
             }
-            return scriptCompilationHandler.loadScriptFromDir(source, classLoader, classesDir, scriptBaseClass);
+            return new CachedScriptSource(source, this);
+        }
+    }
+
+    private static class LoadedScript {
+        private final Class<?> scriptClass;
+        private final CachedScript cachedScript;
+
+        private LoadedScript(Class<?> scriptClass, CachedScript cachedScript) {
+            this.scriptClass = scriptClass;
+            this.cachedScript = cachedScript;
+        }
+    }
+
+    /**
+     * A script source whose class was compiled from an identical script with a different source. Uses the names which
+     * were compiled into the class, so that stack frames of the script can be mapped back to the script.
+     */
+    private static class CachedScriptSource implements ScriptSource {
+        private final ScriptSource source;
+        private final CachedScript cachedScript;
+
+        private CachedScriptSource(ScriptSource source, CachedScript cachedScript) {
+            this.source = source;
+            this.cachedScript = cachedScript;
+        }
+
+        public String getText() {
+            return source.getText();
+        }
+
+        public String getClassName() {
+            return cachedScript.className;
+        }
+
+        public File getSourceFile() {
+            return source.getSourceFile();
+        }
+
+        public String getFileName() {
+            return cachedScript.fileName;
+        }
+
+        public String getDisplayName() {
+            return source.getDisplayName();
         }
     }
 }
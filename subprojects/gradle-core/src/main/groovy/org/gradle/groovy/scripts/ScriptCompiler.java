@@ -38,4 +38,12 @@ public interface ScriptCompiler {
      * @throws GradleScriptException On compilation failure.
      */
     <T extends Script> ScriptRunner<T> compile(Class<T> scriptType) throws GradleScriptException;
+
+    /**
+     * Compiles the script into the script cache, so that a later call to {@link #compile(Class)} with the same script
+     * type does not need to compile the script. Does nothing if the script is already cached, or caching is disabled.
+     *
+     * @throws GradleScriptException On compilation failure.
+     */
+    void precompile(Class<? extends Script> scriptType) throws GradleScriptException;
 }
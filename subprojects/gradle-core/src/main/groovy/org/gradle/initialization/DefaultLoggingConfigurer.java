@@ -29,6 +29,7 @@ import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.StandardOutputListener;
 import org.gradle.api.logging.StandardOutputLogging;
 import org.gradle.listener.ListenerBroadcast;
+import org.gradle.logging.AsynchronousOutputFilter;
 import org.gradle.logging.IvyLoggingAdaper;
 import org.gradle.logging.MarkerFilter;
 import org.slf4j.LoggerFactory;
@@ -73,6 +74,10 @@ public class DefaultLoggingConfigurer implements LoggingConfigurer {
             rootLogger = lc.getLogger("ROOT");
             rootLogger.addAppender(stdoutConsoleAppender);
             rootLogger.addAppender(stderrConsoleAppender);
+            AsynchronousOutputFilter asynchronousOutputFilter = new AsynchronousOutputFilter();
+            asynchronousOutputFilter.setContext(lc);
+            asynchronousOutputFilter.start();
+            lc.addTurboFilter(asynchronousOutputFilter);
             Message.setDefaultLogger(new IvyLoggingAdaper());
         } else {
             rootLogger = lc.getLogger("ROOT");
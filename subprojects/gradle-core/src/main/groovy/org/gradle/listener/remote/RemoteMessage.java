@@ -20,6 +20,8 @@ import org.gradle.listener.ListenerBroadcast;
 import java.io.*;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 
 class RemoteMessage implements Serializable
 {
@@ -27,29 +29,44 @@ class RemoteMessage implements Serializable
     private Class[] parameters;
     private Object[] arguments;
 
+    RemoteMessage() {
+    }
+
     public RemoteMessage(Method method, Object[] args) {
         methodName = method.getName();
         parameters = method.getParameterTypes();
         arguments = args;
     }
 
-    public void send(OutputStream outputSteam) throws IOException {
-        ObjectOutputStream oos = null;
-        try {
-            oos = new ObjectOutputStream(outputSteam);
-            oos.writeObject(this);
-        } finally {
-            if (oos != null) oos.close();
+    /**
+     * Serializes the given messages as a single batch. Serializing the batch as a whole means the class descriptors of
+     * the messages are written once per batch, rather than once per message.
+     */
+    public static byte[] encodeBatch(List<RemoteMessage> messages) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(content);
+        oos.writeInt(messages.size());
+        for (RemoteMessage message : messages) {
+            oos.writeObject(message);
         }
+        oos.close();
+        return content.toByteArray();
     }
 
-    public static RemoteMessage receive(InputStream inputSteam) throws IOException, ClassNotFoundException {
-        ObjectInputStream ois = null;
+    /**
+     * Deserializes a batch written by {@link #encodeBatch(List)}.
+     */
+    public static List<RemoteMessage> decodeBatch(byte[] content) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(content));
         try {
-            ois = new ObjectInputStream(inputSteam);
-            return (RemoteMessage) ois.readObject();
+            int count = ois.readInt();
+            List<RemoteMessage> messages = new ArrayList<RemoteMessage>(count);
+            for (int i = 0; i < count; i++) {
+                messages.add((RemoteMessage) ois.readObject());
+            }
+            return messages;
         } finally {
-            if (ois != null) ois.close();
+            ois.close();
         }
     }
 
@@ -16,17 +16,43 @@
 package org.gradle.listener.remote;
 
 import org.gradle.listener.ListenerBroadcast;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Receives the messages sent by {@link RemoteSender} instances and dispatches them to a broadcaster. Each sender uses a
+ * single connection, which is read by a separate thread. Messages are dispatched one at a time, in the order they were
+ * sent by each sender.
+ *
+ * <p>Each frame is acknowledged once its messages have been dispatched. A sender which loses its connection reconnects
+ * and resends the frames it has not seen acknowledged, so the receiver keeps the sequence number of the last frame
+ * dispatched for each sender, and drops any frame it has already dispatched.</p>
+ */
 public class RemoteReceiver  {
+    private static final Logger logger = LoggerFactory.getLogger(RemoteReceiver.class);
+    static final long CLOSE_TIMEOUT = 10000;
+
     private final ListenerBroadcast<?> broadcaster;
     private final ServerSocket serverSocket;
     private final Thread receiverThread;
     private final ExceptionListener exceptionListener;
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final Map<Long, SenderState> senders = new HashMap<Long, SenderState>();
+    private boolean closed;
 
     public RemoteReceiver(ListenerBroadcast<?> broadcaster) throws IOException {
         this(broadcaster, null);
@@ -44,47 +70,165 @@ public class RemoteReceiver  {
         return serverSocket.getLocalPort();
     }
 
+    /**
+     * Stops accepting connections, then waits for the connected senders to close their connections, so that the
+     * messages which have already been sent are dispatched. Connections which remain open after a timeout are closed.
+     */
     public void close() throws IOException {
+        List<Connection> openConnections;
+        synchronized (connections) {
+            closed = true;
+            openConnections = new ArrayList<Connection>(connections);
+        }
         receiverThread.interrupt();
         serverSocket.close();
+
+        long expiry = System.currentTimeMillis() + CLOSE_TIMEOUT;
+        for (Connection connection : openConnections) {
+            connection.stop(Math.max(1, expiry - System.currentTimeMillis()));
+        }
     }
 
-    private void processMessage(Socket socket)
-    {
+    private void processMessage(RemoteMessage message) {
         try {
-            RemoteMessage message = RemoteMessage.receive(socket.getInputStream());
-            message.dispatch(broadcaster);
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            synchronized (broadcaster) {
+                message.dispatch(broadcaster);
+            }
         } catch (NoSuchMethodException e) {
-            e.printStackTrace();
+            logger.error("Could not dispatch remote message.", e);
         } catch (InvocationTargetException e) {
             if (exceptionListener != null) {
                 exceptionListener.receiverThrewException(e.getTargetException());
             }
         } catch (IllegalAccessException e) {
-            e.printStackTrace();
+            logger.error("Could not dispatch remote message.", e);
         }
     }
 
-    private class Receiver implements Runnable
-    {
+    private SenderState getSender(long senderId) {
+        synchronized (senders) {
+            SenderState sender = senders.get(senderId);
+            if (sender == null) {
+                sender = new SenderState();
+                senders.put(senderId, sender);
+            }
+            return sender;
+        }
+    }
+
+    private class Receiver implements Runnable {
         public void run() {
             while (true) {
+                Socket socket;
                 try {
-                    processMessage(serverSocket.accept());
+                    socket = serverSocket.accept();
                 } catch (IOException e) {
                     break; // let the thread die
                 }
+                Connection connection = new Connection(socket);
+                synchronized (connections) {
+                    if (closed) {
+                        connection.closeSocket();
+                        break;
+                    }
+                    connections.add(connection);
+                }
+                connection.start();
+            }
+        }
+    }
+
+    private class Connection implements Runnable {
+        private final Socket socket;
+        private final Thread thread;
+
+        private Connection(Socket socket) {
+            this.socket = socket;
+            thread = new Thread(this, "Remote Receiver Connection Thread");
+        }
+
+        public void start() {
+            thread.start();
+        }
+
+        public void run() {
+            try {
+                DataInputStream inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                        socket.getOutputStream()));
+                SenderState sender = getSender(inputStream.readLong());
+                while (true) {
+                    long sequence = inputStream.readLong();
+                    int length = inputStream.readInt();
+                    if (length < 0) {
+                        throw new IOException(String.format("Received a badly formed message frame of length %d.",
+                                length));
+                    }
+                    // Consume the whole frame even when the messages cannot be deserialized, so that the following
+                    // frames can still be read
+                    byte[] content = new byte[length];
+                    inputStream.readFully(content);
+                    synchronized (sender) {
+                        // A frame resent after a reconnect may already have been dispatched
+                        if (sequence > sender.lastSequence) {
+                            dispatch(content);
+                            sender.lastSequence = sequence;
+                        }
+                    }
+                    outputStream.writeLong(sequence);
+                    outputStream.flush();
+                }
+            } catch (EOFException e) {
+                // The sender has closed the connection
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    logger.error("Could not read remote messages.", e);
+                }
+            } finally {
+                closeSocket();
+                synchronized (connections) {
+                    connections.remove(this);
+                }
+            }
+        }
+
+        private void dispatch(byte[] content) throws IOException {
+            List<RemoteMessage> batch;
+            try {
+                batch = RemoteMessage.decodeBatch(content);
+            } catch (ClassNotFoundException e) {
+                logger.error("Could not read remote messages.", e);
+                return;
+            }
+            for (RemoteMessage message : batch) {
+                processMessage(message);
+            }
+        }
+
+        public void stop(long timeout) {
+            try {
+                thread.join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeSocket();
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
             }
         }
     }
 
+    private static class SenderState {
+        private long lastSequence;
+    }
+
     public static interface ExceptionListener
     {
         public void receiverThrewException(Throwable throwable);
     }
 }
-
@@ -15,40 +15,344 @@
  */
 package org.gradle.listener.remote;
 
-import java.lang.reflect.Proxy;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.Socket;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Sends the method calls made on a listener to a {@link RemoteReceiver} in another process.
+ *
+ * <p>Method calls are queued and written to a single connection by a background thread, so that a method call does
+ * not wait for the message to be sent. The writer thread sends all messages which are queued at the time in a single
+ * frame, then flushes the connection once the queue is empty.</p>
+ *
+ * <p>Each connection starts with an id which identifies this sender, and each frame carries a sequence number. The
+ * receiver acknowledges each frame once it has been dispatched, and drops any frame whose sequence number it has
+ * already seen from this sender. The writer keeps the frames which have not been acknowledged. When the connection
+ * fails, the writer reconnects, backing off between attempts, and resends the unacknowledged frames in order. A frame
+ * which was partly written, or which was lost along with the connection, is therefore delivered once the connection
+ * has been restored, and a frame which was dispatched but whose acknowledgement was lost is not dispatched again. When
+ * the writer cannot reconnect after a number of attempts, the failure is reported to the caller and any later messages
+ * are discarded.</p>
+ *
+ * <p>Messages which have been queued are delivered when {@link #flush()} or {@link #close()} is called, or when the JVM
+ * shuts down.</p>
+ */
 public class RemoteSender<T> {
+    static final int MAX_BATCH_SIZE = 1000;
+    static final int MAX_QUEUED_MESSAGES = 10000;
+    static final int MAX_UNACKNOWLEDGED_FRAMES = 50;
+    static final int MAX_CONNECT_ATTEMPTS = 5;
+    static final long RETRY_DELAY = 100;
+    static final int ACKNOWLEDGE_TIMEOUT = 60000;
+    private static final RemoteMessage END = new RemoteMessage();
+
     private final T source;
-    private final Class<T> type;
     private final int port;
+    private final long senderId = UUID.randomUUID().getMostSignificantBits();
+    private final LinkedList<Frame> unacknowledged = new LinkedList<Frame>();
+    private long nextSequence = 1;
+    private final BlockingQueue<RemoteMessage> queue = new LinkedBlockingQueue<RemoteMessage>(MAX_QUEUED_MESSAGES);
+    private final Object queueLock = new Object();
+    private final Lock lock = new ReentrantLock();
+    private final Condition messagesWritten = lock.newCondition();
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+    private long queuedCount;
+    private long writtenCount;
+    private boolean closed;
+    private IOException failure;
+    private Socket socket;
+    private DataOutputStream outputStream;
+    private DataInputStream inputStream;
 
     public RemoteSender(Class<T> type, int port) throws IOException {
-        this.type = type;
         this.port = port;
+        connect();
         source = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
                                                   new SenderInvocationHandler()));
+        writerThread = new Thread(new Writer(), "Remote Sender Thread");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        shutdownHook = new Thread(new Runnable() {
+            public void run() {
+                stop();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
     }
 
     public T getSource() {
         return source;
     }
 
-    private class SenderInvocationHandler implements InvocationHandler {
-        public Object invoke(Object target, Method method, Object[] arguments) throws Throwable {
-            Socket socket = new Socket((String)null, port);
+    /**
+     * Blocks until all messages which have been queued so far have been written to the receiver.
+     *
+     * @throws UncheckedIOException When the messages could not be written.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            long target = queuedCount;
+            while (writtenCount < target && failure == null) {
+                messagesWritten.awaitUninterruptibly();
+            }
+            rethrowFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all queued messages to the receiver, then closes the connection. No further messages can be sent once
+     * this sender has been closed.
+     *
+     * @throws UncheckedIOException When the messages could not be written.
+     */
+    public void close() {
+        stop();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is shutting down, so the hook has already been started
+        }
+        lock.lock();
+        try {
+            rethrowFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stop() {
+        synchronized (queueLock) {
+            lock.lock();
             try {
-                RemoteMessage message = new RemoteMessage(method, arguments);
-                message.send(socket.getOutputStream());
-                return null;
+                if (closed) {
+                    return;
+                }
+                closed = true;
             } finally {
-                socket.close();
+                lock.unlock();
             }
+            put(END);
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-}
+    private void enqueue(RemoteMessage message) {
+        synchronized (queueLock) {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("Cannot send a message, as this sender has been closed.");
+                }
+                rethrowFailure();
+            } finally {
+                lock.unlock();
+            }
+            put(message);
+            lock.lock();
+            try {
+                queuedCount++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void put(RemoteMessage message) {
+        try {
+            queue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rethrowFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket((String) null, port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(ACKNOWLEDGE_TIMEOUT);
+        outputStream = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        outputStream.writeLong(senderId);
+    }
 
+    private void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        socket = null;
+        outputStream = null;
+        inputStream = null;
+    }
+
+    /**
+     * Writes the given batch as the next frame, reconnecting and resending the unacknowledged frames when the
+     * connection fails.
+     *
+     * @param batch The messages to write. May be empty, to wait for the unacknowledged frames only.
+     * @param finished true when no further frames will be written. Waits until all frames have been acknowledged.
+     */
+    private void write(List<RemoteMessage> batch, boolean finished) {
+        if (failure != null) {
+            // Discard the messages, as the receiver cannot be reached
+            return;
+        }
+        Frame frame = null;
+        if (!batch.isEmpty()) {
+            try {
+                frame = new Frame(nextSequence++, RemoteMessage.encodeBatch(batch));
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            unacknowledged.add(frame);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (socket == null) {
+                    connect();
+                    for (Frame unacknowledgedFrame : unacknowledged) {
+                        unacknowledgedFrame.writeTo(outputStream);
+                    }
+                } else if (frame != null) {
+                    frame.writeTo(outputStream);
+                }
+                frame = null;
+                if (finished || queue.isEmpty()) {
+                    outputStream.flush();
+                }
+                readAcknowledgements(finished ? 0 : MAX_UNACKNOWLEDGED_FRAMES);
+                return;
+            } catch (IOException e) {
+                disconnect();
+                if (attempt == MAX_CONNECT_ATTEMPTS) {
+                    fail(e);
+                    return;
+                }
+            }
+            try {
+                Thread.sleep(RETRY_DELAY << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Discards the frames which the receiver has acknowledged. Blocks until no more than the given number of frames
+     * remain unacknowledged.
+     */
+    private void readAcknowledgements(int maxUnacknowledged) throws IOException {
+        if (unacknowledged.size() > maxUnacknowledged) {
+            outputStream.flush();
+        }
+        while (!unacknowledged.isEmpty()
+                && (unacknowledged.size() > maxUnacknowledged || inputStream.available() >= 8)) {
+            long sequence = inputStream.readLong();
+            while (!unacknowledged.isEmpty() && unacknowledged.getFirst().sequence <= sequence) {
+                unacknowledged.removeFirst();
+            }
+        }
+    }
+
+    private void fail(IOException e) {
+        disconnect();
+        unacknowledged.clear();
+        lock.lock();
+        try {
+            failure = e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Writer implements Runnable {
+        public void run() {
+            List<RemoteMessage> batch = new ArrayList<RemoteMessage>();
+            boolean finished = false;
+            while (!finished) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                if (batch.get(batch.size() - 1) == END) {
+                    batch.remove(batch.size() - 1);
+                    finished = true;
+                }
+                if (!batch.isEmpty() || finished) {
+                    write(batch, finished);
+                }
+                lock.lock();
+                try {
+                    writtenCount += batch.size();
+                    messagesWritten.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                batch.clear();
+            }
+            disconnect();
+        }
+    }
+
+    private static class Frame {
+        private final long sequence;
+        private final byte[] content;
+
+        private Frame(long sequence, byte[] content) {
+            this.sequence = sequence;
+            this.content = content;
+        }
+
+        public void writeTo(DataOutputStream outputStream) throws IOException {
+            outputStream.writeLong(sequence);
+            outputStream.writeInt(content.length);
+            outputStream.write(content);
+        }
+    }
+
+    private class SenderInvocationHandler implements InvocationHandler {
+        public Object invoke(Object target, Method method, Object[] arguments) throws Throwable {
+            enqueue(new RemoteMessage(method, arguments));
+            return null;
+        }
+    }
+}
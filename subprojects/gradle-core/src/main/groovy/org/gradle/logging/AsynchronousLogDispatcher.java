@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging;
+
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes log messages to their loggers using a single background thread. Messages are queued in a bounded buffer and
+ * are written in batches, in the order in which they were dispatched. A thread which dispatches a message while the
+ * buffer is full waits until there is space in the buffer.
+ *
+ * <p>Once this dispatcher has been stopped, or when a message is dispatched by the background thread itself, the
+ * message is written on the calling thread.</p>
+ */
+public class AsynchronousLogDispatcher {
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final LogEvent STOP = new LogEvent(null, null, null);
+
+    private final BlockingQueue<LogEvent> queue;
+    private final int maxBatchSize;
+    private final Thread consumer;
+    private final Object lock = new Object();
+    private long dispatchedCount;
+    private long writtenCount;
+    private boolean stopped;
+
+    public AsynchronousLogDispatcher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AsynchronousLogDispatcher(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1!");
+        }
+        queue = new ArrayBlockingQueue<LogEvent>(capacity);
+        maxBatchSize = Math.max(1, capacity / 4);
+        consumer = new Thread(new Runnable() {
+            public void run() {
+                consume();
+            }
+        }, "Log dispatcher");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Queues the given message to be written to the given logger. Blocks while the buffer is full.
+     */
+    public void dispatch(Logger logger, LogLevel level, String message) {
+        if (Thread.currentThread() == consumer) {
+            logger.log(level, message);
+            return;
+        }
+        synchronized (lock) {
+            if (stopped) {
+                // Wait for the queued messages, so that this message does not overtake them
+                awaitWritten(dispatchedCount);
+                logger.log(level, message);
+                return;
+            }
+            dispatchedCount++;
+        }
+        put(new LogEvent(logger, level, message));
+    }
+
+    /**
+     * Blocks until all messages dispatched before this method was called have been written.
+     */
+    public void flush() {
+        if (Thread.currentThread() == consumer) {
+            return;
+        }
+        synchronized (lock) {
+            awaitWritten(dispatchedCount);
+        }
+    }
+
+    /**
+     * Writes all dispatched messages, then stops the background thread. Messages dispatched after this method has
+     * been called are written on the calling thread.
+     */
+    public void stop() {
+        synchronized (lock) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+        }
+        // Wakes up the background thread, so that it notices that it has been stopped
+        put(STOP);
+        flush();
+    }
+
+    private void awaitWritten(long count) {
+        boolean interrupted = false;
+        while (writtenCount < count) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(LogEvent event) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(event);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        List<LogEvent> batch = new ArrayList<LogEvent>(maxBatchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            int written = 0;
+            for (LogEvent event : batch) {
+                if (event == STOP) {
+                    continue;
+                }
+                try {
+                    event.logger.log(event.level, event.message);
+                } catch (Throwable e) {
+                    // Ignore, so that the remaining messages are still written
+                }
+                written++;
+            }
+            batch.clear();
+            synchronized (lock) {
+                writtenCount += written;
+                lock.notifyAll();
+                // No more messages are queued once stopped, so stop when all dispatched messages have been written
+                if (stopped && writtenCount == dispatchedCount) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class LogEvent {
+        private final Logger logger;
+        private final LogLevel level;
+        private final String message;
+
+        private LogEvent(Logger logger, LogLevel level, String message) {
+            this.logger = logger;
+            this.level = level;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging;
+
+import org.gradle.BuildAdapter;
+import org.gradle.BuildResult;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.logging.StandardOutputLogging;
+
+/**
+ * Writes the redirected standard output of a build using an {@link AsynchronousLogDispatcher}, from the start of the
+ * build until the build has finished. All output is written by the time the build has finished, whether or not the
+ * build failed. Messages which are logged directly are written after the output which is still queued, see {@link
+ * AsynchronousOutputFilter}.
+ */
+public class AsynchronousLoggingListener extends BuildAdapter {
+    private AsynchronousLogDispatcher dispatcher;
+
+    @Override
+    public void buildStarted(Gradle gradle) {
+        stop();
+        dispatcher = new AsynchronousLogDispatcher();
+        StandardOutputLogging.setDispatcher(dispatcher);
+    }
+
+    @Override
+    public void buildFinished(BuildResult result) {
+        stop();
+    }
+
+    private void stop() {
+        if (dispatcher == null) {
+            return;
+        }
+        // Stop before unsetting, so that messages logged meanwhile still wait for the queued output
+        dispatcher.stop();
+        if (StandardOutputLogging.getDispatcher() == dispatcher) {
+            StandardOutputLogging.setDispatcher(null);
+        }
+        dispatcher = null;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.gradle.api.logging.StandardOutputLogging;
+import org.slf4j.Marker;
+
+/**
+ * Keeps messages which are logged directly in order with the redirected standard output. Redirected output is
+ * written by the {@link AsynchronousLogDispatcher} of {@link StandardOutputLogging}, so output which a task printed
+ * may still be queued when the task logs a message. Before such a message is logged, this filter waits until the
+ * queued output has been written. The filter does nothing when no dispatcher is set.
+ */
+public class AsynchronousOutputFilter extends TurboFilter {
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        AsynchronousLogDispatcher dispatcher = StandardOutputLogging.getDispatcher();
+        // Level checks, such as isDebugEnabled(), do not log anything
+        if (dispatcher == null || format == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        dispatcher.flush();
+        return FilterReply.NEUTRAL;
+    }
+}
@@ -55,6 +55,11 @@ public class StandardOutputLoggingAdapter extends OutputStream {
      */
     private LogLevel level;
 
+    /**
+     * The dispatcher to write log messages with, or null to write them on the calling thread.
+     */
+    private AsynchronousLogDispatcher dispatcher;
+
     /**
      * Creates the OutputStream to flush to the given Category.
      *
@@ -129,7 +134,7 @@ public class StandardOutputLoggingAdapter extends OutputStream {
         buf[count] = (byte) b;
         count++;
         if (endsWithLineSeparator()) {
-            flush();
+            flushLine();
         }
     }
 
@@ -149,16 +154,25 @@ public class StandardOutputLoggingAdapter extends OutputStream {
      * Flushes this output stream and forces any buffered output bytes to be written out. The general contract of
      * <code>flush</code> is that calling it is an indication that, if any bytes previously written have been buffered
      * by the implementation of the output stream, such bytes should immediately be written to their intended
-     * destination.
+     * destination. When a dispatcher is set, the buffered output is handed to the dispatcher, which writes it in the
+     * background.
      */
     public void flush() {
+        flushLine();
+    }
+
+    private void flushLine() {
         if (count != 0) {
             int length = count;
             if (endsWithLineSeparator()) {
                 length -= lineSeparator.length;
             }
             String message = new String(buf, 0, length);
-            logger.log(level, message);
+            if (dispatcher != null) {
+                dispatcher.dispatch(logger, level, message);
+            } else {
+                logger.log(level, message);
+            }
         }
         reset();
     }
@@ -177,5 +191,19 @@ public class StandardOutputLoggingAdapter extends OutputStream {
     public void setLevel(LogLevel level) {
         this.level = level;
     }
+
+    public AsynchronousLogDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Sets the dispatcher to write log messages with. Log messages are written on the calling thread when no
+     * dispatcher is set.
+     *
+     * @param dispatcher The dispatcher. May be null.
+     */
+    public void setDispatcher(AsynchronousLogDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
 }
 
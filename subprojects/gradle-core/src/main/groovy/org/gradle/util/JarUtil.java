@@ -19,6 +19,7 @@ package org.gradle.util;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipEntry;
 
@@ -58,4 +59,29 @@ public class JarUtil {
 
         return entryExtracted;
     }
+
+    /**
+     * Reads the content of a zip entry into memory.
+     *
+     * @return The content of the entry, or null when the zip file does not contain the entry.
+     */
+    public static byte[] readZipEntry(File jarFile, String entryName) throws IOException {
+        final ZipFile zipFile = new ZipFile(jarFile);
+        try {
+            final ZipEntry zipEntry = zipFile.getEntry(entryName);
+            if ( zipEntry == null )
+                return null;
+
+            final InputStream entryStream = zipFile.getInputStream(zipEntry);
+            try {
+                return IOUtils.toByteArray(entryStream);
+            }
+            finally {
+                IOUtils.closeQuietly(entryStream);
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+    }
 }
@@ -26,6 +26,7 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Default implementation for the ExecHandle interface.
@@ -55,6 +56,12 @@ import java.util.concurrent.ExecutorService;
  * @author Tom Eyckmans
  */
 public class DefaultExecHandle implements ExecHandle {
+    /**
+     * Runs the {@link ExecHandleRunner}s of all exec handles. Each runner waits for its process to terminate, so needs
+     * a thread while the process is running. The threads are reused by later processes.
+     */
+    private static final ExecutorService RUNNER_EXECUTOR = Executors.newCachedThreadPool(new RunnerThreadFactory());
+
     /**
      * The working directory of the process.
      */
@@ -106,7 +113,6 @@ public class DefaultExecHandle implements ExecHandle {
      * When not null, the runnable that is waiting 
      */
     private ExecHandleRunner execHandleRunner;
-    private ExecutorService threadPool;
 
     private int exitCode;
     private Throwable failureCause;
@@ -243,10 +249,10 @@ public class DefaultExecHandle implements ExecHandle {
             exitCode = -1;
             failureCause = null;
 
-            threadPool = Executors.newFixedThreadPool(3);
-            execHandleRunner = new ExecHandleRunner(this, threadPool);
+            // The output of the process is read by the shared output pump, so only the runner needs a thread
+            execHandleRunner = new ExecHandleRunner(this, ExecOutputPump.getInstance());
 
-            threadPool.execute(execHandleRunner);
+            RUNNER_EXECUTOR.execute(execHandleRunner);
 
             while ( getState() == ExecHandleState.STARTING ) {
                 try {
@@ -273,17 +279,16 @@ public class DefaultExecHandle implements ExecHandle {
     }
 
     public ExecHandleState waitForFinish() {
-        ThreadUtils.awaitTermination(threadPool);
-        return getState();
-    }
-
-    private void shutdownThreadPool() {
-        ThreadUtils.run(new Runnable(){
-
-            public void run() {
-                ThreadUtils.shutdown(threadPool);
+        lock.lock();
+        try {
+            while ( stateIn(ExecHandleState.STARTING, ExecHandleState.STARTED) ) {
+                stateChange.awaitUninterruptibly();
             }
-        });
+            return state;
+        }
+        finally {
+            lock.unlock();
+        }
     }
 
     public ExecHandleState startAndWaitForFinish() {
@@ -300,25 +305,21 @@ public class DefaultExecHandle implements ExecHandle {
     void finished(int exitCode) {
         if ( exitCode != normalTerminationExitCode ) {
             setEndStateInfo(ExecHandleState.FAILED, exitCode, new RuntimeException("exitCode("+exitCode+") != "+normalTerminationExitCode+"!"));
-            shutdownThreadPool();
             ThreadUtils.run(notifierFactory.createFailedNotifier(this));
         }
         else {
             setEndStateInfo(ExecHandleState.SUCCEEDED, 0, null);
-            shutdownThreadPool();
             ThreadUtils.run(notifierFactory.createSucceededNotifier(this));
         }
     }
 
     void aborted() {
         setState(ExecHandleState.ABORTED);
-        shutdownThreadPool();
         ThreadUtils.run(notifierFactory.createAbortedNotifier(this));
     }
 
     void failed(Throwable failureCause) {
         setEndStateInfo(ExecHandleState.FAILED, -1, failureCause);
-        shutdownThreadPool();
         ThreadUtils.run(notifierFactory.createFailedNotifier(this));
     }
 
@@ -336,4 +337,14 @@ public class DefaultExecHandle implements ExecHandle {
     {
         return Collections.unmodifiableList(listeners);
     }
+
+    private static class RunnerThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Exec handle runner %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
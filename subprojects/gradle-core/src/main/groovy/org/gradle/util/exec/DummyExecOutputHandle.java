@@ -16,11 +16,16 @@
 package org.gradle.util.exec;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * @author Tom Eyckmans
  */
-public class DummyExecOutputHandle implements ExecOutputHandle {
+public class DummyExecOutputHandle implements ExecOutputBufferHandle {
+
+    public void handleOutput(ByteBuffer output) throws IOException {
+
+    }
 
     public void handleOutputLine(String outputLine) throws IOException {
 
@@ -17,7 +17,6 @@
 package org.gradle.util.exec;
 
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.ExecutorService;
 
 /**
  * @author Tom Eyckmans
@@ -27,14 +26,15 @@ public class ExecHandleRunner implements Runnable {
     private final ProcessBuilderFactory processBuilderFactory;
     private final DefaultExecHandle execHandle;
     private final AtomicBoolean keepWaiting;
-    private final ExecutorService threadPool;
+    private final ExecOutputPump outputPump;
 
-    public ExecHandleRunner(DefaultExecHandle execHandle, ExecutorService threadPool) {
+    public ExecHandleRunner(DefaultExecHandle execHandle, ExecOutputPump outputPump) {
         if ( execHandle == null ) throw new IllegalArgumentException("execHandle == null!");
+        if ( outputPump == null ) throw new IllegalArgumentException("outputPump == null!");
         this.processBuilderFactory = new ProcessBuilderFactory();
         this.execHandle = execHandle;
         this.keepWaiting = new AtomicBoolean(true);
-        this.threadPool = threadPool;
+        this.outputPump = outputPump;
     }
 
     public void stopWaiting() {
@@ -48,15 +48,9 @@ public class ExecHandleRunner implements Runnable {
         try {
             final Process process = processBuilder.start();
 
-            final ExecOutputHandleRunner standardOutputHandleRunner = new ExecOutputHandleRunner(process.getInputStream(), execHandle.getStandardOutputHandle());
-            final ExecOutputHandleRunner errorOutputHandleRunner = new ExecOutputHandleRunner(process.getErrorStream(), execHandle.getErrorOutputHandle());
+            final ExecOutputPump.PumpedStream standardOutput = outputPump.add(process.getInputStream(), execHandle.getStandardOutputHandle());
+            final ExecOutputPump.PumpedStream errorOutput = outputPump.add(process.getErrorStream(), execHandle.getErrorOutputHandle());
 
-            threadPool.execute(standardOutputHandleRunner);
-            threadPool.execute(errorOutputHandleRunner);
-
-            // signal started after all threads are started otherwise RejectedExecutionException may be thrown
-            // by the ExecutorService because shutdown may already be called on it
-            // especially when the startAndWaitForFinish method is used on the ExecHandle.
             execHandle.started();
 
             int exitCode = -1;
@@ -77,8 +71,16 @@ public class ExecHandleRunner implements Runnable {
                 }
             }
 
-            if ( !keepWaiting.get() ) {
+            final boolean aborted = !keepWaiting.get();
+            if ( aborted ) {
                 process.destroy();
+            }
+
+            // read the remaining output, so all output has been handled before the end state is signalled. Does not
+            // wait for streams which are held open by child processes of the process.
+            outputPump.finish(ExecOutputPump.DEFAULT_FINISH_TIMEOUT, standardOutput, errorOutput);
+
+            if ( aborted ) {
                 execHandle.aborted();
             }
             else {
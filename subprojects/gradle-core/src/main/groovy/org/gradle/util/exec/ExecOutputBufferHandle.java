@@ -0,0 +1,31 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.exec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link ExecOutputHandle} which receives the output of an exec'd process as the bytes read from the process,
+ * rather than as lines of text. {@link #handleOutputLine(String)} is not called for such a handle.
+ */
+public interface ExecOutputBufferHandle extends ExecOutputHandle {
+    /**
+     * Called when output has been read from an exec'd process. The buffer is reused once this method returns, so its
+     * content must be copied if it is required later.
+     */
+    void handleOutput(ByteBuffer output) throws IOException;
+}
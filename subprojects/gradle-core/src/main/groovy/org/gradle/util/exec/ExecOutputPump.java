@@ -0,0 +1,450 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.exec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.*;
+
+/**
+ * Pumps the output of exec'd processes to their {@link ExecOutputHandle}s. The output streams are read using a fixed
+ * number of threads which are shared by all processes. Each thread takes turns at the registered output streams,
+ * reading only the bytes which are available, so a thread is never blocked by a process which produces no output.
+ *
+ * <p>The handles are called by a separate, fixed pool of threads, so that a slow handle does not hold up the output of
+ * other processes. The output of a stream is passed to its handle by one thread at a time, in the order in which it was
+ * read. While more than a buffer's worth of output is waiting for the handle, the stream is not read, so that the
+ * process eventually blocks until its handle has caught up. A handle should therefore return promptly, and must not
+ * wait for the process whose output it handles.</p>
+ *
+ * <p>Output is split into lines at the byte level, and only complete lines are converted to strings. An {@link
+ * ExecOutputBufferHandle} receives the bytes as they are read, without any conversion.</p>
+ */
+public class ExecOutputPump {
+    public static final int DEFAULT_THREAD_COUNT = 2;
+    public static final int DEFAULT_HANDLER_THREAD_COUNT = 4;
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_FINISH_TIMEOUT = 10000;
+    private static final long POLL_INTERVAL = 10;
+    private static final int MAX_READ_FAILURES = 10;
+    private static final byte[] END_OF_OUTPUT = new byte[0];
+    private final static Logger logger = LoggerFactory.getLogger(ExecOutputPump.class);
+    private static ExecOutputPump instance;
+
+    private final BlockingQueue<PumpedStream> streams = new LinkedBlockingQueue<PumpedStream>();
+    private final ExecutorService handlerExecutor;
+    private final int bufferSize;
+
+    /**
+     * Returns the pump which is shared by all {@link ExecHandle}s.
+     */
+    public static synchronized ExecOutputPump getInstance() {
+        if (instance == null) {
+            instance = new ExecOutputPump(DEFAULT_THREAD_COUNT, DEFAULT_HANDLER_THREAD_COUNT, DEFAULT_BUFFER_SIZE);
+        }
+        return instance;
+    }
+
+    public ExecOutputPump(int threadCount, int bufferSize) {
+        this(threadCount, DEFAULT_HANDLER_THREAD_COUNT, bufferSize);
+    }
+
+    public ExecOutputPump(int threadCount, int handlerThreadCount, int bufferSize) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount < 1!");
+        }
+        if (handlerThreadCount < 1) {
+            throw new IllegalArgumentException("handlerThreadCount < 1!");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize < 1!");
+        }
+        this.bufferSize = bufferSize;
+        handlerExecutor = Executors.newFixedThreadPool(handlerThreadCount, new HandlerThreadFactory());
+        for (int i = 1; i <= threadCount; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    pumpStreams();
+                }
+            }, String.format("Exec output pump %d", i));
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts pumping the given output stream of a process to the given handle.
+     *
+     * @return The pumped stream. {@link #finish(long, PumpedStream[])} must be called once the process has terminated.
+     */
+    public PumpedStream add(InputStream inputStream, ExecOutputHandle outputHandle) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream == null!");
+        }
+        if (outputHandle == null) {
+            throw new IllegalArgumentException("outputHandle == null!");
+        }
+        PumpedStream stream = new PumpedStream(inputStream, outputHandle);
+        streams.add(stream);
+        return stream;
+    }
+
+    /**
+     * Waits until the pump threads have read the remaining output of the given streams, then until all output which
+     * has been read has been handled. Should be called once the process has terminated. As the process has
+     * terminated, a stream has ended once no more output is available. Each stream is closed when it has ended.
+     *
+     * <p>A stream can stay open after the process has terminated, for example when the process has started another
+     * process which inherited the stream. The output of a stream which has not ended when the timeout expires is
+     * ended, the stream is closed, and any later output of the stream is discarded.</p>
+     *
+     * @param timeoutMillis The maximum time to wait for the end of the streams.
+     * @param streams The streams of the process.
+     */
+    public void finish(long timeoutMillis, PumpedStream... streams) {
+        for (PumpedStream stream : streams) {
+            stream.finishing = true;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (PumpedStream stream : streams) {
+            stream.awaitEnd(deadline);
+        }
+    }
+
+    private void pumpStreams() {
+        byte[] buffer = new byte[bufferSize];
+        int idleCount = 0;
+        while (true) {
+            PumpedStream stream;
+            try {
+                stream = streams.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            boolean outputRead = stream.pump(buffer);
+            if (!stream.isClosed()) {
+                streams.add(stream);
+            }
+            idleCount = outputRead ? 0 : idleCount + 1;
+            if (idleCount > streams.size()) {
+                // None of the streams has any output available
+                idleCount = 0;
+                try {
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * An output stream of a process which is being pumped.
+     */
+    public class PumpedStream {
+        private final InputStream inputStream;
+        private final ExecOutputHandle outputHandle;
+        private final Object readLock = new Object();
+        private final Object handlerLock = new Object();
+        private final LinkedList<byte[]> pending = new LinkedList<byte[]>();
+        private int pendingBytes;
+        private boolean delivering;
+        private boolean finished;
+        private volatile boolean ended;
+        private volatile boolean finishing;
+        private int readFailures;
+        private byte[] partialLine = new byte[0];
+        private int partialLineLength;
+        private boolean skipLineFeed;
+        private boolean handlerFailed;
+
+        private PumpedStream(InputStream inputStream, ExecOutputHandle outputHandle) {
+            this.inputStream = inputStream;
+            this.outputHandle = outputHandle;
+        }
+
+        boolean isClosed() {
+            return ended;
+        }
+
+        /**
+         * Reads the available output, without blocking.
+         *
+         * @return true if any output was read.
+         */
+        boolean pump(byte[] buffer) {
+            synchronized (readLock) {
+                if (!canQueue()) {
+                    return false;
+                }
+                int count;
+                try {
+                    int available = inputStream.available();
+                    if (available <= 0) {
+                        if (finishing) {
+                            // The process has terminated, so all of its output has been read
+                            end();
+                        }
+                        return false;
+                    }
+                    count = inputStream.read(buffer, 0, Math.min(available, buffer.length));
+                } catch (Throwable t) {
+                    readFailed(t);
+                    return false;
+                }
+                return read(buffer, count);
+            }
+        }
+
+        /**
+         * Waits until the end of output has been read or the deadline has passed, then until all output which has
+         * been read has been handled.
+         */
+        private void awaitEnd(long deadline) {
+            boolean interrupted = false;
+            if (!awaitEnded(deadline)) {
+                logger.debug("Output of exec'd process has not ended after the process terminated. Ignoring any further output.");
+                // Taken after waiting, as a pump thread holds the read lock while it queues output
+                synchronized (readLock) {
+                    end();
+                }
+            }
+            synchronized (this) {
+                while (!finished) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private synchronized boolean awaitEnded(long deadline) {
+            boolean interrupted = false;
+            try {
+                while (!ended) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                return true;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private synchronized boolean canQueue() {
+            return !ended && pendingBytes < bufferSize;
+        }
+
+        private boolean read(byte[] buffer, int count) {
+            if (count < 0) {
+                end();
+                return false;
+            }
+            readFailures = 0;
+            byte[] chunk = new byte[count];
+            System.arraycopy(buffer, 0, chunk, 0, count);
+            queue(chunk);
+            return true;
+        }
+
+        private void readFailed(Throwable failure) {
+            readFailures++;
+            boolean keepReading;
+            synchronized (handlerLock) {
+                try {
+                    keepReading = !handlerFailed && outputHandle.execOutputHandleError(failure);
+                } catch (Throwable t) {
+                    logger.error("Could not process output from exec'd process.", t);
+                    handlerFailed = true;
+                    keepReading = false;
+                }
+            }
+            // A stream which has been closed fails every time it is read, so give up eventually
+            if (!keepReading || readFailures >= MAX_READ_FAILURES) {
+                end();
+            }
+        }
+
+        /**
+         * Ends the output of this stream, and closes the stream. Must be called while holding the read lock.
+         */
+        private void end() {
+            queue(END_OF_OUTPUT);
+            try {
+                inputStream.close();
+            } catch (Throwable t) {
+                logger.debug("Could not close output stream of exec'd process.", t);
+            }
+        }
+
+        private void queue(byte[] chunk) {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                pending.add(chunk);
+                pendingBytes += chunk.length;
+                ended = chunk == END_OF_OUTPUT;
+                notifyAll();
+                if (delivering) {
+                    return;
+                }
+                delivering = true;
+            }
+            handlerExecutor.execute(new Runnable() {
+                public void run() {
+                    deliver();
+                }
+            });
+        }
+
+        private void deliver() {
+            while (true) {
+                byte[] chunk;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        delivering = false;
+                        return;
+                    }
+                    chunk = pending.removeFirst();
+                    pendingBytes -= chunk.length;
+                    notifyAll();
+                }
+                if (chunk == END_OF_OUTPUT) {
+                    endOutput();
+                    synchronized (this) {
+                        finished = true;
+                        delivering = false;
+                        notifyAll();
+                    }
+                    return;
+                }
+                output(chunk);
+            }
+        }
+
+        private void output(byte[] chunk) {
+            synchronized (handlerLock) {
+                if (handlerFailed) {
+                    return;
+                }
+                try {
+                    if (outputHandle instanceof ExecOutputBufferHandle) {
+                        ((ExecOutputBufferHandle) outputHandle).handleOutput(ByteBuffer.wrap(chunk));
+                    } else {
+                        splitLines(chunk);
+                    }
+                } catch (Throwable t) {
+                    logger.error("Could not process output from exec'd process.", t);
+                    handlerFailed = true;
+                }
+            }
+        }
+
+        private void splitLines(byte[] buffer) throws IOException {
+            int lineStart = 0;
+            for (int i = 0; i < buffer.length; i++) {
+                byte b = buffer[i];
+                if (b == '\n' && skipLineFeed) {
+                    // The second half of a \r\n line separator
+                    skipLineFeed = false;
+                    lineStart = i + 1;
+                    continue;
+                }
+                skipLineFeed = false;
+                if (b == '\n' || b == '\r') {
+                    endLine(buffer, lineStart, i);
+                    skipLineFeed = b == '\r';
+                    lineStart = i + 1;
+                }
+            }
+            appendToPartialLine(buffer, lineStart, buffer.length);
+        }
+
+        private void endLine(byte[] buffer, int start, int end) throws IOException {
+            String line;
+            if (partialLineLength == 0) {
+                line = new String(buffer, start, end - start);
+            } else {
+                appendToPartialLine(buffer, start, end);
+                line = new String(partialLine, 0, partialLineLength);
+                partialLineLength = 0;
+            }
+            outputHandle.handleOutputLine(line);
+        }
+
+        private void appendToPartialLine(byte[] buffer, int start, int end) {
+            int length = end - start;
+            if (length == 0) {
+                return;
+            }
+            if (partialLineLength + length > partialLine.length) {
+                byte[] newPartialLine = new byte[Math.max(partialLineLength + length, partialLine.length * 2)];
+                System.arraycopy(partialLine, 0, newPartialLine, 0, partialLineLength);
+                partialLine = newPartialLine;
+            }
+            System.arraycopy(buffer, start, partialLine, partialLineLength, length);
+            partialLineLength += length;
+        }
+
+        private void endOutput() {
+            synchronized (handlerLock) {
+                if (handlerFailed) {
+                    return;
+                }
+                try {
+                    if (partialLineLength > 0) {
+                        String line = new String(partialLine, 0, partialLineLength);
+                        partialLineLength = 0;
+                        outputHandle.handleOutputLine(line);
+                    }
+                    outputHandle.endOutput();
+                } catch (Throwable t) {
+                    logger.error("Could not process output from exec'd process.", t);
+                }
+            }
+        }
+    }
+
+    private static class HandlerThreadFactory implements ThreadFactory {
+        private int counter;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("Exec output handler %d", ++counter));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.queues;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.LinkedList;
+
+/**
+ * A FIFO queue which holds a bounded number of items in memory. Items which are added while the memory part of the
+ * queue is full are serialized and appended to a spill file, and are read back in order once the memory part has
+ * been drained. Adding an item never blocks, so producers are not held up by slow consumers.
+ * <p/>
+ * The spill file is created when the first item is spilled, and is truncated whenever all spilled items have been
+ * read back. It is deleted when the queue is closed.
+ */
+public class DiskSpillingQueue<T extends Serializable> {
+    private final int memoryCapacity;
+    private final File spillDirectory;
+    private final LinkedList<T> memoryItems = new LinkedList<T>();
+
+    private File spillFile;
+    private RandomAccessFile spillFileAccess;
+    private long spillReadPos;
+    private long spillWritePos;
+    private int spilledItemCount;
+    private long totalSpilledItemCount;
+    private int peakSize;
+
+    /**
+     * @param memoryCapacity The maximum number of items to hold in memory.
+     * @param spillDirectory The directory to create the spill file in, or null to use the temporary directory.
+     */
+    public DiskSpillingQueue(int memoryCapacity, File spillDirectory) {
+        if (memoryCapacity < 1) throw new IllegalArgumentException("memoryCapacity < 1!");
+
+        this.memoryCapacity = memoryCapacity;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Adds an item to the tail of the queue.
+     *
+     * @return true when this item started the queue spilling, that is, when the queue was not spilling before the
+     * item was added and is spilling afterwards.
+     */
+    public synchronized boolean add(T item) {
+        if (item == null) throw new IllegalArgumentException("item == null!");
+
+        final boolean wasSpilling = spilledItemCount > 0;
+        if (!wasSpilling && memoryItems.size() < memoryCapacity) {
+            memoryItems.addLast(item);
+        } else {
+            spill(item);
+        }
+
+        peakSize = Math.max(peakSize, size());
+        return !wasSpilling && spilledItemCount > 0;
+    }
+
+    public synchronized int drainTo(Collection<? super T> items) {
+        return drainTo(items, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of items from the head of the queue and adds them to the given collection.
+     *
+     * @return The number of items removed.
+     */
+    public synchronized int drainTo(Collection<? super T> items, int maxItemCount) {
+        int drainedItemCount = 0;
+        while (drainedItemCount < maxItemCount) {
+            if (memoryItems.isEmpty()) {
+                if (spilledItemCount == 0) {
+                    break;
+                }
+                readBack();
+            }
+            items.add(memoryItems.removeFirst());
+            drainedItemCount++;
+        }
+        return drainedItemCount;
+    }
+
+    public synchronized int size() {
+        return memoryItems.size() + spilledItemCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of items which are currently in the spill file.
+     */
+    public synchronized int getSpilledItemCount() {
+        return spilledItemCount;
+    }
+
+    /**
+     * Returns the number of items which have been written to the spill file since the queue was created.
+     */
+    public synchronized long getTotalSpilledItemCount() {
+        return totalSpilledItemCount;
+    }
+
+    /**
+     * Returns the largest number of items the queue has held.
+     */
+    public synchronized int getPeakSize() {
+        return peakSize;
+    }
+
+    public synchronized boolean isSpilling() {
+        return spilledItemCount > 0;
+    }
+
+    /**
+     * Discards the items in the queue and deletes the spill file.
+     */
+    public synchronized void close() {
+        memoryItems.clear();
+        spilledItemCount = 0;
+        spillReadPos = 0;
+        spillWritePos = 0;
+        if (spillFileAccess != null) {
+            try {
+                spillFileAccess.close();
+            }
+            catch (IOException e) {
+                // ignore
+            }
+            spillFileAccess = null;
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    private void spill(T item) {
+        try {
+            final ByteArrayOutputStream itemBytes = new ByteArrayOutputStream();
+            final DataOutputStream itemOutput = new DataOutputStream(itemBytes);
+            itemOutput.writeInt(0); // placeholder for the length of the serialized item
+            final ObjectOutputStream objectOutput = new ObjectOutputStream(itemOutput);
+            objectOutput.writeObject(item);
+            objectOutput.close();
+
+            final byte[] record = itemBytes.toByteArray();
+            final int itemLength = record.length - 4;
+            record[0] = (byte) (itemLength >>> 24);
+            record[1] = (byte) (itemLength >>> 16);
+            record[2] = (byte) (itemLength >>> 8);
+            record[3] = (byte) itemLength;
+
+            final RandomAccessFile file = getSpillFile();
+            file.seek(spillWritePos);
+            file.write(record);
+            spillWritePos += record.length;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        spilledItemCount++;
+        totalSpilledItemCount++;
+    }
+
+    private void readBack() {
+        try {
+            final RandomAccessFile file = getSpillFile();
+            file.seek(spillReadPos);
+            while (spilledItemCount > 0 && memoryItems.size() < memoryCapacity) {
+                final byte[] itemBytes = new byte[file.readInt()];
+                file.readFully(itemBytes);
+                spillReadPos += 4 + itemBytes.length;
+                spilledItemCount--;
+
+                final ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(itemBytes));
+                try {
+                    memoryItems.addLast((T) objectInput.readObject());
+                }
+                finally {
+                    objectInput.close();
+                }
+            }
+
+            if (spilledItemCount == 0) {
+                // all spilled items have been read back, start again at the start of the file
+                file.setLength(0);
+                spillReadPos = 0;
+                spillWritePos = 0;
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (ClassNotFoundException e) {
+            throw new IllegalStateException("failed to read a spilled item back", e);
+        }
+    }
+
+    private RandomAccessFile getSpillFile() throws IOException {
+        if (spillFileAccess == null) {
+            spillFile = File.createTempFile("gradle", ".queue", spillDirectory);
+            spillFile.deleteOnExit();
+            spillFileAccess = new RandomAccessFile(spillFile, "rw");
+        }
+        return spillFileAccess;
+    }
+}
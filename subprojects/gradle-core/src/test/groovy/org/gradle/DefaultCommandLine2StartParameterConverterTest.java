@@ -57,6 +57,8 @@ public class DefaultCommandLine2StartParameterConverterTest {
     private CacheUsage expectedCacheUsage = CacheUsage.ON;
     private boolean expectedSearchUpwards = true;
     private boolean expectedDryRun = false;
+    private int expectedParallelThreadCount = 0;
+    private boolean expectedAsynchronousLogging = false;
     private boolean expectedShowHelp = false;
     private boolean expectedShowVersion = false;
     private StartParameter.ShowStacktrace expectedShowStackTrace = StartParameter.ShowStacktrace.INTERNAL_EXCEPTIONS;
@@ -111,6 +113,8 @@ public class DefaultCommandLine2StartParameterConverterTest {
         assertEquals(expectedGradleUserHome.getAbsoluteFile(), startParameter.getGradleUserHomeDir().getAbsoluteFile());
         assertEquals(expectedLogLevel, startParameter.getLogLevel());
         assertEquals(expectedDryRun, startParameter.isDryRun());
+        assertEquals(expectedParallelThreadCount, startParameter.getParallelThreadCount());
+        assertEquals(expectedAsynchronousLogging, startParameter.isAsynchronousLogging());
         assertEquals(expectedShowHelp, startParameter.isShowHelp());
         assertEquals(expectedShowVersion, startParameter.isShowVersion());
         assertEquals(expectedShowStackTrace, startParameter.getShowStacktrace());
@@ -253,6 +257,24 @@ public class DefaultCommandLine2StartParameterConverterTest {
         checkConversion("-m");
     }
 
+    @Test
+    public void withParallelThreadCount() {
+        expectedParallelThreadCount = 4;
+        checkConversion("--parallel", "4");
+    }
+
+    @Test
+    public void withParallelFlagSetUsesNumberOfProcessors() {
+        expectedParallelThreadCount = Runtime.getRuntime().availableProcessors();
+        checkConversion("--parallel");
+    }
+
+    @Test
+    public void withAsynchronousLogging() {
+        expectedAsynchronousLogging = true;
+        checkConversion("--async-logging");
+    }
+
     @Test
     public void withExcludeTask() {
         expectedExcludedTasks.add("excluded");
@@ -403,4 +425,44 @@ public class DefaultCommandLine2StartParameterConverterTest {
         expectedInitScripts.add(script2);
         checkConversion("-Iinit1.gradle", "-Iinit2.gradle");
     }
+
+    @Test
+    public void withDaemon() {
+        checkConversion("--daemon");
+        assertTrue(actualStartParameter.isUseDaemon());
+    }
+
+    @Test
+    public void withStopDaemon() {
+        StartParameter startParameter = new DefaultCommandLine2StartParameterConverter().convert(new String[]{
+                "--stop-daemon"});
+        assertTrue(startParameter.isStopDaemon());
+        assertFalse(startParameter.isUseDaemon());
+    }
+
+    @Test
+    public void withForegroundDaemon() {
+        StartParameter startParameter = new DefaultCommandLine2StartParameterConverter().convert(new String[]{
+                "--foreground-daemon"});
+        assertTrue(startParameter.isForegroundDaemon());
+    }
+
+    @Test
+    public void resolvesRelativeFilesAgainstBaseDir() throws IOException {
+        File baseDir = testDir.getDir();
+        StartParameter startParameter = new DefaultCommandLine2StartParameterConverter(baseDir).convert(
+                new String[]{"-Iinit.gradle", "-b", "sub/build.gradle"});
+
+        assertThat(startParameter.getInitScripts(), equalTo(toList(new File(baseDir, "init.gradle"))));
+        assertThat(startParameter.getBuildFile(), equalTo(new File(baseDir, "sub/build.gradle").getCanonicalFile()));
+    }
+
+    @Test
+    public void usesBaseDirAsCurrentDir() {
+        File baseDir = testDir.getDir();
+        StartParameter startParameter = new DefaultCommandLine2StartParameterConverter(baseDir).convert(
+                new String[0]);
+
+        assertThat(startParameter.getCurrentDir(), equalTo(GFileUtils.canonicalise(baseDir)));
+    }
 }
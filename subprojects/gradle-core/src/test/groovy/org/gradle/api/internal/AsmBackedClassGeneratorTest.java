@@ -15,9 +15,156 @@
  */
 package org.gradle.api.internal;
 
+import org.apache.commons.io.IOUtils;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(JMock.class)
 public class AsmBackedClassGeneratorTest extends AbstractClassGeneratorTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+
     @Override
     protected ClassGenerator createGenerator() {
         return new AsmBackedClassGenerator();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void storesGeneratedBytecodeInCache() {
+        final CacheRepository cacheRepository = context.mock(CacheRepository.class);
+        final PersistentIndexedCache<String, byte[]> cache = context.mock(PersistentIndexedCache.class);
+
+        context.checking(new Expectations() {{
+            one(cacheRepository).getIndexedGlobalCache(with(equal(AsmBackedClassGenerator.CACHE_NAME)),
+                    with(notNullValue(Map.class)));
+            will(returnValue(cache));
+
+            one(cache).get(with(startsWith(CacheableBean.class.getName() + "/")));
+            will(returnValue(null));
+
+            one(cache).put(with(startsWith(CacheableBean.class.getName() + "/")), with(notNullValue(byte[].class)));
+        }});
+
+        new AsmBackedClassGenerator(cacheRepository).generate(CacheableBean.class);
+    }
+
+    @Test
+    public void definesSubclassFromCachedBytecode() throws Exception {
+        final CacheRepository cacheRepository = context.mock(CacheRepository.class);
+        final PersistentIndexedCache<String, byte[]> cache = context.mock(PersistentIndexedCache.class);
+        final Map<String, byte[]> entries = new HashMap<String, byte[]>();
+
+        context.checking(new Expectations() {{
+            allowing(cacheRepository).getIndexedGlobalCache(with(equal(AsmBackedClassGenerator.CACHE_NAME)),
+                    with(notNullValue(Map.class)));
+            will(returnValue(cache));
+
+            allowing(cache).get(with(startsWith(CachedBean.class.getName() + "/")));
+            will(new CustomAction("get entry") {
+                public Object invoke(Invocation invocation) {
+                    return entries.get(invocation.getParameter(0));
+                }
+            });
+
+            one(cache).put(with(startsWith(CachedBean.class.getName() + "/")), with(notNullValue(byte[].class)));
+            will(new CustomAction("put entry") {
+                public Object invoke(Invocation invocation) {
+                    entries.put((String) invocation.getParameter(0), (byte[]) invocation.getParameter(1));
+                    return null;
+                }
+            });
+        }});
+
+        // Each type is loaded by its own ClassLoader, as the subclass can only be defined once by a ClassLoader
+        Class<?> generated = new AsmBackedClassGenerator(cacheRepository).generate(
+                new IsolatingClassLoader().loadClass(CachedBean.class.getName()));
+        Class<?> type = new IsolatingClassLoader().loadClass(CachedBean.class.getName());
+        Class<?> fromCache = new AsmBackedClassGenerator(cacheRepository).generate(type);
+
+        assertThat(entries.size(), equalTo(1));
+        assertThat(fromCache, not(sameInstance((Object) generated)));
+        assertThat(fromCache.getName(), equalTo(generated.getName()));
+        assertThat(fromCache.getSuperclass(), sameInstance((Object) type));
+        assertTrue(IConventionAware.class.isAssignableFrom(fromCache));
+        assertTrue(DynamicObjectAware.class.isAssignableFrom(fromCache));
+
+        Object bean = fromCache.newInstance();
+        fromCache.getMethod("setProperty", String.class).invoke(bean, "value");
+        assertThat(fromCache.getMethod("getProperty").invoke(bean), equalTo((Object) "value"));
+    }
+
+    public static class CachedBean {
+        private String property;
+
+        public String getProperty() {
+            return property;
+        }
+
+        public void setProperty(String property) {
+            this.property = property;
+        }
+    }
+
+    /**
+     * Defines its own copy of {@link CachedBean}, and delegates all other classes to the test ClassLoader.
+     */
+    private static class IsolatingClassLoader extends ClassLoader {
+        private IsolatingClassLoader() {
+            super(AsmBackedClassGeneratorTest.class.getClassLoader());
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(CachedBean.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> type = findLoadedClass(name);
+            if (type == null) {
+                byte[] bytecode = getBytecode(name);
+                type = defineClass(name, bytecode, 0, bytecode.length);
+            }
+            return type;
+        }
+
+        private byte[] getBytecode(String name) throws ClassNotFoundException {
+            InputStream instr = getResourceAsStream(name.replace('.', '/') + ".class");
+            if (instr == null) {
+                throw new ClassNotFoundException(name);
+            }
+            try {
+                try {
+                    return IOUtils.toByteArray(instr);
+                } finally {
+                    instr.close();
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+
+    public static class CacheableBean {
+        private String property;
+
+        public String getProperty() {
+            return property;
+        }
+
+        public void setProperty(String property) {
+            this.property = property;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import groovy.lang.MissingMethodException;
 import org.gradle.api.plugins.Convention;
 import org.gradle.api.internal.plugins.DefaultConvention;
 import org.gradle.util.HelperUtil;
+import org.gradle.util.WrapUtil;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -134,6 +135,59 @@ public class DynamicObjectHelperTest {
         assertThat(bean.getProperty("dynamicGroovyProperty"), equalTo((Object) "new value"));
     }
 
+    @Test
+    public void canGetAdditionalPropertyAfterFailedLookup() {
+        Bean bean = new Bean();
+        assertFalse(bean.hasProperty("additional"));
+
+        bean.setProperty("additional", "value");
+
+        assertTrue(bean.hasProperty("additional"));
+        assertThat(bean.getProperty("additional"), equalTo((Object) "value"));
+        assertFalse(new Bean().hasProperty("additional"));
+    }
+
+    @Test
+    public void beanUsesCachedPropertyLookupForPlainMetaClass() {
+        BeanDynamicObject dynamicObject = new BeanDynamicObject(new CachedBean());
+        assertTrue(dynamicObject.hasProperty("beanProperty"));
+        assertFalse(dynamicObject.hasProperty("unknown"));
+
+        MetaClass metaClass = GroovySystem.getMetaClassRegistry().getMetaClass(CachedBean.class);
+        Map<String, Object> cache = BeanDynamicObject.getPropertyCache(metaClass);
+        assertThat(cache.keySet(), equalTo(WrapUtil.toSet("beanProperty", "unknown")));
+
+        // A lookup for another bean of the same type is answered from the cache
+        cache.put("cachedOnly", cache.get("beanProperty"));
+        CachedBean other = new CachedBean();
+        other.setBeanProperty("value");
+        assertTrue(new BeanDynamicObject(other).hasProperty("cachedOnly"));
+        assertThat(new BeanDynamicObject(other).getProperty("cachedOnly"), equalTo((Object) "value"));
+    }
+
+    @Test
+    public void beanSeesPropertiesAddedThroughExpandoMetaClass() {
+        BeanDynamicObject dynamicObject = new BeanDynamicObject(new ExpandoBean());
+        assertFalse(dynamicObject.hasProperty("added"));
+
+        MetaClassRegistry registry = GroovySystem.getMetaClassRegistry();
+        ExpandoMetaClass metaClass = new ExpandoMetaClass(ExpandoBean.class, false, true);
+        metaClass.initialize();
+        registry.setMetaClass(ExpandoBean.class, metaClass);
+        try {
+            assertFalse(dynamicObject.hasProperty("added"));
+
+            metaClass.registerBeanProperty("added", "value");
+
+            assertTrue(dynamicObject.hasProperty("added"));
+            assertThat(dynamicObject.getProperty("added"), equalTo((Object) "value"));
+        } finally {
+            registry.removeMetaClass(ExpandoBean.class);
+        }
+
+        assertFalse(dynamicObject.hasProperty("added"));
+    }
+
     @Test
     public void canGetButNotSetPropertiesOnJavaObjectFromGroovy() {
         DynamicObjectHelperTestHelper.assertCanGetProperties(new Bean());
@@ -812,6 +866,21 @@ public class DynamicObjectHelperTest {
     private static class DynamicBean extends GroovyBean {
     }
 
+    public static class CachedBean {
+        private String beanProperty;
+
+        public String getBeanProperty() {
+            return beanProperty;
+        }
+
+        public void setBeanProperty(String beanProperty) {
+            this.beanProperty = beanProperty;
+        }
+    }
+
+    public static class ExpandoBean {
+    }
+
     private static class ConventionBean {
         private String conventionProperty;
 
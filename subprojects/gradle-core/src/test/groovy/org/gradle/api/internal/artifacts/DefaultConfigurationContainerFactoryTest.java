@@ -20,6 +20,7 @@ import org.gradle.api.internal.artifacts.configurations.DefaultConfigurationCont
 import org.gradle.api.internal.artifacts.configurations.DependencyMetaDataProvider;
 import org.gradle.api.internal.artifacts.configurations.ResolverProvider;
 import org.gradle.api.internal.artifacts.ivyservice.*;
+import org.gradle.cache.CacheRepository;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.sameInstance;
 import org.jmock.integration.junit4.JMock;
@@ -50,11 +51,13 @@ public class DefaultConfigurationContainerFactoryTest {
         IvyFactory ivyFactory = context.mock(IvyFactory.class);
         IvyDependencyResolver ivyDependencyResolver = context.mock(IvyDependencyResolver.class);
         IvyDependencyPublisher ivyDependencyPublisher = context.mock(IvyDependencyPublisher.class);
+        ResolvedConfigurationCache resolvedConfigurationCache = new ResolvedConfigurationCache(context.mock(
+                CacheRepository.class));
         DefaultConfigurationContainer configurationContainer = (DefaultConfigurationContainer)
                 new DefaultConfigurationContainerFactory(clientModuleRegistry, settingsConverter,
                         resolveModuleDescriptorConverter, publishModuleDescriptorConverter,
                         ivyFileConverter, ivyFactory,
-                        ivyDependencyResolver, ivyDependencyPublisher).createConfigurationContainer(resolverProviderDummy,
+                        ivyDependencyResolver, ivyDependencyPublisher, resolvedConfigurationCache).createConfigurationContainer(resolverProviderDummy,
                         dependencyMetaDataProviderStub);
 
         assertThat(configurationContainer.getIvyService(), instanceOf(ErrorHandlingIvyService.class));
@@ -63,8 +66,11 @@ public class DefaultConfigurationContainerFactoryTest {
         assertThat(errorHandlingService.getIvyService(), instanceOf(ShortcircuitEmptyConfigsIvyService.class));
         ShortcircuitEmptyConfigsIvyService service = (ShortcircuitEmptyConfigsIvyService) errorHandlingService.getIvyService();
 
-        assertThat(service.getIvyService(), instanceOf(DefaultIvyService.class));
-        DefaultIvyService defaultIvyService = (DefaultIvyService) service.getIvyService();
+        assertThat(service.getIvyService(), instanceOf(CachingIvyService.class));
+        CachingIvyService cachingService = (CachingIvyService) service.getIvyService();
+
+        assertThat(cachingService.getIvyService(), instanceOf(DefaultIvyService.class));
+        DefaultIvyService defaultIvyService = (DefaultIvyService) cachingService.getIvyService();
         assertThat(defaultIvyService.getMetaDataProvider(), sameInstance(dependencyMetaDataProviderStub));
         assertThat(defaultIvyService.getResolverProvider(), sameInstance(resolverProviderDummy));
         assertThat((HashMap) defaultIvyService.getClientModuleRegistry(), sameInstance(clientModuleRegistry));
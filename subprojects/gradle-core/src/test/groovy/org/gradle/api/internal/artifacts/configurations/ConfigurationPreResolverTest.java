@@ -0,0 +1,197 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.configurations;
+
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.artifacts.IvyService;
+import org.gradle.api.internal.file.UnionFileCollection;
+import org.gradle.api.tasks.TaskInputs;
+import static org.gradle.util.WrapUtil.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JMock.class)
+public class ConfigurationPreResolverTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final TaskExecutionGraph graph = context.mock(TaskExecutionGraph.class);
+    private final IvyService ivyService = context.mock(IvyService.class);
+    private final ConfigurationPreResolver preResolver = new ConfigurationPreResolver() {
+        @Override
+        ExecutorService createExecutor() {
+            return new SameThreadExecutor();
+        }
+    };
+
+    @Test
+    public void preResolvesConfigurationsUsedAsTaskInputs() {
+        final DefaultConfiguration configuration = configuration("compile", Configuration.State.UNRESOLVED);
+        final FileCollection otherFiles = context.mock(FileCollection.class);
+        final Task task1 = task("task1", configuration);
+        final Task task2 = task("task2", otherFiles);
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(task1, task2)));
+            one(ivyService).resolve(configuration);
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    @Test
+    public void preResolvesConfigurationsWhichArePartOfACompositeFileCollection() {
+        final DefaultConfiguration compile = configuration("compile", Configuration.State.UNRESOLVED);
+        final DefaultConfiguration runtime = configuration("runtime", Configuration.State.UNRESOLVED);
+        final Task task = task("task", new UnionFileCollection(compile, new UnionFileCollection(runtime)));
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(task)));
+            one(ivyService).resolve(compile);
+            one(ivyService).resolve(runtime);
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    @Test
+    public void preResolvesConfigurationUsedByMultipleTasksOnce() {
+        final DefaultConfiguration configuration = configuration("compile", Configuration.State.UNRESOLVED);
+        final Task task1 = task("task1", configuration);
+        final Task task2 = task("task2", configuration);
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(task1, task2)));
+            one(ivyService).resolve(configuration);
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    @Test
+    public void doesNotPreResolveConfigurationWhichHasAlreadyBeenResolved() {
+        final DefaultConfiguration configuration = configuration("compile", Configuration.State.RESOLVED);
+        final Task task = task("task", configuration);
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(task)));
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    @Test
+    public void ignoresConfigurationWhichFailsToResolve() {
+        final DefaultConfiguration broken = configuration("broken", Configuration.State.UNRESOLVED);
+        final DefaultConfiguration configuration = configuration("compile", Configuration.State.UNRESOLVED);
+        final Task task = task("task", new UnionFileCollection(broken, configuration));
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(task)));
+            one(ivyService).resolve(broken);
+            will(throwException(new RuntimeException("broken")));
+            one(ivyService).resolve(configuration);
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    @Test
+    public void ignoresTaskWhoseInputsCannotBeDetermined() {
+        final DefaultConfiguration configuration = configuration("compile", Configuration.State.UNRESOLVED);
+        final Task broken = context.mock(Task.class, "broken");
+        final Task task = task("task", configuration);
+
+        context.checking(new Expectations() {{
+            allowing(graph).getAllTasks();
+            will(returnValue(toList(broken, task)));
+            allowing(broken).getInputs();
+            will(throwException(new RuntimeException("broken")));
+            one(ivyService).resolve(configuration);
+        }});
+
+        preResolver.graphPopulated(graph);
+    }
+
+    private DefaultConfiguration configuration(String name, final Configuration.State state) {
+        final DefaultConfiguration configuration = context.mock(DefaultConfiguration.class, name);
+        context.checking(new Expectations() {{
+            allowing(configuration).getState();
+            will(returnValue(state));
+            allowing(configuration).getIvyService();
+            will(returnValue(ivyService));
+        }});
+        return configuration;
+    }
+
+    private Task task(String name, final FileCollection inputFiles) {
+        final Task task = context.mock(Task.class, name);
+        final TaskInputs inputs = context.mock(TaskInputs.class, name + "Inputs");
+        context.checking(new Expectations() {{
+            allowing(task).getInputs();
+            will(returnValue(inputs));
+            allowing(inputs).getFiles();
+            will(returnValue(inputFiles));
+        }});
+        return task;
+    }
+
+    private static class SameThreadExecutor extends AbstractExecutorService {
+        private boolean shutdown;
+
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return toList();
+        }
+
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.apache.ivy.core.module.descriptor.Artifact;
+import org.apache.ivy.core.module.descriptor.DefaultArtifact;
+import org.apache.ivy.core.module.id.ModuleRevisionId;
+import org.apache.ivy.core.report.ArtifactDownloadReport;
+import org.apache.ivy.core.report.DownloadReport;
+import org.apache.ivy.core.resolve.DownloadOptions;
+import org.apache.ivy.core.resolve.ResolveEngine;
+import org.apache.ivy.core.resolve.ResolveEngineSettings;
+import org.apache.ivy.core.settings.IvySettings;
+import org.apache.ivy.plugins.resolver.FileSystemResolver;
+import org.gradle.integtests.TestFile;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.WrapUtil;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(JMock.class)
+public class ArtifactDownloaderTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final ArtifactDownloader downloader = new ArtifactDownloader(2);
+    private final Artifact artifact = new DefaultArtifact(ModuleRevisionId.newInstance("group", "module", "1.0"),
+            new Date(), "module", "jar", "jar");
+    private final ResolveEngineSettings resolveEngineSettings = context.mock(ResolveEngineSettings.class);
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(resolveEngineSettings).getResolver(artifact.getModuleRevisionId());
+            will(returnValue(null));
+        }});
+    }
+
+    @After
+    public void tearDown() {
+        downloader.stop();
+    }
+
+    @Test
+    public void downloadsArtifactFromRepositoryIntoCache() {
+        TestFile repoDir = tmpDir.dir("repo");
+        repoDir.file("group/module-1.0.jar").write("content");
+        ResolveEngine resolveEngine = fileSystemRepository(repoDir);
+
+        downloader.start(artifact, resolveEngine, "repo");
+        File file = downloader.getFile(artifact, resolveEngine, "repo");
+
+        assertTrue(file.isFile());
+        assertTrue(file.getAbsolutePath().startsWith(tmpDir.file("cache").getAbsolutePath()));
+        assertThat(new TestFile(file).getText(), equalTo("content"));
+    }
+
+    @Test
+    public void returnsNullWhenArtifactIsNotInRepository() {
+        ResolveEngine resolveEngine = fileSystemRepository(tmpDir.dir("repo"));
+
+        assertThat(downloader.getFile(artifact, resolveEngine, "repo"), nullValue());
+    }
+
+    @Test
+    public void downloadsArtifactOnceWhenRequestedMultipleTimes() {
+        final ResolveEngine resolveEngine = context.mock(ResolveEngine.class);
+        final File file = tmpDir.file("module-1.0.jar");
+
+        context.checking(new Expectations() {{
+            allowing(resolveEngine).getSettings();
+            will(returnValue(resolveEngineSettings));
+
+            one(resolveEngine).download(with(equalTo(artifact)), with(notNullValue(DownloadOptions.class)));
+            will(returnValue(downloadReport(file)));
+        }});
+
+        downloader.start(artifact, resolveEngine, "repo");
+        downloader.start(artifact, resolveEngine, "repo");
+        assertThat(downloader.getFile(artifact, resolveEngine, "repo"), equalTo(file));
+        assertThat(downloader.getFile(artifact, resolveEngine, "repo"), equalTo(file));
+    }
+
+    @Test
+    public void downloadsArtifactOnCallingThreadWhenStopped() {
+        final ResolveEngine resolveEngine = context.mock(ResolveEngine.class);
+        final File file = tmpDir.file("module-1.0.jar");
+
+        context.checking(new Expectations() {{
+            allowing(resolveEngine).getSettings();
+            will(returnValue(resolveEngineSettings));
+
+            one(resolveEngine).download(with(equalTo(artifact)), with(notNullValue(DownloadOptions.class)));
+            will(returnValue(downloadReport(file)));
+        }});
+
+        downloader.stop();
+        assertThat(downloader.getFile(artifact, resolveEngine, "repo"), equalTo(file));
+    }
+
+    @Test
+    public void doesNotStartDownloadsOnceStopped() {
+        final ResolveEngine resolveEngine = context.mock(ResolveEngine.class);
+        final File file = tmpDir.file("module-1.0.jar");
+
+        downloader.stop();
+        downloader.start(artifact, resolveEngine, "repo");
+
+        context.checking(new Expectations() {{
+            allowing(resolveEngine).getSettings();
+            will(returnValue(resolveEngineSettings));
+
+            one(resolveEngine).download(with(equalTo(artifact)), with(notNullValue(DownloadOptions.class)));
+            will(returnValue(downloadReport(file)));
+        }});
+
+        assertThat(downloader.getFile(artifact, resolveEngine, "repo"), equalTo(file));
+    }
+
+    @Test
+    public void doesNotDownloadWhileTheResolverIsUsedByAResolve() throws Exception {
+        TestFile repoDir = tmpDir.dir("repo");
+        repoDir.file("group/module-1.0.jar").write("content");
+        final AtomicBoolean resolving = new AtomicBoolean();
+        final AtomicBoolean downloadedWhileResolving = new AtomicBoolean();
+        final FileSystemResolver resolver = new FileSystemResolver() {
+            @Override
+            public DownloadReport download(Artifact[] artifacts, DownloadOptions options) {
+                downloadedWhileResolving.compareAndSet(false, resolving.get());
+                return super.download(artifacts, options);
+            }
+        };
+        final ResolveEngine resolveEngine = fileSystemRepository(repoDir, resolver);
+
+        ResolverLocks.withResolversLocked(WrapUtil.toList(resolver), new ResolverLocks.ResolverAction<Object>() {
+            public Object execute() {
+                resolving.set(true);
+                downloader.start(artifact, resolveEngine, "repo");
+                try {
+                    // Give the download thread the chance to use the resolver
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                resolving.set(false);
+                return null;
+            }
+        });
+        File file = downloader.getFile(artifact, resolveEngine, "repo");
+
+        assertThat(new TestFile(file).getText(), equalTo("content"));
+        assertFalse(downloadedWhileResolving.get());
+    }
+
+    private ArtifactDownloadReport downloadReport(File file) {
+        ArtifactDownloadReport report = new ArtifactDownloadReport(artifact);
+        report.setLocalFile(file);
+        return report;
+    }
+
+    private ResolveEngine fileSystemRepository(File repoDir) {
+        return fileSystemRepository(repoDir, new FileSystemResolver());
+    }
+
+    private ResolveEngine fileSystemRepository(File repoDir, FileSystemResolver resolver) {
+        IvySettings ivySettings = new IvySettings();
+        ivySettings.setDefaultCache(tmpDir.dir("cache"));
+        resolver.setName("repo");
+        resolver.addArtifactPattern(repoDir.getAbsolutePath() + "/[organisation]/[artifact]-[revision].[ext]");
+        ivySettings.addResolver(resolver);
+        ivySettings.setDefaultResolver("repo");
+        return Ivy.newInstance(ivySettings).getResolveEngine();
+    }
+}
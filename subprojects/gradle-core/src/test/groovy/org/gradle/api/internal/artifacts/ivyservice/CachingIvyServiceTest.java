@@ -0,0 +1,343 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.core.module.descriptor.Artifact;
+import org.apache.ivy.core.resolve.ResolveEngine;
+import org.apache.ivy.plugins.resolver.DependencyResolver;
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.DefaultModule;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.DefaultResolvedDependency;
+import org.gradle.api.internal.artifacts.IvyService;
+import org.gradle.api.internal.artifacts.configurations.DependencyMetaDataProvider;
+import org.gradle.api.internal.artifacts.configurations.ResolverProvider;
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency;
+import org.gradle.api.specs.Specs;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
+import org.gradle.util.TemporaryFolder;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.*;
+
+@RunWith(JMock.class)
+public class CachingIvyServiceTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final IvyService delegate = context.mock(IvyService.class);
+    private final DependencyMetaDataProvider metaDataProvider = context.mock(DependencyMetaDataProvider.class);
+    private final ResolverProvider resolverProvider = context.mock(ResolverProvider.class);
+    private final CacheRepository cacheRepository = context.mock(CacheRepository.class);
+    private final PersistentIndexedCache<String, CachedResolvedConfiguration> index = context.mock(
+            PersistentIndexedCache.class);
+    private final Configuration configuration = context.mock(Configuration.class);
+    private final ResolvedArtifact artifact = context.mock(ResolvedArtifact.class);
+    private final Artifact ivyArtifact = context.mock(Artifact.class);
+    private final ResolveEngine resolveEngine = context.mock(ResolveEngine.class);
+    private final ArtifactDownloader downloader = context.mock(ArtifactDownloader.class);
+    private final ModuleDependency dependency = new DefaultExternalModuleDependency("group", "module", "1.0");
+    private final CachingIvyService ivyService = new CachingIvyService(delegate, metaDataProvider, resolverProvider,
+            new ResolvedConfigurationCache(cacheRepository));
+    private File artifactFile;
+    private DefaultResolvedDependency resolvedDependency;
+
+    @Before
+    public void setUp() {
+        artifactFile = tmpDir.file("module-1.0.jar").write("content");
+        resolvedDependency = new DefaultResolvedDependency("group", "module", "1.0", "default", toSet("default"),
+                toSet(artifact));
+        resolvedDependency.getParents().add(null);
+
+        context.checking(new Expectations() {{
+            allowing(cacheRepository).getIndexedGlobalCache(with(equalTo(ResolvedConfigurationCache.CACHE_NAME)),
+                    with(notNullValue(Map.class)), with(notNullValue(Serializer.class)));
+            will(returnValue(index));
+            allowing(metaDataProvider).getModuleForResolve();
+            will(returnValue(new DefaultModule("group", "project", "1.0")));
+            allowing(resolverProvider).getResolvers();
+            will(returnValue(Collections.<DependencyResolver>emptyList()));
+
+            allowing(configuration).getName();
+            will(returnValue("compile"));
+            allowing(configuration).isTransitive();
+            will(returnValue(true));
+            allowing(configuration).getHierarchy();
+            will(returnValue(toLinkedSet(configuration)));
+            allowing(configuration).getExcludeRules();
+            will(returnValue(Collections.emptySet()));
+            allowing(configuration).getAllDependencies(ModuleDependency.class);
+            will(returnValue(toSet(dependency)));
+            allowing(configuration).getAllDependencies(SelfResolvingDependency.class);
+            will(returnValue(Collections.emptySet()));
+
+            allowing(artifact).getName();
+            will(returnValue("module"));
+            allowing(artifact).getType();
+            will(returnValue("jar"));
+            allowing(artifact).getExtension();
+            will(returnValue("jar"));
+            allowing(artifact).getFile();
+            will(returnValue(artifactFile));
+            allowing(artifact).getResolvedDependency();
+            will(returnValue(resolvedDependency));
+
+            allowing(ivyArtifact).getName();
+            will(returnValue("module"));
+            allowing(ivyArtifact).getType();
+            will(returnValue("jar"));
+            allowing(ivyArtifact).getExt();
+            will(returnValue("jar"));
+        }});
+    }
+
+    @Test
+    public void resolvesConfigurationAndCachesResultWhenNotCached() {
+        final ResolvedConfiguration resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                conversionResult());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(null));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            one(index).put(with(notNullValue(String.class)), with(notNullValue(CachedResolvedConfiguration.class)));
+        }});
+
+        ResolvedConfiguration result = ivyService.resolve(configuration);
+        assertFalse(result.hasError());
+        assertThat(result.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+    }
+
+    @Test
+    public void usesCachedResultWithoutResolvingConfiguration() throws Exception {
+        final CachedResolvedConfiguration cachedConfiguration = snapshot(System.currentTimeMillis());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(cachedConfiguration));
+        }});
+
+        ResolvedConfiguration resolvedConfiguration = ivyService.resolve(configuration);
+        assertFalse(resolvedConfiguration.hasError());
+        assertThat(resolvedConfiguration.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+        assertThat(resolvedConfiguration.getFirstLevelModuleDependencies().size(), equalTo(1));
+        ResolvedDependency firstLevelDependency = resolvedConfiguration.getFirstLevelModuleDependencies().iterator().next();
+        assertThat(firstLevelDependency.getName(), equalTo("group:module:1.0"));
+        assertThat(firstLevelDependency.getConfiguration(), equalTo("default"));
+        assertThat(firstLevelDependency.getModuleArtifacts().size(), equalTo(1));
+        ResolvedArtifact artifact = firstLevelDependency.getModuleArtifacts().iterator().next();
+        assertThat(artifact.getFile(), equalTo(artifactFile));
+        assertThat(artifact.getResolvedDependency(), sameInstance(firstLevelDependency));
+        assertThat(resolvedConfiguration.getResolvedArtifacts(), equalTo(toSet(artifact)));
+    }
+
+    @Test
+    public void resolvesConfigurationWhenCachedResultHasExpired() throws Exception {
+        final CachedResolvedConfiguration cachedConfiguration = snapshot(System.currentTimeMillis()
+                - CachingIvyService.MODULE_TTL - 1);
+        final ResolvedConfiguration resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                conversionResult());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(cachedConfiguration));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            one(index).put(with(notNullValue(String.class)), with(notNullValue(CachedResolvedConfiguration.class)));
+        }});
+
+        ResolvedConfiguration result = ivyService.resolve(configuration);
+        assertThat(result.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+    }
+
+    @Test
+    public void resolvesConfigurationWhenCachedResultWithChangingModuleHasExpired() throws Exception {
+        Map<Dependency, Set<ResolvedDependency>> firstLevelDependencies = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+        firstLevelDependencies.put(dependency, toSet((ResolvedDependency) resolvedDependency));
+        final CachedResolvedConfiguration cachedConfiguration = snapshot(new DefaultIvyConversionResult(
+                firstLevelDependencies, toSet(artifact), true), System.currentTimeMillis()
+                - CachingIvyService.CHANGING_MODULE_TTL - 1);
+        final ResolvedConfiguration resolvedConfiguration = context.mock(ResolvedConfiguration.class);
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(cachedConfiguration));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            allowing(resolvedConfiguration).hasError();
+            will(returnValue(false));
+        }});
+
+        assertTrue(cachedConfiguration.isChanging());
+        assertThat(ivyService.resolve(configuration), sameInstance(resolvedConfiguration));
+    }
+
+    @Test
+    public void doesNotDownloadArtifactsWhenCachingResult() {
+        final ResolvedConfiguration resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                ivyConversionResult());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(null));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            one(index).put(with(notNullValue(String.class)), with(notNullValue(CachedResolvedConfiguration.class)));
+        }});
+
+        ResolvedConfiguration result = ivyService.resolve(configuration);
+
+        context.checking(new Expectations() {{
+            one(downloader).getFile(ivyArtifact, resolveEngine, "repo");
+            will(returnValue(artifactFile));
+            one(index).put(with(notNullValue(String.class)), with(notNullValue(CachedResolvedConfiguration.class)));
+        }});
+
+        assertThat(result.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+        assertThat(result.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+    }
+
+    @Test
+    public void resolvesConfigurationAgainWhenFileOfCachedArtifactIsUsedForTheFirstTime() throws Exception {
+        final CachedResolvedConfiguration cachedConfiguration = snapshot(ivyConversionResult(),
+                System.currentTimeMillis());
+        final ResolvedConfiguration resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                ivyConversionResult());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(cachedConfiguration));
+        }});
+
+        ResolvedConfiguration result = ivyService.resolve(configuration);
+
+        context.checking(new Expectations() {{
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            one(downloader).getFile(ivyArtifact, resolveEngine, "repo");
+            will(returnValue(artifactFile));
+            one(index).put(with(notNullValue(String.class)), with(same(cachedConfiguration)));
+        }});
+
+        assertThat(result.getFiles(Specs.<Dependency>satisfyAll()), equalTo(toLinkedSet(artifactFile)));
+    }
+
+    @Test
+    public void resolvesConfigurationWhenCachedArtifactFileHasBeenDeleted() throws Exception {
+        final CachedResolvedConfiguration cachedConfiguration = snapshot(System.currentTimeMillis());
+        final ResolvedConfiguration resolvedConfiguration = context.mock(ResolvedConfiguration.class);
+        artifactFile.delete();
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(cachedConfiguration));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            allowing(resolvedConfiguration).hasError();
+            will(returnValue(false));
+        }});
+
+        assertThat(ivyService.resolve(configuration), sameInstance(resolvedConfiguration));
+    }
+
+    @Test
+    public void doesNotCacheResultWhenResolveFails() {
+        final ResolvedConfiguration resolvedConfiguration = context.mock(ResolvedConfiguration.class);
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(null));
+            one(delegate).resolve(configuration);
+            will(returnValue(resolvedConfiguration));
+            allowing(resolvedConfiguration).hasError();
+            will(returnValue(true));
+        }});
+
+        assertThat(ivyService.resolve(configuration), sameInstance(resolvedConfiguration));
+    }
+
+    @Test
+    public void doesNotCacheResultWhenConfigurationChangesWhileResolving() {
+        final ResolvedConfiguration resolvedConfiguration = new DefaultResolvedConfiguration(configuration,
+                conversionResult());
+
+        context.checking(new Expectations() {{
+            one(index).get(with(notNullValue(String.class)));
+            will(returnValue(null));
+            one(delegate).resolve(configuration);
+            will(new CustomAction("change dependency") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    dependency.setTransitive(false);
+                    return resolvedConfiguration;
+                }
+            });
+        }});
+
+        assertThat(ivyService.resolve(configuration), sameInstance(resolvedConfiguration));
+    }
+
+    private IvyConversionResult conversionResult() {
+        Map<Dependency, Set<ResolvedDependency>> firstLevelDependencies = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+        firstLevelDependencies.put(dependency, toSet((ResolvedDependency) resolvedDependency));
+        return new DefaultIvyConversionResult(firstLevelDependencies, toSet(artifact));
+    }
+
+    private IvyConversionResult ivyConversionResult() {
+        DefaultResolvedArtifact ivyResolvedArtifact = new DefaultResolvedArtifact(ivyArtifact, resolveEngine,
+                downloader, "repo");
+        DefaultResolvedDependency ivyResolvedDependency = new DefaultResolvedDependency("group", "module", "1.0",
+                "default", toSet("default"), toSet((ResolvedArtifact) ivyResolvedArtifact));
+        ivyResolvedDependency.getParents().add(null);
+        ivyResolvedArtifact.setResolvedDependency(ivyResolvedDependency);
+        Map<Dependency, Set<ResolvedDependency>> firstLevelDependencies = new LinkedHashMap<Dependency, Set<ResolvedDependency>>();
+        firstLevelDependencies.put(dependency, toSet((ResolvedDependency) ivyResolvedDependency));
+        return new DefaultIvyConversionResult(firstLevelDependencies, toSet((ResolvedArtifact) ivyResolvedArtifact));
+    }
+
+    private CachedResolvedConfiguration snapshot(long timestamp) throws Exception {
+        return snapshot(conversionResult(), timestamp);
+    }
+
+    private CachedResolvedConfiguration snapshot(IvyConversionResult conversionResult, long timestamp)
+            throws Exception {
+        CachedResolvedConfiguration cachedConfiguration = CachedResolvedConfiguration.create(conversionResult,
+                false, timestamp);
+        CachedResolvedConfiguration.SnapshotSerializer serializer = new CachedResolvedConfiguration.SnapshotSerializer();
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+        serializer.write(outstr, cachedConfiguration);
+        return serializer.read(new ByteArrayInputStream(outstr.toByteArray()));
+    }
+}
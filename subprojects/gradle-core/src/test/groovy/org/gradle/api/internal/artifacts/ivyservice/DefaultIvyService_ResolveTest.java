@@ -27,10 +27,14 @@ import org.gradle.api.internal.artifacts.configurations.DependencyMetaDataProvid
 import org.gradle.api.internal.artifacts.configurations.ResolverProvider;
 import org.gradle.util.HelperUtil;
 import org.gradle.util.WrapUtil;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.sameInstance;
 import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.legacy.ClassImposteriser;
 import static org.junit.Assert.assertThat;
 import org.junit.Before;
@@ -38,9 +42,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Hans Dockter
@@ -126,4 +134,104 @@ public class DefaultIvyService_ResolveTest {
         ivyService.setIvyFactory(ivyFactoryStub);
         assertThat(ivyService.resolve(configurationDummy), sameInstance(resolvedConfiguration));
     }
+
+    @Test
+    public void resolvesConfigurationsOfDifferentProjectsInParallel() throws Exception {
+        // Each project is resolved on its own thread, so each uses its own mockery
+        final Mockery otherContext = new JUnit4Mockery() {{
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }};
+        // Both resolves must be in progress at the same time to pass the barrier
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[] {
+                resolveInThread(createProjectResolve(context, "project1", barrier), failures),
+                resolveInThread(createProjectResolve(otherContext, "project2", barrier), failures)
+        };
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(failures, equalTo(Collections.<Throwable>emptyList()));
+        otherContext.assertIsSatisfied();
+    }
+
+    private Thread resolveInThread(final Runnable resolve, final List<Throwable> failures) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    resolve.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private Runnable createProjectResolve(final Mockery context, String project, final CyclicBarrier barrier) {
+        final DependencyMetaDataProvider metaDataProvider = context.mock(DependencyMetaDataProvider.class, project);
+        final ResolverProvider resolverProvider = context.mock(ResolverProvider.class, project + "Resolvers");
+        final List<DependencyResolver> resolvers = WrapUtil.toList(context.mock(DependencyResolver.class, project + "Resolver"));
+        final SettingsConverter settingsConverter = context.mock(SettingsConverter.class, project + "SettingsConverter");
+        final ModuleDescriptorConverter moduleDescriptorConverter = context.mock(ModuleDescriptorConverter.class, project + "Converter");
+        final IvyFactory ivyFactory = context.mock(IvyFactory.class, project + "IvyFactory");
+        final IvyDependencyResolver dependencyResolver = context.mock(IvyDependencyResolver.class, project + "DependencyResolver");
+        final Ivy ivy = context.mock(Ivy.class, project + "Ivy");
+        final IvySettings ivySettings = new IvySettings();
+        final ModuleDescriptor moduleDescriptor = HelperUtil.createModuleDescriptor(WrapUtil.toSet("someConf"));
+        final Configuration configuration = context.mock(Configuration.class, project + "Configuration");
+        final ResolvedConfiguration resolvedConfiguration = context.mock(ResolvedConfiguration.class, project + "Resolved");
+
+        context.checking(new Expectations() {{
+            // Every project shares the internal repository of the build
+            allowing(metaDataProvider).getInternalRepository();
+            will(returnValue(internalRepositoryDummy));
+
+            allowing(metaDataProvider).getGradleUserHomeDir();
+            will(returnValue(cacheParentDirDummy));
+
+            allowing(metaDataProvider).getModuleForResolve();
+            will(returnValue(moduleDummy));
+
+            allowing(resolverProvider).getResolvers();
+            will(returnValue(resolvers));
+
+            allowing(settingsConverter).convertForResolve(resolvers, cacheParentDirDummy, internalRepositoryDummy,
+                    clientModuleRegistryDummy);
+            will(returnValue(ivySettings));
+
+            allowing(ivyFactory).createIvy(ivySettings);
+            will(returnValue(ivy));
+
+            allowing(ivy).getSettings();
+            will(returnValue(ivySettings));
+
+            allowing(configuration).getHierarchy();
+            will(returnValue(WrapUtil.toSet(configuration)));
+
+            allowing(moduleDescriptorConverter).convert(WrapUtil.toSet(configuration), moduleDummy, ivySettings);
+            will(returnValue(moduleDescriptor));
+
+            one(dependencyResolver).resolve(configuration, ivy, moduleDescriptor);
+            will(new CustomAction("wait for the other resolve") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return resolvedConfiguration;
+                }
+            });
+        }});
+
+        final DefaultIvyService ivyService = new DefaultIvyService(metaDataProvider, resolverProvider, settingsConverter,
+                moduleDescriptorConverter, context.mock(ModuleDescriptorConverter.class, project + "Publish"),
+                context.mock(IvyFileConverter.class, project + "IvyFileConverter"), ivyFactory, dependencyResolver,
+                context.mock(IvyDependencyPublisher.class, project + "Publisher"), clientModuleRegistryDummy);
+        return new Runnable() {
+            public void run() {
+                assertThat(ivyService.resolve(configuration), sameInstance(resolvedConfiguration));
+            }
+        };
+    }
 }
\ No newline at end of file
@@ -31,7 +31,10 @@ import org.junit.Before;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 @RunWith(JMock.class)
 public class CachingHasherTest {
@@ -107,4 +110,36 @@ public class CachingHasherTest {
 
         assertThat(hasher.hash(file), sameInstance(hash));
     }
+
+    @Test
+    public void hashesOnlyChangedFilesWhenHashingMultipleFiles() {
+        final File unchanged = tmpDir.file("unchanged").write("content");
+        final byte[] unchangedHash = "unchanged".getBytes();
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(null));
+            one(cache).get(unchanged);
+            will(returnValue(new CachingHasher.FileInfo(unchangedHash, unchanged.length(), unchanged.lastModified())));
+            one(delegate).hash(with(equalTo(Arrays.asList(file))));
+            will(returnValue(Collections.singletonMap(file, hash)));
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo(hash, file.length(),
+                    file.lastModified()))));
+        }});
+
+        Map<File, byte[]> hashes = hasher.hash(Arrays.asList(file, unchanged));
+        assertThat(hashes.size(), equalTo(2));
+        assertThat(hashes.get(file), sameInstance(hash));
+        assertThat(hashes.get(unchanged), sameInstance(unchangedHash));
+    }
+
+    @Test
+    public void doesNotCallDelegateWhenNoFilesHaveChanged() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo(hash, file.length(), file.lastModified())));
+        }});
+
+        List<File> files = Arrays.asList(file);
+        assertThat(hasher.hash(files).get(file), sameInstance(hash));
+    }
 }
@@ -24,10 +24,11 @@ import org.gradle.api.tasks.TaskOutputs;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.DefaultPersistentIndexedCache;
 import org.gradle.cache.PersistentCache;
-import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.Serializer;
 import org.gradle.integtests.TestFile;
 import org.gradle.util.TemporaryFolder;
 import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -38,9 +39,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import static java.util.Collections.*;
 
 @RunWith(JMock.class)
@@ -185,6 +190,55 @@ public class DefaultTaskArtifactStateRepositoryTest {
         assertFalse(state.isUpToDate());
     }
 
+    @Test
+    public void artifactsAreNotUpToDateWhenAnyInputFileHasChangedContentButNotLength() {
+        inputFile.write("content");
+        writeTaskState();
+
+        inputFile.write("CONTENT");
+        inputFile.setLastModified(inputFile.lastModified() + 2000);
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertFalse(state.isUpToDate());
+    }
+
+    @Test
+    public void artifactsAreUpToDateWhenAnyInputFileHasChangedTimestampButNotContent() {
+        inputFile.write("content");
+        writeTaskState();
+
+        inputFile.setLastModified(inputFile.lastModified() + 2000);
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+    }
+
+    @Test
+    public void doesNotHashInputFilesWhoseLengthAndTimestampHaveNotChanged() {
+        final List<File> hashed = new ArrayList<File>();
+        DefaultTaskArtifactStateRepository repository = new DefaultTaskArtifactStateRepository(cacheRepository,
+                new Hasher() {
+                    public byte[] hash(File file) {
+                        hashed.add(file);
+                        return hasher.hash(file);
+                    }
+
+                    public Map<File, byte[]> hash(Collection<File> files) {
+                        hashed.addAll(files);
+                        return hasher.hash(files);
+                    }
+                });
+        expectEmptyCacheLocated();
+        repository.getStateFor(task()).update();
+        assertThat(hashed, equalTo(toList((File) inputFile)));
+        hashed.clear();
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertTrue(state.isUpToDate());
+        state.update();
+        assertTrue(hashed.isEmpty());
+    }
+
     @Test
     public void artifactsAreNotUpToDateWhenAnyInputFileHasChangedType() {
         writeTaskState();
@@ -272,6 +326,44 @@ public class DefaultTaskArtifactStateRepositoryTest {
         assertTrue(state.isUpToDate());
     }
 
+    @Test
+    public void tasksWhichShareAnOutputDirectoryCanBeUpdatedConcurrently() throws Exception {
+        expectEmptyCacheLocated();
+        List<TaskInternal> tasks = new ArrayList<TaskInternal>();
+        final List<TaskArtifactState> states = new ArrayList<TaskArtifactState>();
+        for (int i = 0; i < 20; i++) {
+            TaskInternal task = builder().withPath("task" + i).withOutputFiles(outputDir).task();
+            tasks.add(task);
+            states.add(repository.getStateFor(task));
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final TaskArtifactState state : states) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    state.update();
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (TaskInternal task : tasks) {
+            assertTrue(repository.getStateFor(task).isUpToDate());
+        }
+    }
+
     @Test
     public void artifactsAreNotUpToDateWhenOutputDirHasBeenDeletedAndRecreatedBySomeOtherTask() {
         TaskInternal task1 = task();
@@ -333,8 +425,10 @@ public class DefaultTaskArtifactStateRepositoryTest {
     
     private void expectEmptyCacheLocated() {
         context.checking(new Expectations(){{
-            one(cacheRepository).getIndexedCacheFor(gradle, "taskArtifacts", EMPTY_MAP);
-            will(returnValue(new DefaultPersistentIndexedCache(cache, new DefaultSerializer<File>())));
+            one(cacheRepository).getIndexedCacheFor(with(equalTo(gradle)), with(equalTo("taskArtifacts")), with(equalTo(
+                    EMPTY_MAP)), with(notNullValue(Serializer.class)));
+            will(returnValue(new DefaultPersistentIndexedCache(cache,
+                    new DefaultTaskArtifactStateRepository.OutputGeneratorsSerializer())));
             allowing(cache).update();
             allowing(cache).getBaseDir();
             will(returnValue(cacheDir));
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.util.HashUtil;
+import org.gradle.util.TemporaryFolder;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class ParallelHasherTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final ParallelHasher hasher = new ParallelHasher(new DefaultHasher(), 3);
+
+    @Test
+    public void hashesEachFile() {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 20; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < i * 10000; j++) {
+                content.append(j);
+            }
+            files.add(tmpDir.file("file" + i).write(content.toString()));
+        }
+
+        Map<File, byte[]> hashes = hasher.hash(files);
+
+        assertThat(hashes.size(), equalTo(20));
+        for (File file : files) {
+            assertThat(hashes.get(file), equalTo(HashUtil.createHash(file)));
+        }
+    }
+
+    @Test
+    public void rethrowsFailureToHashFile() {
+        List<File> files = new ArrayList<File>();
+        files.add(tmpDir.file("file1").write("content"));
+        files.add(tmpDir.file("missing"));
+
+        try {
+            hasher.hash(files);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.getCause().getMessage(), containsString("missing"));
+        }
+    }
+
+    @Test
+    public void restoresInterruptWhenInterruptedWhileWaitingForHashes() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch finish = new CountDownLatch(1);
+        ParallelHasher hasher = new ParallelHasher(new Hasher() {
+            public byte[] hash(File file) {
+                started.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return new byte[]{1};
+            }
+
+            public Map<File, byte[]> hash(Collection<File> files) {
+                throw new UnsupportedOperationException();
+            }
+        }, 2);
+        final Thread caller = Thread.currentThread();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    started.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                caller.interrupt();
+                finish.countDown();
+            }
+        }.start();
+
+        List<File> files = new ArrayList<File>();
+        files.add(tmpDir.file("file1"));
+        files.add(tmpDir.file("file2"));
+        Map<File, byte[]> hashes = hasher.hash(files);
+
+        assertThat(hashes.size(), equalTo(2));
+        assertTrue(Thread.interrupted());
+    }
+}
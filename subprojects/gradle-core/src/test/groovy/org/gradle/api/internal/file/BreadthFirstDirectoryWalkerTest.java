@@ -16,9 +16,12 @@
 package org.gradle.api.internal.file;
 
 import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.api.specs.Spec;
+import org.gradle.integtests.TestFile;
+import org.gradle.util.TemporaryFolder;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -31,6 +34,7 @@ import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -38,9 +42,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
 
 @RunWith(JMock.class)
 public class BreadthFirstDirectoryWalkerTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
     private JUnit4Mockery context = new JUnit4Mockery() {{
         setImposteriser(ClassImposteriser.INSTANCE);
     }};
@@ -154,6 +165,54 @@ public class BreadthFirstDirectoryWalkerTest {
         walker.start(root.getMock());
     }
 
+    @Test public void parallelWalkVisitsSameFilesInSameOrderAsSerialWalk() {
+        TestFile root = tmpDir.getDir();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                root.file("dir" + i, "sub" + j, "file.java").touch();
+                root.file("dir" + i, "sub" + j, "file.txt").touch();
+                root.file("dir" + i, "sub" + j, "excluded", "file.java").touch();
+            }
+            root.file("dir" + i, "file.java").touch();
+        }
+        PatternSet patternSet = new PatternSet();
+        patternSet.include("**/*.java");
+        patternSet.exclude("**/excluded/**");
+
+        List<String> serial = new ArrayList<String>();
+        new BreadthFirstDirectoryWalker(new RecordingVisitor(serial)).match(patternSet).start(root);
+
+        List<String> parallel = new ArrayList<String>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new BreadthFirstDirectoryWalker(new RecordingVisitor(parallel)).match(patternSet).parallel(executor).start(root);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(serial.size(), equalTo(5 + 5 * 5 + 5 + 5 * 5));
+        assertThat(serial, hasItem("dir0/sub0/file.java"));
+        assertThat(serial, not(hasItem("dir0/sub0/file.txt")));
+        assertThat(serial, not(hasItem("dir0/sub0/excluded/file.java")));
+        assertThat(parallel, equalTo(serial));
+    }
+
+    private static class RecordingVisitor implements FileVisitor {
+        private final List<String> visited;
+
+        private RecordingVisitor(List<String> visited) {
+            this.visited = visited;
+        }
+
+        public void visitDir(FileVisitDetails dirDetails) {
+            visited.add(dirDetails.getRelativePath().getPathString() + "/");
+        }
+
+        public void visitFile(FileVisitDetails fileDetails) {
+            visited.add(fileDetails.getRelativePath().getPathString());
+        }
+    }
+
     private Action stopVisiting() {
         return new Action() {
             public void describeTo(Description description) {
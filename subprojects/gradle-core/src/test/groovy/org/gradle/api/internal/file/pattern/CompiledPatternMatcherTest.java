@@ -0,0 +1,155 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.specs.Spec;
+import static org.gradle.util.WrapUtil.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompiledPatternMatcherTest {
+    private Spec<RelativePath> matcher;
+
+    @Test public void testLiterals() {
+        matcher = matcher(true, "a/b", "a/c", "d");
+        assertTrue(matcher.isSatisfiedBy(file("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("d")));
+        assertFalse(matcher.isSatisfiedBy(file("a")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "d")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b", "c")));
+        assertFalse(matcher.isSatisfiedBy(file("b")));
+    }
+
+    @Test public void testWildCards() {
+        matcher = matcher(true, "*.java", "any??ing/*");
+        assertTrue(matcher.isSatisfiedBy(file("A.java")));
+        assertTrue(matcher.isSatisfiedBy(file("anything", "a")));
+        assertFalse(matcher.isSatisfiedBy(file("A.groovy")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "A.java")));
+        assertFalse(matcher.isSatisfiedBy(file("anything", "a", "b")));
+    }
+
+    @Test public void testGreedy() {
+        matcher = matcher(true, "a/**/c", "src/**");
+        assertTrue(matcher.isSatisfiedBy(file("a", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "c", "b", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("src", "main", "A.java")));
+        assertTrue(matcher.isSatisfiedBy(file("src")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b", "d")));
+        assertFalse(matcher.isSatisfiedBy(file("b", "c")));
+    }
+
+    @Test public void testGreedyMatchesAfterEarlierCandidateSegment() {
+        matcher = matcher(true, "**/CVS/*");
+        assertTrue(matcher.isSatisfiedBy(file("CVS", "Entries")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "CVS", "b", "CVS", "Entries")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "CVS", "b", "Entries")));
+    }
+
+    @Test public void testMultipleGreedies() {
+        matcher = matcher(true, "a/**/c/**/e");
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "c", "d", "e")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "bb", "c", "d", "e")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "q", "bb", "c", "d", "c", "d", "e")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "c", "e")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b", "d", "e")));
+    }
+
+    @Test public void testTypical() {
+        matcher = matcher(true, "**/CVS/*");
+        assertTrue(matcher.isSatisfiedBy(file("org", "gradle", "CVS", "Entries")));
+        assertFalse(matcher.isSatisfiedBy(file("org", "gradle", "CVS", "foo", "bar", "Entries")));
+
+        matcher = matcher(true, "src/main/**");
+        assertTrue(matcher.isSatisfiedBy(file("src", "main", "groovy", "org")));
+        assertFalse(matcher.isSatisfiedBy(file("src", "test", "groovy", "org")));
+
+        matcher = matcher(true, "**/test/**");
+        assertTrue(matcher.isSatisfiedBy(file("src", "main", "test")));
+        assertTrue(matcher.isSatisfiedBy(file("src", "test", "main")));
+        assertFalse(matcher.isSatisfiedBy(file("src", "main", "fred")));
+    }
+
+    @Test public void testPartials() {
+        matcher = matcher(true, "a/b/c", "x/**/y");
+        assertTrue(matcher.isSatisfiedBy(dir("a")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(dir("x", "z", "z")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b")));
+        assertFalse(matcher.isSatisfiedBy(dir("b")));
+
+        matcher = matcher(false, "a/b/c", "x/**/y");
+        assertFalse(matcher.isSatisfiedBy(dir("a", "b")));
+        assertFalse(matcher.isSatisfiedBy(dir("x", "z")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b", "c")));
+        assertTrue(matcher.isSatisfiedBy(dir("x", "z", "y")));
+    }
+
+    @Test public void testNameOnlyPatternMatchesFilesOnly() {
+        matcher = matcher(false, "**/*.jsp");
+        assertTrue(matcher.isSatisfiedBy(file("fred.jsp")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "fred.jsp")));
+        assertFalse(matcher.isSatisfiedBy(dir("fred.jsp")));
+
+        matcher = matcher(true, "**/*.jsp");
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b")));
+    }
+
+    @Test public void testTrailingSlash() {
+        matcher = matcher(false, "a/b/", "c\\");
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "c", "d")));
+        assertTrue(matcher.isSatisfiedBy(file("c", "d")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "c")));
+    }
+
+    @Test public void testEmpty() {
+        matcher = matcher(true);
+        assertFalse(matcher.isSatisfiedBy(file("a")));
+        assertTrue(matcher.isSatisfiedBy(dir()));
+
+        matcher = matcher(false, "");
+        assertTrue(matcher.isSatisfiedBy(dir()));
+        assertFalse(matcher.isSatisfiedBy(dir("a")));
+    }
+
+    @Test public void testCase() {
+        matcher = matcher(true, "a/b", "*.java");
+        assertTrue(matcher.isSatisfiedBy(file("a", "b")));
+        assertFalse(matcher.isSatisfiedBy(file("A", "B")));
+        assertFalse(matcher.isSatisfiedBy(file("A.JAVA")));
+
+        matcher = PatternMatcherFactory.getPatternsMatcher(true, false, toList("a/b", "*.java"));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(file("A", "B")));
+        assertTrue(matcher.isSatisfiedBy(file("A.JAVA")));
+    }
+
+    private Spec<RelativePath> matcher(boolean partialMatchDirs, String... patterns) {
+        return PatternMatcherFactory.getPatternsMatcher(partialMatchDirs, true, toList(patterns));
+    }
+
+    private RelativePath file(String... segments) {
+        return new RelativePath(true, segments);
+    }
+
+    private RelativePath dir(String... segments) {
+        return new RelativePath(false, segments);
+    }
+}
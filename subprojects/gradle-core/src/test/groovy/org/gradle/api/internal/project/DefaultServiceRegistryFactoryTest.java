@@ -25,6 +25,10 @@ import org.gradle.api.internal.artifacts.dsl.DefaultRepositoryHandlerFactory;
 import org.gradle.api.internal.artifacts.dsl.PublishArtifactFactory;
 import org.gradle.api.internal.tasks.SkipTaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.AsmBackedClassGenerator;
+import org.gradle.api.internal.ClassGenerator;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.CacheRepositoryFactory;
 import org.gradle.groovy.scripts.DefaultScriptCompilerFactory;
 import org.gradle.groovy.scripts.ScriptCompilerFactory;
 import org.gradle.listener.ListenerBroadcast;
@@ -112,8 +116,22 @@ public class DefaultServiceRegistryFactoryTest {
         assertThat(factory.get(TaskExecuter.class), sameInstance(factory.get(TaskExecuter.class)));
     }
 
+    @Test
+    public void providesAClassGenerator() {
+        context.checking(new Expectations() {{
+            allowing(listenerManager).addListener(with(notNullValue()));
+        }});
+
+        assertThat(factory.get(ClassGenerator.class), instanceOf(AsmBackedClassGenerator.class));
+        assertThat(factory.get(ClassGenerator.class), sameInstance(factory.get(ClassGenerator.class)));
+    }
+
     @Test
     public void providesARepositoryHandlerFactory() {
+        context.checking(new Expectations() {{
+            allowing(listenerManager).addListener(with(notNullValue()));
+        }});
+
         assertThat(factory.get(RepositoryHandlerFactory.class), instanceOf(DefaultRepositoryHandlerFactory.class));
         assertThat(factory.get(RepositoryHandlerFactory.class), sameInstance(factory.get(
                 RepositoryHandlerFactory.class)));
@@ -124,4 +142,21 @@ public class DefaultServiceRegistryFactoryTest {
         assertThat(factory.get(ScriptCompilerFactory.class), instanceOf(DefaultScriptCompilerFactory.class));
         assertThat(factory.get(ScriptCompilerFactory.class), sameInstance(factory.get(ScriptCompilerFactory.class)));
     }
+
+    @Test
+    public void providesACacheRepositoryCreatedByTheParentRegistry() {
+        final CacheRepositoryFactory cacheRepositoryFactory = context.mock(CacheRepositoryFactory.class);
+        final CacheRepository cacheRepository = context.mock(CacheRepository.class);
+        DefaultServiceRegistryFactory factory = new DefaultServiceRegistryFactory(new GlobalServicesRegistry(
+                cacheRepositoryFactory), startParameter, listenerManager);
+
+        context.checking(new Expectations() {{
+            one(cacheRepositoryFactory).create(startParameter.getGradleUserHomeDir(), startParameter.getCacheUsage());
+            will(returnValue(cacheRepository));
+            one(listenerManager).addListener(with(notNullValue()));
+        }});
+
+        assertThat(factory.get(CacheRepository.class), sameInstance(cacheRepository));
+        assertThat(factory.get(CacheRepository.class), sameInstance(cacheRepository));
+    }
 }
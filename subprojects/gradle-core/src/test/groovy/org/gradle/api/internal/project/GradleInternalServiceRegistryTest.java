@@ -33,8 +33,10 @@ import org.gradle.api.artifacts.repositories.InternalRepository;
 import org.gradle.api.plugins.Convention;
 import org.gradle.api.execution.TaskExecutionGraphListener;
 import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.testing.execution.fork.pool.ForkPool;
 import org.gradle.execution.DefaultTaskGraphExecuter;
 import org.gradle.execution.TaskGraphExecuter;
+import org.gradle.BuildListener;
 import org.gradle.StartParameter;
 import org.gradle.listener.ListenerManager;
 import org.gradle.listener.ListenerBroadcast;
@@ -42,6 +44,8 @@ import static org.hamcrest.Matchers.*;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.legacy.ClassImposteriser;
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -49,6 +53,8 @@ import org.junit.Before;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 @RunWith(JMock.class)
 public class GradleInternalServiceRegistryTest {
@@ -136,6 +142,26 @@ public class GradleInternalServiceRegistryTest {
         assertThat(registry.get(InternalRepository.class), sameInstance(registry.get(InternalRepository.class)));
     }
 
+    @Test
+    public void providesAForkPoolWhichIsStoppedWhenTheBuildFinishes() {
+        final List<BuildListener> listeners = new ArrayList<BuildListener>();
+        context.checking(new Expectations() {{
+            one(listenerManager).addListener(with(instanceOf(BuildListener.class)));
+            will(new CustomAction("collect listener") {
+                public Object invoke(Invocation invocation) {
+                    listeners.add((BuildListener) invocation.getParameter(0));
+                    return null;
+                }
+            });
+        }});
+
+        assertThat(registry.get(ForkPool.class), instanceOf(ForkPool.class));
+        assertThat(registry.get(ForkPool.class), sameInstance(registry.get(ForkPool.class)));
+        assertThat(listeners.size(), equalTo(1));
+
+        listeners.get(0).buildFinished(null);
+    }
+
     private void expectConfigurationHandlerCreated() {
         context.checking(new Expectations() {{
             RepositoryHandler repositoryHandler = context.mock(RepositoryHandler.class);
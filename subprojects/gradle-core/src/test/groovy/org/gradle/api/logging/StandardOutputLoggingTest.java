@@ -121,6 +121,32 @@ public class StandardOutputLoggingTest {
         assertEquals(StandardOutputLogging.ERR_LOGGING_STREAM.get(), System.err);
     }
 
+    @Test
+    public void threadLocalRedirectionOnlyAffectsTheRedirectingThread() throws Exception {
+        StandardOutputLogging.enableThreadLocalRedirection();
+        try {
+            StandardOutputLogging.on(LogLevel.INFO);
+            assertEquals(StandardOutputLogging.OUT_LOGGING_STREAM.get(),
+                    StandardOutputLogging.getStateSnapshot().getOutStream());
+
+            final StandardOutputState[] otherThreadState = new StandardOutputState[1];
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    otherThreadState[0] = StandardOutputLogging.getStateSnapshot();
+                }
+            };
+            thread.start();
+            thread.join();
+            assertSame(StandardOutputLogging.DEFAULT_OUT, otherThreadState[0].getOutStream());
+            assertSame(StandardOutputLogging.DEFAULT_ERR, otherThreadState[0].getErrStream());
+        } finally {
+            StandardOutputLogging.disableThreadLocalRedirection();
+        }
+        assertEquals(StandardOutputLogging.OUT_LOGGING_STREAM.get(), System.out);
+        assertEquals(StandardOutputLogging.ERR_LOGGING_STREAM.get(), System.err);
+    }
+
     private void checkOut(LogLevel expectedOut) {
         assertEquals(StandardOutputLogging.OUT_LOGGING_STREAM.get(), System.out);
         assertEquals(StandardOutputLogging.getOutAdapter().getLevel(), expectedOut);
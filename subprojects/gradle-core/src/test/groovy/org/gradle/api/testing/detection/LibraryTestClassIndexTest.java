@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.detection;
+
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.integtests.TestFile;
+import org.gradle.util.TemporaryFolder;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+public class LibraryTestClassIndexTest {
+    private static final String DETECTOR = "detector";
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final InMemoryCache cache = new InMemoryCache();
+    private final LibraryTestClassIndex index = new LibraryTestClassIndex(cache);
+
+    @Test
+    public void returnsNullForClassWhichIsNotInTheIndex() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+
+        assertThat(index.get(DETECTOR, jar, "org/Test"), nullValue());
+    }
+
+    @Test
+    public void returnsEntryOfClass() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+        TestFile superJar = tmpDir.getDir().file("super.jar").write("super");
+
+        index.put(DETECTOR, jar, "org/Test", true, toSet((File) jar, superJar));
+
+        LibraryTestClassIndex.Entry entry = new LibraryTestClassIndex(cache).get(DETECTOR, jar, "org/Test");
+        assertTrue(entry.isTestClass());
+        assertThat(entry.getLibraryJars(), equalTo(toSet((File) jar, superJar)));
+    }
+
+    @Test
+    public void keepsEntriesPerDetector() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+
+        index.put(DETECTOR, jar, "org/Test", true, toSet((File) jar));
+
+        assertThat(index.get("other", jar, "org/Test"), nullValue());
+    }
+
+    @Test
+    public void entryDoesNotMatchOnceTheJarOfTheClassHasChanged() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+
+        index.put(DETECTOR, jar, "org/Test", false, toSet((File) jar));
+        jar.write("changed");
+
+        assertThat(new LibraryTestClassIndex(cache).get(DETECTOR, jar, "org/Test"), nullValue());
+    }
+
+    @Test
+    public void entryDoesNotMatchOnceTheJarOfASuperClassHasChanged() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+        TestFile superJar = tmpDir.getDir().file("super.jar").write("super");
+
+        index.put(DETECTOR, jar, "org/Test", false, toSet((File) jar, superJar));
+        superJar.write("changed");
+
+        assertThat(new LibraryTestClassIndex(cache).get(DETECTOR, jar, "org/Test"), nullValue());
+    }
+
+    @Test
+    public void entryDoesNotMatchOnceTheJarOfASuperClassHasBeenRemoved() {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("lib");
+        TestFile superJar = tmpDir.getDir().file("super.jar").write("super");
+
+        index.put(DETECTOR, jar, "org/Test", false, toSet((File) jar, superJar));
+        assertTrue(superJar.delete());
+
+        assertThat(new LibraryTestClassIndex(cache).get(DETECTOR, jar, "org/Test"), nullValue());
+    }
+
+    private static class InMemoryCache implements PersistentIndexedCache<String, LibraryTestClassIndex.Entry> {
+        private final Map<String, LibraryTestClassIndex.Entry> entries = new HashMap<String, LibraryTestClassIndex.Entry>();
+
+        public LibraryTestClassIndex.Entry get(String key) {
+            return entries.get(key);
+        }
+
+        public void put(String key, LibraryTestClassIndex.Entry value) {
+            entries.put(key, value);
+        }
+
+        public void remove(String key) {
+            entries.remove(key);
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution;
+
+import org.apache.mina.core.session.IoSession;
+import org.gradle.api.testing.execution.control.messages.server.ExecuteTestActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.StopForkActionMessage;
+import org.gradle.api.testing.execution.control.server.TestServerClientHandleFactory;
+import org.gradle.api.testing.execution.fork.ForkControl;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.api.testing.execution.fork.ForkStatus;
+import org.gradle.api.testing.execution.schedule.policies.SchedulePolicyInstance;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JMock.class)
+public class PipelineDispatcherTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final Pipeline pipeline = context.mock(Pipeline.class);
+    private final SchedulePolicyInstance schedulePolicyInstance = context.mock(SchedulePolicyInstance.class);
+    private final ForkControl forkControl = context.mock(ForkControl.class);
+    private final ForkInfo forkInfo = context.mock(ForkInfo.class);
+    private final IoSession session1 = context.mock(IoSession.class, "session1");
+    private final IoSession session2 = context.mock(IoSession.class, "session2");
+    private final List<Object> messages1 = new ArrayList<Object>();
+    private final List<Object> messages2 = new ArrayList<Object>();
+    private final TestClassRunInfo a = new TestInfo("a");
+    private final TestClassRunInfo b = new TestInfo("b");
+    private final TestClassRunInfo c = new TestInfo("c");
+    private PipelineDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(pipeline).getSchedulePolicyInstance();
+            will(returnValue(schedulePolicyInstance));
+            allowing(pipeline).getId();
+            will(returnValue(1));
+            allowing(pipeline).isPipelineSplittingEnded();
+            will(returnValue(false));
+            allowing(session1).write(with(any(Object.class)));
+            will(record(messages1));
+            allowing(session2).write(with(any(Object.class)));
+            will(record(messages2));
+            allowing(forkControl).getForkInfo(1, 1);
+            will(returnValue(forkInfo));
+            allowing(forkInfo).setRestarting(false);
+        }});
+        dispatcher = new PipelineDispatcher(pipeline, new TestServerClientHandleFactory(forkControl));
+        dispatcher.clientStarted(1);
+        dispatcher.clientStarted(2);
+    }
+
+    @Test
+    public void sendsTheRequestedNumberOfTestsInASingleBatch() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 3);
+            will(returnValue(toList(a, b, c)));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 3, false);
+
+        assertThat(messages1.size(), equalTo(1));
+        assertThat(testsIn(messages1.get(0)), equalTo(toList(a, b, c)));
+        assertTrue(dispatcher.hasOutstandingTests(1));
+    }
+
+    @Test
+    public void sendsNothingWhenForkHasOutstandingTestsAndRequestsNoMore() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(toList(a, b)));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 2, false);
+        dispatcher.dispatchTests(1, session1, 0, false);
+
+        assertThat(messages1.size(), equalTo(1));
+    }
+
+    @Test
+    public void sendsAnEmptyBatchWhenForkWhichHasOutstandingTestsRequiresAReply() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(toList(a, b)));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 2, false);
+        dispatcher.dispatchTests(1, session1, 0, true);
+
+        assertThat(messages1.size(), equalTo(2));
+        assertTrue(testsIn(messages1.get(1)).isEmpty());
+    }
+
+    @Test
+    public void sendsTestsToWaitingForkWhenTestsAreAdded() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 2, false);
+
+        assertThat(messages1.size(), equalTo(0));
+        assertTrue(dispatcher.getClientHandle(1).isWaitingForTests());
+
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(toList(a)));
+        }});
+
+        dispatcher.testsAdded();
+
+        assertThat(messages1.size(), equalTo(1));
+        assertThat(testsIn(messages1.get(0)), equalTo(toList(a)));
+        assertFalse(dispatcher.getClientHandle(1).isWaitingForTests());
+    }
+
+    @Test
+    public void requeuesTestsWhichAForkHasNotCompletedAndSendsThemToAWaitingFork() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(toList(a, b)));
+            one(schedulePolicyInstance).nextTests(2, 1);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 2, false);
+        dispatcher.dispatchTests(2, session2, 1, false);
+
+        final TestClassProcessResult result = new TestClassProcessResult(a);
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).testCompleted(1, result);
+            one(schedulePolicyInstance).requeueTests(toList(b));
+            one(schedulePolicyInstance).nextTests(2, 1);
+            will(returnValue(toList(b)));
+        }});
+
+        dispatcher.testCompleted(1, result);
+        dispatcher.requeueOutstandingTests(1);
+
+        assertFalse(dispatcher.hasOutstandingTests(1));
+        assertThat(messages2.size(), equalTo(1));
+        assertThat(testsIn(messages2.get(0)), equalTo(toList(b)));
+    }
+
+    @Test
+    public void failsPipelineWhenForkDiesAfterTheOtherForksHaveStopped() throws InterruptedException {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(toList(a, b)));
+        }});
+
+        dispatcher.dispatchTests(1, session1, 2, false);
+        dispatcher.stop();
+        dispatcher.clientStopped(2);
+
+        final CountDownLatch stopped = new CountDownLatch(1);
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).requeueTests(toList(a, b));
+            allowing(schedulePolicyInstance).nextTests(with(any(Integer.class)), with(any(Integer.class)));
+            will(returnValue(Collections.emptyList()));
+            allowing(schedulePolicyInstance).hasPendingTests();
+            will(returnValue(true));
+            allowing(schedulePolicyInstance).getPendingTestCount();
+            will(returnValue(2));
+            one(pipeline).failed("2 tests of pipeline 1 were not executed, as no fork remained to execute them.");
+            one(pipeline).stopped();
+            will(new CustomAction("pipeline stopped") {
+                public Object invoke(Invocation invocation) {
+                    stopped.countDown();
+                    return null;
+                }
+            });
+        }});
+
+        dispatcher.requeueOutstandingTests(1);
+        dispatcher.clientStopped(1);
+
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void retiresForkWhichHasBeenWaitingForTestsForTheIdleTime() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        dispatcher.getClientHandle(1).scheduleExecuteTest();
+        dispatcher.dispatchTests(1, session1, 2, false);
+
+        assertTrue(dispatcher.retireIdleFork(0));
+
+        assertThat(messages1.size(), equalTo(1));
+        assertThat(messages1.get(0), instanceOf(StopForkActionMessage.class));
+        assertThat(dispatcher.getClientHandle(1).getStatus(), equalTo(ForkStatus.STOPPED));
+        assertFalse(dispatcher.getClientHandle(1).isWaitingForTests());
+        assertFalse(dispatcher.retireIdleFork(0));
+    }
+
+    @Test
+    public void doesNotRetireForkWhichHasNotBeenWaitingForTheIdleTime() {
+        context.checking(new Expectations() {{
+            one(schedulePolicyInstance).nextTests(1, 2);
+            will(returnValue(Collections.emptyList()));
+        }});
+
+        dispatcher.getClientHandle(1).scheduleExecuteTest();
+        dispatcher.dispatchTests(1, session1, 2, false);
+
+        assertFalse(dispatcher.retireIdleFork(60000));
+
+        assertThat(messages1.size(), equalTo(0));
+        assertThat(dispatcher.getClientHandle(1).getStatus(), equalTo(ForkStatus.TESTING));
+        assertTrue(dispatcher.getClientHandle(1).isWaitingForTests());
+    }
+
+    private List<TestClassRunInfo> testsIn(Object message) {
+        assertThat(message, instanceOf(ExecuteTestActionMessage.class));
+        return ((ExecuteTestActionMessage) message).getTestClassRunInfos();
+    }
+
+    private CustomAction record(final List<Object> messages) {
+        return new CustomAction("record message") {
+            public Object invoke(Invocation invocation) {
+                messages.add(invocation.getParameter(0));
+                return null;
+            }
+        };
+    }
+
+    private static class TestInfo implements TestClassRunInfo {
+        private final String name;
+
+        private TestInfo(String name) {
+            this.name = name;
+        }
+
+        public String getTestClassName() {
+            return name;
+        }
+    }
+}
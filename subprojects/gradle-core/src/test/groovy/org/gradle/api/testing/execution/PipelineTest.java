@@ -0,0 +1,90 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution;
+
+import org.gradle.api.tasks.testing.NativeTest;
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyInstance;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class PipelineTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final PipelinesManager manager = context.mock(PipelinesManager.class);
+    private final NativeTest testTask = context.mock(NativeTest.class);
+    private final ForkPolicyInstance forkPolicyInstance = context.mock(ForkPolicyInstance.class);
+    private final PipelineListener listener = context.mock(PipelineListener.class);
+    private final Pipeline pipeline = new Pipeline(manager, 1, testTask, new PipelineConfig("default"));
+
+    @Before
+    public void setUp() {
+        pipeline.setForkPolicyInstance(forkPolicyInstance);
+        pipeline.addListener(listener);
+    }
+
+    @Test
+    public void notifiesListenersOnceWhenRunInfoQueueStartsSpilling() {
+        for (int i = 0; i < 1000; i++) {
+            pipeline.addTestClassRunInfo(new TestInfo("test" + i));
+        }
+
+        context.checking(new Expectations() {{
+            one(listener).runInfoQueueSpilling(pipeline);
+        }});
+
+        pipeline.addTestClassRunInfo(new TestInfo("spilled1"));
+        pipeline.addTestClassRunInfo(new TestInfo("spilled2"));
+    }
+
+    @Test
+    public void reportsRunInfoQueueMetricsToListenersWhenStopped() {
+        context.checking(new Expectations() {{
+            allowing(listener).runInfoQueueSpilling(pipeline);
+        }});
+
+        for (int i = 0; i < 1002; i++) {
+            pipeline.addTestClassRunInfo(new TestInfo("test" + i));
+        }
+
+        context.checking(new Expectations() {{
+            one(listener).runInfoQueueStopped(pipeline, 1002, 2L);
+            one(forkPolicyInstance).stop();
+            one(manager).stopped(pipeline);
+        }});
+
+        pipeline.stopped();
+    }
+
+    private static class TestInfo implements TestClassRunInfo {
+        private final String name;
+
+        private TestInfo(String name) {
+            this.name = name;
+        }
+
+        public String getTestClassName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.control.client;
+
+import org.gradle.api.testing.TestFrameworkRegister;
+import org.gradle.api.testing.execution.control.messages.server.ExecuteTestActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.InitializeActionMessage;
+import org.gradle.api.testing.execution.control.messages.server.StopForkActionMessage;
+import org.gradle.api.testing.execution.control.refork.ReforkDecisionContext;
+import org.gradle.api.testing.execution.control.refork.ReforkItemConfigs;
+import org.gradle.api.testing.fabric.*;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JMock.class)
+public class TestControlMessageDispatcherTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final TestFramework testFramework = context.mock(TestFramework.class);
+    private final TestProcessorFactory processorFactory = context.mock(TestProcessorFactory.class);
+    private final ReforkDecisionContext reforkDecisionContext = context.mock(ReforkDecisionContext.class);
+    private final RecordingControlClient client = new RecordingControlClient();
+    private final RecordingExecutor executor = new RecordingExecutor();
+    private final TestControlMessageDispatcher dispatcher = new TestControlMessageDispatcher(client, getClass().getClassLoader(), executor);
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(testFramework).getId();
+            will(returnValue("dispatcher-test"));
+            allowing(testFramework).getProcessorFactory();
+            will(returnValue(processorFactory));
+            allowing(processorFactory).initialize(with(any(ClassLoader.class)), with(any(TestProcessResultFactory.class)));
+            allowing(processorFactory).createProcessor();
+        }});
+        TestFrameworkRegister.registerTestFramework(testFramework);
+
+        final InitializeActionMessage initializeMessage = new InitializeActionMessage(1);
+        initializeMessage.setTestFrameworkId("dispatcher-test");
+        initializeMessage.setReforkItemConfigs(new ReforkItemConfigs());
+        dispatcher.dispatch(initializeMessage);
+
+        assertThat(client.requestedTestCounts, equalTo(toList(1)));
+    }
+
+    @Test
+    public void startsTheFirstTestOfABatchAndRunsTheRestInTurn() {
+        dispatcher.dispatch(new ExecuteTestActionMessage(1, tests("a", "b")));
+        assertThat(executor.tasks.size(), equalTo(1));
+
+        dispatcher.testExecuted(result("a"), null, 10);
+        assertThat(client.results.get(1).getTestClassRunInfo().getTestClassName(), equalTo("a"));
+        assertThat(executor.tasks.size(), equalTo(2));
+
+        dispatcher.testExecuted(result("b"), null, 10);
+        assertThat(executor.tasks.size(), equalTo(2));
+    }
+
+    @Test
+    public void requestsMoreTestsWhenTestsAreShort() {
+        dispatcher.dispatch(new ExecuteTestActionMessage(1, tests("a")));
+        dispatcher.testExecuted(result("a"), null, 10);
+
+        assertThat(client.requestedTestCounts.get(1), equalTo(TestControlMessageDispatcher.MAX_BATCH_SIZE));
+    }
+
+    @Test
+    public void holdsNextTestUntilServerRepliesToRequestWithReforkData() {
+        dispatcher.dispatch(new ExecuteTestActionMessage(1, tests("a", "b")));
+        dispatcher.testExecuted(result("a"), reforkDecisionContext, 10);
+
+        assertThat(client.reforkDecisionContexts.get(1), sameInstance(reforkDecisionContext));
+        assertThat(executor.tasks.size(), equalTo(1));
+
+        dispatcher.dispatch(new ExecuteTestActionMessage(1, new ArrayList<TestClassRunInfo>()));
+
+        assertThat(executor.tasks.size(), equalTo(2));
+    }
+
+    @Test
+    public void doesNotStartHeldTestWhenForkIsStopped() {
+        dispatcher.dispatch(new ExecuteTestActionMessage(1, tests("a", "b")));
+        dispatcher.testExecuted(result("a"), reforkDecisionContext, 10);
+
+        assertTrue(dispatcher.dispatch(new StopForkActionMessage(1)));
+
+        assertThat(executor.tasks.size(), equalTo(1));
+    }
+
+    private List<TestClassRunInfo> tests(String... names) {
+        final List<TestClassRunInfo> tests = new ArrayList<TestClassRunInfo>();
+        for (final String name : names) {
+            tests.add(new TestInfo(name));
+        }
+        return tests;
+    }
+
+    private TestClassProcessResult result(String name) {
+        return new TestClassProcessResult(new TestInfo(name));
+    }
+
+    private static class TestInfo implements TestClassRunInfo {
+        private final String name;
+
+        private TestInfo(String name) {
+            this.name = name;
+        }
+
+        public String getTestClassName() {
+            return name;
+        }
+    }
+
+    private static class RecordingControlClient implements TestControlClient {
+        private final List<TestClassProcessResult> results = new ArrayList<TestClassProcessResult>();
+        private final List<ReforkDecisionContext> reforkDecisionContexts = new ArrayList<ReforkDecisionContext>();
+        private final List<Integer> requestedTestCounts = new ArrayList<Integer>();
+
+        public void reportStarted() {
+        }
+
+        public void reportStopped() {
+        }
+
+        public void requestNextControlMessage(TestClassProcessResult previousProcessTestResult, ReforkDecisionContext reforkDecisionContext, int requestedTestCount) {
+            results.add(previousProcessTestResult);
+            reforkDecisionContexts.add(reforkDecisionContext);
+            requestedTestCounts.add(requestedTestCount);
+        }
+    }
+
+    private static class RecordingExecutor extends AbstractExecutorService {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+        private boolean shutdown;
+
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
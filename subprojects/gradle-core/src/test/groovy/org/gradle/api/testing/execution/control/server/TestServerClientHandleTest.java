@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.control.server;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.fork.ForkControl;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.api.testing.execution.fork.ForkStatus;
+import org.gradle.api.testing.execution.fork.policies.local.single.LocalSimpleForkPolicyForkInfo;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleState;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class TestServerClientHandleTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final Pipeline pipeline = context.mock(Pipeline.class);
+    private final ForkControl forkControl = context.mock(ForkControl.class);
+    private final ForkInfo forkInfo = context.mock(ForkInfo.class);
+    private final LocalSimpleForkPolicyForkInfo policyInfo = context.mock(LocalSimpleForkPolicyForkInfo.class);
+    private final ExecHandle forkHandle = context.mock(ExecHandle.class);
+    private final TestServerClientHandle handle = new TestServerClientHandle(pipeline, 2, forkControl);
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(pipeline).getId();
+            will(returnValue(1));
+            allowing(pipeline).isPipelineSplittingEnded();
+            will(returnValue(false));
+            allowing(forkControl).getForkInfo(1, 2);
+            will(returnValue(forkInfo));
+            allowing(forkInfo).getForkPolicyInfo();
+            will(returnValue(policyInfo));
+            allowing(policyInfo).getForkHandle();
+            will(returnValue(forkHandle));
+            allowing(forkHandle).waitForFinish();
+            will(returnValue(ExecHandleState.SUCCEEDED));
+        }});
+    }
+
+    @Test
+    public void restartsForkWhenItStops() {
+        context.checking(new Expectations() {{
+            one(forkInfo).setRestarting(false);
+            one(forkControl).requestForkStart(forkInfo);
+        }});
+
+        handle.scheduleExecuteTest();
+        handle.forkStopped();
+    }
+
+    @Test
+    public void doesNotRestartRetiredFork() {
+        context.checking(new Expectations() {{
+            exactly(2).of(forkInfo).setRestarting(false);
+        }});
+
+        handle.scheduleExecuteTest();
+        handle.retire();
+        handle.forkStopped();
+
+        assertThat(handle.getStatus(), equalTo(ForkStatus.STOPPED));
+    }
+
+    @Test
+    public void doesNotRestartForkOnceAllTestsHaveBeenFound() {
+        final Pipeline pipeline = context.mock(Pipeline.class, "finishedPipeline");
+        final TestServerClientHandle handle = new TestServerClientHandle(pipeline, 2, forkControl);
+        context.checking(new Expectations() {{
+            allowing(pipeline).getId();
+            will(returnValue(1));
+            allowing(pipeline).isPipelineSplittingEnded();
+            will(returnValue(true));
+            one(forkInfo).setRestarting(false);
+        }});
+
+        handle.scheduleExecuteTest();
+        handle.forkStopped();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.policies.local.autoscale;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.execution.PipelineConfig;
+import org.gradle.api.testing.execution.PipelineDispatcher;
+import org.gradle.api.testing.execution.control.server.TestServersManager;
+import org.gradle.api.testing.execution.fork.ForkControl;
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.api.testing.execution.fork.ForkInfoListener;
+import org.gradle.api.testing.execution.fork.policies.ForkPolicyNames;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class AutoScaleForkPolicyInstanceTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final Pipeline pipeline = context.mock(Pipeline.class);
+    private final PipelineConfig pipelineConfig = context.mock(PipelineConfig.class);
+    private final PipelineDispatcher dispatcher = context.mock(PipelineDispatcher.class);
+    private final ForkControl forkControl = context.mock(ForkControl.class);
+    private final TestServersManager testServersManager = context.mock(TestServersManager.class);
+    private final AutoScaleForkPolicyConfig config = new AutoScaleForkPolicyConfig(ForkPolicyNames.LOCAL_AUTO_SCALE);
+    private long freeMemory = -1;
+    private int forkCount;
+    private final AutoScaleForkPolicyInstance policy = new AutoScaleForkPolicyInstance(pipeline, forkControl, testServersManager) {
+        @Override
+        protected PipelineDispatcher startTestServer() {
+            return dispatcher;
+        }
+
+        @Override
+        void startScaler() {
+        }
+
+        @Override
+        long getFreePhysicalMemory() {
+            return freeMemory;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        config.setTestsPerFork(10);
+        config.setMaximumNumberOfForks(2);
+        config.setMinimumNumberOfForks(1);
+        config.setIdleTimeout(500);
+
+        context.checking(new Expectations() {{
+            allowing(pipeline).getId();
+            will(returnValue(1));
+            allowing(pipeline).getConfig();
+            will(returnValue(pipelineConfig));
+            allowing(pipelineConfig).getForkPolicyConfig();
+            will(returnValue(config));
+            allowing(pipeline).isPipelineSplittingEnded();
+            will(returnValue(false));
+            allowing(dispatcher).isStopping();
+            will(returnValue(false));
+        }});
+
+        policy.initialize();
+    }
+
+    @Test
+    public void startsFirstForkAsSoonAsATestIsPending() {
+        expectPendingTests(1);
+        expectForkStarted();
+
+        policy.scale();
+    }
+
+    @Test
+    public void startsAForkPerTestsPerForkPendingTestsUpToTheMaximum() {
+        freeMemory = 1000;
+        expectPendingTests(25);
+        expectForkMemoryUsage(100);
+        expectForkStarted();
+        expectForkStarted();
+
+        policy.scale();
+        policy.scale();
+        policy.scale();
+    }
+
+    @Test
+    public void doesNotStartAnotherForkWhenThereIsNotEnoughFreeMemory() {
+        freeMemory = 120;
+        expectPendingTests(25);
+        expectForkMemoryUsage(100);
+        expectForkStarted();
+
+        policy.scale();
+        policy.scale();
+    }
+
+    @Test
+    public void retiresAnIdleForkWhenNoTestsArePendingAndThereAreMoreThanTheMinimumNumberOfForks() {
+        freeMemory = 1000;
+        expectForkMemoryUsage(0);
+        context.checking(new Expectations() {{
+            exactly(2).of(dispatcher).getPendingTestCount();
+            will(returnValue(25));
+            one(dispatcher).getPendingTestCount();
+            will(returnValue(0));
+            one(dispatcher).retireIdleFork(500L);
+            will(returnValue(true));
+        }});
+        expectForkStarted();
+        expectForkStarted();
+
+        policy.scale();
+        policy.scale();
+        policy.scale();
+    }
+
+    @Test
+    public void doesNotRetireTheMinimumNumberOfForks() {
+        context.checking(new Expectations() {{
+            one(dispatcher).getPendingTestCount();
+            will(returnValue(1));
+            one(dispatcher).getPendingTestCount();
+            will(returnValue(0));
+        }});
+        expectForkStarted();
+
+        policy.scale();
+        policy.scale();
+    }
+
+    @Test
+    public void canStopBeforeTheScalerHasStarted() {
+        final AutoScaleForkPolicyInstance policy = new AutoScaleForkPolicyInstance(pipeline, forkControl, testServersManager);
+        context.checking(new Expectations() {{
+            one(testServersManager).stopServer(pipeline);
+        }});
+
+        policy.stop();
+    }
+
+    private void expectPendingTests(final int count) {
+        context.checking(new Expectations() {{
+            allowing(dispatcher).getPendingTestCount();
+            will(returnValue(count));
+        }});
+    }
+
+    private void expectForkMemoryUsage(final long memoryUsage) {
+        context.checking(new Expectations() {{
+            allowing(dispatcher).getMaximumForkMemoryUsage();
+            will(returnValue(memoryUsage));
+        }});
+    }
+
+    private void expectForkStarted() {
+        final ForkInfo forkInfo = context.mock(ForkInfo.class, "fork" + ++forkCount);
+        final int forkId = forkCount;
+        context.checking(new Expectations() {{
+            one(forkControl).requestForkStart(pipeline);
+            will(returnValue(forkInfo));
+            exactly(2).of(forkInfo).addListener(with(any(ForkInfoListener.class)));
+            allowing(forkInfo).getId();
+            will(returnValue(forkId));
+        }});
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.pool;
+
+import org.gradle.util.exec.ExecHandle;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collections;
+
+@RunWith(JMock.class)
+public class ForkPoolTest {
+    private static final String EXECUTER = "Executer";
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final ExecHandle processTemplate = context.mock(ExecHandle.class);
+    private final ForkPool pool = new ForkPool(1);
+    private String key;
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(processTemplate).getDirectory();
+            will(returnValue(new File("dir")));
+            allowing(processTemplate).getCommand();
+            will(returnValue("java"));
+            allowing(processTemplate).getArguments();
+            will(returnValue(toList("-cp", "launcher.jar")));
+            allowing(processTemplate).getEnvironment();
+            will(returnValue(Collections.emptyMap()));
+        }});
+        key = ForkPool.getKey(processTemplate, EXECUTER);
+        pool.start();
+    }
+
+    @After
+    public void tearDown() {
+        pool.stop();
+    }
+
+    @Test
+    public void leasesAReleasedForkAgain() {
+        final PooledFork fork = fork("fork", key, true);
+
+        pool.release(fork);
+
+        assertThat(pool.lease(processTemplate, EXECUTER), sameInstance(fork));
+    }
+
+    @Test
+    public void closesForkWhichIsReleasedWhenThePoolHoldsTheMaximumNumberOfIdleForks() {
+        final PooledFork fork1 = fork("fork1", key, true);
+        final PooledFork fork2 = fork("fork2", key, true);
+        context.checking(new Expectations() {{
+            one(fork2).close();
+            // closed when the pool stops
+            allowing(fork1).close();
+        }});
+
+        pool.release(fork1);
+        pool.release(fork2);
+    }
+
+    @Test
+    public void closesForkWhichIsNotAliveWhenReleased() {
+        final PooledFork fork = fork("fork", key, false);
+        context.checking(new Expectations() {{
+            one(fork).close();
+        }});
+
+        pool.release(fork);
+    }
+
+    @Test
+    public void closesForkWhichIsReleasedAfterThePoolHasStopped() {
+        final PooledFork fork = fork("fork", key, true);
+        context.checking(new Expectations() {{
+            one(fork).close();
+        }});
+
+        pool.stop();
+        pool.release(fork);
+    }
+
+    @Test
+    public void closesIdleForksWhenStopped() {
+        final PooledFork fork = fork("fork", key, true);
+        pool.release(fork);
+
+        context.checking(new Expectations() {{
+            one(fork).close();
+        }});
+
+        pool.stop();
+    }
+
+    @Test
+    public void keysForksByTheProcessSettingsAndExecuterClass() {
+        assertThat(ForkPool.getKey(processTemplate, EXECUTER), equalTo(key));
+        assertThat(ForkPool.getKey(processTemplate, "OtherExecuter"), not(equalTo(key)));
+    }
+
+    @Test
+    public void cannotLeaseForkOnceStopped() {
+        pool.stop();
+
+        try {
+            pool.lease(processTemplate, EXECUTER);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("fork pool is stopped!"));
+        }
+    }
+
+    private PooledFork fork(String name, final String key, final boolean alive) {
+        final PooledFork fork = context.mock(PooledFork.class, name);
+        context.checking(new Expectations() {{
+            allowing(fork).getKey();
+            will(returnValue(key));
+            allowing(fork).isAlive();
+            will(returnValue(alive));
+            allowing(fork).getProcessId();
+            will(returnValue(1));
+        }});
+        return fork;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.fork.pool;
+
+import org.gradle.api.testing.execution.fork.ForkInfo;
+import org.gradle.util.exec.ExecHandle;
+import org.gradle.util.exec.ExecHandleListener;
+import org.gradle.util.exec.ExecHandleState;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+
+@RunWith(JMock.class)
+public class PooledExecHandleTest {
+    private static final String EXECUTER = "Executer";
+    private static final String CONFIG = "[arguments]";
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final ForkPool pool = context.mock(ForkPool.class);
+    private final ExecHandle processTemplate = context.mock(ExecHandle.class);
+    private final ForkInfo forkInfo = context.mock(ForkInfo.class);
+    private final PooledFork fork = context.mock(PooledFork.class);
+    private PooledExecHandle handle;
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(processTemplate).getListeners();
+            will(returnValue(Collections.<ExecHandleListener>emptyList()));
+            allowing(fork).getProcessId();
+            will(returnValue(1));
+        }});
+        handle = new PooledExecHandle(pool, processTemplate, EXECUTER, CONFIG, forkInfo);
+    }
+
+    @Test
+    public void executesConfigInLeasedForkAndReleasesTheFork() throws IOException {
+        context.checking(new Expectations() {{
+            one(pool).lease(processTemplate, EXECUTER);
+            will(returnValue(fork));
+            one(fork).execute(CONFIG);
+            will(returnValue(true));
+            allowing(forkInfo).isRestarting();
+            will(returnValue(false));
+            one(pool).release(fork);
+        }});
+
+        assertThat(handle.startAndWaitForFinish(), equalTo(ExecHandleState.SUCCEEDED));
+        assertThat(handle.getExitCode(), equalTo(0));
+    }
+
+    @Test
+    public void closesForkWhichFailedToExecuteTheConfig() throws IOException {
+        context.checking(new Expectations() {{
+            one(pool).lease(processTemplate, EXECUTER);
+            will(returnValue(fork));
+            one(fork).execute(CONFIG);
+            will(returnValue(false));
+            allowing(forkInfo).isRestarting();
+            will(returnValue(false));
+            one(fork).close();
+        }});
+
+        assertThat(handle.startAndWaitForFinish(), equalTo(ExecHandleState.FAILED));
+        assertThat(handle.getFailureCause().getMessage(), equalTo("fork process 1 failed to execute its config!"));
+    }
+
+    @Test
+    public void closesForkWhenTheForkIsRestarting() throws IOException {
+        context.checking(new Expectations() {{
+            one(pool).lease(processTemplate, EXECUTER);
+            will(returnValue(fork));
+            one(fork).execute(CONFIG);
+            will(returnValue(true));
+            allowing(forkInfo).isRestarting();
+            will(returnValue(true));
+            one(fork).close();
+        }});
+
+        assertThat(handle.startAndWaitForFinish(), equalTo(ExecHandleState.SUCCEEDED));
+    }
+
+    @Test
+    public void killsForkWhenTheConnectionToTheForkFails() throws IOException {
+        final IOException failure = new IOException("broken");
+        context.checking(new Expectations() {{
+            one(pool).lease(processTemplate, EXECUTER);
+            will(returnValue(fork));
+            one(fork).execute(CONFIG);
+            will(throwException(failure));
+            one(fork).kill();
+        }});
+
+        assertThat(handle.startAndWaitForFinish(), equalTo(ExecHandleState.FAILED));
+        assertThat(handle.getFailureCause(), sameInstance((Throwable) failure));
+    }
+
+    @Test
+    public void failsWhenNoForkCanBeLeased() {
+        final IllegalStateException failure = new IllegalStateException("fork pool is stopped!");
+        context.checking(new Expectations() {{
+            one(pool).lease(processTemplate, EXECUTER);
+            will(throwException(failure));
+        }});
+
+        assertThat(handle.startAndWaitForFinish(), equalTo(ExecHandleState.FAILED));
+        assertThat(handle.getFailureCause(), sameInstance((Throwable) failure));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.duration;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.queues.DiskSpillingQueue;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JMock.class)
+public class LongestFirstSchedulePolicyInstanceTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final Pipeline pipeline = context.mock(Pipeline.class);
+    private final TestClassDurations durations = context.mock(TestClassDurations.class);
+    private final DiskSpillingQueue<TestClassRunInfo> queue = new DiskSpillingQueue<TestClassRunInfo>(100, null);
+    private LongestFirstSchedulePolicyInstance policy;
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(pipeline).getRunInfoQueue();
+            will(returnValue(queue));
+            allowing(durations).testCompleted(with(any(TestClassProcessResult.class)));
+        }});
+        policy = new LongestFirstSchedulePolicyInstance(pipeline, durations);
+    }
+
+    @Test
+    public void sendsLongestTestsFirst() {
+        expectDuration("a", 100L);
+        expectDuration("b", 300L);
+        expectDuration("c", 200L);
+        add("a", "b", "c");
+
+        assertThat(names(policy.nextTests(1, 3)), equalTo(toList("b", "c", "a")));
+        assertFalse(policy.hasPendingTests());
+    }
+
+    @Test
+    public void limitsTheExpectedDurationOfABatch() {
+        expectDuration("a", 800L);
+        expectDuration("b", 700L);
+        add("a", "b");
+
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("a")));
+        assertThat(policy.getPendingTestCount(), equalTo(1));
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("b")));
+    }
+
+    @Test
+    public void alwaysSendsAtLeastOneTest() {
+        expectDuration("a", LongestFirstSchedulePolicyInstance.BATCH_DURATION * 2);
+        add("a");
+
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("a")));
+    }
+
+    @Test
+    public void estimatesTheDurationOfUnknownTestsWhenTheyAreDispatched() {
+        expectDuration("known1", 100L);
+        expectDuration("unknown", null);
+        add("known1", "unknown");
+
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("known1")));
+
+        // a test which was not known before completes, which raises the average above 300 ms
+        final TestClassProcessResult result = new TestClassProcessResult(new TestInfo("other"));
+        result.setDuration(900);
+        policy.testCompleted(1, result);
+
+        expectDuration("known2", 300L);
+        add("known2");
+
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("unknown")));
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("known2")));
+    }
+
+    @Test
+    public void requeuedTestsDoNotChangeTheEstimateForUnknownTests() {
+        expectDuration("short", 100L);
+        expectDuration("long", 1000L);
+        add("short", "long");
+
+        for (int i = 0; i < 3; i++) {
+            final List<TestClassRunInfo> tests = policy.nextTests(1, 1);
+            assertThat(names(tests), equalTo(toList("long")));
+            policy.requeueTests(tests);
+        }
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("long")));
+
+        // the requeued test is counted once, so the average is 600 ms
+        expectDuration("unknown", null);
+        expectDuration("medium", 700L);
+        add("unknown", "medium");
+
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("medium")));
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("unknown")));
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("short")));
+    }
+
+    @Test
+    public void sendsUnknownTestsInTheOrderTheyWereAdded() {
+        expectDuration("a", null);
+        expectDuration("b", null);
+        expectDuration("c", null);
+        add("a", "b", "c");
+
+        assertThat(names(policy.nextTests(1, 3)), equalTo(toList("a", "b", "c")));
+    }
+
+    private void expectDuration(final String name, final Long duration) {
+        context.checking(new Expectations() {{
+            allowing(durations).getDuration(name);
+            will(returnValue(duration));
+        }});
+    }
+
+    private void add(String... names) {
+        for (String name : names) {
+            queue.add(new TestInfo(name));
+        }
+    }
+
+    private List<String> names(List<TestClassRunInfo> tests) {
+        final List<String> names = new ArrayList<String>();
+        for (TestClassRunInfo test : tests) {
+            names.add(test.getTestClassName());
+        }
+        return names;
+    }
+
+    private static class TestInfo implements TestClassRunInfo {
+        private final String name;
+
+        private TestInfo(String name) {
+            this.name = name;
+        }
+
+        public String getTestClassName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.duration;
+
+import org.gradle.api.testing.fabric.TestClassProcessResult;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.api.testing.fabric.TestProcessResultFactory;
+import org.gradle.cache.PersistentIndexedCache;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(JMock.class)
+public class TestClassDurationsTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final PersistentIndexedCache<String, Long> cache = context.mock(PersistentIndexedCache.class);
+    private final TestClassDurations durations = new TestClassDurations(cache, ":test:");
+    private final TestClassRunInfo test = new TestClassRunInfo() {
+        public String getTestClassName() {
+            return "SomeTest";
+        }
+    };
+
+    @Test
+    public void looksUpDurationOfTestClass() {
+        context.checking(new Expectations() {{
+            one(cache).get(":test:SomeTest");
+            will(returnValue(12L));
+        }});
+
+        assertThat(durations.getDuration("SomeTest"), equalTo(12L));
+    }
+
+    @Test
+    public void storesDurationOfFirstRun() {
+        context.checking(new Expectations() {{
+            one(cache).get(":test:SomeTest");
+            will(returnValue(null));
+            one(cache).put(":test:SomeTest", 200L);
+        }});
+
+        durations.testCompleted(result(200));
+    }
+
+    @Test
+    public void storesMovingAverageOfLaterRuns() {
+        context.checking(new Expectations() {{
+            one(cache).get(":test:SomeTest");
+            will(returnValue(100L));
+            one(cache).put(":test:SomeTest", 130L);
+        }});
+
+        durations.testCompleted(result(200));
+    }
+
+    @Test
+    public void ignoresTestClassWhichDidNotRunToCompletion() {
+        durations.testCompleted(new TestProcessResultFactory().createClassExecutionErrorResult(test,
+                new RuntimeException()));
+    }
+
+    private TestClassProcessResult result(long duration) {
+        final TestClassProcessResult result = new TestClassProcessResult(test);
+        result.setDuration(duration);
+        return result;
+    }
+}
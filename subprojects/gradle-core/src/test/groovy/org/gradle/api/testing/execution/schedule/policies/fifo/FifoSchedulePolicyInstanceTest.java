@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.testing.execution.schedule.policies.fifo;
+
+import org.gradle.api.testing.execution.Pipeline;
+import org.gradle.api.testing.fabric.TestClassRunInfo;
+import org.gradle.util.queues.DiskSpillingQueue;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JMock.class)
+public class FifoSchedulePolicyInstanceTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final Pipeline pipeline = context.mock(Pipeline.class);
+    private final DiskSpillingQueue<TestClassRunInfo> queue = new DiskSpillingQueue<TestClassRunInfo>(100, null);
+    private FifoSchedulePolicyInstance policy;
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(pipeline).getRunInfoQueue();
+            will(returnValue(queue));
+        }});
+        policy = new FifoSchedulePolicyInstance(pipeline);
+    }
+
+    @Test
+    public void sendsTestsInTheOrderTheyWereAdded() {
+        add("a", "b", "c");
+
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("a", "b")));
+        assertThat(policy.getPendingTestCount(), equalTo(1));
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("c")));
+        assertFalse(policy.hasPendingTests());
+        assertTrue(policy.nextTests(1, 2).isEmpty());
+    }
+
+    @Test
+    public void sendsRequeuedTestsFirst() {
+        add("a", "b", "c");
+        final List<TestClassRunInfo> tests = policy.nextTests(1, 2);
+
+        policy.requeueTests(tests);
+
+        assertThat(policy.getPendingTestCount(), equalTo(3));
+        assertThat(names(policy.nextTests(1, 1)), equalTo(toList("a")));
+        assertThat(names(policy.nextTests(1, 2)), equalTo(toList("b", "c")));
+    }
+
+    private void add(String... names) {
+        for (final String name : names) {
+            queue.add(new TestClassRunInfo() {
+                public String getTestClassName() {
+                    return name;
+                }
+            });
+        }
+    }
+
+    private List<String> names(List<TestClassRunInfo> tests) {
+        final List<String> names = new ArrayList<String>();
+        for (TestClassRunInfo test : tests) {
+            names.add(test.getTestClassName());
+        }
+        return names;
+    }
+}
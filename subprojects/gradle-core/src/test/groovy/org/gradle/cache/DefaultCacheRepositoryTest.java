@@ -18,6 +18,7 @@ package org.gradle.cache;
 import org.gradle.CacheUsage;
 import org.gradle.api.Project;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.cache.btree.BTreePersistentIndexedCache;
 import org.gradle.integtests.TestFile;
 import org.gradle.util.GUtil;
 import org.gradle.util.GradleVersion;
@@ -74,4 +75,45 @@ public class DefaultCacheRepositoryTest {
         assertThat(dCache.getBaseDir(), equalTo((File) buildRootDir.file(".gradle/" + version + "/a/b/c")));
         assertThat(dCache.getProperties(), equalTo(properties));
     }
+
+    @Test
+    public void createsIndexedGlobalCacheBackedByASingleFile() {
+        PersistentIndexedCache<String, Integer> cache = repository.getIndexedGlobalCache("a/b/c", properties);
+        assertThat(cache, instanceOf(WriteBehindPersistentIndexedCache.class));
+
+        cache.put("key", 12);
+        repository.close();
+
+        sharedCacheDir.file(version + "/a/b/c/" + BTreePersistentIndexedCache.FILE_NAME).assertIsFile();
+        assertThat(cache.get("key"), equalTo(12));
+    }
+
+    @Test
+    public void reusesIndexedCacheWithSameKeyAndProperties() {
+        PersistentIndexedCache<String, Integer> cache = repository.getIndexedGlobalCache("a/b/c", properties);
+
+        assertThat(repository.getIndexedGlobalCache("a/b/c", properties), sameInstance((Object) cache));
+        assertThat(repository.getIndexedGlobalCache("a/b/d", properties), not(sameInstance((Object) cache)));
+    }
+
+    @Test
+    public void reusesCacheWithSameKeyAndProperties() {
+        PersistentCache cache = repository.getGlobalCache("a/b/c", properties);
+
+        assertThat(repository.getGlobalCache("a/b/c", properties), sameInstance(cache));
+        assertThat(repository.getGlobalCache("a/b/d", properties), not(sameInstance(cache)));
+    }
+
+    @Test
+    public void doesNotDeleteContentOfIndexedCacheWhenCacheIsRequestedAgain() {
+        DefaultCacheRepository repository = new DefaultCacheRepository(homeDir, CacheUsage.REBUILD);
+        PersistentIndexedCache<String, Integer> cache = repository.getIndexedGlobalCache("a/b/c", properties);
+        cache.put("key", 12);
+        repository.close();
+
+        repository.getGlobalCache("a/b/c", properties);
+        repository.getIndexedGlobalCache("a/b/c", properties);
+
+        sharedCacheDir.file(version + "/a/b/c/" + BTreePersistentIndexedCache.FILE_NAME).assertIsFile();
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import org.gradle.CacheUsage;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+
+@RunWith(JMock.class)
+public class SharedCacheRepositoryFactoryTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final CacheRepositoryFactory backingFactory = context.mock(CacheRepositoryFactory.class);
+    private final SharedCacheRepositoryFactory factory = new SharedCacheRepositoryFactory(backingFactory);
+    private final File userHome = new File("home");
+
+    @Test
+    public void reusesRepositoryForSameUserHomeDir() {
+        final CacheRepository repository = context.mock(CacheRepository.class);
+
+        context.checking(new Expectations() {{
+            one(backingFactory).create(userHome.getAbsoluteFile(), CacheUsage.ON);
+            will(returnValue(repository));
+        }});
+
+        assertThat(factory.create(userHome.getAbsoluteFile(), CacheUsage.ON), sameInstance(repository));
+        assertThat(factory.create(userHome, CacheUsage.ON), sameInstance(repository));
+    }
+
+    @Test
+    public void createsNewRepositoryWhenCachesAreNotUsedNormally() {
+        final CacheRepository repository1 = context.mock(CacheRepository.class, "repository1");
+        final CacheRepository repository2 = context.mock(CacheRepository.class, "repository2");
+
+        context.checking(new Expectations() {{
+            one(backingFactory).create(userHome, CacheUsage.REBUILD);
+            will(returnValue(repository1));
+            one(backingFactory).create(userHome, CacheUsage.REBUILD);
+            will(returnValue(repository2));
+        }});
+
+        assertThat(factory.create(userHome, CacheUsage.REBUILD), sameInstance(repository1));
+        assertThat(factory.create(userHome, CacheUsage.REBUILD), sameInstance(repository2));
+    }
+
+    @Test
+    public void closesRepositoriesWhenClosed() {
+        final CacheRepository repository = context.mock(CacheRepository.class);
+
+        context.checking(new Expectations() {{
+            one(backingFactory).create(userHome, CacheUsage.ON);
+            will(returnValue(repository));
+            one(repository).close();
+        }});
+
+        factory.create(userHome, CacheUsage.ON);
+        factory.close();
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RunWith(JMock.class)
+public class WriteBehindPersistentIndexedCacheTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final PersistentIndexedCache<String, Integer> backingCache = context.mock(PersistentIndexedCache.class);
+    private final WriteBehindPersistentIndexedCache<String, Integer> cache
+            = new WriteBehindPersistentIndexedCache<String, Integer>(backingCache, 3, 3);
+
+    @Test
+    public void readsEntryFromBackingCacheOnce() {
+        context.checking(new Expectations() {{
+            one(backingCache).get("key");
+            will(returnValue(12));
+        }});
+
+        assertThat(cache.get("key"), equalTo(12));
+        assertThat(cache.get("key"), equalTo(12));
+    }
+
+    @Test
+    public void remembersMissingEntries() {
+        context.checking(new Expectations() {{
+            one(backingCache).get("key");
+            will(returnValue(null));
+        }});
+
+        assertThat(cache.get("key"), nullValue());
+        assertThat(cache.get("key"), nullValue());
+    }
+
+    @Test
+    public void doesNotWriteChangesUntilFlushed() {
+        cache.put("key", 12);
+
+        assertThat(cache.get("key"), equalTo(12));
+
+        context.checking(new Expectations() {{
+            one(backingCache).put("key", 12);
+        }});
+
+        cache.flush();
+        cache.flush();
+    }
+
+    @Test
+    public void writesLatestValueOfChangedEntry() {
+        cache.put("key", 12);
+        cache.put("key", 13);
+        cache.remove("other");
+        cache.put("other", 14);
+        cache.remove("key");
+
+        context.checking(new Expectations() {{
+            one(backingCache).remove("key");
+            one(backingCache).put("other", 14);
+        }});
+
+        cache.flush();
+    }
+
+    @Test
+    public void flushesWhenThresholdReached() {
+        cache.put("key1", 12);
+        cache.put("key2", 13);
+
+        context.checking(new Expectations() {{
+            one(backingCache).put("key1", 12);
+            one(backingCache).put("key2", 13);
+            one(backingCache).put("key3", 14);
+        }});
+
+        cache.put("key3", 14);
+    }
+
+    @Test
+    public void writesChangedEntryWhenItIsDiscarded() {
+        final Sequence sequence = context.sequence("seq");
+        context.checking(new Expectations() {{
+            one(backingCache).get("a");
+            inSequence(sequence);
+            will(returnValue(1));
+            one(backingCache).get("b");
+            inSequence(sequence);
+            will(returnValue(2));
+            one(backingCache).get("d");
+            inSequence(sequence);
+            will(returnValue(4));
+            one(backingCache).put("c", 3);
+            inSequence(sequence);
+            one(backingCache).get("c");
+            inSequence(sequence);
+            will(returnValue(3));
+        }});
+
+        cache.put("c", 3);
+        cache.get("a");
+        cache.get("b");
+        cache.get("d");
+        assertThat(cache.get("c"), equalTo(3));
+    }
+
+    @Test
+    public void closeFlushesChangesAndClosesBackingCache() {
+        cache.put("key", 12);
+
+        context.checking(new Expectations() {{
+            one(backingCache).put("key", 12);
+            one(backingCache).close();
+        }});
+
+        cache.close();
+    }
+
+    @Test
+    public void retainsEntriesInMemoryWhenClosed() {
+        cache.put("key", 12);
+
+        context.checking(new Expectations() {{
+            one(backingCache).put("key", 12);
+            one(backingCache).close();
+        }});
+
+        cache.close();
+        assertThat(cache.get("key"), equalTo(12));
+    }
+
+    @Test
+    public void writesChangesToSharedCacheAsASingleUpdate() {
+        final SharedPersistentIndexedCache<String, Integer> backingCache = context.mock(
+                SharedPersistentIndexedCache.class);
+        WriteBehindPersistentIndexedCache<String, Integer> cache = new WriteBehindPersistentIndexedCache<String, Integer>(
+                backingCache, 3, 3);
+        final Map<String, Integer> changes = new LinkedHashMap<String, Integer>();
+        changes.put("a", 1);
+        changes.put("b", null);
+
+        cache.put("a", 1);
+        cache.remove("b");
+
+        context.checking(new Expectations() {{
+            one(backingCache).update(changes);
+        }});
+
+        cache.flush();
+    }
+
+    @Test
+    public void retainsOnlyTheMostRecentlyUsedEntriesWhenClosed() {
+        WriteBehindPersistentIndexedCache<String, Integer> cache = new WriteBehindPersistentIndexedCache<String, Integer>(
+                backingCache, 3, 3, 1);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        context.checking(new Expectations() {{
+            one(backingCache).put("a", 1);
+            one(backingCache).put("b", 2);
+            one(backingCache).close();
+        }});
+
+        cache.close();
+
+        assertThat(cache.get("b"), equalTo(2));
+
+        context.checking(new Expectations() {{
+            one(backingCache).get("a");
+            will(returnValue(1));
+        }});
+
+        assertThat(cache.get("a"), equalTo(1));
+    }
+
+    @Test
+    public void reusesRetainedEntriesWhenSharedCacheHasNotChanged() {
+        final SharedPersistentIndexedCache<String, Integer> backingCache = context.mock(
+                SharedPersistentIndexedCache.class);
+        WriteBehindPersistentIndexedCache<String, Integer> cache = new WriteBehindPersistentIndexedCache<String, Integer>(
+                backingCache, 3, 3);
+
+        context.checking(new Expectations() {{
+            one(backingCache).get("key");
+            will(returnValue(12));
+            one(backingCache).update(new LinkedHashMap<String, Integer>());
+            exactly(2).of(backingCache).getGeneration();
+            will(returnValue(4L));
+            one(backingCache).close();
+        }});
+
+        assertThat(cache.get("key"), equalTo(12));
+        cache.close();
+        assertThat(cache.get("key"), equalTo(12));
+    }
+
+    @Test
+    public void discardsRetainedEntriesWhenSharedCacheHasBeenChangedByAnotherProcess() {
+        final SharedPersistentIndexedCache<String, Integer> backingCache = context.mock(
+                SharedPersistentIndexedCache.class);
+        WriteBehindPersistentIndexedCache<String, Integer> cache = new WriteBehindPersistentIndexedCache<String, Integer>(
+                backingCache, 3, 3);
+        final Sequence sequence = context.sequence("seq");
+
+        context.checking(new Expectations() {{
+            one(backingCache).get("key");
+            inSequence(sequence);
+            will(returnValue(12));
+            one(backingCache).update(new LinkedHashMap<String, Integer>());
+            inSequence(sequence);
+            one(backingCache).getGeneration();
+            inSequence(sequence);
+            will(returnValue(4L));
+            one(backingCache).close();
+            inSequence(sequence);
+            one(backingCache).getGeneration();
+            inSequence(sequence);
+            will(returnValue(5L));
+            one(backingCache).get("key");
+            inSequence(sequence);
+            will(returnValue(13));
+        }});
+
+        assertThat(cache.get("key"), equalTo(12));
+        cache.close();
+        assertThat(cache.get("key"), equalTo(13));
+    }
+}
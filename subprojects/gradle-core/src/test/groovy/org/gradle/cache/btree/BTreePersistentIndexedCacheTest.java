@@ -0,0 +1,376 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.PersistentCache;
+import org.gradle.integtests.TestFile;
+import org.gradle.util.TemporaryFolder;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RunWith(JMock.class)
+public class BTreePersistentIndexedCacheTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final PersistentCache backingCache = context.mock(PersistentCache.class);
+    private BTreePersistentIndexedCache<String, Integer> cache;
+
+    @Before
+    public void setup() {
+        context.checking(new Expectations(){{
+            allowing(backingCache).getBaseDir();
+            will(returnValue(tmpDir.getDir()));
+        }});
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, new DefaultSerializer<Integer>());
+    }
+
+    @Test
+    public void getReturnsNullWhenEntryDoesNotExist() {
+        assertNull(cache.get("unknown"));
+    }
+
+    @Test
+    public void updatesBackingCacheOnceWhenEntriesAdded() {
+        expectCacheUpdated(1);
+
+        cache.put("key_1", 2);
+        cache.put("key_2", 3);
+        cache.put("key_1", 4);
+        cache.remove("key_2");
+
+        assertThat(cache.get("key_1"), equalTo(4));
+        assertThat(cache.get("key_2"), nullValue());
+    }
+
+    @Test
+    public void storesAllEntriesInASingleFile() {
+        expectCacheUpdated(1);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, i);
+        }
+        cache.close();
+
+        assertThat(tmpDir.getDir().list(), equalTo(new String[]{BTreePersistentIndexedCache.FILE_NAME}));
+    }
+
+    @Test
+    public void canReadEntriesAfterCacheIsClosed() {
+        expectCacheUpdated(1);
+
+        cache.put("key_1", 2);
+        cache.put("otherkey", 3);
+        cache.close();
+
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+        assertThat(other.get("key_1"), equalTo(2));
+        assertThat(other.get("otherkey"), equalTo(3));
+        other.close();
+    }
+
+    @Test
+    public void updatesBackingCacheAgainAfterCacheIsReopened() {
+        expectCacheUpdated(2);
+
+        cache.put("key_1", 2);
+        cache.close();
+        cache.put("key_1", 3);
+        cache.close();
+
+        assertThat(cache.get("key_1"), equalTo(3));
+    }
+
+    @Test
+    public void canAddAndRemoveManyEntries() {
+        expectCacheUpdated(1);
+
+        int count = BTreePersistentIndexedCache.MAX_ENTRIES * BTreePersistentIndexedCache.MAX_ENTRIES * 2;
+        for (int i = 0; i < count; i++) {
+            cache.put("key" + i, i);
+        }
+        for (int i = 0; i < count; i += 2) {
+            cache.remove("key" + i);
+        }
+        for (int i = 0; i < count; i++) {
+            assertThat(cache.get("key" + i), equalTo(i % 2 == 0 ? null : i));
+        }
+    }
+
+    @Test
+    public void reusesSpaceOfRemovedEntries() {
+        expectCacheUpdated(1);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i);
+        }
+        cache.close();
+        long length = cacheFile().length();
+
+        for (int i = 0; i < 1000; i++) {
+            cache.remove("key" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.put("other" + i, i);
+        }
+        cache.close();
+
+        assertThat(cacheFile().length(), lessThanOrEqualTo(length + 4096));
+    }
+
+    @Test
+    public void compactRetainsLiveEntries() {
+        expectCacheUpdated(1);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            cache.remove("key" + i);
+        }
+        cache.close();
+        long length = cacheFile().length();
+
+        cache.compact();
+
+        assertThat(cacheFile().length(), lessThan(length));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(cache.get("key" + i), equalTo(i % 3 == 0 ? null : i));
+        }
+    }
+
+    @Test
+    public void discardsContentWhenCacheWasNotClosedCleanly() throws Exception {
+        expectCacheUpdated(1);
+
+        cache.put("key_1", 2);
+        cache.close();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile(), "rw");
+        try {
+            file.seek(8);
+            file.writeByte(FileBackedBlockStore.DIRTY);
+        } finally {
+            file.close();
+        }
+
+        assertThat(cache.get("key_1"), nullValue());
+    }
+
+    @Test
+    public void discardsBadlyFormedCacheFile() {
+        TestFile cacheFile = tmpDir.getDir().file(BTreePersistentIndexedCache.FILE_NAME);
+        cacheFile.write("some junk");
+
+        assertNull(cache.get("key_1"));
+    }
+
+    @Test
+    public void handlesShortAndUnusualKeyNames() {
+        expectCacheUpdated(1);
+
+        cache.put(null, 6);
+        cache.put("", 7);
+        cache.put("1", 8);
+        cache.put("a/b/c/d/e", 9);
+        cache.put("a\\b\\c\\d\\e", 10);
+        cache.put("q:\\abcd", 11);
+
+        assertThat(cache.get(null), equalTo(6));
+        assertThat(cache.get(""), equalTo(7));
+        assertThat(cache.get("1"), equalTo(8));
+        assertThat(cache.get("a/b/c/d/e"), equalTo(9));
+        assertThat(cache.get("a\\b\\c\\d\\e"), equalTo(10));
+        assertThat(cache.get("q:\\abcd"), equalTo(11));
+    }
+
+    @Test
+    public void seesChangesMadeUsingAnotherCacheForTheSameFile() {
+        expectCacheUpdated(2);
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+
+        cache.put("key_1", 2);
+        assertThat(other.get("key_1"), equalTo(2));
+
+        other.put("key_1", 3);
+        other.put("key_2", 4);
+
+        assertThat(cache.get("key_1"), equalTo(3));
+        assertThat(cache.get("key_2"), equalTo(4));
+        other.close();
+    }
+
+    @Test
+    public void compactionIsVisibleToAnotherCacheForTheSameFile() {
+        expectCacheUpdated(1);
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            cache.remove("key" + i);
+        }
+        assertThat(other.get("key1"), equalTo(1));
+
+        cache.compact();
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(other.get("key" + i), equalTo(i % 3 == 0 ? null : i));
+        }
+        other.close();
+    }
+
+    @Test
+    public void generationChangesWhenAnotherCacheUpdatesTheFile() {
+        expectCacheUpdated(1);
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+
+        long generation = cache.getGeneration();
+        assertThat(cache.getGeneration(), equalTo(generation));
+
+        other.put("key_1", 1);
+
+        assertThat(cache.getGeneration(), not(equalTo(generation)));
+        other.close();
+    }
+
+    @Test
+    public void canApplyManyChangesAsASingleUpdate() {
+        expectCacheUpdated(1);
+        cache.put("key_1", 1);
+
+        Map<String, Integer> changes = new LinkedHashMap<String, Integer>();
+        changes.put("key_1", null);
+        changes.put("key_2", 2);
+        changes.put("key_3", 3);
+        cache.update(changes);
+
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.get("key_3"), equalTo(3));
+    }
+
+    @Test
+    public void canUseSerializableKeys() {
+        expectCacheUpdated(1);
+        BTreePersistentIndexedCache<Object, Integer> cache = new BTreePersistentIndexedCache<Object, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+
+        cache.put(Arrays.asList("a", "b"), 1);
+        cache.put(Arrays.asList("a", "c"), 2);
+
+        assertThat(cache.get(Arrays.asList("a", "b")), equalTo(1));
+        assertThat(cache.get(Arrays.asList("a", "c")), equalTo(2));
+        assertThat(cache.get(Arrays.asList("a")), nullValue());
+    }
+
+    @Test
+    public void cannotUseKeysWhichAreNotSerializable() {
+        BTreePersistentIndexedCache<Object, Integer> cache = new BTreePersistentIndexedCache<Object, Integer>(
+                backingCache, new DefaultSerializer<Integer>());
+
+        try {
+            cache.get(new Object());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), startsWith("Cannot use key"));
+        }
+    }
+
+    @Test
+    public void keepsEntriesWhoseKeysHaveTheSameHash() {
+        expectCacheUpdated(1);
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>()) {
+            @Override
+            long hash(byte[] key) {
+                return 1;
+            }
+        };
+
+        cache.put("key_1", 1);
+        cache.put("key_2", 2);
+        cache.put("key_1", 3);
+
+        assertThat(cache.get("key_1"), equalTo(3));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.get("key_3"), nullValue());
+
+        cache.remove("key_1");
+
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_2"), equalTo(2));
+    }
+
+    @Test
+    public void discardsContentWhenUpdateFailsPartWay() {
+        expectCacheUpdated(1);
+        final RuntimeException failure = new RuntimeException("broken");
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, new DefaultSerializer<Integer>()) {
+            @Override
+            long hash(byte[] key) {
+                if (new String(key).equals("string:broken")) {
+                    throw failure;
+                }
+                return super.hash(key);
+            }
+        };
+        cache.put("key_1", 1);
+
+        Map<String, Integer> changes = new LinkedHashMap<String, Integer>();
+        changes.put("key_2", 2);
+        changes.put("broken", 3);
+        try {
+            cache.update(changes);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(failure));
+        }
+
+        assertThat(cache.get("key_1"), nullValue());
+        assertThat(cache.get("key_2"), nullValue());
+    }
+
+    private File cacheFile() {
+        return new File(tmpDir.getDir(), BTreePersistentIndexedCache.FILE_NAME);
+    }
+
+    private void expectCacheUpdated(final int times) {
+        context.checking(new Expectations() {{
+            exactly(times).of(backingCache).update();
+        }});
+    }
+}
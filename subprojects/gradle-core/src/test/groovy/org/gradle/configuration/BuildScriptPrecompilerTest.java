@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.configuration;
+
+import org.gradle.CacheUsage;
+import org.gradle.StartParameter;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.SettingsInternal;
+import org.gradle.api.internal.project.IProjectRegistry;
+import org.gradle.api.internal.project.ImportsReader;
+import org.gradle.api.internal.project.ProjectFactory;
+import org.gradle.api.internal.project.ProjectScript;
+import org.gradle.groovy.scripts.ScriptCompiler;
+import org.gradle.groovy.scripts.ScriptCompilerFactory;
+import org.gradle.groovy.scripts.ScriptSource;
+import org.gradle.groovy.scripts.Transformer;
+import org.gradle.initialization.DefaultProjectDescriptor;
+import static org.gradle.util.WrapUtil.*;
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JMock.class)
+public class BuildScriptPrecompilerTest {
+    private final JUnit4Mockery context = new JUnit4Mockery() {{
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    private final GradleInternal gradle = context.mock(GradleInternal.class);
+    private final ProjectFactory projectFactory = context.mock(ProjectFactory.class);
+    private final ScriptCompilerFactory scriptCompilerFactory = context.mock(ScriptCompilerFactory.class);
+    private final ImportsReader importsReader = context.mock(ImportsReader.class);
+    private final SettingsInternal settings = context.mock(SettingsInternal.class);
+    private final IProjectRegistry<DefaultProjectDescriptor> projectRegistry = context.mock(IProjectRegistry.class);
+    private final DefaultProjectDescriptor rootProject = context.mock(DefaultProjectDescriptor.class, "root");
+    private final DefaultProjectDescriptor childProject = context.mock(DefaultProjectDescriptor.class, "child");
+    private final ClassLoader classLoader = new ClassLoader() {
+    };
+    private final StartParameter startParameter = new StartParameter();
+    private final BuildScriptPrecompiler precompiler = new BuildScriptPrecompiler(gradle, projectFactory,
+            scriptCompilerFactory, importsReader) {
+        @Override
+        ExecutorService createExecutor() {
+            return new SameThreadExecutor();
+        }
+    };
+
+    @Before
+    public void setUp() {
+        context.checking(new Expectations() {{
+            allowing(gradle).getStartParameter();
+            will(returnValue(startParameter));
+            allowing(gradle).getBuildScriptClassLoader();
+            will(returnValue(classLoader));
+            allowing(settings).getProjectRegistry();
+            will(returnValue(projectRegistry));
+            allowing(projectRegistry).getAllProjects();
+            will(returnValue(toSet(childProject, rootProject)));
+            allowing(settings).getRootProject();
+            will(returnValue(rootProject));
+            allowing(rootProject).getProjectDir();
+            will(returnValue(new File("root")));
+            allowing(rootProject).getParent();
+            will(returnValue(null));
+            allowing(rootProject).getPath();
+            will(returnValue(":"));
+            allowing(childProject).getParent();
+            will(returnValue(rootProject));
+            allowing(childProject).getPath();
+            will(returnValue(":child"));
+        }});
+    }
+
+    @Test
+    public void precompilesTheBuildScriptOfEachProject() {
+        expectBuildScript(rootProject, "root", "task a");
+        expectBuildScript(childProject, "child", "task b");
+        expectPrecompiled("root");
+        expectPrecompiled("child");
+
+        precompiler.settingsEvaluated(settings);
+        precompiler.projectsEvaluated(gradle);
+    }
+
+    @Test
+    public void doesNotPrecompileTheBuildScriptOfAProjectWhichDeclaresAClasspath() {
+        expectBuildScript(rootProject, "root", "task a");
+        expectBuildScript(childProject, "child", "buildscript { dependencies { classpath 'a:b:1.0' } }");
+        expectPrecompiled("root");
+
+        precompiler.settingsEvaluated(settings);
+        precompiler.projectsEvaluated(gradle);
+    }
+
+    @Test
+    public void doesNotPrecompileTheBuildScriptOfAProjectWhoseParentDeclaresAClasspath() {
+        expectBuildScript(rootProject, "root", "buildscript { dependencies { classpath 'a:b:1.0' } }");
+        expectBuildScript(childProject, "child", "task b");
+
+        precompiler.settingsEvaluated(settings);
+        precompiler.projectsEvaluated(gradle);
+    }
+
+    @Test
+    public void continuesWithTheNextScriptWhenAScriptFailsToCompile() {
+        expectBuildScript(rootProject, "root", "task a");
+        expectBuildScript(childProject, "child", "task b");
+        final ScriptCompiler failingCompiler = context.mock(ScriptCompiler.class, "rootCompiler");
+        context.checking(new Expectations() {{
+            one(scriptCompilerFactory).createCompiler(with(sourceFor("root")));
+            will(returnValue(failingCompiler));
+            allowing(failingCompiler).setClassloader(classLoader);
+            allowing(failingCompiler).setTransformer(with(any(Transformer.class)));
+            one(failingCompiler).precompile(ProjectScript.class);
+            will(throwException(new RuntimeException("broken")));
+        }});
+        expectPrecompiled("child");
+
+        precompiler.settingsEvaluated(settings);
+        precompiler.projectsEvaluated(gradle);
+    }
+
+    @Test
+    public void doesNothingWhenTheCacheIsOff() {
+        startParameter.setCacheUsage(CacheUsage.OFF);
+
+        precompiler.settingsEvaluated(settings);
+        precompiler.projectsEvaluated(gradle);
+    }
+
+    private void expectBuildScript(final DefaultProjectDescriptor project, final String name, final String text) {
+        final ScriptSource buildScript = context.mock(ScriptSource.class, name + "Script");
+        context.checking(new Expectations() {{
+            allowing(projectFactory).createBuildScriptSource(project);
+            will(returnValue(buildScript));
+            allowing(buildScript).getText();
+            will(returnValue(text));
+            allowing(buildScript).getDisplayName();
+            will(returnValue(name));
+        }});
+    }
+
+    private void expectPrecompiled(final String name) {
+        final ScriptCompiler compiler = context.mock(ScriptCompiler.class, name + "Compiler");
+        context.checking(new Expectations() {{
+            one(scriptCompilerFactory).createCompiler(with(sourceFor(name)));
+            will(returnValue(compiler));
+            one(compiler).setClassloader(classLoader);
+            exactly(2).of(compiler).setTransformer(with(any(Transformer.class)));
+            exactly(2).of(compiler).precompile(ProjectScript.class);
+        }});
+    }
+
+    private Matcher<ScriptSource> sourceFor(final String name) {
+        return new BaseMatcher<ScriptSource>() {
+            public boolean matches(Object item) {
+                return item instanceof ScriptSource && name.equals(((ScriptSource) item).getDisplayName());
+            }
+
+            public void describeTo(Description description) {
+                description.appendText("build script of ").appendValue(name);
+            }
+        };
+    }
+
+    private static class SameThreadExecutor extends AbstractExecutorService {
+        private boolean shutdown;
+
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return toList();
+        }
+
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.daemon;
+
+import org.gradle.util.GradleVersion;
+import org.gradle.util.TemporaryFolder;
+import static org.hamcrest.Matchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+public class DaemonClientTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private Thread daemonThread;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (daemonThread != null) {
+            new DaemonClient(tmpDir.getDir(), "key").stop();
+            daemonThread.join(10000);
+        }
+    }
+
+    @Test
+    public void stopReturnsFalseWhenDaemonIsNotRunning() {
+        assertFalse(new DaemonClient(tmpDir.getDir(), "key").stop());
+    }
+
+    @Test
+    public void runsCommandInCompatibleDaemon() {
+        startDaemon("key");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        int exitCode = new DaemonClient(tmpDir.getDir(), "key").execute(new String[]{"--version"}, tmpDir.getDir(),
+                stdout, stderr);
+
+        assertThat(exitCode, equalTo(0));
+        assertThat(stdout.toString(), containsString(new GradleVersion().getVersion()));
+        assertThat(stderr.toString(), equalTo(""));
+    }
+
+    @Test
+    public void canStopDaemon() throws InterruptedException {
+        startDaemon("key");
+
+        assertTrue(new DaemonClient(tmpDir.getDir(), "key").stop());
+        daemonThread.join(10000);
+
+        assertFalse(daemonThread.isAlive());
+        assertFalse(DaemonProtocol.getRegistryFile(tmpDir.getDir()).exists());
+        daemonThread = null;
+    }
+
+    @Test
+    public void canStopIncompatibleDaemon() throws InterruptedException {
+        startDaemon("other");
+
+        assertTrue(new DaemonClient(tmpDir.getDir(), "key").stop());
+        daemonThread.join(10000);
+
+        assertFalse(daemonThread.isAlive());
+        daemonThread = null;
+    }
+
+    private void startDaemon(String compatibilityKey) {
+        final DaemonServer server = new DaemonServer(tmpDir.getDir(), 60000, compatibilityKey);
+        daemonThread = new Thread() {
+            @Override
+            public void run() {
+                server.run();
+            }
+        };
+        daemonThread.start();
+        File registryFile = DaemonProtocol.getRegistryFile(tmpDir.getDir());
+        long expiry = System.currentTimeMillis() + 10000;
+        while (!registryFile.isFile() && System.currentTimeMillis() < expiry) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        assertTrue(registryFile.isFile());
+    }
+}
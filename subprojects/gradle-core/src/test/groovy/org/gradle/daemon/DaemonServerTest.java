@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.daemon;
+
+import org.gradle.util.GUtil;
+import org.gradle.util.TemporaryFolder;
+import static org.hamcrest.Matchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class DaemonServerTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private File registryFile;
+    private Thread daemonThread;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        registryFile = DaemonProtocol.getRegistryFile(tmpDir.getDir());
+        final DaemonServer server = new DaemonServer(tmpDir.getDir(), 60000, "key");
+        daemonThread = new Thread() {
+            @Override
+            public void run() {
+                server.run();
+            }
+        };
+        daemonThread.start();
+        long expiry = System.currentTimeMillis() + 10000;
+        while (!registryFile.isFile() && System.currentTimeMillis() < expiry) {
+            Thread.sleep(50);
+        }
+        assertTrue(registryFile.isFile());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (daemonThread.isAlive()) {
+            DataInputStream input = connect(DaemonProtocol.VERSION, token(), "key", DaemonProtocol.STOP);
+            input.close();
+            daemonThread.join(10000);
+        }
+    }
+
+    @Test
+    public void acceptsRequestFromCompatibleClient() throws IOException {
+        DataInputStream input = connect(DaemonProtocol.VERSION, token(), "key", DaemonProtocol.BUILD);
+        try {
+            assertThat(input.readByte(), equalTo(DaemonProtocol.COMPATIBLE));
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void refusesToRunBuildForIncompatibleClient() throws IOException {
+        DataInputStream input = connect(DaemonProtocol.VERSION, token(), "other", DaemonProtocol.BUILD);
+        try {
+            assertThat(input.readByte(), equalTo(DaemonProtocol.INCOMPATIBLE));
+            assertThat(input.readByte(), equalTo(DaemonProtocol.ERROR));
+            assertThat(DaemonProtocol.readString(input), containsString("not compatible"));
+            assertThat(input.readByte(), equalTo(DaemonProtocol.RESULT));
+            assertThat(input.readInt(), equalTo(1));
+        } finally {
+            input.close();
+        }
+        assertTrue(daemonThread.isAlive());
+    }
+
+    @Test
+    public void refusesToRunBuildForClientWithDifferentEnvironment() throws IOException {
+        Map<String, String> environment = new HashMap<String, String>(DaemonProtocol.getEnvironment());
+        environment.put("DAEMON_SERVER_TEST", "value");
+        DataInputStream input = connect(DaemonProtocol.VERSION, token(), "key", environment, DaemonProtocol.BUILD);
+        try {
+            assertThat(input.readByte(), equalTo(DaemonProtocol.INCOMPATIBLE));
+            assertThat(input.readByte(), equalTo(DaemonProtocol.ERROR));
+            assertThat(DaemonProtocol.readString(input), containsString("not compatible"));
+            assertThat(input.readByte(), equalTo(DaemonProtocol.RESULT));
+            assertThat(input.readInt(), equalTo(1));
+        } finally {
+            input.close();
+        }
+        assertTrue(daemonThread.isAlive());
+    }
+
+    @Test
+    public void ignoresEnvironmentVariablesMaintainedByTheShell() throws IOException {
+        Map<String, String> environment = new HashMap<String, String>(DaemonProtocol.getEnvironment());
+        environment.put("PWD", "some-dir");
+        environment.put("SHLVL", "12");
+        DataInputStream input = connect(DaemonProtocol.VERSION, token(), "key", environment, DaemonProtocol.BUILD);
+        try {
+            assertThat(input.readByte(), equalTo(DaemonProtocol.COMPATIBLE));
+        } finally {
+            input.close();
+        }
+    }
+
+    @Test
+    public void incompatibleClientCanStopDaemon() throws Exception {
+        DataInputStream input = connect(DaemonProtocol.VERSION, token(), "other", DaemonProtocol.STOP);
+        try {
+            assertThat(input.readByte(), equalTo(DaemonProtocol.INCOMPATIBLE));
+            assertThat(input.readByte(), equalTo(DaemonProtocol.RESULT));
+            assertThat(input.readInt(), equalTo(0));
+        } finally {
+            input.close();
+        }
+        daemonThread.join(10000);
+        assertFalse(daemonThread.isAlive());
+        assertFalse(registryFile.exists());
+    }
+
+    @Test
+    public void closesConnectionFromClientWithDifferentProtocolVersion() throws IOException {
+        DataInputStream input = connect(DaemonProtocol.VERSION - 1, token(), "key", DaemonProtocol.STOP);
+        try {
+            input.readByte();
+            fail();
+        } catch (IOException e) {
+            // Expected - connection closed
+        } finally {
+            input.close();
+        }
+        assertTrue(daemonThread.isAlive());
+    }
+
+    @Test
+    public void closesConnectionFromClientWithUnknownToken() throws IOException {
+        DataInputStream input = connect(DaemonProtocol.VERSION, "unknown", "key", DaemonProtocol.STOP);
+        try {
+            input.readByte();
+            fail();
+        } catch (IOException e) {
+            // Expected - connection closed
+        } finally {
+            input.close();
+        }
+        assertTrue(daemonThread.isAlive());
+    }
+
+    private String token() {
+        return GUtil.loadProperties(registryFile).getProperty(DaemonProtocol.TOKEN_PROPERTY);
+    }
+
+    private DataInputStream connect(int version, String token, String compatibilityKey, byte command)
+            throws IOException {
+        return connect(version, token, compatibilityKey, DaemonProtocol.getEnvironment(), command);
+    }
+
+    private DataInputStream connect(int version, String token, String compatibilityKey,
+                                    Map<String, String> environment, byte command) throws IOException {
+        Properties properties = GUtil.loadProperties(registryFile);
+        Socket socket = new Socket(InetAddress.getByName(null), Integer.parseInt(properties.getProperty(
+                DaemonProtocol.PORT_PROPERTY)));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeInt(version);
+        DaemonProtocol.writeString(output, token);
+        DaemonProtocol.writeString(output, compatibilityKey);
+        DaemonProtocol.writeEnvironment(output, environment);
+        output.writeByte(command);
+        output.flush();
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+}
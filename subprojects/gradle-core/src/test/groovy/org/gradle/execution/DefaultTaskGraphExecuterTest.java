@@ -22,7 +22,10 @@ import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.execution.TaskExecutionResult;
 import org.gradle.api.internal.AbstractTask;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.project.DefaultProject;
 import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.api.logging.StandardOutputLogging;
+import org.gradle.api.logging.StandardOutputState;
 import org.gradle.api.specs.Spec;
 import org.gradle.listener.ListenerManager;
 import org.gradle.listener.ListenerBroadcast;
@@ -38,10 +41,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PrintStream;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Hans Dockter
@@ -55,7 +61,7 @@ public class DefaultTaskGraphExecuterTest {
     private final ListenerManager listenerManager = context.mock(ListenerManager.class);
     TaskGraphExecuter taskExecuter;
     ProjectInternal root;
-    List<Task> executedTasks = new ArrayList<Task>();
+    List<Task> executedTasks = Collections.synchronizedList(new ArrayList<Task>());
 
     @Before
     public void setUp() {
@@ -383,8 +389,159 @@ public class DefaultTaskGraphExecuterTest {
         assertThat(taskExecuter.getAllTasks(), equalTo(toList(b, c)));
     }
 
+    @Test
+    public void executesTaskAfterTheDependenciesOfAFilteredDependency() {
+        Task c = createTask("c");
+        final Task b = createTask("b", c);
+        Task a = createTask("a", b);
+        Spec<Task> spec = new Spec<Task>() {
+            public boolean isSatisfiedBy(Task element) {
+                return element != b;
+            }
+        };
+
+        taskExecuter.useFilter(spec);
+        taskExecuter.execute(toList(a, c));
+
+        assertThat(executedTasks, equalTo(toList(c, a)));
+    }
+
+    @Test
+    public void testParallelExecutionExecutesTaskAfterTheDependenciesOfAFilteredDependency() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter();
+        ProjectInternal child = createChildProject((DefaultProject) root, "child");
+        final List<Task> completedTasks = Collections.synchronizedList(new ArrayList<Task>());
+        Task c = createTask(child, "c");
+        c.doLast(new TaskAction() {
+            public void execute(Task task) {
+                // Gives a task which does not wait for this one time to start
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                completedTasks.add(task);
+            }
+        });
+        final Task b = createTask("b", c);
+        Task a = createTask("a", b);
+        a.doLast(new TaskAction() {
+            public void execute(Task task) {
+                completedTasks.add(task);
+            }
+        });
+        Spec<Task> spec = new Spec<Task>() {
+            public boolean isSatisfiedBy(Task element) {
+                return element != b;
+            }
+        };
+
+        parallelExecuter.useFilter(spec);
+        parallelExecuter.execute(toList(a, c));
+
+        assertThat(completedTasks, equalTo(toList(c, a)));
+    }
+
+    @Test
+    public void testParallelExecutionExecutesTasksInDependencyOrder() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter();
+        ProjectInternal child = createChildProject((DefaultProject) root, "child");
+        Task a = createTask("a");
+        Task b = createTask(child, "b", a);
+        Task c = createTask(child, "c");
+        Task d = createTask("d", b, c);
+
+        parallelExecuter.execute(toList(d));
+
+        assertThat(executedTasks.size(), equalTo(4));
+        assertThat(executedTasks.indexOf(a), lessThan(executedTasks.indexOf(b)));
+        assertThat(executedTasks.indexOf(b), lessThan(executedTasks.indexOf(d)));
+        assertThat(executedTasks.indexOf(c), lessThan(executedTasks.indexOf(d)));
+    }
+
+    @Test
+    public void testParallelExecutionStopsOnFirstFailure() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter();
+        final RuntimeException failure = new RuntimeException();
+        Task a = createTask("a");
+        a.doLast(new TaskAction() {
+            public void execute(Task task) {
+                throw failure;
+            }
+        });
+        Task b = createTask("b", a);
+
+        try {
+            parallelExecuter.execute(toList(b));
+            fail();
+        } catch (GradleScriptException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) failure));
+        }
+        assertThat(executedTasks, equalTo(toList(a)));
+    }
+
+    @Test
+    public void testParallelExecutionCapturesTheOutputOfEachTaskSeparately() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter();
+        ProjectInternal child = createChildProject((DefaultProject) root, "child");
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final Map<String, String> output = Collections.synchronizedMap(new HashMap<String, String>());
+        TaskAction captureOutput = new TaskAction() {
+            public void execute(Task task) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                StandardOutputState original = StandardOutputLogging.getStateSnapshot();
+                StandardOutputLogging.restoreState(new StandardOutputState(new PrintStream(buffer, true),
+                        original.getErrStream()));
+                try {
+                    // Both tasks have redirected their output before either writes to it
+                    await(barrier);
+                    System.out.print(task.getName());
+                    await(barrier);
+                } finally {
+                    StandardOutputLogging.restoreState(original);
+                }
+                output.put(task.getName(), buffer.toString());
+            }
+        };
+        Task a = createTask("a");
+        a.doLast(captureOutput);
+        Task b = createTask(child, "b");
+        b.doLast(captureOutput);
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+
+        parallelExecuter.execute(toList(a, b));
+
+        assertThat(output.get("a"), equalTo("a"));
+        assertThat(output.get("b"), equalTo("b"));
+        assertThat(System.out, sameInstance(originalOut));
+        assertThat(System.err, sameInstance(originalErr));
+    }
+
+    private void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private TaskGraphExecuter createParallelExecuter() {
+        context.checking(new Expectations(){{
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionGraphListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionGraphListener>(TaskExecutionGraphListener.class)));
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionListener>(TaskExecutionListener.class)));
+        }});
+        return new DefaultTaskGraphExecuter(listenerManager, 4);
+    }
+
     private Task createTask(String name, final Task... dependsOn) {
-        final TaskInternal task = AbstractTask.injectIntoNewInstance(root, name, new Callable<TaskInternal>() {
+        return createTask(root, name, dependsOn);
+    }
+
+    private Task createTask(ProjectInternal project, String name, final Task... dependsOn) {
+        final TaskInternal task = AbstractTask.injectIntoNewInstance(project, name, new Callable<TaskInternal>() {
             public TaskInternal call() throws Exception {
                 return new DefaultTask();
             }
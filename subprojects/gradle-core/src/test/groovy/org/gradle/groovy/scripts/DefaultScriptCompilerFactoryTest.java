@@ -17,10 +17,12 @@
 package org.gradle.groovy.scripts;
 
 import org.gradle.CacheUsage;
+import org.gradle.api.internal.initialization.ScriptClassLoader;
+import org.gradle.api.internal.project.StandardOutputRedirector;
 import org.gradle.integtests.TestFile;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
-import org.gradle.util.GUtil;
+import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.util.HashUtil;
 import org.gradle.util.TemporaryFolder;
 import org.jmock.Expectations;
@@ -38,7 +40,7 @@ import org.junit.runner.RunWith;
 import java.io.File;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Map;
+import java.util.Collections;
 
 /**
  * @author Hans Dockter
@@ -60,13 +62,14 @@ public class DefaultScriptCompilerFactoryTest {
     ScriptRunnerFactory scriptRunnerFactoryMock;
     CacheRepository cacheRepositoryMock;
     PersistentCache cacheMock;
+    PersistentIndexedCache<String, DefaultScriptCompilerFactory.CachedScript> scriptIndexMock;
 
     Script expectedScript;
 
     Mockery context = new JUnit4Mockery();
 
     Class expectedScriptBaseClass = groovy.lang.Script.class;
-    Map<String, Object> expectedCacheProperties;
+    String expectedCacheKey;
 
     ScriptSource source;
     private ScriptRunner expectedScriptRunner;
@@ -80,16 +83,17 @@ public class DefaultScriptCompilerFactoryTest {
         scriptRunnerFactoryMock = context.mock(ScriptRunnerFactory.class);
         cacheRepositoryMock = context.mock(CacheRepository.class);
         cacheMock = context.mock(PersistentCache.class);
+        scriptIndexMock = context.mock(PersistentIndexedCache.class);
         testClassLoader = new URLClassLoader(new URL[0]);
         testScriptFile = new File(tmpDir.getDir(), "script/mybuild.craidle");
         cacheDir = new File(tmpDir.getDir(), "cache");
-        expectedScriptCacheDir = new TestFile(cacheDir, "NoTransformer").createDir();
+        expectedCacheKey = String.format("%s/%s/NoTransformer/%s", HashUtil.createHash(TEST_SCRIPT_TEXT),
+                expectedScriptBaseClass.getName(), DefaultScriptCompilerFactory.getClasspathHash(testClassLoader));
+        expectedScriptCacheDir = new TestFile(cacheDir, expectedCacheKey).createDir();
         expectedScript = context.mock(Script.class);
         expectedScriptRunner = context.mock(ScriptRunner.class);
         scriptProcessor = new DefaultScriptCompilerFactory(scriptCompilationHandlerMock, CacheUsage.ON, scriptRunnerFactoryMock, cacheRepositoryMock);
         source = context.mock(ScriptSource.class);
-        String expectedHash = HashUtil.createHash(TEST_SCRIPT_TEXT);
-        expectedCacheProperties = GUtil.map("source.filename", "file-name", "source.hash", expectedHash);
 
         context.checking(new Expectations() {{
             allowing(source).getDisplayName();
@@ -101,6 +105,11 @@ public class DefaultScriptCompilerFactoryTest {
             allowing(source).getText();
             will(returnValue(TEST_SCRIPT_TEXT));
 
+            allowing(cacheRepositoryMock).getGlobalCache("scripts", Collections.EMPTY_MAP);
+            will(returnValue(cacheMock));
+            allowing(cacheRepositoryMock).getIndexedGlobalCache("scripts", Collections.EMPTY_MAP);
+            will(returnValue(scriptIndexMock));
+
             allowing(cacheMock).getBaseDir();
             will(returnValue(cacheDir));
         }});
@@ -117,16 +126,13 @@ public class DefaultScriptCompilerFactoryTest {
     @Test
     public void testWithSourceFileNotCached() {
         context.checking(new Expectations() {{
-            one(cacheRepositoryMock).getGlobalCache("scripts/class-name", expectedCacheProperties);
-            will(returnValue(cacheMock));
-
-            allowing(cacheMock).isValid();
-            will(returnValue(false));
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(null));
 
             one(scriptCompilationHandlerMock).compileScriptToDir(source, testClassLoader, expectedScriptCacheDir, null,
                     expectedScriptBaseClass);
 
-            one(cacheMock).update();
+            one(scriptIndexMock).put(with(equal(expectedCacheKey)), with(any(DefaultScriptCompilerFactory.CachedScript.class)));
 
             one(scriptCompilationHandlerMock).loadScriptFromDir(source, testClassLoader, expectedScriptCacheDir,
                     expectedScriptBaseClass);
@@ -144,11 +150,8 @@ public class DefaultScriptCompilerFactoryTest {
     @Test
     public void testWithCachedSourceFile() {
         context.checking(new Expectations() {{
-            one(cacheRepositoryMock).getGlobalCache("scripts/class-name", expectedCacheProperties);
-            will(returnValue(cacheMock));
-
-            allowing(cacheMock).isValid();
-            will(returnValue(true));
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
 
             one(scriptCompilationHandlerMock).loadScriptFromDir(source, testClassLoader, expectedScriptCacheDir, expectedScriptBaseClass);
             will(returnValue(expectedScript));
@@ -162,6 +165,168 @@ public class DefaultScriptCompilerFactoryTest {
         assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).compile(expectedScriptBaseClass));
     }
 
+    @Test
+    public void testRecompilesWhenCachedClassesAreMissing() {
+        expectedScriptCacheDir.delete();
+
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
+
+            one(scriptCompilationHandlerMock).compileScriptToDir(source, testClassLoader, expectedScriptCacheDir, null,
+                    expectedScriptBaseClass);
+
+            one(scriptIndexMock).put(with(equal(expectedCacheKey)), with(any(DefaultScriptCompilerFactory.CachedScript.class)));
+
+            one(scriptCompilationHandlerMock).loadScriptFromDir(source, testClassLoader, expectedScriptCacheDir,
+                    expectedScriptBaseClass);
+            will(returnValue(expectedScript));
+
+            one(expectedScript).setScriptSource(source);
+
+            one(scriptRunnerFactoryMock).create(expectedScript);
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).compile(expectedScriptBaseClass));
+    }
+
+    @Test
+    public void testUsesCachedScriptNamesForScriptCompiledFromIdenticalSource() {
+        final TestScript script = new TestScript();
+
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("other-class-name", "other-file-name")));
+
+            one(scriptCompilationHandlerMock).loadScriptFromDir(with(any(ScriptSource.class)), with(same(testClassLoader)),
+                    with(equal(expectedScriptCacheDir)), with(same(expectedScriptBaseClass)));
+            will(returnValue(script));
+
+            one(scriptRunnerFactoryMock).create(script);
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).compile(expectedScriptBaseClass));
+        assertEquals("other-class-name", script.getScriptSource().getClassName());
+        assertEquals("other-file-name", script.getScriptSource().getFileName());
+        assertEquals("[script source]", script.getScriptSource().getDisplayName());
+    }
+
+    @Test
+    public void testReusesLoadedScriptClassForIdenticalSource() {
+        final ScriptSource otherSource = context.mock(ScriptSource.class, "otherSource");
+
+        context.checking(new Expectations() {{
+            allowing(otherSource).getClassName();
+            will(returnValue("other-class-name"));
+            allowing(otherSource).getFileName();
+            will(returnValue("other-file-name"));
+            allowing(otherSource).getText();
+            will(returnValue(TEST_SCRIPT_TEXT));
+
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
+
+            one(scriptCompilationHandlerMock).loadScriptFromDir(source, testClassLoader, expectedScriptCacheDir,
+                    expectedScriptBaseClass);
+            will(returnValue(new TestScript()));
+
+            exactly(2).of(scriptRunnerFactoryMock).create(with(any(Script.class)));
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        scriptProcessor.createCompiler(source).compile(expectedScriptBaseClass);
+        scriptProcessor.createCompiler(otherSource).compile(expectedScriptBaseClass);
+    }
+
+    @Test
+    public void testSharesScriptClassBetweenScriptClassLoadersWithNoClasspath() {
+        final ScriptClassLoader scriptClassLoader = new ScriptClassLoader(testClassLoader);
+
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
+
+            one(scriptCompilationHandlerMock).loadScriptFromDir(source, testClassLoader, expectedScriptCacheDir,
+                    expectedScriptBaseClass);
+            will(returnValue(expectedScript));
+
+            one(expectedScript).setScriptSource(source);
+
+            one(scriptRunnerFactoryMock).create(expectedScript);
+            will(returnValue(expectedScriptRunner));
+        }});
+
+        assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).setClassloader(scriptClassLoader).compile(expectedScriptBaseClass));
+    }
+
+    @Test
+    public void testPrecompileCompilesScriptWhenNotCached() {
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(null));
+
+            one(scriptCompilationHandlerMock).compileScriptToDir(source, testClassLoader, expectedScriptCacheDir, null,
+                    expectedScriptBaseClass);
+
+            one(scriptIndexMock).put(with(equal(expectedCacheKey)), with(any(DefaultScriptCompilerFactory.CachedScript.class)));
+        }});
+
+        scriptProcessor.createCompiler(source).precompile(expectedScriptBaseClass);
+    }
+
+    @Test
+    public void testPrecompileDoesNothingWhenScriptIsCached() {
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
+        }});
+
+        scriptProcessor.createCompiler(source).precompile(expectedScriptBaseClass);
+    }
+
+    @Test
+    public void testCachesScriptCompiledAgainstAnotherClasspathSeparately() throws Exception {
+        final ScriptClassLoader scriptClassLoader = new ScriptClassLoader(testClassLoader);
+        scriptClassLoader.addURL(tmpDir.getDir().file("lib.jar").write("jar").toURI().toURL());
+        final String otherCacheKey = String.format("%s/%s/NoTransformer/%s", HashUtil.createHash(TEST_SCRIPT_TEXT),
+                expectedScriptBaseClass.getName(), DefaultScriptCompilerFactory.getClasspathHash(scriptClassLoader));
+        final File otherCacheDir = new File(cacheDir, otherCacheKey);
+        assertFalse(otherCacheKey.equals(expectedCacheKey));
+
+        context.checking(new Expectations() {{
+            one(scriptIndexMock).get(otherCacheKey);
+            will(returnValue(null));
+
+            one(scriptCompilationHandlerMock).compileScriptToDir(source, scriptClassLoader, otherCacheDir, null,
+                    expectedScriptBaseClass);
+
+            one(scriptIndexMock).put(with(equal(otherCacheKey)), with(any(DefaultScriptCompilerFactory.CachedScript.class)));
+        }});
+
+        scriptProcessor.createCompiler(source).setClassloader(scriptClassLoader).precompile(expectedScriptBaseClass);
+    }
+
+    @Test
+    public void testClasspathHashChangesWhenAJarOnTheClasspathChanges() throws Exception {
+        TestFile jar = tmpDir.getDir().file("lib.jar").write("jar");
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, null);
+        String hash = DefaultScriptCompilerFactory.getClasspathHash(classLoader);
+
+        assertEquals(hash, DefaultScriptCompilerFactory.getClasspathHash(classLoader));
+
+        jar.write("changed jar");
+
+        assertFalse(hash.equals(DefaultScriptCompilerFactory.getClasspathHash(classLoader)));
+    }
+
+    @Test
+    public void testPrecompileDoesNothingWhenCacheIsOff() {
+        scriptProcessor = new DefaultScriptCompilerFactory(scriptCompilationHandlerMock, CacheUsage.OFF, scriptRunnerFactoryMock, cacheRepositoryMock);
+        scriptProcessor.createCompiler(source).precompile(expectedScriptBaseClass);
+    }
+
     @Test
     public void testWithCacheOff() {
         context.checking(new Expectations() {
@@ -193,11 +358,8 @@ public class DefaultScriptCompilerFactoryTest {
         };
 
         context.checking(new Expectations(){{
-            one(cacheRepositoryMock).getGlobalCache("scripts/class-name", expectedCacheProperties);
-            will(returnValue(cacheMock));
-
-            allowing(cacheMock).isValid();
-            will(returnValue(true));
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
 
             one(scriptCompilationHandlerMock).loadScriptFromDir(
                     source,
@@ -218,14 +380,14 @@ public class DefaultScriptCompilerFactoryTest {
     @Test
     public void testUsesSuppliedTransformerToGenerateCacheDir() {
         final Transformer transformer = context.mock(Transformer.class);
-        final File expectedCacheDir = new TestFile(expectedScriptCacheDir.getParentFile(), transformer.getClass().getSimpleName()).createDir();
+        final String expectedCacheKey = String.format("%s/%s/%s/%s", HashUtil.createHash(TEST_SCRIPT_TEXT),
+                expectedScriptBaseClass.getName(), transformer.getClass().getSimpleName(),
+                DefaultScriptCompilerFactory.getClasspathHash(testClassLoader));
+        final File expectedCacheDir = new TestFile(cacheDir, expectedCacheKey).createDir();
 
         context.checking(new Expectations(){{
-            one(cacheRepositoryMock).getGlobalCache("scripts/class-name", expectedCacheProperties);
-            will(returnValue(cacheMock));
-
-            allowing(cacheMock).isValid();
-            will(returnValue(true));
+            one(scriptIndexMock).get(expectedCacheKey);
+            will(returnValue(new DefaultScriptCompilerFactory.CachedScript("class-name", "file-name")));
 
             one(scriptCompilationHandlerMock).loadScriptFromDir(
                     source,
@@ -242,4 +404,18 @@ public class DefaultScriptCompilerFactoryTest {
 
         assertSame(expectedScriptRunner, scriptProcessor.createCompiler(source).setTransformer(transformer).compile(expectedScriptBaseClass));
     }
-}
\ No newline at end of file
+
+    public static class TestScript extends Script {
+        public StandardOutputRedirector getStandardOutputRedirector() {
+            return null;
+        }
+
+        public ClassLoader getContextClassloader() {
+            return null;
+        }
+
+        public Object run() {
+            return null;
+        }
+    }
+}
@@ -51,6 +51,7 @@ public class RemoteListenerIntegrationTest {
         RemoteReceiver receiver = new RemoteReceiver(broadcast, exceptionListener);
 
         executeJava(RemoteProcess.class.getName(), receiver.getBoundPort());
+        receiver.close();
         if (exceptionListener.ex != null)
             throw exceptionListener.ex;
         context.assertIsSatisfied();
@@ -68,9 +69,11 @@ public class RemoteListenerIntegrationTest {
 
         public static void main(String[] args) throws IOException {
             int port = Integer.parseInt(args[0]);
-            TestListenerInterface sender = new RemoteSender<TestListenerInterface>(TestListenerInterface.class, port).getSource();
+            RemoteSender<TestListenerInterface> remoteSender = new RemoteSender<TestListenerInterface>(TestListenerInterface.class, port);
+            TestListenerInterface sender = remoteSender.getSource();
             sender.send(FIRST_MESSAGE_TEXT, FIRST_MESSAGE_INT);
             sender.send(SECOND_MESSAGE_TEXT, SECOND_MESSAGE_INT);
+            remoteSender.close();
         }
     }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.listener.remote;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.listener.ListenerBroadcast;
+import org.gradle.util.WrapUtil;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RemoteSenderTest {
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+    private final ListenerBroadcast<TestListener> broadcast = new ListenerBroadcast<TestListener>(TestListener.class);
+    private RemoteReceiver receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        broadcast.add(new TestListener() {
+            public void event(int value) {
+                received.add(value);
+            }
+        });
+        receiver = new RemoteReceiver(broadcast);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        receiver.close();
+    }
+
+    @Test
+    public void deliversMessagesInOrderWhenSenderIsClosed() throws Exception {
+        RemoteSender<TestListener> sender = new RemoteSender<TestListener>(TestListener.class, receiver.getBoundPort());
+        int count = RemoteSender.MAX_BATCH_SIZE * 5 + 3;
+        for (int i = 0; i < count; i++) {
+            sender.getSource().event(i);
+        }
+        sender.close();
+        receiver.close();
+
+        assertThat(received.size(), equalTo(count));
+        for (int i = 0; i < count; i++) {
+            assertThat(received.get(i), equalTo(i));
+        }
+    }
+
+    @Test
+    public void deliversMessagesFromMultipleSenders() throws Exception {
+        RemoteSender<TestListener> sender1 = new RemoteSender<TestListener>(TestListener.class, receiver.getBoundPort());
+        RemoteSender<TestListener> sender2 = new RemoteSender<TestListener>(TestListener.class, receiver.getBoundPort());
+        sender1.getSource().event(1);
+        sender2.getSource().event(2);
+        sender1.close();
+        sender2.close();
+        receiver.close();
+
+        assertThat(received, hasItems(1, 2));
+        assertThat(received.size(), equalTo(2));
+    }
+
+    @Test
+    public void flushWritesQueuedMessages() throws Exception {
+        RemoteSender<TestListener> sender = new RemoteSender<TestListener>(TestListener.class, receiver.getBoundPort());
+        sender.getSource().event(1);
+        sender.flush();
+        sender.getSource().event(2);
+        sender.close();
+        receiver.close();
+
+        assertThat(received, equalTo(WrapUtil.toList(1, 2)));
+    }
+
+    @Test
+    public void cannotSendMessagesAfterSenderIsClosed() throws Exception {
+        RemoteSender<TestListener> sender = new RemoteSender<TestListener>(TestListener.class, receiver.getBoundPort());
+        sender.close();
+
+        try {
+            sender.getSource().event(1);
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Cannot send a message, as this sender has been closed."));
+        }
+    }
+
+    @Test
+    public void reconnectsAndResendsUnacknowledgedFramesWhenConnectionIsLost() throws Exception {
+        ServerSocket proxySocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        try {
+            RemoteSender<TestListener> sender = new RemoteSender<TestListener>(TestListener.class,
+                    proxySocket.getLocalPort());
+
+            // Forward the first connection to the receiver, but drop the acknowledgements
+            Socket senderConnection = proxySocket.accept();
+            Socket receiverConnection = new Socket(InetAddress.getByName(null), receiver.getBoundPort());
+            forward(senderConnection.getInputStream(), receiverConnection.getOutputStream());
+
+            for (int i = 0; i < 10; i++) {
+                sender.getSource().event(i);
+            }
+            sender.flush();
+            waitForReceived(10);
+            senderConnection.close();
+            receiverConnection.close();
+
+            // Forward the next connection in both directions
+            final ServerSocket serverSocket = proxySocket;
+            Thread proxyThread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Socket senderConnection = serverSocket.accept();
+                        Socket receiverConnection = new Socket(InetAddress.getByName(null), receiver.getBoundPort());
+                        forward(senderConnection.getInputStream(), receiverConnection.getOutputStream());
+                        forward(receiverConnection.getInputStream(), senderConnection.getOutputStream());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            proxyThread.start();
+
+            for (int i = 10; i < 20; i++) {
+                sender.getSource().event(i);
+            }
+            sender.close();
+            receiver.close();
+            proxyThread.join();
+        } finally {
+            proxySocket.close();
+        }
+
+        assertThat(received.size(), equalTo(20));
+        for (int i = 0; i < 20; i++) {
+            assertThat(received.get(i), equalTo(i));
+        }
+    }
+
+    @Test
+    public void reportsFailureWhenCannotReconnect() throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+        RemoteSender<TestListener> sender;
+        try {
+            sender = new RemoteSender<TestListener>(TestListener.class, serverSocket.getLocalPort());
+            serverSocket.accept().close();
+        } finally {
+            serverSocket.close();
+        }
+
+        try {
+            for (int i = 0; i < 1000; i++) {
+                sender.getSource().event(i);
+                sender.flush();
+            }
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause(), instanceOf(IOException.class));
+        }
+    }
+
+    private void waitForReceived(int count) throws InterruptedException {
+        long expiry = System.currentTimeMillis() + 10000;
+        while (received.size() < count && System.currentTimeMillis() < expiry) {
+            Thread.sleep(10);
+        }
+        assertThat(received.size(), equalTo(count));
+    }
+
+    private void forward(final InputStream inputStream, final OutputStream outputStream) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[1024];
+                try {
+                    while (true) {
+                        int nread = inputStream.read(buffer);
+                        if (nread < 0) {
+                            break;
+                        }
+                        outputStream.write(buffer, 0, nread);
+                        outputStream.flush();
+                    }
+                } catch (IOException e) {
+                    // Connection closed
+                }
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public interface TestListener {
+        void event(int value);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging;
+
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JMock.class)
+public class AsynchronousLogDispatcherTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final Logger logger = context.mock(Logger.class);
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+    private final AsynchronousLogDispatcher dispatcher = new AsynchronousLogDispatcher(4);
+
+    @After
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    public void writesMessagesInOrderOnBackgroundThread() {
+        recordMessages();
+
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(logger, LogLevel.INFO, "message " + i);
+        }
+        dispatcher.flush();
+
+        assertThat(messages.size(), equalTo(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(messages.get(i), equalTo("message " + i));
+            assertThat(threads.get(i), not(sameInstance(Thread.currentThread())));
+        }
+    }
+
+    @Test
+    public void writesAllDispatchedMessagesWhenStopped() {
+        recordMessages();
+
+        dispatcher.dispatch(logger, LogLevel.INFO, "message 1");
+        dispatcher.dispatch(logger, LogLevel.INFO, "message 2");
+        dispatcher.stop();
+
+        assertThat(messages, equalTo(toList("message 1", "message 2")));
+    }
+
+    @Test
+    public void writesMessagesOnCallingThreadOnceStopped() {
+        recordMessages();
+
+        dispatcher.stop();
+        dispatcher.dispatch(logger, LogLevel.INFO, "message");
+
+        assertThat(messages, equalTo(toList("message")));
+        assertThat(threads.get(0), sameInstance(Thread.currentThread()));
+    }
+
+    @Test
+    public void continuesWritingMessagesWhenLoggerFails() {
+        context.checking(new Expectations() {{
+            one(logger).log(LogLevel.INFO, "broken");
+            will(throwException(new RuntimeException()));
+            one(logger).log(LogLevel.INFO, "message");
+        }});
+
+        dispatcher.dispatch(logger, LogLevel.INFO, "broken");
+        dispatcher.dispatch(logger, LogLevel.INFO, "message");
+        dispatcher.flush();
+    }
+
+    private void recordMessages() {
+        context.checking(new Expectations() {{
+            allowing(logger).log(with(equalTo(LogLevel.INFO)), with(any(String.class)));
+            will(new CustomAction("record message") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    messages.add((String) invocation.getParameter(1));
+                    threads.add(Thread.currentThread());
+                    return null;
+                }
+            });
+        }});
+    }
+}
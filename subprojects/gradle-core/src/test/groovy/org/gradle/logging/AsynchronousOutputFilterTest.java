@@ -0,0 +1,88 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.StandardOutputLogging;
+import static org.gradle.util.WrapUtil.*;
+import static org.hamcrest.Matchers.*;
+import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JMock.class)
+public class AsynchronousOutputFilterTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final Logger logger = context.mock(Logger.class);
+    private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+    private final AsynchronousLogDispatcher dispatcher = new AsynchronousLogDispatcher();
+    private final ch.qos.logback.classic.Logger directLogger = new LoggerContext().getLogger("direct");
+    private final AsynchronousOutputFilter filter = new AsynchronousOutputFilter();
+
+    @Before
+    public void setUp() {
+        directLogger.setLevel(Level.INFO);
+        StandardOutputLogging.setDispatcher(dispatcher);
+        context.checking(new Expectations() {{
+            allowing(logger).log(with(equalTo(LogLevel.QUIET)), with(any(String.class)));
+            will(new CustomAction("record message slowly") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    Thread.sleep(100);
+                    messages.add((String) invocation.getParameter(1));
+                    return null;
+                }
+            });
+        }});
+    }
+
+    @After
+    public void tearDown() {
+        StandardOutputLogging.setDispatcher(null);
+        dispatcher.stop();
+    }
+
+    @Test
+    public void waitsForQueuedOutputBeforeMessageIsLogged() {
+        dispatcher.dispatch(logger, LogLevel.QUIET, "output");
+
+        assertThat(filter.decide(null, directLogger, Level.INFO, "message", null, null), equalTo(FilterReply.NEUTRAL));
+        assertThat(messages, equalTo(toList("output")));
+    }
+
+    @Test
+    public void doesNotWaitForQueuedOutputWhenMessageIsNotLogged() {
+        dispatcher.dispatch(logger, LogLevel.QUIET, "output");
+
+        assertThat(filter.decide(null, directLogger, Level.DEBUG, "message", null, null), equalTo(FilterReply.NEUTRAL));
+        assertThat(filter.decide(null, directLogger, Level.INFO, null, null, null), equalTo(FilterReply.NEUTRAL));
+        assertThat(messages, equalTo(Collections.<String>emptyList()));
+    }
+}
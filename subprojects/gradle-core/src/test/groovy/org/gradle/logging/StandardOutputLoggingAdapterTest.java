@@ -125,6 +125,23 @@ public class StandardOutputLoggingAdapterTest {
         adapter.close();
     }
     
+    @Test
+    public void logsUsingDispatcherWhenSet() throws IOException {
+        context.checking(new Expectations() {{
+            one(logger).log(LogLevel.ERROR, "line 1");
+            one(logger).log(LogLevel.ERROR, "line 2");
+        }});
+
+        AsynchronousLogDispatcher dispatcher = new AsynchronousLogDispatcher();
+        adapter.setDispatcher(dispatcher);
+        try {
+            adapter.write(String.format("line 1%nline 2").getBytes());
+            adapter.flush();
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
     @Test(expected = IOException.class)
     public void cannotWriteAfterClose() throws IOException {
         adapter.close();
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.exec;
+
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+@RunWith(JMock.class)
+public class ExecOutputPumpTest {
+    private final JUnit4Mockery context = new JUnit4Mockery();
+    private final ExecOutputPump pump = new ExecOutputPump(1, 4);
+
+    @Test
+    public void splitsOutputIntoLines() {
+        final ExecOutputHandle handle = context.mock(ExecOutputHandle.class);
+        final Sequence sequence = context.sequence("output");
+
+        context.checking(new Expectations() {{
+            one(handle).handleOutputLine("line 1");
+            inSequence(sequence);
+            one(handle).handleOutputLine("");
+            inSequence(sequence);
+            one(handle).handleOutputLine("a longer line 2");
+            inSequence(sequence);
+            one(handle).handleOutputLine("line 3");
+            inSequence(sequence);
+            one(handle).handleOutputLine("line 4");
+            inSequence(sequence);
+            one(handle).endOutput();
+            inSequence(sequence);
+        }});
+
+        finish(pump.add(stream("line 1\n\na longer line 2\r\nline 3\rline 4"), handle));
+    }
+
+    @Test
+    public void passesBytesToBufferHandleWithoutSplittingIntoLines() {
+        final ExecOutputBufferHandle handle = context.mock(ExecOutputBufferHandle.class);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        context.checking(new Expectations() {{
+            atLeast(1).of(handle).handleOutput(with(notNullValue(ByteBuffer.class)));
+            will(new CustomAction("copy output") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    ByteBuffer buffer = (ByteBuffer) invocation.getParameter(0);
+                    output.write(buffer.array(), buffer.position(), buffer.remaining());
+                    return null;
+                }
+            });
+            one(handle).endOutput();
+        }});
+
+        finish(pump.add(stream("line 1\nline 2\n"), handle));
+
+        assertThat(output.toString(), equalTo("line 1\nline 2\n"));
+    }
+
+    @Test
+    public void endsOutputWhenHandleDoesNotContinueAfterReadFailure() {
+        final ExecOutputHandle handle = context.mock(ExecOutputHandle.class);
+        final IOException failure = new IOException("broken");
+        InputStream brokenStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public int available() throws IOException {
+                throw failure;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            one(handle).execOutputHandleError(failure);
+            will(returnValue(false));
+            one(handle).endOutput();
+        }});
+
+        finish(pump.add(brokenStream, handle));
+    }
+
+    @Test
+    public void endsOutputWhenHandleContinuesAfterRepeatedReadFailures() {
+        final ExecOutputHandle handle = context.mock(ExecOutputHandle.class);
+        final IOException failure = new IOException("closed");
+        InputStream closedStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw failure;
+            }
+
+            @Override
+            public int available() throws IOException {
+                throw failure;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            atLeast(1).of(handle).execOutputHandleError(failure);
+            will(returnValue(true));
+            one(handle).endOutput();
+        }});
+
+        finish(pump.add(closedStream, handle));
+    }
+
+    @Test
+    public void endsOutputOfStreamWhichStaysOpenAfterProcessHasTerminated() {
+        final ExecOutputHandle handle = context.mock(ExecOutputHandle.class);
+        final InputStream content = stream("line 1\n");
+        InputStream openStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = content.read(buffer, offset, length);
+                if (count > 0) {
+                    return count;
+                }
+                // Simulates a stream which is held open by a child process of the process
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                return -1;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return content.available();
+            }
+        };
+        final Sequence sequence = context.sequence("output");
+
+        context.checking(new Expectations() {{
+            one(handle).handleOutputLine("line 1");
+            inSequence(sequence);
+            one(handle).endOutput();
+            inSequence(sequence);
+        }});
+
+        pump.finish(100, pump.add(openStream, handle));
+    }
+
+    @Test
+    public void closesStreamWhichIsStillProducingOutputWhenTimeoutExpires() {
+        final ExecOutputHandle handle = context.mock(ExecOutputHandle.class);
+        final AtomicBoolean closed = new AtomicBoolean();
+        InputStream busyStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                // Simulates a child process of the process which keeps writing to the stream
+                return '\n';
+            }
+
+            @Override
+            public int available() throws IOException {
+                return 1;
+            }
+
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(handle).handleOutputLine("");
+            one(handle).endOutput();
+        }});
+
+        pump.finish(100, pump.add(busyStream, handle));
+
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void slowHandleDoesNotHoldUpOutputOfOtherStreams() {
+        final ExecOutputHandle slowHandle = context.mock(ExecOutputHandle.class, "slow");
+        final ExecOutputHandle otherHandle = context.mock(ExecOutputHandle.class, "other");
+        final CountDownLatch otherOutputHandled = new CountDownLatch(1);
+        final AtomicBoolean otherOutputHandledFirst = new AtomicBoolean();
+
+        context.checking(new Expectations() {{
+            one(slowHandle).handleOutputLine("slow");
+            will(new CustomAction("wait for other output") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    otherOutputHandledFirst.set(otherOutputHandled.await(10, TimeUnit.SECONDS));
+                    return null;
+                }
+            });
+            one(slowHandle).endOutput();
+            one(otherHandle).handleOutputLine("other");
+            will(new CustomAction("signal output handled") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    otherOutputHandled.countDown();
+                    return null;
+                }
+            });
+            one(otherHandle).endOutput();
+        }});
+
+        ExecOutputPump.PumpedStream slowStream = pump.add(stream("slow\n"), slowHandle);
+        ExecOutputPump.PumpedStream otherStream = pump.add(stream("other\n"), otherHandle);
+        pump.finish(ExecOutputPump.DEFAULT_FINISH_TIMEOUT, slowStream, otherStream);
+
+        assertTrue(otherOutputHandledFirst.get());
+    }
+
+    private void finish(ExecOutputPump.PumpedStream stream) {
+        pump.finish(ExecOutputPump.DEFAULT_FINISH_TIMEOUT, stream);
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+}
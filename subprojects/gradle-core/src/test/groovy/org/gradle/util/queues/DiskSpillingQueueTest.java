@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.queues;
+
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.WrapUtil;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DiskSpillingQueueTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void keepsItemsInMemoryUntilCapacityIsReached() {
+        DiskSpillingQueue<String> queue = new DiskSpillingQueue<String>(3, tmpDir.getDir());
+
+        queue.add("a");
+        queue.add("b");
+        queue.add("c");
+
+        assertThat(queue.size(), equalTo(3));
+        assertFalse(queue.isSpilling());
+        assertThat(queue.getTotalSpilledItemCount(), equalTo(0L));
+        assertThat(tmpDir.getDir().list().length, equalTo(0));
+    }
+
+    @Test
+    public void spillsItemsWhenMemoryIsFullAndReadsThemBackInOrder() {
+        DiskSpillingQueue<String> queue = new DiskSpillingQueue<String>(2, tmpDir.getDir());
+
+        for (int i = 0; i < 7; i++) {
+            queue.add("item" + i);
+        }
+
+        assertThat(queue.size(), equalTo(7));
+        assertThat(queue.getSpilledItemCount(), equalTo(5));
+        assertTrue(queue.isSpilling());
+
+        List<String> items = new ArrayList<String>();
+        assertThat(queue.drainTo(items, 3), equalTo(3));
+        queue.add("item7");
+        assertThat(queue.drainTo(items), equalTo(5));
+
+        assertThat(items, equalTo(WrapUtil.toList("item0", "item1", "item2", "item3", "item4", "item5", "item6", "item7")));
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.isSpilling());
+        assertThat(queue.getTotalSpilledItemCount(), equalTo(6L));
+        assertThat(queue.getPeakSize(), equalTo(7));
+    }
+
+    @Test
+    public void addReportsTheItemWhichStartsTheQueueSpilling() {
+        DiskSpillingQueue<String> queue = new DiskSpillingQueue<String>(1, tmpDir.getDir());
+
+        assertFalse(queue.add("a"));
+        assertTrue(queue.add("b"));
+        assertFalse(queue.add("c"));
+
+        queue.drainTo(new ArrayList<String>());
+        assertFalse(queue.add("d"));
+        assertTrue(queue.add("e"));
+    }
+
+    @Test
+    public void canSpillAgainAfterAllSpilledItemsHaveBeenReadBack() {
+        DiskSpillingQueue<String> queue = new DiskSpillingQueue<String>(1, tmpDir.getDir());
+
+        queue.add("a");
+        queue.add("b");
+        List<String> items = new ArrayList<String>();
+        queue.drainTo(items);
+
+        queue.add("c");
+        queue.add("d");
+        queue.drainTo(items);
+
+        assertThat(items, equalTo(WrapUtil.toList("a", "b", "c", "d")));
+    }
+
+    @Test
+    public void closeDeletesSpillFile() {
+        DiskSpillingQueue<String> queue = new DiskSpillingQueue<String>(1, tmpDir.getDir());
+        queue.add("a");
+        queue.add("b");
+        assertThat(tmpDir.getDir().list().length, equalTo(1));
+
+        queue.close();
+
+        assertTrue(queue.isEmpty());
+        assertThat(tmpDir.getDir().list().length, equalTo(0));
+    }
+}